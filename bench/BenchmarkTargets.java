@@ -0,0 +1,176 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Workloads measured by the JMH benchmarks. JMH only accepts benchmark classes in a
+ * named package, which cannot refer to the classes of the default package, so each
+ * workload is built here and handed over as an {@link IntUnaryOperator}: the
+ * benchmark passes an iteration counter and gets back a value to consume. The word
+ * lists are read from dict.txt and input.txt in the working directory.
+ */
+public final class BenchmarkTargets {
+    /** Number of words in the default dictionary. */
+    private static final int DICT_SIZE = 25144;
+    /** Number of absent words cycled through by the miss workloads (a power of two). */
+    private static final int ABSENT = 1024;
+
+    private BenchmarkTargets() {
+    }
+
+    /**
+     * Builds a table holding the first words of dict.txt and returns one of its
+     * operations: "getHit" looks up a stored word, "getMiss" a word that is not
+     * stored, and "putRemove" adds an absent word and removes it again.
+     *
+     * @param engine "chain" or "open"
+     * @param words  number of dictionary words to store
+     * @param load   words per bucket (chained) or per expected slot (open)
+     * @param op     the operation to return
+     * @return the operation, taking an iteration counter
+     * @throws IOException if dict.txt cannot be read
+     */
+    public static IntUnaryOperator dictionary(String engine, int words, double load, String op) throws IOException {
+        List<String> all = dictionaryWords();
+        WordTable table = newTable(engine, (int) Math.ceil(words / load));
+        String[] present = all.subList(0, words).toArray(new String[0]);
+        int[] presentKeys = new int[words];
+        for (int i = 0; i < words; i++) {
+            presentKeys[i] = table.hashCode(present[i]);
+            table.put(presentKeys[i], present[i]);
+        }
+        String[] absent = new String[ABSENT];
+        int[] absentKeys = new int[ABSENT];
+        for (int i = 0; i < ABSENT; i++) {
+            absent[i] = all.get(all.size() - 1 - i) + "qz";
+            absentKeys[i] = table.hashCode(absent[i]);
+        }
+        switch (op) {
+            case "getHit":
+                return n -> {
+                    int i = (n & Integer.MAX_VALUE) % words;
+                    return table.get(presentKeys[i], present[i]) != null ? 1 : 0;
+                };
+            case "getMiss":
+                return n -> table.get(absentKeys[n & (ABSENT - 1)], absent[n & (ABSENT - 1)]) != null ? 1 : 0;
+            case "putRemove":
+                return n -> {
+                    int i = n & (ABSENT - 1);
+                    table.put(absentKeys[i], absent[i]);
+                    return table.remove(absentKeys[i]) != null ? 1 : 0;
+                };
+            default:
+                throw new IllegalArgumentException("Unknown operation " + op);
+        }
+    }
+
+    /**
+     * Returns {@link Dictionary#hashCode(String)} of a word of the given length.
+     *
+     * @param hash   command-line name of the hash function
+     * @param length the word length
+     * @return the operation, ignoring its argument
+     */
+    public static IntUnaryOperator hashCode(String hash, int length) {
+        Dictionary dict = new Dictionary(DICT_SIZE, StandardHash.forLabel(hash));
+        StringBuilder b = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+            b.append((char) ('a' + i % 26));
+        String word = b.toString();
+        return n -> dict.hashCode(word);
+    }
+
+    /**
+     * Builds the dictionary and returns the full checkSpelling cascade over a word
+     * mix. The "hit" mix holds the words of input.txt that are found (directly or
+     * after an alteration) plus every 25th dictionary word; the "miss" mix holds the
+     * words of input.txt reported as misspelled, which run through every applicable
+     * rule.
+     *
+     * @param engine "chain" or "open"
+     * @param mix    "hit" or "miss"
+     * @return the operation, checking the word at the iteration counter
+     * @throws IOException if dict.txt or input.txt cannot be read
+     */
+    public static IntUnaryOperator checkSpelling(String engine, String mix) throws IOException {
+        List<String> dictWords = dictionaryWords();
+        WordTable table = newTable(engine, DICT_SIZE);
+        for (String word : dictWords)
+            table.put(table.hashCode(word), word);
+        SpellCheck.setDictionary(table);
+        SpellCheck.setRules(SuffixRules.DEFAULT.forDictionary(dictWords));
+
+        List<String> hits = new ArrayList<>();
+        List<String> misses = new ArrayList<>();
+        for (String word : textWords())
+            (SpellCheck.checkSpelling(word) ? hits : misses).add(word);
+        for (int i = 0; i < dictWords.size(); i += 25)
+            hits.add(dictWords.get(i));
+        String[] words = (mix.equals("hit") ? hits : misses).toArray(new String[0]);
+        return n -> SpellCheck.checkSpelling(words[(n & Integer.MAX_VALUE) % words.length]) ? 1 : 0;
+    }
+
+    /**
+     * Returns a tokenization of the whole of input.txt, held in memory, with bytes
+     * classified one at a time or by the Vector API word mask.
+     *
+     * @param mode "scalar" or "vector"
+     * @return the operation, ignoring its argument and returning the token count
+     * @throws IOException if input.txt cannot be read
+     * @throws IllegalStateException if the vector mode is asked for but not available
+     */
+    public static IntUnaryOperator tokenize(String mode) throws IOException {
+        byte[] text = Files.readAllBytes(Paths.get("input.txt"));
+        boolean vector = mode.equals("vector");
+        Tokenizer.setVectorized(vector);
+        if (Tokenizer.isVectorized() != vector)
+            throw new IllegalStateException("Vector API word mask not available; compile vector/ and add jdk.incubator.vector");
+        return n -> {
+            Tokenizer tokens = new Tokenizer(text, 0, text.length);
+            int count = 0;
+            try {
+                while (tokens.next())
+                    count++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);  // Never thrown: the text is in memory.
+            }
+            return count;
+        };
+    }
+
+    /** Returns the words of dict.txt in file order. */
+    private static List<String> dictionaryWords() throws IOException {
+        return SpellCheck.readWordList(new File("dict.txt"));
+    }
+
+    /** Returns the [\w'] tokens of input.txt in document order. */
+    private static List<String> textWords() throws IOException {
+        List<String> words = new ArrayList<>();
+        try (FileChannel in = FileChannel.open(Paths.get("input.txt"))) {
+            Tokenizer tokens = new Tokenizer(in);
+            while (tokens.next())
+                words.add(tokens.token());
+        }
+        return words;
+    }
+
+    /**
+     * Creates an empty table of the named engine. The chained table keeps its bucket
+     * count, so that the benchmarks measure the load factor they ask for.
+     */
+    private static WordTable newTable(String engine, int capacity) {
+        if (engine.equals("open"))
+            return new OpenDictionary(capacity);
+        Dictionary chained = new Dictionary(capacity);
+        chained.setResizing(false);
+        return chained;
+    }
+}
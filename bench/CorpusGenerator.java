@@ -0,0 +1,298 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Writes a synthetic text of a given size for the macro benchmark. Words are drawn
+ * from dict.txt with Zipf frequencies: the word of rank r, in an order shuffled by
+ * the seed, is drawn with probability proportional to 1/r^s. A given fraction of the
+ * words take one of the suffixes the match rules strip (s, es, ed, ing or ly), and
+ * a given fraction are misspelled by one random insertion, deletion, substitution
+ * or transposition. The words are set in sentences of 5 to 20 words wrapped at 72
+ * columns, with a blank line between paragraphs. The same seed writes the same text.
+ *
+ * <pre>
+ *   java -cp out CorpusGenerator [-size=64M] [-misspell=0.02] [-suffix=0.15] [-zipf=1.0] [-seed=0] FILE
+ * </pre>
+ */
+public final class CorpusGenerator {
+    /** Column at which lines are wrapped. */
+    private static final int LINE_WIDTH = 72;
+    /** Suffixes added to words, as the match rules strip them. */
+    private static final String[] SUFFIXES = {"s", "es", "ed", "ing", "ly"};
+    /** Usage message printed when the arguments cannot be used. */
+    private static final String USAGE =
+            "Usage: CorpusGenerator [-size=64M] [-misspell=0.02] [-suffix=0.15] [-zipf=1.0] [-seed=0] FILE";
+    /** Exit status when the arguments cannot be used. */
+    private static final int EXIT_USAGE = 2;
+
+    /** Words of the dictionary in rank order. */
+    private final List<byte[]> words;
+    /** Cumulative Zipf probability of each rank. */
+    private final double[] cumulative;
+    /** Fraction of the words given a suffix. */
+    private final double suffixRate;
+    /** Fraction of the words misspelled. */
+    private final double misspellRate;
+    /** Source of the choices. */
+    private final SplittableRandom random;
+    /** Number of words written. */
+    private long wordCount = 0;
+    /** Number of words given a suffix. */
+    private long suffixCount = 0;
+    /** Number of words misspelled. */
+    private long misspellCount = 0;
+
+    /**
+     * Creates a generator over the given dictionary words.
+     *
+     * @param dictionary   the words to draw from
+     * @param zipf         the Zipf exponent s
+     * @param suffixRate   the fraction of the words given a suffix
+     * @param misspellRate the fraction of the words misspelled
+     * @param seed         the seed of the rank order and of every choice
+     * @throws IllegalArgumentException if the dictionary is empty or a rate is not in [0, 1]
+     */
+    public CorpusGenerator(List<String> dictionary, double zipf, double suffixRate, double misspellRate,
+            long seed) {
+        if (dictionary.isEmpty())
+            throw new IllegalArgumentException("The dictionary is empty");
+        if (!(suffixRate >= 0 && suffixRate <= 1 && misspellRate >= 0 && misspellRate <= 1))
+            throw new IllegalArgumentException("Rates must be between 0 and 1");
+        List<String> ranked = new ArrayList<>(dictionary);
+        Collections.shuffle(ranked, new Random(seed));
+        words = new ArrayList<>(ranked.size());
+        for (String word : ranked)
+            words.add(word.getBytes(StandardCharsets.ISO_8859_1));
+        cumulative = new double[ranked.size()];
+        double sum = 0;
+        for (int r = 0; r < cumulative.length; r++) {
+            sum += 1 / Math.pow(r + 1, zipf);
+            cumulative[r] = sum;
+        }
+        for (int r = 0; r < cumulative.length; r++)
+            cumulative[r] /= sum;
+        this.suffixRate = suffixRate;
+        this.misspellRate = misspellRate;
+        random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Writes words until at least the given number of bytes is written, finishing
+     * the line under way.
+     *
+     * @param out   the stream to write to
+     * @param bytes the size of the text
+     * @return the number of bytes written
+     * @throws IOException if the text cannot be written
+     */
+    public long write(OutputStream out, long bytes) throws IOException {
+        byte[] line = new byte[LINE_WIDTH + 64];
+        byte[] word = new byte[64];
+        long written = 0;
+        int length = 0;                     /* Bytes in the line. */
+        int sentence = 0;                   /* Words left in the sentence. */
+        int lines = 0;                      /* Lines in the paragraph. */
+        while (written < bytes) {
+            boolean first = sentence == 0;
+            if (first)
+                sentence = 5 + random.nextInt(16);
+            int len = nextWord(word);
+            if (first && word[0] >= 'a' && word[0] <= 'z')
+                word[0] -= 'a' - 'A';
+            if (--sentence == 0)
+                word[len++] = '.';
+            if (length > 0 && length + 1 + len > LINE_WIDTH) {
+                line[length++] = '\n';
+                if (sentence == 0 && ++lines >= 6 && random.nextInt(3) == 0) {
+                    line[length++] = '\n';
+                    lines = 0;
+                }
+                out.write(line, 0, length);
+                written += length;
+                length = 0;
+            }
+            if (length > 0)
+                line[length++] = ' ';
+            System.arraycopy(word, 0, line, length, len);
+            length += len;
+        }
+        line[length++] = '\n';
+        out.write(line, 0, length);
+        return written + length;
+    }
+
+    /**
+     * Returns the number of words written.
+     *
+     * @return the word count
+     */
+    public long getWordCount() {
+        return wordCount;
+    }
+
+    /**
+     * Returns the number of words given a suffix.
+     *
+     * @return the suffix count
+     */
+    public long getSuffixCount() {
+        return suffixCount;
+    }
+
+    /**
+     * Returns the number of words misspelled.
+     *
+     * @return the misspelled count
+     */
+    public long getMisspellCount() {
+        return misspellCount;
+    }
+
+    /**
+     * Writes a corpus to a file and prints what it holds. Options that cannot be
+     * used are reported with the usage, and the program exits with status 2.
+     *
+     * @param args the options and the file name
+     * @throws IOException if dict.txt cannot be read or the file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        long size = 64 << 20;
+        double misspell = 0.02, suffix = 0.15, zipf = 1.0;
+        long seed = 0;
+        String fileName = null;
+        CorpusGenerator generator = null;
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("-size="))
+                    size = parseSize(arg.substring(6));
+                else if (arg.startsWith("-misspell="))
+                    misspell = Double.parseDouble(arg.substring(10));
+                else if (arg.startsWith("-suffix="))
+                    suffix = Double.parseDouble(arg.substring(8));
+                else if (arg.startsWith("-zipf="))
+                    zipf = Double.parseDouble(arg.substring(6));
+                else if (arg.startsWith("-seed="))
+                    seed = Long.parseLong(arg.substring(6));
+                else if (arg.startsWith("-") || fileName != null)
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                else
+                    fileName = arg;
+            }
+            if (fileName == null)
+                throw new IllegalArgumentException("No output file given");
+            generator = new CorpusGenerator(SpellCheck.readWordList(new File("dict.txt")), zipf, suffix, misspell,
+                    seed);
+        } catch (IllegalArgumentException e) {      // Also a NumberFormatException, for a bad number.
+            System.out.printf("Error. %s%n%s%n", e.getMessage(), USAGE);
+            System.exit(EXIT_USAGE);
+        }
+        long start = System.nanoTime();
+        long written;
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(fileName), 1 << 20)) {
+            written = generator.write(out, size);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Wrote %d bytes, %d words (%d with a suffix, %d misspelled) to %s in %.1f s.%n", written,
+                generator.getWordCount(), generator.getSuffixCount(), generator.getMisspellCount(), fileName,
+                seconds);
+    }
+
+    /**
+     * Parses a size in bytes, with an optional K, M or G multiplier.
+     *
+     * @param value the size, such as 512K, 64M or 10G
+     * @return the size in bytes
+     * @throws NumberFormatException if the value is not a positive size
+     */
+    static long parseSize(String value) {
+        int shift = 0;
+        char unit = Character.toUpperCase(value.isEmpty() ? ' ' : value.charAt(value.length() - 1));
+        if (unit == 'K' || unit == 'M' || unit == 'G') {
+            shift = unit == 'K' ? 10 : unit == 'M' ? 20 : 30;
+            value = value.substring(0, value.length() - 1);
+        }
+        long size = Long.parseLong(value);
+        if (size <= 0 || size > Long.MAX_VALUE >> shift)
+            throw new NumberFormatException("Not a positive size: " + value);
+        return size << shift;
+    }
+
+    // private utilities
+
+    /** Draws a word, gives it a suffix or misspells it, and returns its length. */
+    private int nextWord(byte[] word) {
+        double u = random.nextDouble();
+        int lo = 0, hi = cumulative.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cumulative[mid] < u)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        byte[] drawn = words.get(lo);
+        int len = Math.min(drawn.length, 40);
+        System.arraycopy(drawn, 0, word, 0, len);
+        wordCount++;
+        if (random.nextDouble() < suffixRate && isLetter(word[len - 1])) {
+            len = addSuffix(word, len, SUFFIXES[random.nextInt(SUFFIXES.length)]);
+            suffixCount++;
+        }
+        if (random.nextDouble() < misspellRate) {
+            len = misspell(word, len);
+            misspellCount++;
+        }
+        return len;
+    }
+
+    /** Adds a suffix the way the match rules expect to strip it. */
+    private static int addSuffix(byte[] word, int len, String suffix) {
+        if (word[len - 1] == 'e' && (suffix.equals("ed") || suffix.equals("es")))
+            suffix = suffix.substring(1);               // baked, not bakeed
+        else if (word[len - 1] == 'e' && suffix.equals("ing") && len > 2)
+            len--;                                      // baking, not bakeing
+        for (int i = 0; i < suffix.length(); i++)
+            word[len++] = (byte) suffix.charAt(i);
+        return len;
+    }
+
+    /** Makes one random edit to a word and returns its new length. */
+    private int misspell(byte[] word, int len) {
+        int at = random.nextInt(len);
+        byte letter = (byte) ('a' + random.nextInt(26));
+        switch (len < 2 ? 0 : random.nextInt(4)) {
+        case 0:                                         // Insertion.
+            System.arraycopy(word, at, word, at + 1, len - at);
+            word[at] = letter;
+            return len + 1;
+        case 1:                                         // Deletion.
+            System.arraycopy(word, at + 1, word, at, len - at - 1);
+            return len - 1;
+        case 2:                                         // Substitution.
+            word[at] = word[at] == letter ? (byte) (letter == 'z' ? 'a' : letter + 1) : letter;
+            return len;
+        default:                                        // Transposition.
+            at = Math.min(at, len - 2);
+            byte b = word[at];
+            word[at] = word[at + 1];
+            word[at + 1] = b;
+            return len;
+        }
+    }
+
+    /** Whether a byte is a lower-case ASCII letter. */
+    private static boolean isLetter(byte b) {
+        return b >= 'a' && b <= 'z';
+    }
+}
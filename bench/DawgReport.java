@@ -0,0 +1,201 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Compares the word graph of {@link DawgDictionary} with the hash tables, for the
+ * bundled dict.txt and for a dictionary of a million words. The large one holds
+ * dict.txt and then compounds of two of its words, such as "walkhouse", so its
+ * words share beginnings and endings the way the words of a real list do. For
+ * each engine it prints:
+ * <ul>
+ * <li>the time to build it;</li>
+ * <li>its size: for a table, the heap still in use once it is built and the word
+ * list dropped, and for the graph its packed arrays;</li>
+ * <li>the time of a lookup of a word that is in the dictionary, and of one that
+ * is not, the best of five rounds over the words in shuffled order;</li>
+ * <li>the time the match rules take over words that are found only through a stem,
+ * such as a word with "ing" added, and the lookups they make per word.</li>
+ * </ul>
+ *
+ * <pre>
+ *   java -Xmx2g -XX:+UseSerialGC -cp out DawgReport [-words=1000000]
+ * </pre>
+ */
+public final class DawgReport {
+    /** The engines compared. */
+    private static final String[] ENGINES = {"chain", "open", "dawg"};
+    /** Rounds of each timing, of which the fastest is reported. */
+    private static final int ROUNDS = 5;
+    /** Endings added to dictionary words to make words found through a stem. */
+    private static final String[] ENDINGS = {"s", "ing", "ed", "ly", "'s", "er"};
+    /** Sink for lookup results, so that no lookup is optimized away. */
+    private static int sink;
+
+    private DawgReport() {
+    }
+
+    /**
+     * Builds each engine at each size and prints its size and speed.
+     *
+     * @param args the options
+     * @throws IOException if dict.txt cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        int large = 1_000_000;
+        for (String arg : args) {
+            if (arg.startsWith("-words="))
+                large = Integer.parseInt(arg.substring(7));
+            else
+                throw new IllegalArgumentException("Unknown option " + arg);
+        }
+        List<String> dictionary = SpellCheck.readWordList(new File("dict.txt"));
+        System.out.printf("%-6s %9s %9s %9s %9s %9s %9s %12s%n", "engine", "words", "build ms", "size MB",
+                "hit ns", "miss ns", "stem ns", "stem lookups");
+        for (int size : new int[] {dictionary.size(), large}) {
+            // Sizes first, while nothing else the timings need is on the heap.
+            double[] buildMs = new double[ENGINES.length];
+            long[] bytes = new long[ENGINES.length];
+            for (int e = 0; e < ENGINES.length; e++)
+                bytes[e] = footprint(ENGINES[e], dictionary, size, buildMs, e);
+
+            List<String> all = words(dictionary, size);
+            SuffixRules rules = SuffixRules.DEFAULT.forDictionary(all);
+            List<byte[]> hits = sample(all, "", 200_000);
+            List<byte[]> misses = sample(all, "q", 200_000);
+            Set<String> known = new HashSet<>(all);
+            List<String> stemmed = new ArrayList<>();
+            Random random = new Random(1);
+            while (stemmed.size() < 50_000) {
+                String word = all.get(random.nextInt(all.size())) + ENDINGS[random.nextInt(ENDINGS.length)];
+                if (!known.contains(word))
+                    stemmed.add(word);
+            }
+            for (int e = 0; e < ENGINES.length; e++) {
+                WordTable table = build(ENGINES[e], all);
+                double hitNs = lookupNanos(table, hits);
+                double missNs = lookupNanos(table, misses);
+                double stemNs = Double.MAX_VALUE;
+                long lookups = table.getLookupCount();
+                for (int round = 0; round < ROUNDS; round++) {
+                    long start = System.nanoTime();
+                    for (String word : stemmed)
+                        sink += rules.check(table, word) ? 1 : 0;
+                    stemNs = Math.min(stemNs, (System.nanoTime() - start) / (double) stemmed.size());
+                }
+                double stemLookups = (table.getLookupCount() - lookups) / (double) (ROUNDS * stemmed.size());
+                System.out.printf("%-6s %9d %9.0f %9.1f %9.1f %9.1f %9.1f %12.2f%n", ENGINES[e], table.size(),
+                        buildMs[e], bytes[e] / 1e6, hitNs, missNs, stemNs, stemLookups);
+            }
+        }
+        if (sink == 42)
+            System.out.println();
+    }
+
+    // private utilities
+
+    /**
+     * Builds an engine's table and measures it, in a frame of its own so that no
+     * table is still referenced when the next one is measured.
+     *
+     * @param engine    the engine
+     * @param dictionary the dictionary words
+     * @param size      the number of words to build it of
+     * @param buildMs   receives the build time in milliseconds
+     * @param e         the index of the engine in buildMs
+     * @return the heap kept by a table, or the bytes of the graph
+     */
+    private static long footprint(String engine, List<String> dictionary, int size, double[] buildMs, int e) {
+        long before = heapAfterGc();
+        List<String> words = words(dictionary, size);
+        long start = System.nanoTime();
+        WordTable table = build(engine, words);
+        buildMs[e] = (System.nanoTime() - start) / 1e6;
+        words = null;
+        long bytes = table instanceof DawgDictionary ? ((DawgDictionary) table).memoryBytes()
+                : heapAfterGc() - before;
+        Reference.reachabilityFence(table);
+        return bytes;
+    }
+
+    /** Builds the table of an engine with the cyclic-shift hash. */
+    private static WordTable build(String engine, List<String> words) {
+        if (engine.equals("dawg"))
+            return new DawgDictionary(words, StandardHash.CYCLIC_SHIFT);
+        WordTable table = engine.equals("open") ? new OpenDictionary(words.size(), StandardHash.CYCLIC_SHIFT)
+                : new Dictionary(words.size(), StandardHash.CYCLIC_SHIFT);
+        for (String word : words)
+            table.put(table.hashCode(word), word);
+        return table;
+    }
+
+    /**
+     * Copies of the dictionary words, then compounds of two of them, up to the
+     * given count. Round r joins each word to a different second word, so the
+     * compounds are distinct.
+     */
+    private static List<String> words(List<String> dictionary, int count) {
+        int n = dictionary.size();
+        List<String> words = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int first = i % n, round = i / n;
+            String word = dictionary.get(first);
+            if (round > 0)
+                word += dictionary.get((int) ((31L * first + 7919L * round) % n)).toLowerCase();
+            words.add(new String(word.toCharArray()));  // A copy, so the table owns its strings.
+        }
+        return words;
+    }
+
+    /** Up to count of the words with a marker inserted before the last letter, as bytes, shuffled. */
+    private static List<byte[]> sample(List<String> words, String marker, int count) {
+        List<byte[]> sample = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String word = words.get((int) ((long) i * words.size() / count));
+            int at = Math.max(word.length() - 1, 0);
+            sample.add((word.substring(0, at) + marker + word.substring(at)).getBytes(StandardCharsets.ISO_8859_1));
+        }
+        Collections.shuffle(sample, new Random(7));
+        return sample;
+    }
+
+    /** Mean time of a byte lookup over the words, the best of the rounds, in nanoseconds. */
+    private static double lookupNanos(WordTable table, List<byte[]> words) {
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (byte[] word : words)
+                sink += table.contains(table.hashCode(word, 0, word.length), word, 0, word.length) ? 1 : 0;
+            best = Math.min(best, (System.nanoTime() - start) / (double) words.size());
+        }
+        return best;
+    }
+
+    /**
+     * Heap in use after full collections, in bytes. A few spaced collections are
+     * made and the least use kept, since one can leave garbage a later one frees.
+     */
+    private static long heapAfterGc() {
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            used = Math.min(used, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return used;
+    }
+}
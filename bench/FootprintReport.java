@@ -0,0 +1,135 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Reports the heap and GC footprint of each table engine for the bundled dict.txt
+ * and for a dictionary of several million words. The large one is made from
+ * dict.txt by giving each word a run of suffixes such as "_b" and "_c", so every
+ * word is distinct. For each engine it prints:
+ * <ul>
+ * <li>the time to build the table;</li>
+ * <li>the heap still in use once the table is built and the word list dropped;</li>
+ * <li>the native memory of the off-heap table;</li>
+ * <li>the time of a full collection with the table live, the best of three.</li>
+ * </ul>
+ * The off-heap engine is measured only when ffm/ was compiled; see
+ * {@link SpellCheck#offHeapTable(Object...)}.
+ *
+ * <pre>
+ *   java -Xmx3g [--enable-preview] -cp out FootprintReport [-words=5000000]
+ * </pre>
+ */
+public final class FootprintReport {
+    private FootprintReport() {
+    }
+
+    /**
+     * Builds each table at each size and prints its footprint.
+     *
+     * @param args the options
+     * @throws IOException if dict.txt cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        int large = 5_000_000;
+        for (String arg : args) {
+            if (arg.startsWith("-words="))
+                large = Integer.parseInt(arg.substring(7));
+            else
+                throw new IllegalArgumentException("Unknown option " + arg);
+        }
+        List<String> dictionary = SpellCheck.readWordList(new File("dict.txt"));
+        System.out.printf("%-8s %9s %9s %12s %12s %10s%n", "engine", "words", "build ms", "heap MB", "off-heap MB",
+                "full GC ms");
+        for (int size : new int[] {dictionary.size(), large}) {
+            for (String engine : new String[] {"chain", "open", "offheap"}) {
+                long before = heapAfterGc();
+                List<String> words = words(dictionary, size);
+                long start = System.nanoTime();
+                WordTable table;
+                try {
+                    table = build(engine, words);
+                } catch (IOException e) {
+                    System.out.printf("%-8s %9d  skipped: %s%n", engine, size, e.getMessage());
+                    continue;
+                }
+                double buildMs = (System.nanoTime() - start) / 1e6;
+                words = null;
+                long retained = heapAfterGc() - before;
+                double gcMs = Double.MAX_VALUE;
+                for (int i = 0; i < 3; i++)
+                    gcMs = Math.min(gcMs, fullGcMillis());
+                System.out.printf("%-8s %9d %9.0f %12.1f %12.1f %10.1f%n", engine, table.size(), buildMs,
+                        retained / 1e6, offHeapBytes(table) / 1e6, gcMs);
+                if (table instanceof AutoCloseable) {
+                    try {
+                        ((AutoCloseable) table).close();
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+        }
+    }
+
+    // private utilities
+
+    /** Builds the table of an engine with the cyclic-shift hash. */
+    private static WordTable build(String engine, List<String> words) throws IOException {
+        if (engine.equals("offheap"))
+            return SpellCheck.offHeapTable(words, StandardHash.CYCLIC_SHIFT);
+        WordTable table = engine.equals("open") ? new OpenDictionary(words.size(), StandardHash.CYCLIC_SHIFT)
+                : new Dictionary(words.size(), StandardHash.CYCLIC_SHIFT);
+        for (String word : words)
+            table.put(table.hashCode(word), word);
+        return table;
+    }
+
+    /** Copies of the dictionary words, then suffixed copies, up to the given count. */
+    private static List<String> words(List<String> dictionary, int count) {
+        List<String> words = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String word = dictionary.get(i % dictionary.size());
+            StringBuilder suffix = new StringBuilder();
+            for (int round = i / dictionary.size(); round > 0; round /= 26)
+                suffix.append('_').append((char) ('a' + round % 26));
+            words.add(word + suffix);               // A copy, so the table owns its strings.
+        }
+        return words;
+    }
+
+    /** Native memory of an off-heap table, or 0 for the others. */
+    private static long offHeapBytes(WordTable table) {
+        try {
+            return (Long) table.getClass().getMethod("offHeapBytes").invoke(table);
+        } catch (ReflectiveOperationException e) {
+            return 0;
+        }
+    }
+
+    /** Heap in use after a full collection, in bytes. */
+    private static long heapAfterGc() {
+        System.gc();
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /** Time spent in the collectors over one System.gc(), in milliseconds. */
+    private static double fullGcMillis() {
+        long before = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            before += gc.getCollectionTime();
+        long start = System.nanoTime();
+        System.gc();
+        double wall = (System.nanoTime() - start) / 1e6;
+        long after = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            after += gc.getCollectionTime();
+        return after > before ? after - before : wall;
+    }
+}
@@ -0,0 +1,321 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * End-to-end benchmark of the whole SpellCheck pipeline with a regression gate.
+ * Each run starts a fresh JVM that calls {@link SpellCheck#main(String[])} on a
+ * corpus, so the dictionary load, tokenizing, checking and writing are all
+ * measured, and reports:
+ * <ul>
+ * <li>wallSeconds: the time SpellCheck.main takes;</li>
+ * <li>mbPerSecond: the corpus size over that time;</li>
+ * <li>peakRssMb: the peak resident set of the process (Linux only);</li>
+ * <li>gcPauseMs and gcMaxPauseMs: the total and longest collection;</li>
+ * <li>allocatedMb: the heap allocated, from the heap in use around each collection.</li>
+ * </ul>
+ * The median of the runs is compared with a baseline file of the same keys. A
+ * metric worse than its baseline by more than its threshold is a regression, and
+ * the process exits with status 1. Thresholds are fractions of the baseline:
+ * 0.10 by default and 0.50 for the noisier pause times, overridden for all
+ * metrics with -threshold=F or for one with -threshold.KEY=F.
+ *
+ * The corpus is a file given with -corpus=FILE, or else one written by
+ * {@link CorpusGenerator} with -size, -misspell and -seed to corpus-SIZE-SEED.txt,
+ * which is kept for later runs. Arguments after -- go to SpellCheck, such as the
+ * engine or thread count. -update writes the median to the baseline instead of
+ * comparing.
+ *
+ * <pre>
+ *   java -cp out MacroBenchmark [-corpus=FILE | -size=64M -misspell=0.02 -seed=0] [-runs=3]
+ *        [-baseline=bench/baseline.properties] [-threshold=F] [-threshold.KEY=F] [-update] [-- SpellCheck options]
+ * </pre>
+ */
+public final class MacroBenchmark {
+    /** Metrics measured, in report order. */
+    static final String[] KEYS = {"wallSeconds", "mbPerSecond", "peakRssMb", "gcPauseMs", "gcMaxPauseMs",
+        "allocatedMb"};
+    /** Whether a higher value of each metric is better. */
+    private static final boolean[] HIGHER_BETTER = {false, true, false, false, false, false};
+    /** Default threshold of each metric, as a fraction of the baseline. */
+    private static final double[] THRESHOLDS = {0.10, 0.10, 0.10, 0.50, 0.50, 0.10};
+    /** Option of the child JVM naming the file its metrics are written to. */
+    private static final String CHILD = "-child=";
+    /** Usage message printed when the arguments cannot be used. */
+    private static final String USAGE = "Usage: MacroBenchmark [-corpus=FILE | -size=64M -misspell=0.02 -seed=0]"
+            + " [-runs=3]\n       [-baseline=bench/baseline.properties] [-threshold=F] [-threshold.KEY=F] [-update]"
+            + " [-- SpellCheck options]";
+    /** Exit status when the arguments cannot be used. */
+    private static final int EXIT_USAGE = 2;
+
+    private MacroBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark and checks it against the baseline, or measures one run
+     * when started as a child. Options that cannot be used are reported with the
+     * usage, and the program exits with status 2.
+     *
+     * @param args the options
+     * @throws Exception if the corpus cannot be written or a run fails
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].startsWith(CHILD)) {
+            child(new File(args[0].substring(CHILD.length())), Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        String corpusName = null;
+        long size = 64 << 20;
+        double misspell = 0.02;
+        long seed = 0;
+        int runs = 3;
+        File baselineFile = new File("bench/baseline.properties");
+        boolean update = false;
+        double[] thresholds = THRESHOLDS.clone();
+        List<String> spellArgs = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--")) {
+                    spellArgs.addAll(Arrays.asList(args).subList(i + 1, args.length));
+                    break;
+                } else if (arg.startsWith("-corpus="))
+                    corpusName = arg.substring(8);
+                else if (arg.startsWith("-size="))
+                    size = CorpusGenerator.parseSize(arg.substring(6));
+                else if (arg.startsWith("-misspell="))
+                    misspell = Double.parseDouble(arg.substring(10));
+                else if (arg.startsWith("-seed="))
+                    seed = Long.parseLong(arg.substring(6));
+                else if (arg.startsWith("-runs="))
+                    runs = Integer.parseInt(arg.substring(6));
+                else if (arg.startsWith("-baseline="))
+                    baselineFile = new File(arg.substring(10));
+                else if (arg.equals("-update"))
+                    update = true;
+                else if (arg.startsWith("-threshold="))
+                    Arrays.fill(thresholds, Double.parseDouble(arg.substring(11)));
+                else if (arg.startsWith("-threshold.") && arg.indexOf('=') > 0)
+                    thresholds[index(arg.substring(11, arg.indexOf('=')))] =
+                            Double.parseDouble(arg.substring(arg.indexOf('=') + 1));
+                else
+                    throw new IllegalArgumentException("Unknown option " + arg);
+            }
+            if (runs < 1)
+                throw new IllegalArgumentException("-runs must be at least 1");
+        } catch (IllegalArgumentException e) {      // Also a NumberFormatException, for a bad number.
+            System.out.printf("Error. %s%n%s%n", e.getMessage(), USAGE);
+            System.exit(EXIT_USAGE);
+        }
+
+        File corpus = corpusName != null ? new File(corpusName) : new File("corpus-" + size + "-" + seed + ".txt");
+        if (corpusName == null && !corpus.exists()) {
+            CorpusGenerator generator = new CorpusGenerator(SpellCheck.readWordList(new File("dict.txt")), 1.0,
+                    0.15, misspell, seed);
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(corpus), 1 << 20)) {
+                generator.write(out, size);
+            }
+            System.out.printf("Wrote %s: %d words, %d misspelled.%n", corpus, generator.getWordCount(),
+                    generator.getMisspellCount());
+        }
+        spellArgs.add(corpus.getPath());
+
+        double[][] results = new double[runs][];
+        for (int r = 0; r < runs; r++) {
+            results[r] = run(spellArgs, corpus.length());
+            System.out.printf("run %d: %s%n", r + 1, format(results[r]));
+        }
+        double[] median = new double[KEYS.length];
+        for (int k = 0; k < KEYS.length; k++) {
+            double[] values = new double[runs];
+            for (int r = 0; r < runs; r++)
+                values[r] = results[r][k];
+            Arrays.sort(values);
+            median[k] = values[runs / 2];
+        }
+        System.out.printf("median: %s%n", format(median));
+
+        if (update) {
+            Properties baseline = new Properties();
+            for (int k = 0; k < KEYS.length; k++)
+                baseline.setProperty(KEYS[k], String.format("%.3f", median[k]));
+            baseline.setProperty("corpus", corpus.getName());
+            baseline.setProperty("args", String.join(" ", spellArgs.subList(0, spellArgs.size() - 1)));
+            try (Writer out = Files.newBufferedWriter(baselineFile.toPath())) {
+                baseline.store(out, "MacroBenchmark baseline");
+            }
+            System.out.printf("Baseline written to %s.%n", baselineFile);
+            return;
+        }
+        if (!baselineFile.exists()) {
+            System.out.printf("No baseline %s; run with -update to write one.%n", baselineFile);
+            return;
+        }
+        Properties baseline = new Properties();
+        try (Reader in = Files.newBufferedReader(baselineFile.toPath())) {
+            baseline.load(in);
+        }
+        if (!corpus.getName().equals(baseline.getProperty("corpus")))
+            System.out.printf("Warning: the baseline was measured on %s.%n", baseline.getProperty("corpus"));
+        int regressions = 0;
+        for (int k = 0; k < KEYS.length; k++) {
+            String stored = baseline.getProperty(KEYS[k]);
+            if (stored == null || Double.parseDouble(stored) <= 0 || median[k] <= 0)
+                continue;                               // Not measured on one side.
+            double base = Double.parseDouble(stored);
+            double change = (median[k] - base) / base;
+            boolean regressed = HIGHER_BETTER[k] ? change < -thresholds[k] : change > thresholds[k];
+            System.out.printf("%-13s %12.3f %12.3f %+8.1f%%  (limit %.0f%%)%s%n", KEYS[k], base, median[k],
+                    change * 100, thresholds[k] * 100, regressed ? "  REGRESSION" : "");
+            if (regressed)
+                regressions++;
+        }
+        if (regressions > 0) {
+            System.out.printf("%d metric(s) regressed past the threshold.%n", regressions);
+            System.exit(1);
+        }
+        System.out.println("No regression.");
+    }
+
+    /**
+     * Returns the position of a metric in {@link #KEYS}.
+     *
+     * @param key the metric name
+     * @return its index
+     * @throws IllegalArgumentException if there is no such metric
+     */
+    static int index(String key) {
+        for (int k = 0; k < KEYS.length; k++)
+            if (KEYS[k].equals(key))
+                return k;
+        throw new IllegalArgumentException("Unknown metric " + key);
+    }
+
+    // private utilities
+
+    /** Runs SpellCheck in a child JVM and returns its metrics. */
+    private static double[] run(List<String> spellArgs, long corpusBytes) throws IOException, InterruptedException {
+        File metrics = File.createTempFile("macro", ".properties");
+        try {
+            List<String> command = new ArrayList<>();
+            command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+            command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(MacroBenchmark.class.getName());
+            command.add(CHILD + metrics.getPath());
+            command.addAll(spellArgs);
+            Process process = new ProcessBuilder(command).redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+            if (process.waitFor() != 0 || metrics.length() == 0)
+                throw new IOException("SpellCheck failed with status " + process.exitValue());
+            Properties measured = new Properties();
+            try (InputStream in = new FileInputStream(metrics)) {
+                measured.load(in);
+            }
+            double[] result = new double[KEYS.length];
+            for (int k = 0; k < KEYS.length; k++)
+                result[k] = Double.parseDouble(measured.getProperty(KEYS[k], "0"));
+            result[index("mbPerSecond")] = corpusBytes / 1e6 / result[index("wallSeconds")];
+            return result;
+        } finally {
+            metrics.delete();
+            String corpus = spellArgs.get(spellArgs.size() - 1);
+            new File(corpus.replace(".txt", "-out.txt")).delete();
+        }
+    }
+
+    /** Measures one SpellCheck run in this JVM and writes the metrics to a file. */
+    private static void child(File metrics, String[] spellArgs) throws IOException {
+        double[] pause = new double[2];
+        long[] allocated = new long[2];                 /* Bytes allocated, heap in use after the last GC. */
+        allocated[1] = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) gc).addNotificationListener((notification, handback) -> {
+                if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION))
+                    return;
+                GarbageCollectionNotificationInfo info =
+                        GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                if (!info.getGcAction().startsWith("end of"))
+                    return;
+                synchronized (pause) {
+                    long before = used(info.getGcInfo().getMemoryUsageBeforeGc());
+                    long after = used(info.getGcInfo().getMemoryUsageAfterGc());
+                    allocated[0] += Math.max(0, before - allocated[1]);
+                    allocated[1] = after;
+                    pause[0] += info.getGcInfo().getDuration();
+                    pause[1] = Math.max(pause[1], info.getGcInfo().getDuration());
+                }
+            }, null, null);
+        }
+        long start = System.nanoTime();
+        SpellCheck.main(spellArgs);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        Properties result = new Properties();
+        synchronized (pause) {
+            allocated[0] += Math.max(0, used - allocated[1]);
+            result.setProperty("wallSeconds", Double.toString(seconds));
+            result.setProperty("gcPauseMs", Double.toString(pause[0]));
+            result.setProperty("gcMaxPauseMs", Double.toString(pause[1]));
+            result.setProperty("allocatedMb", Double.toString(allocated[0] / 1e6));
+        }
+        result.setProperty("peakRssMb", Double.toString(peakRss() / 1e6));
+        try (PrintStream out = new PrintStream(new FileOutputStream(metrics), true, "ISO-8859-1")) {
+            result.store(out, null);
+        }
+        System.exit(0);
+    }
+
+    /** Total heap in use across the memory pools of a collection. */
+    private static long used(Map<String, MemoryUsage> pools) {
+        long used = 0;
+        for (MemoryUsage usage : pools.values())
+            used += usage.getUsed();
+        return used;
+    }
+
+    /** Peak resident set of this process in bytes, or 0 where /proc is missing. */
+    private static long peakRss() {
+        try {
+            for (String line : Files.readAllLines(new File("/proc/self/status").toPath(), StandardCharsets.ISO_8859_1))
+                if (line.startsWith("VmHWM:"))
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+        } catch (IOException | NumberFormatException e) {
+            // Not Linux.
+        }
+        return 0;
+    }
+
+    /** Formats one set of metrics on a line. */
+    private static String format(double[] values) {
+        StringBuilder line = new StringBuilder();
+        for (int k = 0; k < KEYS.length; k++)
+            line.append(k == 0 ? "" : "  ").append(KEYS[k]).append(' ').append(String.format("%.2f", values[k]));
+        return line.toString();
+    }
+}
@@ -0,0 +1,125 @@
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Reloads the words of a {@link SnapshotDictionary} over and over while reader
+ * threads look words up, and reports how long each reload takes and what the
+ * readers' lookups cost while a reload was building or publishing a snapshot,
+ * against the lookups made between reloads. The reloads alternate between the
+ * whole of dict.txt and dict.txt less every tenth word, so each publish changes
+ * the words found. The readers look up the words of input.txt through the byte
+ * path, as the checking loop does, and each lookup is timed on its own.
+ *
+ * <pre>
+ *   java -cp out ReloadStress [-engine=chain|open|mph] [-readers=4] [-reloads=50]
+ * </pre>
+ */
+public final class ReloadStress {
+    private ReloadStress() {
+    }
+
+    /**
+     * Runs the readers and the reloads and prints the reload times and the reader
+     * latency percentiles.
+     *
+     * @param args the options
+     * @throws Exception if dict.txt or input.txt cannot be read
+     */
+    public static void main(String[] args) throws Exception {
+        String engine = "chain";
+        int readers = 4, reloads = 50;
+        for (String arg : args) {
+            if (arg.startsWith("-engine="))
+                engine = arg.substring(8);
+            else if (arg.startsWith("-readers="))
+                readers = Integer.parseInt(arg.substring(9));
+            else if (arg.startsWith("-reloads="))
+                reloads = Integer.parseInt(arg.substring(9));
+            else
+                throw new IllegalArgumentException("Unknown option " + arg);
+        }
+        List<String> full = SpellCheck.readWordList(new File("dict.txt"));
+        List<String> thinned = new ArrayList<>();
+        for (int i = 0; i < full.size(); i++)
+            if (i % 10 != 0)
+                thinned.add(full.get(i));
+        List<byte[]> text = new ArrayList<>();
+        for (String word : SpellCheck.readWordList(new File("input.txt")))
+            text.add(word.getBytes(StandardCharsets.ISO_8859_1));
+
+        String kind = engine;
+        SnapshotDictionary table = new SnapshotDictionary(full, words -> build(kind, words));
+        AtomicBoolean swapping = new AtomicBoolean();
+        AtomicBoolean done = new AtomicBoolean();
+        LongAdder hits = new LongAdder();
+        LatencyHistogram steady = new LatencyHistogram();
+        LatencyHistogram during = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int r = 0; r < readers; r++) {
+            int first = r;
+            Thread reader = new Thread(() -> {
+                int found = 0;
+                for (int i = first; !done.get(); i++) {
+                    byte[] word = text.get(i % text.size());
+                    boolean swap = swapping.get();
+                    long start = System.nanoTime();
+                    if (table.contains(table.hashCode(word, 0, word.length), word, 0, word.length))
+                        found++;
+                    long nanos = System.nanoTime() - start;
+                    (swap || swapping.get() ? during : steady).record(nanos);
+                }
+                hits.add(found);
+            });
+            threads.add(reader);
+            reader.start();
+        }
+
+        LatencyHistogram reloadTimes = new LatencyHistogram();
+        Thread.sleep(500);                          // Let the readers warm up.
+        for (int i = 0; i < reloads; i++) {
+            swapping.set(true);
+            reloadTimes.record(table.reload(i % 2 == 0 ? thinned : full));
+            swapping.set(false);
+            Thread.sleep(20);
+        }
+        done.set(true);
+        for (Thread reader : threads)
+            reader.join();
+
+        System.out.printf("%d reloads of %d/%d words (%s engine) beside %d readers%n", reloads, thinned.size(),
+                full.size(), engine, readers);
+        System.out.printf("reload ms:   mean %.2f  p50 %.2f  p99 %.2f  max %.2f%n", reloadTimes.getMean() / 1e6,
+                reloadTimes.getPercentile(0.5) / 1e6, reloadTimes.getPercentile(0.99) / 1e6,
+                reloadTimes.getMax() / 1e6);
+        print("between", steady);
+        print("swapping", during);
+        System.out.printf("%.1f%% of the lookups found%n",
+                100.0 * hits.sum() / Math.max(1, steady.getCount() + during.getCount()));
+    }
+
+    /** Prints the lookup latency percentiles of one histogram. */
+    private static void print(String label, LatencyHistogram latency) {
+        System.out.printf("%-9s lookups %d, ns: mean %.0f  p50 %.0f  p99 %.0f  p99.9 %.0f  max %.0f%n", label,
+                latency.getCount(), latency.getMean(), (double) latency.getPercentile(0.5),
+                (double) latency.getPercentile(0.99), (double) latency.getPercentile(0.999),
+                (double) latency.getMax());
+    }
+
+    /** Builds the table of an engine over the words, with the hash -watch would use. */
+    private static WordTable build(String engine, Collection<String> words) {
+        if (engine.equals("mph"))
+            return new PerfectDictionary(words, StandardHash.MIX64, 0);
+        WordTable table = engine.equals("open") ? new OpenDictionary(words.size(), StandardHash.CYCLIC_SHIFT)
+                : new Dictionary(words.size(), StandardHash.CYCLIC_SHIFT, 0);
+        for (String word : words)
+            table.put(table.hashCode(word), word);
+        return table;
+    }
+}
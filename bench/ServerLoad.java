@@ -0,0 +1,105 @@
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Closed-loop load for a running spell-check server (SpellCheck -serve). Each client
+ * thread posts documents of about the given size, cut from input.txt at word
+ * boundaries, to /check one after another, and the latency of every request, as
+ * seen by the client, is recorded in a {@link LatencyHistogram}. The first fifth
+ * of the run warms the server up and is not recorded.
+ *
+ * <pre>
+ *   java -cp out ServerLoad [-url=http://127.0.0.1:8080] [-clients=8] [-size=1024] [-seconds=10]
+ * </pre>
+ */
+public final class ServerLoad {
+    private ServerLoad() {
+    }
+
+    /**
+     * Runs the load and prints throughput and latency percentiles.
+     *
+     * @param args the options
+     * @throws Exception if input.txt cannot be read or a request fails
+     */
+    public static void main(String[] args) throws Exception {
+        String url = "http://127.0.0.1:8080";
+        int clients = 8, size = 1024, seconds = 10;
+        for (String arg : args) {
+            if (arg.startsWith("-url="))
+                url = arg.substring(5);
+            else if (arg.startsWith("-clients="))
+                clients = Integer.parseInt(arg.substring(9));
+            else if (arg.startsWith("-size="))
+                size = Integer.parseInt(arg.substring(6));
+            else if (arg.startsWith("-seconds="))
+                seconds = Integer.parseInt(arg.substring(9));
+            else
+                throw new IllegalArgumentException("Unknown option " + arg);
+        }
+        List<byte[]> documents = documents(Files.readAllBytes(new File("input.txt").toPath()), size);
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        URI check = URI.create(url + "/check");
+        LatencyHistogram latency = new LatencyHistogram();
+        long start = System.nanoTime();
+        long warm = start + seconds * 200_000_000L;
+        long end = start + seconds * 1_000_000_000L;
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            int first = c;
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int i = first; System.nanoTime() < end; i++) {
+                        HttpRequest request = HttpRequest.newBuilder(check)
+                                .POST(HttpRequest.BodyPublishers.ofByteArray(documents.get(i % documents.size())))
+                                .build();
+                        long sent = System.nanoTime();
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() != 200)
+                            throw new IllegalStateException("HTTP " + response.statusCode());
+                        if (sent >= warm)
+                            latency.record(System.nanoTime() - sent);
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        double measured = (end - warm) / 1e9;
+        System.out.printf("%d requests of %d bytes in %.1f s from %d clients: %.0f requests/s%n",
+                latency.getCount(), size, measured, clients, latency.getCount() / measured);
+        System.out.printf("latency us: mean %.1f  p50 %.1f  p90 %.1f  p99 %.1f  p99.9 %.1f  max %.1f%n",
+                latency.getMean() / 1e3, latency.getPercentile(0.5) / 1e3, latency.getPercentile(0.9) / 1e3,
+                latency.getPercentile(0.99) / 1e3, latency.getPercentile(0.999) / 1e3, latency.getMax() / 1e3);
+    }
+
+    /** Cuts a text into documents of about the given size, ending at white space. */
+    private static List<byte[]> documents(byte[] text, int size) {
+        List<byte[]> documents = new ArrayList<>();
+        int start = 0;
+        while (start + size <= text.length) {
+            int end = start + size;
+            while (end < text.length && text[end] > ' ')
+                end++;
+            byte[] document = new byte[end - start];
+            System.arraycopy(text, start, document, 0, document.length);
+            documents.add(document);
+            start = end;
+        }
+        if (documents.isEmpty())
+            documents.add(text);
+        return documents;
+    }
+}
@@ -0,0 +1,33 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Runs the JMH benchmarks with the GC profiler attached, so every result reports
+ * throughput, average time and gc.alloc.rate.norm (bytes allocated per operation).
+ * Any standard JMH command-line options may be given, such as a benchmark name
+ * pattern or -p engine=open.
+ */
+public class Benchmarks {
+
+    /**
+     * Runs the benchmarks matching the command-line options (all of them by default).
+     *
+     * @param args JMH command-line options
+     * @throws RunnerException if a benchmark fails
+     * @throws CommandLineOptionException if the options cannot be parsed
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
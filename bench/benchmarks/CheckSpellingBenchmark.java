@@ -0,0 +1,54 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntUnaryOperator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Benchmarks the full SpellCheck.checkSpelling cascade, including the suffix rules,
+ * on a hit-heavy and a miss-heavy word mix drawn from dict.txt and input.txt.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CheckSpellingBenchmark {
+    /** Table engine. */
+    @Param({"chain", "open"})
+    public String engine;
+    /** Word mix: mostly found, or mostly misspelled. */
+    @Param({"hit", "miss"})
+    public String mix;
+
+    /** Check of the word at the iteration counter. */
+    private IntUnaryOperator check;
+    /** Iteration counter. */
+    private int next = 0;
+
+    /** Builds the dictionary and the word mix. */
+    @Setup
+    public void setUp() throws Exception {
+        check = Targets.get("checkSpelling", engine, mix);
+    }
+
+    /** Checks the next word of the mix. */
+    @Benchmark
+    public int checkSpelling() {
+        return check.applyAsInt(next++);
+    }
+}
@@ -0,0 +1,77 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntUnaryOperator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Benchmarks single get, put and remove operations of the dictionary tables for
+ * several table sizes and load factors. The load factor sets the bucket count of
+ * the chained table (words / load); the open-addressing table is given the same
+ * number as its expected word count, so a smaller load leaves it more empty slots.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DictionaryBenchmark {
+    /** Table engine. */
+    @Param({"chain", "open"})
+    public String engine;
+    /** Number of dictionary words stored in the table. */
+    @Param({"1000", "25144"})
+    public int words;
+    /** Words per bucket (chained) or per expected slot (open). */
+    @Param({"0.5", "0.75", "1.0"})
+    public double load;
+
+    /** Lookup of a stored word. */
+    private IntUnaryOperator getHit;
+    /** Lookup of an absent word. */
+    private IntUnaryOperator getMiss;
+    /** Insertion and removal of an absent word. */
+    private IntUnaryOperator putRemove;
+    /** Iteration counter. */
+    private int next = 0;
+
+    /** Builds a table for each operation. */
+    @Setup
+    public void setUp() throws Exception {
+        getHit = Targets.get("dictionary", engine, words, load, "getHit");
+        getMiss = Targets.get("dictionary", engine, words, load, "getMiss");
+        putRemove = Targets.get("dictionary", engine, words, load, "putRemove");
+    }
+
+    /** Looks up a stored word. */
+    @Benchmark
+    public int getHit() {
+        return getHit.applyAsInt(next++);
+    }
+
+    /** Looks up a word that is not stored. */
+    @Benchmark
+    public int getMiss() {
+        return getMiss.applyAsInt(next++);
+    }
+
+    /** Adds a word that is not stored, then removes it again. */
+    @Benchmark
+    public int putRemove() {
+        return putRemove.applyAsInt(next++);
+    }
+}
@@ -0,0 +1,51 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntUnaryOperator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Benchmarks the cost of Dictionary.hashCode(String) per hash function and word length.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashCodeBenchmark {
+    /** Hash function, by command-line name. */
+    @Param({"cyclic", "polynomial", "fnv1a", "mix64"})
+    public String hash;
+    /** Length of the hashed word. */
+    @Param({"3", "8", "16", "32"})
+    public int length;
+
+    /** Hash of a word of the given length. */
+    private IntUnaryOperator hashWord;
+
+    /** Builds a word of the requested length. */
+    @Setup
+    public void setUp() throws Exception {
+        hashWord = Targets.get("hashCode", hash, length);
+    }
+
+    /** Hashes the word. */
+    @Benchmark
+    public int hashCodeString() {
+        return hashWord.applyAsInt(0);
+    }
+}
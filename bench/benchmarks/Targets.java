@@ -0,0 +1,39 @@
+package benchmarks;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Looks up the workloads of the default-package BenchmarkTargets class, which the
+ * benchmark classes cannot name directly. Only the setup goes through reflection;
+ * the measured calls are plain {@link IntUnaryOperator} invocations.
+ */
+final class Targets {
+
+    private Targets() {
+    }
+
+    /**
+     * Calls the named BenchmarkTargets factory method.
+     *
+     * @param name the factory method
+     * @param args its arguments
+     * @return the workload
+     * @throws Exception if the workload cannot be built
+     */
+    static IntUnaryOperator get(String name, Object... args) throws Exception {
+        for (Method m : Class.forName("BenchmarkTargets").getMethods()) {
+            if (m.getName().equals(name) && m.getParameterCount() == args.length) {
+                try {
+                    return (IntUnaryOperator) m.invoke(null, args);
+                } catch (InvocationTargetException e) {
+                    throw (Exception) e.getCause();
+                }
+            }
+        }
+        throw new NoSuchMethodException("BenchmarkTargets." + name);
+    }
+}
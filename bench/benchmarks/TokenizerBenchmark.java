@@ -0,0 +1,49 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntUnaryOperator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Benchmarks tokenizing the whole of input.txt with bytes classified one at a time
+ * and with the Vector API word mask. The vector mode needs vector/ compiled in.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class TokenizerBenchmark {
+    /** Byte classification: "scalar" or "vector". */
+    @Param({"scalar", "vector"})
+    public String mode;
+
+    /** Tokenization of input.txt. */
+    private IntUnaryOperator tokenize;
+
+    /** Reads input.txt and selects the classification. */
+    @Setup
+    public void setUp() throws Exception {
+        tokenize = Targets.get("tokenize", mode);
+    }
+
+    /** Tokenizes input.txt once, returning the token count. */
+    @Benchmark
+    public int tokenize() {
+        return tokenize.applyAsInt(0);
+    }
+}
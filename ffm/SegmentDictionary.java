@@ -0,0 +1,486 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * A Dictionary kept entirely off the heap in {@link MemorySegment}s of the Foreign
+ * Function &amp; Memory API. The slots and the words are laid out as in the image of
+ * {@link MappedDictionary}: 2^bits pairs of (key, string offset + 1), 0 when empty,
+ * and a string arena holding each word as a 2-byte length followed by its Latin-1
+ * bytes. Collisions are resolved by linear probing from the same Fibonacci-hashed
+ * home slot, so probe counts are comparable with the other engines.
+ *
+ * The table is either built from a word list in memory allocated from a shared
+ * {@link Arena}, and can then take more words, or mapped read-only from a dict.img
+ * file. Either way there is no object per entry: the heap holds this object, its
+ * arena and segment handles and the counters, whatever the number of words. Lookups compare
+ * the text bytes with the arena in place; only {@link #get(int)} creates a string.
+ * The memory is released by {@link #close()}, after which the table must not be
+ * used.
+ *
+ * Compile with Java 22 or later, or with Java 21 and --enable-preview, and run the
+ * same way; SpellCheck looks this class up by name for -engine=offheap.
+ */
+public class SegmentDictionary implements DictionaryImage {
+    /** Size in bytes of the image header. */
+    private static final int HEADER = 6 * 4;
+    /** Largest fraction of slots that may be occupied before the table grows. */
+    private static final double MAX_LOAD = 0.6;
+    /** Ints as stored in the image, big-endian. */
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    /** Word lengths as stored in the image, big-endian. */
+    private static final ValueLayout.OfShort SHORT =
+            ValueLayout.JAVA_SHORT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    /** Longs of the binding as stored in the image, big-endian. */
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+
+    /** Hash function computing the keys of words. */
+    private final HashStrategy hash;
+    /** Whether the table is mapped from an image and so cannot change. */
+    private final boolean readOnly;
+    /** The binding of the rules stored after the words of an image; null if built. */
+    private final MemorySegment binding;
+    /** Memory of the slots, or of the whole image if mapped. */
+    private Arena slotMemory;
+    /** Memory of the string arena; the same as slotMemory if mapped. */
+    private Arena stringMemory;
+    /** The slots: pairs of key and string offset + 1. */
+    private MemorySegment slots;
+    /** The string arena. */
+    private MemorySegment strings;
+    /** Bytes of the string arena in use, including those of removed words. */
+    private long used;
+    /** Number of bits used to select a slot. */
+    private int bits;
+    /** The number of dictionary entries in the table. */
+    private int n;
+    /** Total number of probes made during checking. */
+    private final LongAdder probeCount = new LongAdder();
+    /** Count of lookup operations. */
+    private final LongAdder lookupCount = new LongAdder();
+    /** The slots, as removal moves and empties them. */
+    private final LinearProbing.Slots entries = new LinearProbing.Slots() {
+        public boolean occupied(int i) {
+            return ref(i) != 0;
+        }
+
+        public int key(int i) {
+            return slots.get(INT, i * 8L);
+        }
+
+        public void move(int from, int to) {
+            MemorySegment.copy(slots, from * 8L, slots, to * 8L, 8);
+        }
+
+        public void clear(int i) {
+            slots.set(INT, i * 8L, 0);
+            slots.set(INT, i * 8L + 4, 0);
+        }
+    };
+
+    /**
+     * Creates an off-heap table of the given words.
+     *
+     * @param words the dictionary words
+     * @param hash  the hash function computing the keys of words
+     * @throws IllegalArgumentException if a word is not Latin-1 or too long
+     */
+    public SegmentDictionary(Collection<String> words, HashStrategy hash) {
+        this.hash = hash;
+        readOnly = false;
+        binding = null;
+        bits = 1;
+        while ((1 << bits) * MAX_LOAD < words.size())
+            bits++;
+        long bytes = 0;
+        for (String word : words)
+            bytes += 2 + word.length();
+        slotMemory = Arena.ofShared();
+        slots = slotMemory.allocate(8L << bits, 8);
+        stringMemory = Arena.ofShared();
+        strings = stringMemory.allocate(Math.max(bytes, 64), 8);
+        for (String word : words)
+            put(hash.hash(word), word);
+    }
+
+    /**
+     * Maps a dictionary image written by {@link MappedDictionary#compile}, read-only.
+     *
+     * @param file the image file
+     * @throws IOException if the file cannot be read or is not a current image
+     */
+    public SegmentDictionary(File file) throws IOException {
+        Arena memory = Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MemorySegment image = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), memory);
+            if (image.byteSize() < HEADER || image.get(INT, 0) != MappedDictionary.MAGIC)
+                throw new IOException(file + " is not a dictionary image");
+            if (image.get(INT, 4) != MappedDictionary.VERSION)
+                throw new IOException(file + " has image version " + image.get(INT, 4));
+            int hashId = image.get(INT, 8);
+            if (hashId < 0 || hashId >= StandardHash.values().length)
+                throw new IOException(file + " uses unknown hash function " + hashId);
+            hash = StandardHash.values()[hashId];
+            bits = image.get(INT, 12);
+            n = image.get(INT, 16);
+            used = image.get(INT, 20);
+            if (bits < 1 || bits > 30 || HEADER + (8L << bits) + used + MappedDictionary.BINDING != image.byteSize())
+                throw new IOException(file + " is truncated");
+            slots = image.asSlice(HEADER, 8L << bits);
+            strings = image.asSlice(HEADER + (8L << bits), used);
+            binding = image.asSlice(HEADER + (8L << bits) + used, MappedDictionary.BINDING);
+        } catch (IOException | RuntimeException e) {
+            memory.close();
+            throw e;
+        }
+        readOnly = true;
+        slotMemory = memory;
+        stringMemory = memory;
+    }
+
+    /**
+     * Computes the hash key for a string word.
+     *
+     * @param word the word to look up
+     * @return the calculated key
+     */
+    public int hashCode(String word) {
+        return hash.hash(word);
+    }
+
+    /**
+     * Computes the hash key of a word held as ASCII bytes.
+     *
+     * @param text the array holding the word
+     * @param off  index of the first byte of the word
+     * @param len  length of the word in bytes
+     * @return the calculated key
+     */
+    public int hashCode(byte[] text, int off, int len) {
+        return hash.hash(text, off, len);
+    }
+
+    /**
+     * Returns the hash function computing the keys of this table.
+     *
+     * @return the hash function
+     */
+    public HashStrategy getHash() {
+        return hash;
+    }
+
+    /**
+     * Returns the first word stored with the specified key, or null if no such entry
+     * exists. The returned string is decoded from the arena.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the associated value, or null if no such entry exists
+     */
+    public String get(int key) {
+        lookupCount.increment();
+        int mask = (1 << bits) - 1;
+        int ref;
+        for (int i = slot(key); (ref = ref(i)) != 0; i = (i + 1) & mask) {
+            probeCount.increment();
+            if (slots.get(INT, i * 8L) == key)
+                return decode(ref - 1L);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the given word if it is stored in the table, or null if not. The
+     * word is compared character by character with the arena.
+     *
+     * @param key  the key of the word
+     * @param word the word to look up
+     * @return the word, or null if the word is not in the dictionary
+     */
+    public String get(int key, String word) {
+        lookupCount.increment();
+        int mask = (1 << bits) - 1;
+        int ref;
+        for (int i = slot(key); (ref = ref(i)) != 0; i = (i + 1) & mask) {
+            probeCount.increment();
+            if (slots.get(INT, i * 8L) == key && matches(ref - 1L, word))
+                return word;
+        }
+        return null;
+    }
+
+    /**
+     * Whether the word held as ASCII bytes is in the table, comparing the bytes
+     * with the arena in place.
+     *
+     * @param key  the key of the word
+     * @param text the array holding the word
+     * @param off  index of the first byte of the word
+     * @param len  length of the word in bytes
+     * @return true if the word is in the dictionary
+     */
+    public boolean contains(int key, byte[] text, int off, int len) {
+        lookupCount.increment();
+        int mask = (1 << bits) - 1;
+        int ref;
+        for (int i = slot(key); (ref = ref(i)) != 0; i = (i + 1) & mask) {
+            probeCount.increment();
+            if (slots.get(INT, i * 8L) == key && matches(ref - 1L, text, off, len))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Stores the given word under the given key, unless the same word is already
+     * stored. A different word with the same key is kept alongside it.
+     *
+     * @param key   key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the equal word already stored, or null if the word was added
+     * @throws UnsupportedOperationException if the table is mapped from an image
+     * @throws IllegalArgumentException      if the word is not Latin-1 or too long
+     */
+    public String put(int key, String value) {
+        if (readOnly)
+            throw new UnsupportedOperationException("Dictionary image is read-only");
+        if (value.length() > Short.MAX_VALUE)
+            throw new IllegalArgumentException("Word too long: " + value.length() + " characters");
+        for (int c = 0; c < value.length(); c++)
+            if (value.charAt(c) > 0xff)
+                throw new IllegalArgumentException("Cannot store non-Latin-1 word " + value);
+        int mask = (1 << bits) - 1;
+        int i = slot(key);
+        int ref;
+        for (; (ref = ref(i)) != 0; i = (i + 1) & mask)
+            if (slots.get(INT, i * 8L) == key && matches(ref - 1L, value))
+                return value;
+        if (n + 1 > (1 << bits) * MAX_LOAD) {
+            resize(bits + 1);
+            return put(key, value);
+        }
+        if (used + 2 + value.length() > strings.byteSize())
+            compact(2 + value.length());
+        if (used + 2 + value.length() >= Integer.MAX_VALUE)
+            throw new IllegalArgumentException("String arena full");
+        strings.set(SHORT, used, (short) value.length());
+        for (int c = 0; c < value.length(); c++)
+            strings.set(ValueLayout.JAVA_BYTE, used + 2 + c, (byte) value.charAt(c));
+        slots.set(INT, i * 8L, key);
+        slots.set(INT, i * 8L + 4, (int) used + 1);
+        used += 2 + value.length();
+        n++;
+        return null;
+    }
+
+    /**
+     * Removes the first entry with the specified key, if present, and returns its
+     * word. The word's bytes are reclaimed the next time the arena is compacted.
+     *
+     * @param key the key whose entry is to be removed from the map
+     * @return the removed word, or null if no such entry exists
+     * @throws UnsupportedOperationException if the table is mapped from an image
+     */
+    public String remove(int key) {
+        if (readOnly)
+            throw new UnsupportedOperationException("Dictionary image is read-only");
+        int mask = (1 << bits) - 1;
+        for (int i = slot(key); ref(i) != 0; i = (i + 1) & mask) {
+            if (slots.get(INT, i * 8L) == key) {
+                String answer = decode(ref(i) - 1L);
+                LinearProbing.deleteSlot(entries, bits, i);
+                n--;
+                return answer;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of words currently in the dictionary.
+     *
+     * @return the number of dictionary entries
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Returns every word of the table. The words of an image are read from the
+     * arena in the order they were compiled; those of a built table, which may
+     * have had words removed, from the slots.
+     *
+     * @return the dictionary words
+     */
+    public List<String> words() {
+        List<String> words = new ArrayList<>(n);
+        if (readOnly) {
+            for (long at = 0; at < used; at += 2 + strings.get(SHORT, at))
+                words.add(decode(at));
+        } else {
+            for (int i = 0; i < 1 << bits; i++)
+                if (ref(i) != 0)
+                    words.add(decode(ref(i) - 1L));
+        }
+        return words;
+    }
+
+    /**
+     * Returns the binding of the match rules to the words: the one stored in an
+     * image, or else computed from the words.
+     *
+     * @return the binding
+     */
+    public long[] binding() {
+        if (binding == null)
+            return SuffixRules.bindingOf(words());
+        return binding.toArray(LONG);
+    }
+
+    /**
+     * Returns the bytes of native or mapped memory holding the slots and the words.
+     *
+     * @return the off-heap size of the table
+     */
+    public long offHeapBytes() {
+        return slots.byteSize() + strings.byteSize();
+    }
+
+    /**
+     * Returns the total number of times a text word is compared to a word
+     * in the table.
+     *
+     * @return the number of times a text word is compared to a table word
+     */
+    public long getProbeCount() {
+        return probeCount.sum();
+    }
+
+    /**
+     * Returns the total number of times a lookup operation is performed.
+     *
+     * @return the number of lookup operations
+     */
+    public long getLookupCount() {
+        return lookupCount.sum();
+    }
+
+    /**
+     * Returns the length of every run of consecutive occupied slots, the chains a
+     * linear-probing lookup walks.
+     *
+     * @return the number of entries in each run
+     */
+    public int[] chainLengths() {
+        return LinearProbing.chainLengths(i -> ref(i) != 0, bits, n);
+    }
+
+    /**
+     * Releases the memory of the table. It must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        slotMemory.close();
+        if (stringMemory != slotMemory)
+            stringMemory.close();
+    }
+
+    // private utilities
+
+    /** Home slot of a key. */
+    private int slot(int key) {
+        return LinearProbing.slot(key, bits);
+    }
+
+    /** String offset + 1 of slot i, 0 if it is empty. */
+    private int ref(int i) {
+        return slots.get(INT, i * 8L + 4);
+    }
+
+    /** Decodes the word of the arena entry at the given position. */
+    private String decode(long at) {
+        char[] chars = new char[strings.get(SHORT, at)];
+        for (int c = 0; c < chars.length; c++)
+            chars[c] = (char) (strings.get(ValueLayout.JAVA_BYTE, at + 2 + c) & 0xff);
+        return new String(chars);
+    }
+
+    /** Whether the arena entry at the given position holds the bytes text[off, off + len). */
+    private boolean matches(long at, byte[] text, int off, int len) {
+        if (strings.get(SHORT, at) != len)
+            return false;
+        return MemorySegment.mismatch(strings, at + 2, at + 2 + len,
+                MemorySegment.ofArray(text), off, off + len) < 0;
+    }
+
+    /** Whether the arena entry at the given position spells the given word. */
+    private boolean matches(long at, String word) {
+        if (strings.get(SHORT, at) != word.length())
+            return false;
+        for (int c = 0; c < word.length(); c++)
+            if ((strings.get(ValueLayout.JAVA_BYTE, at + 2 + c) & 0xff) != word.charAt(c))
+                return false;
+        return true;
+    }
+
+    /** Moves every entry into a new slot segment of 2^newBits slots and frees the old one. */
+    private void resize(int newBits) {
+        MemorySegment old = slots;
+        Arena oldMemory = slotMemory;
+        int oldCount = 1 << bits;
+        slotMemory = Arena.ofShared();
+        slots = slotMemory.allocate(8L << newBits, 8);
+        bits = newBits;
+        int mask = (1 << bits) - 1;
+        for (int j = 0; j < oldCount; j++) {
+            int ref = old.get(INT, j * 8L + 4);
+            if (ref == 0)
+                continue;
+            int key = old.get(INT, j * 8L);
+            int i = slot(key);
+            while (ref(i) != 0)
+                i = (i + 1) & mask;
+            slots.set(INT, i * 8L, key);
+            slots.set(INT, i * 8L + 4, ref);
+        }
+        oldMemory.close();
+    }
+
+    /**
+     * Copies the words still stored into a new arena with room for at least the
+     * given number of bytes more, dropping those of removed words, and frees the
+     * old arena.
+     */
+    private void compact(int room) {
+        long live = 0;
+        int count = 1 << bits;
+        for (int i = 0; i < count; i++)
+            if (ref(i) != 0)
+                live += 2 + strings.get(SHORT, ref(i) - 1L);
+        MemorySegment old = strings;
+        Arena oldMemory = stringMemory;
+        stringMemory = Arena.ofShared();
+        strings = stringMemory.allocate(Math.max(2 * (live + room), 64), 8);
+        used = 0;
+        for (int i = 0; i < count; i++) {
+            int ref = ref(i);
+            if (ref == 0)
+                continue;
+            long size = 2 + old.get(SHORT, ref - 1L);
+            MemorySegment.copy(old, ref - 1L, strings, used, size);
+            slots.set(INT, i * 8L + 4, (int) used + 1);
+            used += size;
+        }
+        oldMemory.close();
+    }
+}
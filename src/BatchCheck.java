@@ -0,0 +1,246 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Checks every matching file under one or more directory trees in one run, against
+ * the one dictionary SpellCheck has loaded, and writes an -out.txt report next to
+ * each file. The files are checked on a work-stealing {@link ForkJoinPool}: each
+ * file is a task, and a large file is split into ranges by {@link ParallelCheck}
+ * within the same pool, so idle workers steal ranges of a huge file as readily as
+ * whole small files.
+ *
+ * The directory walk runs ahead of the workers only as far as a budget of bytes
+ * in flight allows: each file takes its size from the budget when it is handed
+ * to the pool and returns it when its report is written, so a slow disk or a
+ * burst of huge files holds back the walk instead of the heap.
+ */
+public class BatchCheck {
+    /** Default budget of bytes in flight. */
+    static final long DEFAULT_IN_FLIGHT = 64L << 20;
+    /** Size of range checked without splitting. */
+    static final long LEAF_SIZE = 1L << 20;
+    /** Default pattern of the files checked. */
+    static final String DEFAULT_GLOB = "*.txt";
+    /** Endings of the files written by SpellCheck, which are never checked. */
+    private static final String[] OUTPUTS = {"-out.txt", "-out.jsonl", "-metrics.json"};
+
+    /** Patterns of the files checked, on their names or their paths below a root. */
+    private final List<PathMatcher> names = new ArrayList<>();
+    /** Patterns with a directory part, matched on the path below the root. */
+    private final List<PathMatcher> paths = new ArrayList<>();
+    /** Format of the misspelled words in each report. */
+    private final ResultWriter.Format format;
+    /** Budget of bytes in flight, in kilobytes. */
+    private final Semaphore inFlight;
+    /** Size of the budget in kilobytes. */
+    private final int budget;
+    /** Pool checking the files. */
+    private final ForkJoinPool pool;
+    /** Totals of the run. */
+    private final Summary summary = new Summary();
+
+    /**
+     * The totals of a batch run.
+     */
+    static class Summary {
+        /** Count of files checked. */
+        final LongAdder files = new LongAdder();
+        /** Count of files that could not be checked. */
+        final LongAdder failed = new LongAdder();
+        /** Count of bytes checked. */
+        final LongAdder bytes = new LongAdder();
+        /** Count of words in the files. */
+        final LongAdder words = new LongAdder();
+        /** Count of misspelled words in the files. */
+        final LongAdder misspelled = new LongAdder();
+        /** Wall time of the run in nanoseconds. */
+        long nanos = 0;
+
+        /**
+         * Returns the lines of the summary report.
+         *
+         * @param dict the dictionary the files were checked against
+         * @return the report lines
+         */
+        List<String> report(WordTable dict) {
+            double seconds = Math.max(nanos, 1) / 1e9;
+            List<String> lines = new ArrayList<>();
+            lines.add(String.format("Files checked: %d (%d failed)", files.sum(), failed.sum()));
+            lines.add(String.format("Text bytes: %d", bytes.sum()));
+            lines.add(String.format("Text word count: %d", words.sum()));
+            lines.add(String.format("Misspelled word count: %d", misspelled.sum()));
+            lines.add(String.format("Total probe count: %d", dict.getProbeCount()));
+            lines.add(String.format("Average number of probes per lookup: %.2f",
+                    dict.getProbeCount() / (double) Math.max(dict.getLookupCount(), 1)));
+            lines.add(String.format("Elapsed time: %.2f s", seconds));
+            lines.add(String.format("Throughput: %.1f files/s, %.1f MB/s",
+                    files.sum() / seconds, bytes.sum() / seconds / (1024.0 * 1024.0)));
+            return lines;
+        }
+    }
+
+    /**
+     * Creates a batch checker.
+     *
+     * @param globs       patterns of the files to check; one without a '/' is
+     *                    matched on the file name, otherwise on the path below the root
+     * @param threads     the number of worker threads
+     * @param format      the format of the misspelled words in each report
+     * @param maxInFlight the budget of bytes in flight
+     */
+    private BatchCheck(List<String> globs, int threads, ResultWriter.Format format, long maxInFlight) {
+        for (String glob : globs)
+            (glob.contains("/") ? paths : names).add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+        this.format = format;
+        budget = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxInFlight >> 10));
+        inFlight = new Semaphore(budget);
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Checks every file matching one of the patterns under the given directories.
+     *
+     * @param roots       the directories to walk
+     * @param globs       patterns of the files to check, {@link #DEFAULT_GLOB} if empty
+     * @param threads     the number of worker threads
+     * @param format      the format of the misspelled words in each report
+     * @param maxInFlight the budget of bytes in flight
+     * @return the totals of the run
+     * @throws IOException if a directory cannot be walked
+     */
+    static Summary run(List<Path> roots, List<String> globs, int threads, ResultWriter.Format format,
+            long maxInFlight) throws IOException {
+        BatchCheck batch = new BatchCheck(globs.isEmpty() ? List.of(DEFAULT_GLOB) : globs, threads, format,
+                maxInFlight);
+        long start = System.nanoTime();
+        try {
+            for (Path root : roots)
+                batch.walk(root);
+        } finally {
+            batch.pool.shutdown();
+            batch.pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        batch.summary.nanos = System.nanoTime() - start;
+        return batch.summary;
+    }
+
+    /**
+     * Returns the name of a file written for the given text file: its name without
+     * a .txt ending, followed by the given ending.
+     *
+     * @param file   the text file
+     * @param ending the ending, such as -out.txt
+     * @return the output file
+     */
+    static Path outputFile(Path file, String ending) {
+        String name = file.getFileName().toString();
+        if (name.endsWith(".txt"))
+            name = name.substring(0, name.length() - ".txt".length());
+        return file.resolveSibling(name + ending);
+    }
+
+    // private utilities
+
+    /** Hands every matching file under the root to the pool, as the budget allows. */
+    private void walk(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && matches(root, file))
+                    submit(file, attrs.size());
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                fail(file, e);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /** Whether a file under the root is to be checked. */
+    private boolean matches(Path root, Path file) {
+        String name = file.getFileName().toString();
+        for (String ending : OUTPUTS)
+            if (name.endsWith(ending))
+                return false;
+        for (PathMatcher matcher : names)
+            if (matcher.matches(file.getFileName()))
+                return true;
+        for (PathMatcher matcher : paths)
+            if (matcher.matches(root.relativize(file)))
+                return true;
+        return false;
+    }
+
+    /** Takes the file's size from the budget, waiting if need be, and queues its check. */
+    private void submit(Path file, long size) {
+        int permits = (int) Math.min(budget, Math.max(1, (size + 1023) >> 10));
+        inFlight.acquireUninterruptibly(permits);
+        pool.execute(() -> {
+            try {
+                check(file);
+            } finally {
+                inFlight.release(permits);
+            }
+        });
+    }
+
+    /** Checks one file and writes its report. */
+    private void check(Path file) {
+        try (FileChannel channel = FileChannel.open(file)) {
+            ParallelCheck.Result result = ParallelCheck.checkInPool(channel, LEAF_SIZE);
+            Path listFile = format == ResultWriter.Format.JSONL ? outputFile(file, "-out.jsonl") : null;
+            try (PrintStream out = new PrintStream(new FileOutputStream(outputFile(file, "-out.txt").toFile()));
+                    OutputStream list = listFile == null ? null : new FileOutputStream(listFile.toFile())) {
+                if (listFile == null)
+                    out.printf("Possible misspelled words:\n");
+                else
+                    out.printf("Possible misspelled words: see %s\n", listFile.getFileName());
+                ResultWriter results = new ResultWriter(list == null ? out : list, format, channel,
+                        SpellCheck::suggest, false);
+                for (int i = 0; i < result.misspelled.size(); i++)
+                    results.write(result.misspelled.get(i), result.offsets[i]);
+                results.close();
+                out.printf("\nText word count: %d\n", result.words);
+                out.printf("Misspelled word count: %d\n", result.misspelled.size());
+                if (format == ResultWriter.Format.COUNTS)
+                    out.printf("Distinct misspelled words: %d\n", results.distinctCount());
+                if (out.checkError())
+                    throw new IOException("Could not write " + outputFile(file, "-out.txt"));
+            }
+            summary.files.increment();
+            summary.bytes.add(channel.size());
+            summary.words.add(result.words);
+            summary.misspelled.add(result.misspelled.size());
+        } catch (IOException | RuntimeException e) {
+            fail(file, e);                      // Counted either way, so the summary adds up.
+        }
+    }
+
+    /** Counts a file that could not be checked and says why. */
+    private void fail(Path file, Exception e) {
+        summary.failed.increment();
+        System.out.printf("Error. Could not check %s: %s\n", file,
+                e instanceof IOException ? e.getMessage() : e.toString());
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * @author Stephen Hildebrand
+ *
+ * A blocked Bloom filter over integer keys. The bits are split into blocks of 512
+ * bits, the size of a cache line, and every key sets and tests all of its bits in
+ * one block chosen by its hash, at positions drawn from the top bits of a linear
+ * congruential generator seeded with the hash. A query therefore reads a single cache line, at
+ * the price of a higher false-positive rate than a classic Bloom filter of the
+ * same size, since some blocks receive more keys than others. The filter is sized
+ * for that: the number of keys per block follows a Poisson distribution, each block
+ * acts as a small classic filter, and bits are added per key until the predicted
+ * rate of the whole filter meets the rate asked for.
+ *
+ * A key that was added is always reported as possibly present. A key that was not
+ * added is reported absent except for a fraction of about the false-positive rate
+ * the filter was sized for. Keys cannot be removed; the bits of a removed key
+ * only raise the false-positive rate until the filter is rebuilt.
+ */
+public class BloomFilter {
+    /** Number of longs per block (8 longs, 512 bits, 64 bytes). */
+    private static final int BLOCK_LONGS = 8;
+    /** Number of bits per block. */
+    private static final int BLOCK_BITS = BLOCK_LONGS * 64;
+    /** Number of bits selecting a bit of a block. */
+    private static final int BLOCK_SHIFT = 9;
+    /** Multiplier of the generator of bit positions (Knuth's MMIX LCG). */
+    private static final long LCG_MULTIPLIER = 6364136223846793005L;
+    /** Increment of the generator of bit positions. */
+    private static final long LCG_INCREMENT = 1442695040888963407L;
+    /** Most bits set and tested per key. */
+    private static final int MAX_HASHES = 16;
+    /** Step in bits per key when searching for the filter size. */
+    private static final double SIZE_STEP = 0.25;
+
+    /** The blocks, one after another. */
+    private final long[] bits;
+    /** Number of blocks. */
+    private final int blocks;
+    /** Number of bits set and tested per key. */
+    private final int hashes;
+
+    /**
+     * Creates an empty filter sized for the given number of keys and false-positive
+     * rate.
+     *
+     * @param keys              the number of keys that will be added
+     * @param falsePositiveRate the fraction of absent keys that may be reported as
+     *                          present, between 0 and 1 exclusive
+     * @throws IllegalArgumentException if the rate is not between 0 and 1
+     */
+    public BloomFilter(int keys, double falsePositiveRate) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1))
+            throw new IllegalArgumentException("The false-positive rate must be between 0 and 1");
+        // Start from the size of a classic Bloom filter and grow until the blocks meet the rate.
+        double bitsPerKey = -Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        while (predictedRate(bitsPerKey, hashes(bitsPerKey)) > falsePositiveRate)
+            bitsPerKey += SIZE_STEP;
+        long total = (long) Math.ceil(Math.max(keys, 1) * bitsPerKey);
+        blocks = (int) Math.min((total + BLOCK_BITS - 1) / BLOCK_BITS, Integer.MAX_VALUE / BLOCK_LONGS);
+        bits = new long[blocks * BLOCK_LONGS];
+        hashes = hashes(bitsPerKey);
+    }
+
+    /**
+     * Adds a key.
+     *
+     * @param key the key
+     */
+    public void add(int key) {
+        long h = mix(key);
+        int base = block(h);
+        for (int i = 0; i < hashes; i++) {
+            h = h * LCG_MULTIPLIER + LCG_INCREMENT;
+            int bit = (int) (h >>> (64 - BLOCK_SHIFT));
+            bits[base + (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Whether a key may have been added.
+     *
+     * @param key the key
+     * @return false if the key was certainly not added, true if it may have been
+     */
+    public boolean mightContain(int key) {
+        long h = mix(key);
+        int base = block(h);
+        for (int i = 0; i < hashes; i++) {
+            h = h * LCG_MULTIPLIER + LCG_INCREMENT;
+            int bit = (int) (h >>> (64 - BLOCK_SHIFT));
+            if ((bits[base + (bit >>> 6)] & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the size of the filter.
+     *
+     * @return the number of bits
+     */
+    public long bitCount() {
+        return (long) bits.length * 64;
+    }
+
+    /**
+     * Returns the number of bits set and tested per key.
+     *
+     * @return the number of hash functions
+     */
+    public int hashCount() {
+        return hashes;
+    }
+
+    // private utilities
+
+    /** Number of hash functions minimizing the false-positive rate at the given size. */
+    private static int hashes(double bitsPerKey) {
+        return (int) Math.max(1, Math.min(MAX_HASHES, Math.round(bitsPerKey * Math.log(2))));
+    }
+
+    /**
+     * Predicted false-positive rate of a blocked filter: the rate of a classic filter
+     * of one block holding j keys, averaged over the Poisson distribution of j.
+     *
+     * @param bitsPerKey the size of the filter in bits per key
+     * @param k          the number of bits per key
+     * @return the predicted rate
+     */
+    static double predictedRate(double bitsPerKey, int k) {
+        double mean = BLOCK_BITS / bitsPerKey;        // Keys per block.
+        double p = Math.exp(-mean);                   // Poisson probability of j keys.
+        double rate = 0;
+        for (int j = 0; j <= mean + 12 * Math.sqrt(mean) + 20; j++) {
+            if (j > 0)
+                p *= mean / j;
+            rate += p * Math.pow(1 - Math.pow(1 - 1.0 / BLOCK_BITS, (double) j * k), k);
+        }
+        return rate;
+    }
+
+    /** Index in bits of the first long of the block of a mixed key. */
+    private int block(long h) {
+        // The high bits pick the block, by multiplying into the block count.
+        return (int) (((h >>> 32) * blocks) >>> 32) * BLOCK_LONGS;
+    }
+
+    /** Spreads the bits of a key over a long (the MurmurHash3 finalizer). */
+    private static long mix(int key) {
+        return StandardHash.mix(key * 0x9E3779B97F4A7C15L);
+    }
+}
@@ -0,0 +1,484 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * A compact word n-gram model for finding real-word errors, such as "form" written
+ * for "from", which every dictionary lookup lets through. The counts of the words,
+ * word pairs and word triples of a training text are kept in one open-addressing
+ * table of ints. Each slot holds a 24-bit fingerprint of the n-gram's 64-bit hash
+ * and its count quantized to 8 bits on a log scale (within about 6%), so an n-gram
+ * costs 4 bytes per slot and no words are stored. Two n-grams sharing a
+ * fingerprint in one probe run are confused, which happens for about one lookup in
+ * 2^24. The table is written to a file and memory-mapped to be used.
+ *
+ * A text is checked by a {@link Stream} fed the tokens in order. A token in one of
+ * the confusion sets ({@link #CONFUSION_SETS}) is scored in the context of the two
+ * tokens before it and the two after it, with stupid backoff from trigrams to
+ * bigrams to words. The same is done with each other word of its set in its place.
+ * The token is flagged when another word of its set scores {@link #RATIO} times
+ * higher and at least one n-gram joining that word to its neighbours was seen in
+ * training. Tokens outside the sets only have their hash computed, which keeps the
+ * stage cheap.
+ */
+public class ContextModel {
+    /** Magic number identifying a model file ("SPNG"). */
+    static final int MAGIC = 0x53504E47;
+    /** Version of the file layout. */
+    static final int VERSION = 1;
+    /** Words that are easily written for one another, each set on one line. */
+    static final String[] CONFUSION_SETS = {
+        "from form", "there their they're", "then than", "its it's", "your you're", "to too two",
+        "lose loose", "affect effect", "accept except", "weather whether", "quiet quite", "were where we're",
+        "of off", "whose who's", "advice advise", "principal principle", "past passed", "lead led",
+        "hear here", "peace piece", "know now", "break brake", "desert dessert", "site sight cite",
+    };
+    /** How many times likelier another word of the set must be for a token to be flagged. */
+    static final double RATIO = 20;
+    /** Size in bytes of the file header. */
+    private static final int HEADER = 6 * 4;
+    /** Largest fraction of slots that may be occupied. */
+    private static final double MAX_LOAD = 0.75;
+    /** Count quantization steps per factor of e. */
+    private static final double STEPS = 8;
+    /** Backoff weight of a lower-order estimate. */
+    private static final double BACKOFF = 0.4;
+    /** Count of each quantized value. */
+    private static final double[] DECODED = new double[256];
+
+    static {
+        for (int q = 1; q < 256; q++)
+            DECODED[q] = Math.exp((q - 1) / STEPS);
+    }
+
+    /** The slots: fingerprint in the top 24 bits, quantized count in the low 8, 0 when empty. */
+    private final IntBuffer slots;
+    /** Number of bits used to select a slot. */
+    private final int bits;
+    /** Number of n-grams stored. */
+    private final int n;
+    /** Number of tokens in the training text. */
+    private final long tokens;
+    /** Word hashes of the confusion sets, open-addressed; 0 when empty. */
+    private final long[] confusable;
+    /** Index in CONFUSION_SETS of each confusable hash. */
+    private final int[] confusableSet;
+    /** Word hashes of each confusion set. */
+    private final long[][] setHashes;
+    /** Words of each confusion set. */
+    private final String[][] setWords;
+
+    /**
+     * Creates a model over the given slots.
+     *
+     * @param slots  the slots
+     * @param bits   the number of bits selecting a slot
+     * @param n      the number of n-grams stored
+     * @param tokens the number of tokens in the training text
+     */
+    private ContextModel(IntBuffer slots, int bits, int n, long tokens) {
+        this.slots = slots;
+        this.bits = bits;
+        this.n = n;
+        this.tokens = tokens;
+        setWords = new String[CONFUSION_SETS.length][];
+        setHashes = new long[CONFUSION_SETS.length][];
+        int words = 0;
+        for (int s = 0; s < CONFUSION_SETS.length; s++) {
+            setWords[s] = CONFUSION_SETS[s].split(" ");
+            setHashes[s] = new long[setWords[s].length];
+            for (int w = 0; w < setWords[s].length; w++) {
+                setHashes[s][w] = wordHash(setWords[s][w]);
+                words++;
+            }
+        }
+        int size = Integer.highestOneBit(words * 4);
+        confusable = new long[size];
+        confusableSet = new int[size];
+        for (int s = 0; s < setHashes.length; s++) {
+            for (long h : setHashes[s]) {
+                int i = (int) h & (size - 1);
+                while (confusable[i] != 0)
+                    i = (i + 1) & (size - 1);
+                confusable[i] = h;
+                confusableSet[i] = s;
+            }
+        }
+    }
+
+    /**
+     * Maps a model file written by {@link #save(File)}.
+     *
+     * @param file the model file
+     * @return the model
+     * @throws IOException if the file cannot be read or is not a current model
+     */
+    public static ContextModel load(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.limit() < HEADER || mapped.getInt(0) != MAGIC)
+                throw new IOException(file + " is not a context model");
+            if (mapped.getInt(4) != VERSION)
+                throw new IOException(file + " has model version " + mapped.getInt(4));
+            int bits = mapped.getInt(8);
+            if (bits < 1 || bits > 30 || HEADER + (4L << bits) != mapped.limit())
+                throw new IOException(file + " is truncated");
+            long tokens = mapped.getLong(16);
+            mapped.position(HEADER);
+            return new ContextModel(mapped.slice().asIntBuffer(), bits, mapped.getInt(12), tokens);
+        }
+    }
+
+    /**
+     * Counts the words, word pairs and word triples of a text and builds a model
+     * of them. The exact counts are gathered in a hash map first, so training takes
+     * far more memory than the model.
+     *
+     * @param text the tokens of the training text
+     * @return the model
+     * @throws IOException if the text cannot be read
+     */
+    public static ContextModel train(Tokenizer text) throws IOException {
+        Map<Long, int[]> counts = new HashMap<>();
+        long u = 0, v = 0, total = 0;
+        while (text.next()) {
+            long w = wordHash(text.array(), text.start(), text.length());
+            count(counts, gramHash(0, 0, w));
+            if (v != 0)
+                count(counts, gramHash(0, v, w));
+            if (u != 0)
+                count(counts, gramHash(u, v, w));
+            u = v;
+            v = w;
+            total++;
+        }
+        int bits = 1;
+        while ((1 << bits) * MAX_LOAD < counts.size())
+            bits++;
+        int[] table = new int[1 << bits];
+        for (Map.Entry<Long, int[]> e : counts.entrySet()) {
+            long h = e.getKey();
+            int i = (int) h & (table.length - 1);
+            while (table[i] != 0)
+                i = (i + 1) & (table.length - 1);
+            table[i] = fingerprint(h) << 8 | quantize(e.getValue()[0]);
+        }
+        return new ContextModel(IntBuffer.wrap(table), bits, counts.size(), total);
+    }
+
+    /**
+     * Writes the model to a file for {@link #load(File)}. The file is replaced in
+     * one step, so a model loaded from the old one keeps reading it unchanged.
+     *
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void save(File file) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(HEADER + (4 << bits));
+        out.putInt(MAGIC).putInt(VERSION).putInt(bits).putInt(n).putLong(tokens);
+        for (int i = 0; i < 1 << bits; i++)
+            out.putInt(slots.get(i));
+        out.flip();
+        // Written aside and moved into place in one step, since load maps the file.
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try {
+            try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+                while (out.hasRemaining())
+                    channel.write(out);
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * Returns the number of n-grams in the model.
+     *
+     * @return the n-gram count
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Returns the number of tokens the model was trained on.
+     *
+     * @return the token count
+     */
+    public long getTokenCount() {
+        return tokens;
+    }
+
+    /**
+     * Returns the bytes of the slot table.
+     *
+     * @return the size of the model without its header
+     */
+    public long memoryBytes() {
+        return 4L << bits;
+    }
+
+    /**
+     * Returns the approximate count of an n-gram of one to three words.
+     *
+     * @param words the words, in order
+     * @return the count, 0 if it was not seen
+     */
+    public double count(String... words) {
+        long[] h = new long[3];
+        for (int i = 0; i < words.length; i++)
+            h[3 - words.length + i] = wordHash(words[i]);
+        return count(gramHash(h[0], h[1], h[2]));
+    }
+
+    /**
+     * Starts checking a text.
+     *
+     * @return a stream to feed the tokens of the text to
+     */
+    public Stream stream() {
+        return new Stream();
+    }
+
+    /**
+     * A token flagged as a likely real-word error.
+     */
+    public static final class Flag {
+        /** The word as it is in the confusion set, in lower case. */
+        public final String word;
+        /** The word of the set likelier in its place. */
+        public final String suggestion;
+        /** Byte offset of the token in the text. */
+        public final long offset;
+
+        /**
+         * Creates a flag.
+         *
+         * @param word       the flagged word
+         * @param suggestion the likelier word
+         * @param offset     the byte offset of the token
+         */
+        Flag(String word, String suggestion, long offset) {
+            this.word = word;
+            this.suggestion = suggestion;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * Checks the tokens of one text in order. A token is judged once the two after
+     * it have been seen, or at {@link #finish()}.
+     */
+    public final class Stream {
+        /** Hashes of the last five tokens, the newest at index 4; 0 before the text. */
+        private final long[] window = new long[5];
+        /** Confusion set of each token in the window, or -1. */
+        private final int[] sets = {-1, -1, -1, -1, -1};
+        /** Byte offset of each token in the window. */
+        private final long[] offsets = new long[5];
+        /** Flags raised so far. */
+        private final List<Flag> flags = new ArrayList<>();
+        /** Number of confusable tokens scored. */
+        private long scored = 0;
+
+        /**
+         * Takes the next token of the text.
+         *
+         * @param text   the array holding the token
+         * @param off    index of the first byte of the token
+         * @param len    length of the token in bytes
+         * @param offset byte offset of the token in the text
+         */
+        public void next(byte[] text, int off, int len, long offset) {
+            long h = wordHash(text, off, len);
+            System.arraycopy(window, 1, window, 0, 4);
+            System.arraycopy(sets, 1, sets, 0, 4);
+            System.arraycopy(offsets, 1, offsets, 0, 4);
+            window[4] = h;
+            sets[4] = setOf(h);
+            offsets[4] = offset;
+            if (sets[2] >= 0)
+                judge(2);
+        }
+
+        /**
+         * Judges the last tokens, which have fewer than two tokens after them.
+         */
+        public void finish() {
+            for (int end = 0; end < 2; end++) {
+                System.arraycopy(window, 1, window, 0, 4);
+                System.arraycopy(sets, 1, sets, 0, 4);
+                System.arraycopy(offsets, 1, offsets, 0, 4);
+                window[4] = 0;
+                sets[4] = -1;
+                if (sets[2] >= 0)
+                    judge(2);
+            }
+        }
+
+        /**
+         * Returns the flags raised so far, in text order.
+         *
+         * @return the flags
+         */
+        public List<Flag> flags() {
+            return flags;
+        }
+
+        /**
+         * Returns the number of tokens of a confusion set scored in context.
+         *
+         * @return the scored count
+         */
+        public long getScoredCount() {
+            return scored;
+        }
+
+        /** Scores the token at index c and each other word of its set in its place. */
+        private void judge(int c) {
+            scored++;
+            long[] alternatives = setHashes[sets[c]];
+            long written = window[c];
+            int best = -1;
+            double bestScore = -1;
+            for (int a = 0; a < alternatives.length; a++) {
+                // The cheap test first: most alternatives were never seen beside these neighbours.
+                if (alternatives[a] == written || !seenInContext(c, alternatives[a]))
+                    continue;
+                if (bestScore < 0)
+                    bestScore = score(c, written) * RATIO;
+                double s = score(c, alternatives[a]);
+                if (s > bestScore) {
+                    best = a;
+                    bestScore = s;
+                }
+            }
+            if (best >= 0) {
+                String[] words = setWords[sets[c]];
+                String word = words[0];
+                for (int a = 0; a < alternatives.length; a++)
+                    if (alternatives[a] == written)
+                        word = words[a];
+                flags.add(new Flag(word, words[best], offsets[c]));
+            }
+        }
+
+        /** Likelihood of the window with word x at index c, over the n-grams that include x. */
+        private double score(int c, long x) {
+            long saved = window[c];
+            window[c] = x;
+            double p = 1;
+            for (int i = c; i <= c + 2 && window[i] != 0; i++)
+                p *= probability(window[i - 2], window[i - 1], window[i]);
+            window[c] = saved;
+            return p;
+        }
+
+        /** Whether a bigram or trigram joining word x at index c to its neighbours was seen. */
+        private boolean seenInContext(int c, long x) {
+            long before = window[c - 1], after = window[c + 1];
+            return (before != 0 && count(gramHash(0, before, x)) > 0)
+                    || (after != 0 && count(gramHash(0, x, after)) > 0)
+                    || (before != 0 && after != 0 && count(gramHash(before, x, after)) > 0);
+        }
+    }
+
+    // private utilities
+
+    /** Stupid-backoff estimate of word w following the words u and v, either of which may be 0. */
+    private double probability(long u, long v, long w) {
+        if (u != 0 && v != 0) {
+            double tri = count(gramHash(u, v, w));
+            if (tri > 0)
+                return tri / Math.max(count(gramHash(0, u, v)), tri);
+        }
+        double weight = u != 0 && v != 0 ? BACKOFF : 1;
+        if (v != 0) {
+            double bi = count(gramHash(0, v, w));
+            if (bi > 0)
+                return weight * bi / Math.max(count(gramHash(0, 0, v)), bi);
+            weight *= BACKOFF;
+        }
+        return weight * Math.max(count(gramHash(0, 0, w)), 0.5) / Math.max(tokens, 1);
+    }
+
+    /** Approximate count of the n-gram with the given hash. */
+    private double count(long h) {
+        int mask = (1 << bits) - 1;
+        int fp = fingerprint(h);
+        int e;
+        for (int i = (int) h & mask; (e = slots.get(i)) != 0; i = (i + 1) & mask)
+            if (e >>> 8 == fp)
+                return DECODED[e & 0xff];
+        return 0;
+    }
+
+    /** Index in CONFUSION_SETS of the word with the given hash, or -1. */
+    private int setOf(long h) {
+        int mask = confusable.length - 1;
+        for (int i = (int) h & mask; confusable[i] != 0; i = (i + 1) & mask)
+            if (confusable[i] == h)
+                return confusableSet[i];
+        return -1;
+    }
+
+    /** Adds one to the count of an n-gram. */
+    private static void count(Map<Long, int[]> counts, long h) {
+        int[] c = counts.get(h);
+        if (c == null)
+            counts.put(h, new int[] {1});
+        else if (c[0] < Integer.MAX_VALUE)
+            c[0]++;
+    }
+
+    /** Quantized value of a count: 1 plus its natural log in eighths, at most 255. */
+    static int quantize(long count) {
+        return (int) Math.min(255, 1 + Math.round(Math.log(count) * STEPS));
+    }
+
+    /** Nonzero 24-bit fingerprint from the high bits of an n-gram hash. */
+    private static int fingerprint(long h) {
+        int fp = (int) (h >>> 40);
+        return fp == 0 ? 1 : fp;
+    }
+
+    /** Hash of an n-gram of the words with the given hashes, 0 standing for no word. */
+    private static long gramHash(long u, long v, long w) {
+        long h = StandardHash.mix(u * 0x9E3779B97F4A7C15L + v);
+        return StandardHash.mix((h + 0x632BE59BD9B4E019L) * 0x9E3779B97F4A7C15L + w);
+    }
+
+    /** Nonzero 64-bit hash of a word held as ASCII bytes, ignoring case. */
+    static long wordHash(byte[] text, int off, int len) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < len; i++) {
+            int b = text[off + i] & 0xff;
+            h = (h ^ (b >= 'A' && b <= 'Z' ? b | 0x20 : b)) * 0x100000001b3L;
+        }
+        h = StandardHash.mix(h);
+        return h == 0 ? 1 : h;
+    }
+
+    /** Nonzero 64-bit hash of a word, as {@link #wordHash(byte[], int, int)}. */
+    static long wordHash(String word) {
+        byte[] bytes = new byte[word.length()];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = (byte) word.charAt(i);
+        return wordHash(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,522 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * A read-only Dictionary held as a minimal deterministic acyclic word graph (DAWG):
+ * the trie of the words with every pair of equivalent subtrees merged, so shared
+ * prefixes and shared endings such as "-ations" are each stored once. It is built
+ * in one pass over the sorted words with the incremental algorithm of Daciuk et
+ * al., registering each finished node and replacing it by an equal one met before.
+ *
+ * The graph is packed into two flat arrays with one entry per arc, the arcs of a
+ * node side by side:
+ * <pre>
+ *   labels  the byte of each arc
+ *   arcs    target node &lt;&lt; 2 | 2 if a word ends at the target | 1 if last arc of its node
+ * </pre>
+ * A node is the index of its first arc, 0 being the root; a target of 0 marks a
+ * node with no arcs, which only ends words. A lookup follows one arc per byte,
+ * scanning the labels of each node, so it needs neither the key nor a string
+ * compare: keys are accepted by every method and ignored. A lookup walks the
+ * one path the word can take, which counts as one probe.
+ *
+ * Besides membership, the graph answers what a hash table cannot without more
+ * lookups: {@link #walk} reports in one pass every word that is a prefix of a
+ * token, from which {@link SuffixRules} finishes the stems, and
+ * {@link #complete(String, int)} lists the words that begin with a prefix.
+ */
+public class DawgDictionary implements WordTable {
+    /** Flag of an arc whose target ends a word. */
+    private static final int FINAL = 2;
+    /** Flag of the last arc of a node. */
+    private static final int LAST = 1;
+
+    /** Hash function computing the keys of words, for callers that hash anyway. */
+    private final HashStrategy hash;
+    /** Label byte of each arc. */
+    private final byte[] labels;
+    /** Target and flags of each arc. */
+    private final int[] arcs;
+    /** Arc of the root for each byte, or -1, since the root has the most arcs to scan. */
+    private final int[] rootArcs = new int[256];
+    /** Number of distinct words. */
+    private final int n;
+    /** Total number of probes made during checking. */
+    private final LongAdder probeCount = new LongAdder();
+    /** Count of lookup operations. */
+    private final LongAdder lookupCount = new LongAdder();
+
+    /**
+     * Builds the word graph of the given words.
+     *
+     * @param words the words of the dictionary, in any order; duplicates are stored
+     *              once and words with characters beyond Latin-1 are left out
+     * @param hash  the hash function computing the keys of words
+     */
+    public DawgDictionary(Collection<String> words, HashStrategy hash) {
+        this.hash = hash;
+        List<byte[]> sorted = new ArrayList<>(words.size());
+        for (String word : words)
+            if (!word.isEmpty() && StandardCharsets.ISO_8859_1.newEncoder().canEncode(word))
+                sorted.add(word.getBytes(StandardCharsets.ISO_8859_1));
+        sorted.sort(Arrays::compareUnsigned);
+
+        Builder builder = new Builder();
+        byte[] previous = null;
+        int count = 0;
+        for (byte[] word : sorted) {
+            if (previous != null && Arrays.equals(previous, word))
+                continue;
+            builder.add(word, previous);
+            previous = word;
+            count++;
+        }
+        builder.minimize(0);
+        n = count;
+
+        // Lay the nodes out breadth first, giving each the index of its first arc.
+        List<Node> order = new ArrayList<>();
+        int total = 0;
+        builder.root.address = 0;
+        order.add(builder.root);
+        for (int i = 0; i < order.size(); i++) {
+            Node node = order.get(i);
+            if (i > 0)
+                node.address = total;
+            total += node.size;
+            for (int a = 0; a < node.size; a++) {
+                Node target = node.targets[a];
+                if (target.address == -1 && target.size > 0) {
+                    target.address = -2;            // Queued.
+                    order.add(target);
+                }
+            }
+        }
+        if (total > Integer.MAX_VALUE >>> 2)
+            throw new IllegalArgumentException("Too many arcs for a packed word graph: " + total);
+        labels = new byte[total];
+        arcs = new int[total];
+        for (Node node : order) {
+            for (int a = 0; a < node.size; a++) {
+                Node target = node.targets[a];
+                labels[node.address + a] = node.labels[a];
+                arcs[node.address + a] = (target.size > 0 ? target.address << 2 : 0)
+                        | (target.accepts ? FINAL : 0) | (a == node.size - 1 ? LAST : 0);
+            }
+        }
+        Arrays.fill(rootArcs, -1);
+        for (int a = 0; a < builder.root.size; a++)
+            rootArcs[labels[a] & 0xff] = a;
+    }
+
+    /**
+     * Computes the hash key for a string word with this table's hash function.
+     *
+     * @param word the word to look up
+     * @return the calculated key
+     */
+    public int hashCode(String word) {
+        return hash.hash(word);
+    }
+
+    /**
+     * Computes the hash key of a word held as ASCII bytes.
+     *
+     * @param text the array holding the word
+     * @param off  index of the first byte of the word
+     * @param len  length of the word in bytes
+     * @return the calculated key
+     */
+    public int hashCode(byte[] text, int off, int len) {
+        return hash.hash(text, off, len);
+    }
+
+    /**
+     * Returns the hash function computing the keys of this table.
+     *
+     * @return the hash function
+     */
+    public HashStrategy getHash() {
+        return hash;
+    }
+
+    /**
+     * Not supported; the graph holds no keys, only the paths of the words.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    public String get(int key) {
+        throw new UnsupportedOperationException("Word graph is searched by word, not by key");
+    }
+
+    /**
+     * Returns the given word if it is in the graph, or null. The key is ignored.
+     *
+     * @param key  the key of the word
+     * @param word the word to look up
+     * @return the word, or null if the word is not in the dictionary
+     */
+    public String get(int key, String word) {
+        lookupCount.increment();
+        probeCount.increment();
+        int node = 0, arc = -1;
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c > 0xff || (arc = arc(node, (byte) c)) < 0)
+                return null;
+            node = target(arc);
+        }
+        return arc >= 0 && (arcs[arc] & FINAL) != 0 ? word : null;
+    }
+
+    /**
+     * Whether the word held as ASCII bytes is in the dictionary, following its
+     * bytes through the graph. The key is ignored.
+     *
+     * @param key  the key of the word
+     * @param text the array holding the word
+     * @param off  index of the first byte of the word
+     * @param len  length of the word in bytes
+     * @return true if the word is in the dictionary
+     */
+    public boolean contains(int key, byte[] text, int off, int len) {
+        lookupCount.increment();
+        probeCount.increment();
+        int node = 0, arc = -1;
+        for (int i = off; i < off + len; i++) {
+            if ((arc = arc(node, text[i])) < 0)
+                return false;
+            node = target(arc);
+        }
+        return arc >= 0 && (arcs[arc] & FINAL) != 0;
+    }
+
+    /**
+     * Follows a token from the root as far as the graph goes, recording the arc
+     * taken for each byte. The prefix of length i + 1 is a word when
+     * {@link #endsWord(int)} holds for arcs[i], and a stem that keeps that prefix
+     * is finished from there by {@link #endsWord(int, byte[])}. Counts as one
+     * lookup, however many prefixes it finds.
+     *
+     * @param text the array holding the token
+     * @param off  index of the first byte of the token
+     * @param len  length of the token in bytes
+     * @param path receives the arc taken for each byte matched; at least len long
+     * @return the number of bytes matched, len if the whole token has a path
+     */
+    public int walk(byte[] text, int off, int len, int[] path) {
+        lookupCount.increment();
+        probeCount.increment();
+        int node = 0;
+        for (int i = 0; i < len; i++) {
+            int arc = arc(node, text[off + i]);
+            if (arc < 0)
+                return i;
+            path[i] = arc;
+            node = target(arc);
+        }
+        return len;
+    }
+
+    /**
+     * Whether a word ends where an arc leads.
+     *
+     * @param arc an arc recorded by {@link #walk}
+     * @return true if the bytes up to and including the arc's spell a word
+     */
+    public boolean endsWord(int arc) {
+        return (arcs[arc] & FINAL) != 0;
+    }
+
+    /**
+     * Whether the bytes leading to an arc, followed by a tail, spell a word. The
+     * tail is followed from the arc's target, so the prefix is not walked again.
+     *
+     * @param arc  an arc recorded by {@link #walk}, or -1 for the root
+     * @param tail the bytes to follow it with
+     * @return true if the prefix and tail spell a word
+     */
+    public boolean endsWord(int arc, byte[] tail) {
+        for (byte b : tail) {
+            if ((arc = arc(arc < 0 ? 0 : target(arc), b)) < 0)
+                return false;
+        }
+        return arc >= 0 && (arcs[arc] & FINAL) != 0;
+    }
+
+    /**
+     * Lists the words of a token's prefixes that are in the dictionary, shortest
+     * first, from one walk of the token.
+     *
+     * @param token the token
+     * @return the prefixes of the token that are words, the token itself included
+     */
+    public List<String> prefixesOf(String token) {
+        byte[] text = token.getBytes(StandardCharsets.ISO_8859_1);
+        int[] path = new int[text.length];
+        int matched = walk(text, 0, text.length, path);
+        List<String> found = new ArrayList<>();
+        for (int i = 0; i < matched; i++)
+            if (endsWord(path[i]))
+                found.add(token.substring(0, i + 1));
+        return found;
+    }
+
+    /**
+     * Lists the dictionary words that begin with a prefix, in byte order.
+     *
+     * @param prefix the prefix; a word equal to it is listed first
+     * @param limit  the largest number of words to list
+     * @return up to limit words beginning with the prefix
+     */
+    public List<String> complete(String prefix, int limit) {
+        List<String> found = new ArrayList<>();
+        byte[] text = prefix.getBytes(StandardCharsets.ISO_8859_1);
+        int node = 0, arc = -1;
+        for (byte b : text) {
+            if ((arc = arc(node, b)) < 0)
+                return found;
+            node = target(arc);
+        }
+        if (limit <= 0)
+            return found;
+        if (arc >= 0 && (arcs[arc] & FINAL) != 0)
+            found.add(prefix);
+        if (node >= 0)
+            collect(node, new StringBuilder(prefix), found, limit);
+        return found;
+    }
+
+    /**
+     * Not supported; the graph is built once over a sorted word list.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    public String put(int key, String value) {
+        throw new UnsupportedOperationException("Word graph dictionary is read-only");
+    }
+
+    /**
+     * Not supported; the graph is built once over a sorted word list.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    public String remove(int key) {
+        throw new UnsupportedOperationException("Word graph dictionary is read-only");
+    }
+
+    /**
+     * Returns the number of words in the dictionary.
+     *
+     * @return the number of dictionary entries
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Returns the total number of paths walked, one per lookup.
+     *
+     * @return the number of times a text word is compared to the graph
+     */
+    public long getProbeCount() {
+        return probeCount.sum();
+    }
+
+    /**
+     * Returns the total number of times a lookup operation is performed.
+     *
+     * @return the number of lookup operations
+     */
+    public long getLookupCount() {
+        return lookupCount.sum();
+    }
+
+    /**
+     * Returns the number of arcs of every node, the labels a lookup may scan at
+     * each step.
+     *
+     * @return the number of arcs of each node
+     */
+    public int[] chainLengths() {
+        List<Integer> sizes = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < arcs.length; i++) {
+            if ((arcs[i] & LAST) != 0) {
+                sizes.add(i + 1 - start);
+                start = i + 1;
+            }
+        }
+        int[] chains = new int[sizes.size()];
+        for (int i = 0; i < chains.length; i++)
+            chains[i] = sizes.get(i);
+        return chains;
+    }
+
+    /**
+     * Returns the number of arcs of the packed graph.
+     *
+     * @return the arc count
+     */
+    public int arcCount() {
+        return arcs.length;
+    }
+
+    /**
+     * Returns the size of the packed graph in bytes: a label byte and an int per arc.
+     *
+     * @return the bytes of the graph
+     */
+    public long memoryBytes() {
+        return 5L * arcs.length;
+    }
+
+    // private utilities
+
+    /**
+     * Finds the arc of a node labelled with a byte.
+     *
+     * @param node the index of the node's first arc, 0 for the root, or -1 for a
+     *             node with no arcs
+     * @param b    the byte
+     * @return the arc, or -1 if the node has none for the byte
+     */
+    private int arc(int node, byte b) {
+        if (node <= 0)
+            return node == 0 ? rootArcs[b & 0xff] : -1;
+        for (int a = node; ; a++) {
+            if (labels[a] == b)
+                return a;
+            if ((arcs[a] & LAST) != 0 || (labels[a] & 0xff) > (b & 0xff))
+                return -1;                          // Labels are in byte order.
+        }
+    }
+
+    /** The node an arc leads to, or -1 if it has no arcs. */
+    private int target(int arc) {
+        int node = arcs[arc] >>> 2;
+        return node == 0 ? -1 : node;
+    }
+
+    /** Appends the words below a node to the list, depth first in byte order. */
+    private boolean collect(int node, StringBuilder word, List<String> found, int limit) {
+        for (int a = node; a < arcs.length; a++) {
+            word.append((char) (labels[a] & 0xff));
+            if ((arcs[a] & FINAL) != 0) {
+                found.add(word.toString());
+                if (found.size() >= limit)
+                    return false;
+            }
+            int target = arcs[a] >>> 2;
+            if (target != 0 && !collect(target, word, found, limit))
+                return false;
+            word.setLength(word.length() - 1);
+            if ((arcs[a] & LAST) != 0)
+                break;
+        }
+        return true;
+    }
+
+    /** A node of the graph being built. */
+    private static final class Node {
+        /** Whether a word ends at this node. */
+        private boolean accepts;
+        /** Label of each arc, in byte order. */
+        private byte[] labels = new byte[2];
+        /** Target of each arc. */
+        private Node[] targets = new Node[2];
+        /** Number of arcs. */
+        private int size;
+        /** Index of the first arc once packed, or -1. */
+        private int address = -1;
+
+        /** Adds an arc after the others. */
+        void add(byte label, Node target) {
+            if (size == labels.length) {
+                labels = Arrays.copyOf(labels, size * 2);
+                targets = Arrays.copyOf(targets, size * 2);
+            }
+            labels[size] = label;
+            targets[size++] = target;
+        }
+
+        /** Equal when both end words alike and have the same arcs to the same registered nodes. */
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Node))
+                return false;
+            Node that = (Node) other;
+            if (accepts != that.accepts || size != that.size)
+                return false;
+            for (int a = 0; a < size; a++)
+                if (labels[a] != that.labels[a] || targets[a] != that.targets[a])
+                    return false;
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = accepts ? 1 : 0;
+            for (int a = 0; a < size; a++)
+                h = 31 * (31 * h + labels[a]) + System.identityHashCode(targets[a]);
+            return h;
+        }
+    }
+
+    /** Builds the minimal graph from words added in sorted order. */
+    private static final class Builder {
+        /** The root node. */
+        private final Node root = new Node();
+        /** Nodes already minimized, each by itself. */
+        private final Map<Node, Node> register = new HashMap<>();
+        /** Nodes on the path of the last word, below the root, not yet minimized. */
+        private final List<Node> path = new ArrayList<>();
+
+        /**
+         * Adds a word greater than the previous one.
+         *
+         * @param word     the word
+         * @param previous the word added before, or null
+         */
+        void add(byte[] word, byte[] previous) {
+            int common = 0;
+            if (previous != null)
+                while (common < Math.min(word.length, previous.length) && word[common] == previous[common])
+                    common++;
+            minimize(common);
+            Node node = common == 0 ? root : path.get(common - 1);
+            for (int i = common; i < word.length; i++) {
+                Node next = new Node();
+                node.add(word[i], next);
+                path.add(next);
+                node = next;
+            }
+            node.accepts = true;
+        }
+
+        /**
+         * Replaces the nodes of the last path deeper than the given length by
+         * registered equal nodes, deepest first, so each parent is compared only
+         * once its children are final.
+         *
+         * @param keep the length of the path to leave open
+         */
+        void minimize(int keep) {
+            for (int i = path.size() - 1; i >= keep; i--) {
+                Node child = path.remove(i);
+                Node parent = i == 0 ? root : path.get(i - 1);
+                Node known = register.putIfAbsent(child, child);
+                if (known != null)
+                    parent.targets[parent.size - 1] = known;
+            }
+        }
+    }
+}
@@ -1,60 +1,148 @@
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * @author Stephen Hildebrand
  * @version 4/22/2016
  *          This class implements a Dictionary of Word objects as a hash table that maps
  *          keys to values.
+ *
+ *          The table keeps its load between {@value #MIN_LOAD} and {@value #MAX_LOAD}
+ *          words per bucket by doubling or halving its bucket count, never going
+ *          below the capacity it was created with. A resize rehashes incrementally:
+ *          the old buckets stay in place and every later put or remove moves a few
+ *          of them ({@value #REHASH_STEP}) to the new table, so no single operation
+ *          rehashes the whole dictionary. Until the move is complete, lookups search
+ *          the word's bucket in both tables. Lookups never move buckets themselves,
+ *          so several threads may look words up at once as long as none changes
+ *          the table.
  */
-public class Dictionary {
+public class Dictionary implements WordTable {
+    /** Largest number of words per bucket before the table grows. */
+    static final double MAX_LOAD = 1.0;
+    /** Smallest number of words per bucket before the table shrinks. */
+    static final double MIN_LOAD = 0.125;
+    /** Number of non-empty old buckets moved per put or remove during a resize. */
+    static final int REHASH_STEP = 4;
+    /** Number of empty old buckets passed over per non-empty bucket moved. */
+    private static final int EMPTY_VISITS = 10;
+
     /** The number of dictionary entries in the table. */
     private int n = 0;
     /** The number of buckets in the hash table. */
     private int capacity;
+    /** The bucket count the table was created with, below which it never shrinks. */
+    private final int minCapacity;
+    /** Whether the bucket count follows the load. */
+    private boolean resizing = true;
     /** Prime factor. */
     private int prime;
     /** Shift and scaling factors. */
     private long scale, shift;
+    /** Seed the shift and scaling factors were drawn from. */
+    private final long seed;
+    /** Hash function computing the keys of words. */
+    private final HashStrategy hash;
     /** Array of LinkedList word buckets. */
     private LinkedList<Word>[] table;
+    /** Buckets of the table being resized away from, or null when not resizing. */
+    private LinkedList<Word>[] old;
+    /** The number of buckets in old. */
+    private int oldCapacity;
+    /** Index of the next bucket of old to move into table. */
+    private int rehashIndex;
     /** Total number of probes made during checking. */
-    private int probeCount = 0;
+    private final LongAdder probeCount = new LongAdder();
     /** Count of lookup operations. */
-    private int lookupCount = 0;
+    private final LongAdder lookupCount = new LongAdder();
 
 
-    /** Creates a hash table with the given capacity and prime factor (31957). */
+    /**
+     * Creates a hash table with the given capacity, prime factor and hash function,
+     * drawing the scale and shift of the compression from the given seed, so that
+     * tables built with the same seed and words make the same probes.
+     */
     @SuppressWarnings({"unchecked"})
-    public Dictionary(int capacity, int prime) {
+    public Dictionary(int capacity, int prime, HashStrategy hash, long seed) {
         this.capacity = capacity;
+        this.minCapacity = capacity;
         this.prime = prime;
-        Random rand = new Random();
+        this.hash = hash;
+        this.seed = seed;
+        Random rand = new Random(seed);
         scale = rand.nextInt(prime - 1) + 1;
         shift = rand.nextInt(prime);
         table = (LinkedList<Word>[]) new LinkedList[capacity];
     }
 
+    /** Creates a hash table with the given capacity, prime factor and hash function, and a random seed. */
+    public Dictionary(int capacity, int prime, HashStrategy hash) {
+        this(capacity, prime, hash, new Random().nextLong());
+    }
+
+    /** Creates a hash table with the given capacity and prime factor (31957). */
+    public Dictionary(int capacity, int prime) {
+        this(capacity, prime, StandardHash.CYCLIC_SHIFT);
+    }
+
+    /** Creates a hash table with given capacity, hash function and prime factor 109345121. */
+    public Dictionary(int capacity, HashStrategy hash) {
+        this(capacity, 109345121, hash);
+    }  // Default prime.
+
+    /** Creates a hash table with the given capacity, hash function and seed. */
+    public Dictionary(int capacity, HashStrategy hash, long seed) {
+        this(capacity, 109345121, hash, seed);
+    }  // Default prime.
+
     /** Creates a hash table with given capacity and prime factor 109345121. */
     public Dictionary(int capacity) {
-        this(capacity, 109345121);
-    }  // Default prime.
+        this(capacity, StandardHash.CYCLIC_SHIFT);
+    }
+
+    /**
+     * Returns the seed the scale and shift of the compression were drawn from.
+     *
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
 
     /**
-     * Implementation of a 5-bit cyclic-shift to compute the hash key for a
-     * string word.
+     * Computes the hash key for a string word with this table's hash function
+     * (by default a 5-bit cyclic shift).
      *
      * @param word the word to look up
      * @return the calculated key
      */
-    int hashCode(String word) {
-        int k = 0;
-        for (int i = 0; i < word.length(); i++) {
-            k = (k << 5) | (k >>> 27);      // 5-bit cyclic shift of the running sum.
-            k += (int) word.charAt(i);      // Add in the next character.
-        }
-        return k;
+    public int hashCode(String word) {
+        return hash.hash(word);
+    }
+
+    /**
+     * Computes the hash key of a word held as ASCII bytes.
+     *
+     * @param text the array holding the word
+     * @param off  index of the first byte of the word
+     * @param len  length of the word in bytes
+     * @return the calculated key
+     */
+    public int hashCode(byte[] text, int off, int len) {
+        return hash.hash(text, off, len);
+    }
+
+    /**
+     * Returns the hash function computing the keys of this table.
+     *
+     * @return the hash function
+     */
+    public HashStrategy getHash() {
+        return hash;
     }
 
     /**
@@ -63,9 +151,76 @@ public class Dictionary {
      * @param key the key whose associated value is to be returned
      * @return the associated value, or null if no such entry exists
      */
-    String get(int key) {
-        lookupCount++;
-        return bucketGet(hashValue(key), key);
+    public String get(int key) {
+        lookupCount.increment();
+        String found = bucketGet(table[hashValue(key, capacity)], key);
+        if (found == null && old != null)
+            found = bucketGet(old[hashValue(key, oldCapacity)], key);
+        return found;
+    }
+
+    /**
+     * Returns the stored word equal to the given word, or null if no such entry
+     * exists. Unlike {@link #get(int)}, a different word sharing the same key is
+     * skipped over rather than returned.
+     *
+     * @param key  the key of the word
+     * @param word the word to look up
+     * @return the stored word, or null if the word is not in the dictionary
+     */
+    public String get(int key, String word) {
+        lookupCount.increment();
+        String found = bucketGet(table[hashValue(key, capacity)], key, word);
+        if (found == null && old != null)
+            found = bucketGet(old[hashValue(key, oldCapacity)], key, word);
+        return found;
+    }
+
+    /**
+     * Whether the word held as ASCII bytes is in the dictionary, comparing the
+     * bytes in place.
+     *
+     * @param key  the key of the word
+     * @param text the array holding the word
+     * @param off  index of the first byte of the word
+     * @param len  length of the word in bytes
+     * @return true if the word is in the dictionary
+     */
+    public boolean contains(int key, byte[] text, int off, int len) {
+        lookupCount.increment();
+        return bucketContains(table[hashValue(key, capacity)], key, text, off, len)
+                || (old != null && bucketContains(old[hashValue(key, oldCapacity)], key, text, off, len));
+    }
+
+    /**
+     * Whether the word is in the dictionary.
+     *
+     * @param word the word
+     * @return true if the word is in the dictionary
+     */
+    public boolean contains(String word) {
+        return get(hashCode(word), word) != null;
+    }
+
+    /**
+     * Adds a word, such as a user or project word, to the dictionary.
+     *
+     * @param word the word to add
+     * @return true if the word was added, false if it was already in the dictionary
+     */
+    public boolean addWord(String word) {
+        return put(hashCode(word), word) == null;
+    }
+
+    /**
+     * Removes a word from the dictionary. Unlike {@link #remove(int)}, a different
+     * word sharing the same key is left in place.
+     *
+     * @param word the word to remove
+     * @return true if the word was removed, false if it was not in the dictionary
+     */
+    public boolean removeWord(String word) {
+        return remove(hashCode(word), word) != null;
     }
 
     /**
@@ -75,29 +230,141 @@ public class Dictionary {
      * @param key the key whose entry is to be removed from the map
      * @return the previous value associated with the removed key, or null if no such entry exists
      */
-    String remove(int key) {
-        return bucketRemove(hashValue(key), key);
+    public String remove(int key) {
+        return remove(key, null);
+    }
+
+    /**
+     * Removes the entry with the specified key and word, if present, and returns
+     * the stored word. Otherwise does nothing and returns null.
+     *
+     * @param key  the key of the word
+     * @param word the word to remove, or null for the first word having the key
+     * @return the removed word, or null if no such entry exists
+     */
+    public String remove(int key, String word) {
+        rehashStep();
+        String answer = bucketRemove(table[hashValue(key, capacity)], key, word);
+        if (answer == null && old != null)
+            answer = bucketRemove(old[hashValue(key, oldCapacity)], key, word);
+        if (answer != null && --n < capacity * MIN_LOAD && capacity / 2 >= minCapacity)
+            resize(capacity / 2);
+        return answer;
     }
 
     /**
-     * Associates the given value with the given key. If an entry with
-     * the key was already in the map, this replaces the previous value
-     * with the new one and returns the old value. Otherwise, a new
-     * entry is added and null is returned.
+     * Adds a word with the given key, unless an equal word is already stored.
+     * The stored word is then kept and returned; otherwise a new entry is
+     * added and null is returned.
      *
      * @param key   key with which the specified value is to be associated
      * @param value value to be associated with the specified key
-     * @return the previous value associated with the key (or null, if no such entry)
+     * @return the equal word already stored, or null if the word was added
+     */
+    public String put(int key, String value) {
+        rehashStep();
+        String existing = find(key, value);
+        if (existing != null)
+            return existing;                    // Already stored; nothing to add.
+        bucketPut(hashValue(key, capacity), key, value);
+        if (++n > capacity * MAX_LOAD && capacity <= Integer.MAX_VALUE / 2)
+            resize(capacity * 2);
+        return null;
+    }
+
+    /**
+     * Turns load-driven resizing on or off. With resizing off the table keeps its
+     * current bucket count whatever the load, for measuring a given load factor.
+     * A resize under way is completed first.
+     *
+     * @param resizing whether the bucket count follows the load
      */
-    String put(int key, String value) {
-        return bucketPut(hashValue(key), key, value);
+    void setResizing(boolean resizing) {
+        finishRehash();
+        this.resizing = resizing;
+    }
+
+    /**
+     * Returns the number of buckets in the hash table.
+     *
+     * @return the bucket count of the table words are added to
+     */
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Whether a resize is under way, with buckets still to move.
+     *
+     * @return true if the table is being rehashed
+     */
+    boolean isRehashing() {
+        return old != null;
     }
 
     // private utilities
 
-    /** Hash function applying MAD method to default hash code. */
-    private int hashValue(int key) {
-        return (int) ((Math.abs(key * scale + shift) % prime) % capacity);
+    /** Hash function applying MAD method to default hash code, for a table of the given size. */
+    private int hashValue(int key, int buckets) {
+        return (int) ((Math.abs(key * scale + shift) % prime) % buckets);
+    }
+
+    /** Returns the stored word with key k equal to v, from either table, without counting probes. */
+    private String find(int k, String v) {
+        String found = bucketFind(table[hashValue(k, capacity)], k, v);
+        if (found == null && old != null)
+            found = bucketFind(old[hashValue(k, oldCapacity)], k, v);
+        return found;
+    }
+
+    /**
+     * Starts moving the words into a table with the given number of buckets, first
+     * completing any resize under way.
+     *
+     * @param buckets the new bucket count
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void resize(int buckets) {
+        if (!resizing || old != null)
+            return;
+        old = table;
+        oldCapacity = capacity;
+        rehashIndex = 0;
+        table = (LinkedList<Word>[]) new LinkedList[buckets];
+        capacity = buckets;
+    }
+
+    /**
+     * Moves up to {@value #REHASH_STEP} non-empty buckets of the old table into the
+     * new one, ending the resize once every bucket has moved.
+     */
+    private void rehashStep() {
+        if (old == null)
+            return;
+        int moved = 0;
+        for (int visits = 0; moved < REHASH_STEP && visits < REHASH_STEP * EMPTY_VISITS
+                && rehashIndex < oldCapacity; visits++) {
+            LinkedList<Word> bucket = old[rehashIndex];
+            if (bucket != null) {
+                for (Word w : bucket) {
+                    int h = hashValue(w.getKey(), capacity);
+                    if (table[h] == null)
+                        table[h] = new LinkedList<Word>();
+                    table[h].add(w);
+                }
+                old[rehashIndex] = null;
+                moved++;
+            }
+            rehashIndex++;
+        }
+        if (rehashIndex == oldCapacity)
+            old = null;
+    }
+
+    /** Moves every remaining bucket of a resize under way. */
+    private void finishRehash() {
+        while (old != null)
+            rehashStep();
     }
 
     /**
@@ -105,7 +372,7 @@ public class Dictionary {
      *
      * @return the number of dictionary entries
      */
-    int size() {
+    public int size() {
         return n;
     }
 
@@ -114,16 +381,15 @@ public class Dictionary {
      * Returns value associated with key k in bucket with hash value h.
      * If no such entry exists, returns null.
      *
-     * @param h the hash value of the relevant bucket
-     * @param k the key of interest
+     * @param bucket the relevant bucket, or null if it is empty
+     * @param k      the key of interest
      * @return associate value (or null, if no such entry)
      */
-    private String bucketGet(int h, int k) {
-        LinkedList<Word> bucket = table[h];
+    private String bucketGet(LinkedList<Word> bucket, int k) {
         if (bucket == null) return null;
         for (Word w : bucket) {
             if (w != null)          // Increment probe count when compared to a word.
-                probeCount++;
+                probeCount.increment();
             if (k == w.getKey())
                 return w.getValue();
         }
@@ -131,52 +397,79 @@ public class Dictionary {
     }
 
     /**
-     * Associates key k with value v in bucket with hash value h, returning
-     * the previously associated value, if any.
+     * Returns the word in bucket with hash value h having key k and equal to
+     * the given word. If no such entry exists, returns null.
+     *
+     * @param bucket the relevant bucket, or null if it is empty
+     * @param k      the key of interest
+     * @param word   the word of interest
+     * @return the stored word (or null, if no such entry)
+     */
+    private String bucketGet(LinkedList<Word> bucket, int k, String word) {
+        if (bucket == null) return null;
+        for (Word w : bucket) {
+            probeCount.increment();
+            if (k == w.getKey() && word.equals(w.getValue()))
+                return w.getValue();
+        }
+        return null;
+    }
+
+    /** Like {@link #bucketGet(LinkedList, int, String)}, without counting probes. */
+    private static String bucketFind(LinkedList<Word> bucket, int k, String word) {
+        if (bucket == null) return null;
+        for (Word w : bucket)
+            if (k == w.getKey() && word.equals(w.getValue()))
+                return w.getValue();
+        return null;
+    }
+
+    /** Whether a bucket holds the word with key k spelled by the ASCII bytes. */
+    private boolean bucketContains(LinkedList<Word> bucket, int k, byte[] text, int off, int len) {
+        if (bucket == null) return false;
+        for (Word w : bucket) {
+            probeCount.increment();
+            if (k == w.getKey() && WordTable.sameWord(w.getValue(), text, off, len))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds a new entry with key k and value v to the bucket with hash value h.
+     * The caller has checked that no entry with the same key and word exists;
+     * a different word with the same key gets its own entry.
      *
      * @param h the hash value of the relevant bucket
      * @param k the key of interest
      * @param v the value to be associated
-     * @return previous value associated with k (or null, if no such entry)
      */
-    private String bucketPut(int h, int k, String v) {
+    private void bucketPut(int h, int k, String v) {
         LinkedList<Word> bucket = table[h];
         if (bucket == null)
             bucket = table[h] = new LinkedList<Word>();
-        int oldSize = bucket.size();
-        for (Word w : bucket) {
-            if (k == w.getKey()) {
-                String old = w.getValue();
-                bucket.add(new Word(k, v));
-                return old;
-            }
-        }
         bucket.add(new Word(k, v));
-        n += (bucket.size() - oldSize);   // Size may have increased.
-        return null;
     }
 
     /**
-     * Removes entry having key k from bucket with hash value h, returning
-     * the previously associated value, if found.
+     * Removes the first entry having key k, and word v if given, from a bucket,
+     * returning its value, if found.
      *
-     * @param h the hash value of the relevant bucket
-     * @param k the key of interest
+     * @param bucket the relevant bucket, or null if it is empty
+     * @param k      the key of interest
+     * @param v      the word of interest, or null for any word having key k
      * @return previous value associated with k (or null, if no such entry)
      */
-    private String bucketRemove(int h, int k) {
-        LinkedList<Word> bucket = table[h];
+    private static String bucketRemove(LinkedList<Word> bucket, int k, String v) {
         if (bucket == null) return null;
-        int oldSize = bucket.size();
-        String answer = null;
-        for (Word w : bucket) {
-            if (k == w.getKey()) {
-                answer = w.getValue();
-                bucket.remove(w);
+        for (Iterator<Word> it = bucket.iterator(); it.hasNext(); ) {
+            Word w = it.next();
+            if (k == w.getKey() && (v == null || v.equals(w.getValue()))) {
+                it.remove();
+                return w.getValue();
             }
         }
-        n -= (oldSize - bucket.size());   // Size may have decreased.
-        return answer;
+        return null;
     }
 
     /**
@@ -185,12 +478,38 @@ public class Dictionary {
      * @return iterable collection of the map's entries
      */
     public Iterable<Word> wordSet() {
-        ArrayList<Word> buffer = new ArrayList<>();
+        ArrayList<Word> buffer = new ArrayList<>(n);
+        if (old != null)
+            for (LinkedList<Word> bucket : old)
+                if (bucket != null)
+                    buffer.addAll(bucket);
+        for (LinkedList<Word> bucket : table)
+            if (bucket != null)
+                buffer.addAll(bucket);
+        return buffer;
+    }
+
+    /**
+     * Returns the number of entries in each bucket, for collision diagnostics.
+     *
+     * @return the bucket lengths, indexed by hash value
+     */
+    int[] bucketLengths() {
+        finishRehash();
+        int[] lengths = new int[capacity];
         for (int h = 0; h < capacity; h++)
             if (table[h] != null)
-                for (Word w : buffer)
-                    buffer.add(w);
-        return buffer;
+                lengths[h] = table[h].size();
+        return lengths;
+    }
+
+    /**
+     * Returns the length of every non-empty bucket.
+     *
+     * @return the number of entries in each non-empty bucket
+     */
+    public int[] chainLengths() {
+        return Arrays.stream(bucketLengths()).filter(length -> length > 0).toArray();
     }
 
     /**
@@ -199,8 +518,8 @@ public class Dictionary {
      *
      * @return the number of times a text word is compared to a table word
      */
-    int getProbeCount() {
-        return probeCount;
+    public long getProbeCount() {
+        return probeCount.sum();
     }
 
     /**
@@ -208,8 +527,8 @@ public class Dictionary {
      *
      * @return the number of times a text word is compared to a table word
      */
-    int getLookupCount() {
-        return lookupCount;
+    public long getLookupCount() {
+        return lookupCount.sum();
     }
 
     /**
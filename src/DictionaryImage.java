@@ -0,0 +1,34 @@
+import java.util.List;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * A word table that can be mapped from a dictionary image compiled by
+ * {@link MappedDictionary#compile(Iterable, StandardHash, java.io.File)}: on the
+ * heap by {@link MappedDictionary}, or off it by the optional SegmentDictionary.
+ * Besides the words, an image stores the binding of the match rules to them, so a
+ * program starting from one binds its rules without reading the words back.
+ */
+interface DictionaryImage extends WordTable, AutoCloseable {
+
+    /**
+     * Returns every word of the table.
+     *
+     * @return the dictionary words
+     */
+    List<String> words();
+
+    /**
+     * Returns the binding of the match rules to the words, for
+     * {@link SuffixRules#forBinding(long[])}.
+     *
+     * @return the binding
+     */
+    long[] binding();
+
+    /**
+     * Releases the memory of the table. It must not be used afterwards.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,143 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Watches a word list for changes and hands the new words to a reload action, such
+ * as {@link SnapshotDictionary#reload(java.util.Collection)}, on a daemon thread of
+ * its own. The file's directory is watched, so a list saved by writing a new file
+ * and renaming it over the old one is seen as readily as one rewritten in place.
+ *
+ * An editor may write a file in several steps, each raising an event, so the list
+ * is only read once no event has arrived for {@link #QUIET_MILLIS}. A list that
+ * cannot be read, reads as empty or is refused by the reload action leaves the
+ * words in use as they were.
+ */
+public class DictionaryWatcher implements Closeable {
+    /** Time without events after which a changed list is read, in milliseconds. */
+    static final long QUIET_MILLIS = 100;
+
+    /** The watched word list. */
+    private final Path file;
+    /** Action given the words of each changed list. */
+    private final Consumer<List<String>> reload;
+    /** Watch service of the list's directory. */
+    private final WatchService watch;
+    /** Thread waiting for changes. */
+    private final Thread thread;
+    /** Number of changed lists handed to the reload action. */
+    private volatile long reloadCount = 0;
+    /** Number of changed lists that could not be used. */
+    private volatile long failedCount = 0;
+
+    /**
+     * Starts watching a word list.
+     *
+     * @param file   the word list
+     * @param reload the action given the words of the list each time it changes
+     * @throws IOException if the list's directory cannot be watched
+     */
+    public DictionaryWatcher(Path file, Consumer<List<String>> reload) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.reload = reload;
+        watch = this.file.getFileSystem().newWatchService();
+        try {
+            this.file.getParent().register(watch, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            watch.close();
+            throw e;
+        }
+        thread = new Thread(this::run, "dictionary-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the number of changed lists handed to the reload action.
+     *
+     * @return the reload count
+     */
+    public long getReloadCount() {
+        return reloadCount;
+    }
+
+    /**
+     * Returns the number of changed lists that could not be read or were refused.
+     *
+     * @return the failed reload count
+     */
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * Stops watching the list.
+     *
+     * @throws IOException if the watch service cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        watch.close();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // private utilities
+
+    /** Waits for changes to the list and reloads it once they settle, until closed. */
+    private void run() {
+        try {
+            while (true) {
+                boolean changed = poll(watch.take());
+                while (changed) {
+                    WatchKey key = watch.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                    if (key == null)
+                        break;
+                    poll(key);
+                }
+                if (changed)
+                    load();
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Closed; stop watching.
+        }
+    }
+
+    /** Takes the events of a key, whether one of them concerns the list. */
+    private boolean poll(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents())
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context()))
+                changed = true;
+        key.reset();
+        return changed;
+    }
+
+    /** Reads the list and hands it to the reload action. */
+    private void load() {
+        try {
+            List<String> words = SpellCheck.readWordList(file.toFile());
+            if (words.isEmpty())
+                throw new IOException("The list is empty");
+            reload.accept(words);
+            reloadCount++;
+        } catch (IOException | RuntimeException e) {
+            failedCount++;
+            System.out.printf("Error. Could not reload %s: %s\n", file, e.getMessage());
+        }
+    }
+}
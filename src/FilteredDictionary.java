@@ -0,0 +1,194 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * A dictionary table behind a {@link BloomFilter} of its keys. Most lookups made
+ * while checking a misspelled word are for stems that are not in the dictionary,
+ * and each of them would still walk a bucket or probe sequence of the table. The
+ * filter answers most of them from one cache line of bits instead, and only the
+ * lookups it cannot rule out reach the table. Since the filter holds the keys
+ * rather than the words, it costs no hashing beyond the key every lookup has.
+ *
+ * A lookup rejected by the filter counts as a lookup making no probes. To report
+ * what the rejections saved, the average cost of a miss in the table is measured
+ * once, when the filter is built, by looking up {@value #CALIBRATION} words that
+ * cannot be in it; those lookups are left out of the counts.
+ * {@link #getSavedProbeCount()} reports the rejections times that average.
+ *
+ * Words put through the filtered table are added to the filter. Removed words
+ * stay in the filter, where they can only cause false positives.
+ */
+public class FilteredDictionary implements WordTable {
+    /** Number of absent words looked up to measure the cost of a miss. */
+    static final int CALIBRATION = 1024;
+
+    /** The table holding the words. */
+    private final WordTable table;
+    /** Filter of the keys in the table. */
+    private final BloomFilter filter;
+    /** Number of lookups rejected by the filter. */
+    private final LongAdder rejections = new LongAdder();
+    /** Number of lookups that passed the filter but were not found in the table. */
+    private final LongAdder falsePositives = new LongAdder();
+    /** Average probes of a lookup missing in the table. */
+    private final double missProbes;
+    /** Probes made in the table by the calibration lookups. */
+    private final long calibrationProbes;
+    /** Lookups made in the table by the calibration. */
+    private final long calibrationLookups;
+
+    /**
+     * Puts a filter in front of a table, adding the keys of the given words. The
+     * words must be all the words of the table.
+     *
+     * @param table             the table holding the words
+     * @param words             the words of the table
+     * @param falsePositiveRate the fraction of absent words the filter may let through
+     */
+    public FilteredDictionary(WordTable table, Iterable<String> words, double falsePositiveRate) {
+        this.table = table;
+        filter = new BloomFilter(table.size(), falsePositiveRate);
+        for (String word : words)
+            filter.add(table.hashCode(word));
+
+        // Words starting with a control character are never dictionary words.
+        long probes = table.getProbeCount(), lookups = table.getLookupCount();
+        for (int i = 0; i < CALIBRATION; i++) {
+            String absent = "\u0001" + i;
+            table.get(table.hashCode(absent), absent);
+        }
+        calibrationProbes = table.getProbeCount() - probes;
+        calibrationLookups = table.getLookupCount() - lookups;
+        missProbes = calibrationProbes / (double) CALIBRATION;
+    }
+
+    /**
+     * Returns the filter in front of the table.
+     *
+     * @return the filter
+     */
+    public BloomFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Returns the number of lookups rejected by the filter without reaching the table.
+     *
+     * @return the number of rejections
+     */
+    public long getRejectionCount() {
+        return rejections.sum();
+    }
+
+    /**
+     * Returns the number of lookups that passed the filter for words not in the table.
+     *
+     * @return the number of false positives
+     */
+    public long getFalsePositiveCount() {
+        return falsePositives.sum();
+    }
+
+    /**
+     * Returns the average number of probes a lookup missing in the table makes, as
+     * measured when the filter was built.
+     *
+     * @return the probes per miss
+     */
+    public double getMissProbes() {
+        return missProbes;
+    }
+
+    /**
+     * Returns an estimate of the probes the rejected lookups would have made in the
+     * table: the rejections times the average probes of a miss.
+     *
+     * @return the estimated number of probes saved by the filter
+     */
+    public long getSavedProbeCount() {
+        return Math.round(rejections.sum() * missProbes);
+    }
+
+    /** Computes the key of a word with the table's hash function. */
+    public int hashCode(String word) {
+        return table.hashCode(word);
+    }
+
+    /** Computes the key of a word held as ASCII bytes with the table's hash function. */
+    public int hashCode(byte[] text, int off, int len) {
+        return table.hashCode(text, off, len);
+    }
+
+    /** Returns the hash function of the table. */
+    public HashStrategy getHash() {
+        return table.getHash();
+    }
+
+    /** Looks a key up in the table unless the filter rules it out. */
+    public String get(int key) {
+        if (!filter.mightContain(key)) {
+            rejections.increment();
+            return null;
+        }
+        String found = table.get(key);
+        if (found == null)
+            falsePositives.increment();
+        return found;
+    }
+
+    /** Looks a word up in the table unless the filter rules its key out. */
+    public String get(int key, String word) {
+        if (!filter.mightContain(key)) {
+            rejections.increment();
+            return null;
+        }
+        String found = table.get(key, word);
+        if (found == null)
+            falsePositives.increment();
+        return found;
+    }
+
+    /** Whether the word held as ASCII bytes is in the table, asking the filter first. */
+    public boolean contains(int key, byte[] text, int off, int len) {
+        if (!filter.mightContain(key)) {
+            rejections.increment();
+            return false;
+        }
+        boolean found = table.contains(key, text, off, len);
+        if (!found)
+            falsePositives.increment();
+        return found;
+    }
+
+    /** Adds a word to the table and its key to the filter. */
+    public String put(int key, String value) {
+        filter.add(key);
+        return table.put(key, value);
+    }
+
+    /** Removes the entry with the key from the table; the filter keeps the key. */
+    public String remove(int key) {
+        return table.remove(key);
+    }
+
+    /** Returns the number of words in the table. */
+    public int size() {
+        return table.size();
+    }
+
+    /** Returns the chain lengths of the table. */
+    public int[] chainLengths() {
+        return table.chainLengths();
+    }
+
+    /** Returns the probes made in the table; rejected lookups make none. */
+    public long getProbeCount() {
+        return table.getProbeCount() - calibrationProbes;
+    }
+
+    /** Returns the lookups made, whether the filter rejected them or the table answered. */
+    public long getLookupCount() {
+        return table.getLookupCount() - calibrationLookups + rejections.sum();
+    }
+}
@@ -0,0 +1,100 @@
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Collision diagnostics of a hash function over a word list, used to choose the
+ * function that spreads a dictionary best. The words are loaded into a chained
+ * {@link Dictionary} and the report covers:
+ * <ul>
+ *   <li>key collisions: distinct words sharing the same 32-bit key,</li>
+ *   <li>the bucket-length histogram, maximum chain and empty buckets,</li>
+ *   <li>expected versus observed probes per successful and unsuccessful lookup.</li>
+ * </ul>
+ * The cost of each function per word is measured by the HashCodeBenchmark JMH
+ * benchmark rather than here, where one call site sees every function.
+ * Expected values are those of a uniform hash at the same load factor: 1 + a/2
+ * probes for a hit, a probes for a miss and m e^-a empty buckets, where a = n/m.
+ */
+public class HashDiagnostics {
+    /** Suffix making a dictionary word into a word that is not in the dictionary. */
+    private static final String MISS_SUFFIX = "'zq";
+
+    private HashDiagnostics() {
+    }
+
+    /**
+     * Builds the report for one hash function.
+     *
+     * @param name     name of the hash function
+     * @param hash     the hash function
+     * @param words    the word list
+     * @param capacity the number of buckets
+     * @return the report text
+     */
+    public static String report(String name, HashStrategy hash, List<String> words, int capacity) {
+        Set<String> distinct = new LinkedHashSet<>(words);
+        Dictionary dict = new Dictionary(capacity, hash);
+        dict.setResizing(false);                // Report on exactly the given bucket count.
+        for (String word : distinct)
+            dict.put(dict.hashCode(word), word);
+        int n = distinct.size();
+        double load = n / (double) capacity;
+
+        // Distinct words whose key is shared with another word.
+        int[] keys = new int[n];
+        int i = 0;
+        for (String word : distinct)
+            keys[i++] = hash.hash(word);
+        Arrays.sort(keys);
+        int sharedKeys = 0, sharingWords = 0;
+        for (i = 0; i < n; ) {
+            int j = i + 1;
+            while (j < n && keys[j] == keys[i])
+                j++;
+            if (j - i > 1) {
+                sharedKeys++;
+                sharingWords += j - i;
+            }
+            i = j;
+        }
+
+        // Bucket lengths.
+        int[] lengths = dict.bucketLengths();
+        int maxChain = 0;
+        long hitProbes = 0;
+        for (int length : lengths) {
+            maxChain = Math.max(maxChain, length);
+            hitProbes += length * (length + 1L) / 2;    // Probes to reach each word of the chain.
+        }
+        int[] histogram = new int[maxChain + 1];
+        for (int length : lengths)
+            histogram[length]++;
+
+        // Observed probes for words that are not in the dictionary.
+        long before = dict.getProbeCount();
+        for (String word : distinct) {
+            String absent = word + MISS_SUFFIX;
+            dict.get(dict.hashCode(absent), absent);
+        }
+        double missProbes = (dict.getProbeCount() - before) / (double) n;
+
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("Hash function: %s\n", name));
+        out.append(String.format("Words: %d, buckets: %d, load factor: %.3f\n", n, capacity, load));
+        out.append(String.format("Key collisions: %d keys shared by %d words\n", sharedKeys, sharingWords));
+        out.append(String.format("Max chain: %d\n", maxChain));
+        out.append(String.format("Empty buckets: %d (expected %.0f)\n",
+                histogram[0], capacity * Math.exp(-load)));
+        out.append("Bucket length histogram:");
+        for (int length = 0; length <= maxChain; length++)
+            out.append(String.format(" %d:%d", length, histogram[length]));
+        out.append('\n');
+        out.append(String.format("Probes per hit: %.3f (expected %.3f)\n", hitProbes / (double) n, 1 + load / 2));
+        out.append(String.format("Probes per miss: %.3f (expected %.3f)\n", missProbes, load));
+        return out.toString();
+    }
+}
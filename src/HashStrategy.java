@@ -0,0 +1,64 @@
+/**
+ * @author Stephen Hildebrand
+ *
+ * A hash function computing the integer key of a word one character at a time.
+ * The running state is a long, so 64-bit functions can keep their full state until
+ * {@link #finish(long)} folds it into the 32-bit key. Because the state after each
+ * character is the hash of that prefix, a caller can hash a word and all of its
+ * prefixes in one pass. The built-in functions are in {@link StandardHash}.
+ */
+interface HashStrategy {
+
+    /**
+     * Returns the state of the empty word.
+     *
+     * @return the initial state
+     */
+    long begin();
+
+    /**
+     * Adds the next character to the running state.
+     *
+     * @param state the state of the preceding characters
+     * @param c     the next character
+     * @return the state including c
+     */
+    long step(long state, int c);
+
+    /**
+     * Turns a running state into the key of the characters added so far.
+     *
+     * @param state the running state
+     * @return the key
+     */
+    int finish(long state);
+
+    /**
+     * Computes the key of a word.
+     *
+     * @param word the word to hash
+     * @return the key
+     */
+    default int hash(CharSequence word) {
+        long state = begin();
+        for (int i = 0; i < word.length(); i++)
+            state = step(state, word.charAt(i));
+        return finish(state);
+    }
+
+    /**
+     * Computes the key of a word held as ASCII bytes; equal to {@link #hash(CharSequence)}
+     * of the same word.
+     *
+     * @param text the array holding the word
+     * @param off  index of the first byte of the word
+     * @param len  length of the word in bytes
+     * @return the key
+     */
+    default int hash(byte[] text, int off, int len) {
+        long state = begin();
+        for (int i = off; i < off + len; i++)
+            state = step(state, text[i] & 0xff);
+        return finish(state);
+    }
+}
@@ -0,0 +1,284 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Re-checks an edited text by checking only the blocks that changed since the
+ * previous check. The text is cut into blocks of whole lines, and each block is
+ * identified by its length and a 64-bit fingerprint of its bytes. The results of
+ * the blocks of the previous version (word count, probes, lookups and misspelled
+ * words) are kept by fingerprint, so a block found unchanged is answered from them
+ * without tokenizing it, and the totals come out the same as for a full check.
+ *
+ * A block ends after a line holding no word, or after a line whose own hash picks
+ * it as a boundary (one line in {@value #BOUNDARY_LINES} on average). Since the
+ * boundaries depend only on the lines around them, inserting or changing a line
+ * changes the block holding it and leaves the other blocks as they were. Lines
+ * past {@value #MAX_BLOCK} bytes in a block always end it.
+ *
+ * The block results can be saved to a file and loaded by a later run. They are
+ * tied to a configuration fingerprint covering the dictionary, match rules and
+ * table settings, and results saved under another configuration are ignored.
+ * Blocks are checked with {@link SpellCheck#checkSpelling(byte[], int, int)},
+ * without the verdict cache, so that each block's probe count does not depend
+ * on the blocks before it.
+ */
+public class IncrementalCheck {
+    /** Magic number at the start of a saved state, "SPIC". */
+    private static final int MAGIC = 0x53504943;
+    /** Version of the saved state layout. */
+    private static final int VERSION = 1;
+    /** Average number of lines per block, a power of two. */
+    static final int BOUNDARY_LINES = 16;
+    /** Size in bytes after which a block ends at the next line end. */
+    static final int MAX_BLOCK = 64 * 1024;
+    /** FNV-1a offset basis. */
+    private static final long FNV_BASIS = 0xcbf29ce484222325L;
+    /** FNV-1a prime. */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /** Fingerprint of the configuration the results are valid for. */
+    private final long configuration;
+    /** Results of the blocks of the last text checked, by block fingerprint. */
+    private Map<Long, Block> blocks = new HashMap<>();
+
+    /**
+     * The outcome of checking a text.
+     */
+    static class Result {
+        /** Count of words in the text. */
+        long words = 0;
+        /** Misspelled words of the text, in document order. */
+        List<String> misspelled = new ArrayList<>();
+        /** Dictionary probes the check of the text makes. */
+        long probes = 0;
+        /** Dictionary lookups the check of the text makes. */
+        long lookups = 0;
+        /** Number of blocks in the text. */
+        int blocks = 0;
+        /** Number of blocks answered from the previous results. */
+        int reused = 0;
+    }
+
+    /**
+     * The checked contents of one block.
+     */
+    private static class Block {
+        /** Length of the block in bytes. */
+        final int length;
+        /** Fingerprint of the bytes of the block. */
+        final long fingerprint;
+        /** Count of words in the block. */
+        long words;
+        /** Dictionary probes made checking the block. */
+        long probes;
+        /** Dictionary lookups made checking the block. */
+        long lookups;
+        /** Misspelled words of the block, in order. */
+        String[] misspelled;
+
+        Block(int length, long fingerprint) {
+            this.length = length;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /**
+     * Creates a checker with no previous results.
+     *
+     * @param configuration the configuration fingerprint, from {@link #fingerprint}
+     */
+    public IncrementalCheck(long configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Computes the configuration fingerprint of a dictionary and the settings that
+     * affect the verdicts or probe counts, such as the engine, hash function and
+     * match rules.
+     *
+     * @param words    the dictionary words
+     * @param settings the settings
+     * @return the fingerprint
+     */
+    public static long fingerprint(List<String> words, String... settings) {
+        long h = FNV_BASIS;
+        for (String setting : settings)
+            h = StandardHash.mix(h ^ fingerprint(setting.getBytes(StandardCharsets.UTF_8)));
+        for (String word : words)
+            h = StandardHash.mix(h ^ fingerprint(word.getBytes(StandardCharsets.UTF_8)));
+        return StandardHash.mix(h ^ words.size());
+    }
+
+    /**
+     * Loads the results saved by a previous run. A missing or damaged file, or one
+     * saved under another configuration, gives a checker with no previous results.
+     *
+     * @param file          the saved state
+     * @param configuration the configuration fingerprint of this run
+     * @return the checker
+     */
+    public static IncrementalCheck load(File file, long configuration) {
+        IncrementalCheck check = new IncrementalCheck(configuration);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != configuration)
+                return check;
+            int count = in.readInt();
+            Map<Long, Block> loaded = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                Block block = new Block(in.readInt(), in.readLong());
+                block.words = in.readLong();
+                block.probes = in.readLong();
+                block.lookups = in.readLong();
+                block.misspelled = new String[in.readInt()];
+                for (int j = 0; j < block.misspelled.length; j++) {
+                    byte[] token = new byte[in.readInt()];
+                    in.readFully(token);
+                    block.misspelled[j] = new String(token, StandardCharsets.ISO_8859_1);
+                }
+                loaded.put(block.fingerprint, block);
+            }
+            check.blocks = loaded;
+        } catch (FileNotFoundException e) {
+            // First run; nothing to reuse.
+        } catch (IOException | RuntimeException e) {
+            // Truncated or damaged state; check everything again.
+        }
+        return check;
+    }
+
+    /**
+     * Saves the results of the last text checked. The file is replaced in one
+     * step, so a run stopped while saving leaves the previous state intact.
+     *
+     * @param file the file to save to
+     * @throws IOException if the file cannot be written
+     */
+    public void save(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(configuration);
+            out.writeInt(blocks.size());
+            for (Block block : blocks.values()) {
+                out.writeInt(block.length);
+                out.writeLong(block.fingerprint);
+                out.writeLong(block.words);
+                out.writeLong(block.probes);
+                out.writeLong(block.lookups);
+                out.writeInt(block.misspelled.length);
+                for (String token : block.misspelled) {
+                    out.writeInt(token.length());
+                    out.write(token.getBytes(StandardCharsets.ISO_8859_1));
+                }
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Checks a text, reusing the results of its blocks that are unchanged since
+     * the previous check. The results kept afterwards are those of this text.
+     *
+     * @param text the array holding the text from index 0
+     * @param len  the length of the text in bytes
+     * @return the words, misspelled words and dictionary work of the whole text
+     * @throws IOException if the text cannot be tokenized
+     */
+    public Result check(byte[] text, int len) throws IOException {
+        Result result = new Result();
+        Map<Long, Block> current = new HashMap<>();
+        int start = 0;
+        while (start < len) {
+            int end = start;
+            long fingerprint = FNV_BASIS;
+            boolean boundary = false;
+            while (end < len && !boundary) {
+                // Hash one line, noting whether it holds a word.
+                long line = FNV_BASIS;
+                boolean word = false;
+                while (end < len) {
+                    byte b = text[end++];
+                    line = (line ^ (b & 0xff)) * FNV_PRIME;
+                    word |= Tokenizer.isWordByte(b);
+                    if (b == '\n')
+                        break;
+                }
+                line = StandardHash.mix(line);
+                fingerprint = StandardHash.mix(fingerprint ^ line);
+                boundary = !word || (line & (BOUNDARY_LINES - 1)) == 0 || end - start >= MAX_BLOCK;
+            }
+            Block block = blocks.get(fingerprint);
+            if (block != null && block.length == end - start) {
+                result.reused++;
+            } else {
+                block = checkBlock(text, start, end - start, fingerprint);
+            }
+            current.put(fingerprint, block);
+            result.blocks++;
+            result.words += block.words;
+            result.probes += block.probes;
+            result.lookups += block.lookups;
+            for (String token : block.misspelled)
+                result.misspelled.add(token);
+            start = end;
+        }
+        blocks = current;
+        return result;
+    }
+
+    /**
+     * Returns the number of block results kept for the next check.
+     *
+     * @return the number of distinct blocks of the last text checked
+     */
+    public int size() {
+        return blocks.size();
+    }
+
+    // private utilities
+
+    /** Tokenizes and checks one block, measuring the dictionary work it takes. */
+    private static Block checkBlock(byte[] text, int off, int len, long fingerprint) throws IOException {
+        WordTable dict = SpellCheck.getDictionary();
+        Block block = new Block(len, fingerprint);
+        long probes = dict.getProbeCount();
+        long lookups = dict.getLookupCount();
+        List<String> misspelled = new ArrayList<>();
+        Tokenizer tokens = new Tokenizer(text, off, len);
+        while (tokens.next()) {
+            block.words++;
+            if (!SpellCheck.checkSpelling(tokens.array(), tokens.start(), tokens.length()))
+                misspelled.add(tokens.token());
+        }
+        block.probes = dict.getProbeCount() - probes;
+        block.lookups = dict.getLookupCount() - lookups;
+        block.misspelled = misspelled.toArray(new String[0]);
+        return block;
+    }
+
+    /** FNV-1a hash of a byte array, finished with {@link StandardHash#mix}. */
+    private static long fingerprint(byte[] bytes) {
+        long h = FNV_BASIS;
+        for (byte b : bytes)
+            h = (h ^ (b & 0xff)) * FNV_PRIME;
+        return StandardHash.mix(h);
+    }
+}
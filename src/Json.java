@@ -0,0 +1,257 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * The small amount of JSON the spell checker reads and writes, without an outside
+ * library. Values are parsed into plain Java objects: String, Long or Double,
+ * Boolean, null, List for arrays and Map for objects.
+ */
+public class Json {
+    /** The text being parsed. */
+    private final String text;
+    /** Index of the next character to parse. */
+    private int pos = 0;
+
+    /** Creates a parser over the given text. */
+    private Json(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Parses one JSON value.
+     *
+     * @param text the JSON text
+     * @return the value
+     * @throws IllegalArgumentException if the text is not a single JSON value
+     */
+    public static Object parse(String text) {
+        Json json = new Json(text);
+        Object value = json.value();
+        json.skipSpace();
+        if (json.pos < text.length())
+            throw json.error("unexpected text after the value");
+        return value;
+    }
+
+    /**
+     * Appends a string to a builder as a quoted JSON string.
+     *
+     * @param out  the builder
+     * @param text the string
+     * @return the builder
+     */
+    public static StringBuilder quote(StringBuilder out, CharSequence text) {
+        out.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20)
+                        out.append(String.format("\\u%04x", (int) c));
+                    else
+                        out.append(c);
+            }
+        }
+        return out.append('"');
+    }
+
+    /**
+     * Returns a string as a quoted JSON string.
+     *
+     * @param text the string
+     * @return the JSON string
+     */
+    public static String quote(CharSequence text) {
+        return quote(new StringBuilder(text.length() + 2), text).toString();
+    }
+
+    // private utilities
+
+    /** Parses the value at the current position. */
+    private Object value() {
+        skipSpace();
+        if (pos >= text.length())
+            throw error("value expected");
+        char c = text.charAt(pos);
+        switch (c) {
+            case '"':
+                return string();
+            case '[':
+                return array();
+            case '{':
+                return object();
+            case 't':
+                return literal("true", Boolean.TRUE);
+            case 'f':
+                return literal("false", Boolean.FALSE);
+            case 'n':
+                return literal("null", null);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9'))
+                    return number();
+                throw error("unexpected character '" + c + "'");
+        }
+    }
+
+    /** Parses an array. */
+    private List<Object> array() {
+        List<Object> values = new ArrayList<>();
+        pos++;
+        skipSpace();
+        if (peek() == ']') {
+            pos++;
+            return values;
+        }
+        while (true) {
+            values.add(value());
+            skipSpace();
+            char c = next();
+            if (c == ']')
+                return values;
+            if (c != ',')
+                throw error("',' or ']' expected");
+        }
+    }
+
+    /** Parses an object. */
+    private Map<String, Object> object() {
+        Map<String, Object> members = new LinkedHashMap<>();
+        pos++;
+        skipSpace();
+        if (peek() == '}') {
+            pos++;
+            return members;
+        }
+        while (true) {
+            skipSpace();
+            if (peek() != '"')
+                throw error("member name expected");
+            String name = string();
+            skipSpace();
+            if (next() != ':')
+                throw error("':' expected");
+            members.put(name, value());
+            skipSpace();
+            char c = next();
+            if (c == '}')
+                return members;
+            if (c != ',')
+                throw error("',' or '}' expected");
+        }
+    }
+
+    /** Parses a string. */
+    private String string() {
+        StringBuilder out = new StringBuilder();
+        pos++;
+        while (true) {
+            char c = next();
+            if (c == '"')
+                return out.toString();
+            if (c != '\\') {
+                out.append(c);
+                continue;
+            }
+            char e = next();
+            switch (e) {
+                case '"':
+                case '\\':
+                case '/':
+                    out.append(e);
+                    break;
+                case 'b':
+                    out.append('\b');
+                    break;
+                case 'f':
+                    out.append('\f');
+                    break;
+                case 'n':
+                    out.append('\n');
+                    break;
+                case 'r':
+                    out.append('\r');
+                    break;
+                case 't':
+                    out.append('\t');
+                    break;
+                case 'u':
+                    if (pos + 4 > text.length())
+                        throw error("bad \\u escape");
+                    try {
+                        out.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException ex) {
+                        throw error("bad \\u escape");
+                    }
+                    pos += 4;
+                    break;
+                default:
+                    throw error("bad escape '\\" + e + "'");
+            }
+        }
+    }
+
+    /** Parses a number, as a Long if it is integral and a Double otherwise. */
+    private Object number() {
+        int start = pos;
+        while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0)
+            pos++;
+        String digits = text.substring(start, pos);
+        try {
+            if (digits.indexOf('.') < 0 && digits.indexOf('e') < 0 && digits.indexOf('E') < 0)
+                return Long.parseLong(digits);
+            return Double.parseDouble(digits);
+        } catch (NumberFormatException e) {
+            throw error("bad number " + digits);
+        }
+    }
+
+    /** Parses the given literal word. */
+    private Object literal(String word, Object value) {
+        if (!text.startsWith(word, pos))
+            throw error(word + " expected");
+        pos += word.length();
+        return value;
+    }
+
+    /** Skips white space. */
+    private void skipSpace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos)))
+            pos++;
+    }
+
+    /** The current character, or 0 at the end. */
+    private char peek() {
+        return pos < text.length() ? text.charAt(pos) : 0;
+    }
+
+    /** Consumes the current character. */
+    private char next() {
+        if (pos >= text.length())
+            throw error("unexpected end of text");
+        return text.charAt(pos++);
+    }
+
+    /** An exception for a syntax error at the current position. */
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("JSON at " + pos + ": " + message);
+    }
+}
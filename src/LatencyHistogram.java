@@ -0,0 +1,118 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * A histogram of latencies in nanoseconds that many threads can record into at
+ * once without locking. Values are counted in log-linear buckets: each power of
+ * two is split into 16 equal sub-buckets, so any value is known to within 1/16
+ * (6.25%) of itself while the whole range of a long fits in under a thousand
+ * counters. Percentiles are read from the counts, reporting the upper bound of
+ * the bucket the percentile falls in.
+ */
+public class LatencyHistogram {
+    /** Bits of each power of two resolved by the sub-buckets. */
+    private static final int SUB_BITS = 4;
+    /** Number of sub-buckets per power of two. */
+    private static final int SUB = 1 << SUB_BITS;
+    /** Number of buckets covering every non-negative long. */
+    private static final int BUCKETS = SUB + (63 - SUB_BITS) * SUB;
+
+    /** Count of values in each bucket. */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    /** Number of values recorded. */
+    private final LongAdder count = new LongAdder();
+    /** Sum of the values recorded. */
+    private final LongAdder sum = new LongAdder();
+    /** Largest value recorded. */
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records one value.
+     *
+     * @param nanos the latency in nanoseconds; negative values count as 0
+     */
+    public void record(long nanos) {
+        long v = Math.max(nanos, 0);
+        counts.incrementAndGet(bucket(v));
+        count.increment();
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+    /**
+     * Returns the number of values recorded.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the mean of the values recorded.
+     *
+     * @return the mean in nanoseconds, or 0 if none were recorded
+     */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / (double) n;
+    }
+
+    /**
+     * Returns the largest value recorded.
+     *
+     * @return the maximum in nanoseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the value below which the given fraction of the recorded values lie,
+     * rounded up to the end of its bucket.
+     *
+     * @param fraction the fraction, from 0 to 1 (0.99 for the 99th percentile)
+     * @return the percentile in nanoseconds, or 0 if no values were recorded
+     */
+    public long getPercentile(double fraction) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++)
+            total += snapshot[i] = counts.get(i);
+        if (total == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank)
+                return Math.min(upperBound(i), getMax());
+        }
+        return getMax();
+    }
+
+    // private utilities
+
+    /** Bucket holding a non-negative value. */
+    static int bucket(long v) {
+        if (v < SUB)
+            return (int) v;
+        int exponent = 63 - Long.numberOfLeadingZeros(v);        // At least SUB_BITS.
+        int sub = (int) (v >>> (exponent - SUB_BITS)) & (SUB - 1);
+        return SUB + (exponent - SUB_BITS) * SUB + sub;
+    }
+
+    /** Largest value held by a bucket. */
+    static long upperBound(int bucket) {
+        if (bucket < SUB)
+            return bucket;
+        int exponent = (bucket - SUB) / SUB + SUB_BITS;
+        long sub = (bucket - SUB) % SUB;
+        long low = (SUB + sub) << (exponent - SUB_BITS);
+        long width = 1L << (exponent - SUB_BITS);
+        return low + width - 1;
+    }
+}
@@ -0,0 +1,353 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * A dictionary merged from several word lists, or layers, such as a base
+ * dictionary, domain vocabularies and a user's own words. Rather than one table
+ * per layer, which would multiply the lookups of every word and stem, the words
+ * of all layers share one {@link OpenDictionary}. Each entry is tagged with a bit
+ * set of the layers holding the word, so a lookup costs the same probes however
+ * many layers there are, and the words of a layer are the entries with its bit.
+ *
+ * Layers added later take precedence: a word held by several layers is reported
+ * as coming from the last of them by {@link #sourceOf(String)}. A layer can be
+ * replaced on its own. Only the words it gains or loses are put into or removed
+ * from the table, and the other layers are not read again.
+ *
+ * As in {@link SnapshotDictionary}, the published table is never written to.
+ * Writers are serialized on this object; each changes a copy of the table off to
+ * the side and publishes it with one volatile write, so lookups may run while a
+ * layer is replaced and see either the old words or the new.
+ */
+public class LayeredDictionary implements WordTable {
+    /** Largest number of layers, one bit of an int each. */
+    static final int MAX_LAYERS = 32;
+
+    /** Hash function computing the keys of words. */
+    private final HashStrategy hash;
+    /** The published layers. */
+    private volatile Layers current;
+    /** Probes made on replaced tables. */
+    private final LongAdder retiredProbes = new LongAdder();
+    /** Lookups made on replaced tables. */
+    private final LongAdder retiredLookups = new LongAdder();
+
+    /**
+     * The names of the layers and the immutable table of their words.
+     */
+    private static final class Layers {
+        /** Names of the layers, in order of precedence, lowest first; unmodifiable. */
+        final List<String> names;
+        /** The words, tagged with the layers holding them; never written to. */
+        final OpenDictionary table;
+
+        /**
+         * Creates the layers.
+         *
+         * @param names the names of the layers
+         * @param table the table of their words
+         */
+        Layers(List<String> names, OpenDictionary table) {
+            this.names = names;
+            this.table = table;
+        }
+    }
+
+    /**
+     * Creates a table with no layers, using the 5-bit cyclic-shift hash.
+     */
+    public LayeredDictionary() {
+        this(StandardHash.CYCLIC_SHIFT);
+    }
+
+    /**
+     * Creates a table with no layers.
+     *
+     * @param hash the hash function computing the keys of words
+     */
+    public LayeredDictionary(HashStrategy hash) {
+        this.hash = hash;
+        current = new Layers(List.of(), new OpenDictionary(0, hash, true));
+    }
+
+    /**
+     * Adds a layer of words, taking precedence over the layers added before it.
+     *
+     * @param name  the name of the layer, such as its file name
+     * @param words the words of the layer
+     * @return the index of the layer, its rank in precedence from 0
+     * @throws IllegalArgumentException if a layer has the name already, or there
+     *                                  are {@value #MAX_LAYERS} layers
+     */
+    public synchronized int addLayer(String name, Iterable<String> words) {
+        Layers old = current;
+        if (old.names.contains(name))
+            throw new IllegalArgumentException("Layer " + name + " exists already");
+        if (old.names.size() == MAX_LAYERS)
+            throw new IllegalArgumentException("At most " + MAX_LAYERS + " layers");
+        int layer = old.names.size();
+        OpenDictionary next = new OpenDictionary(old.table);
+        for (String word : words)
+            addWord(next, layer, word);
+        List<String> names = new ArrayList<>(old.names);
+        names.add(name);
+        publish(new Layers(List.copyOf(names), next));
+        return layer;
+    }
+
+    /**
+     * Replaces the words of a layer, keeping its precedence. The words the layer
+     * keeps are not touched, and the other layers are not read.
+     *
+     * @param name  the name of the layer
+     * @param words the new words of the layer
+     * @throws IllegalArgumentException if there is no layer of that name
+     */
+    public synchronized void replaceLayer(String name, Iterable<String> words) {
+        Layers old = current;
+        int layer = layerIndex(old, name);
+        Set<String> replacement = new HashSet<>();
+        for (String word : words)
+            replacement.add(word);
+        OpenDictionary next = new OpenDictionary(old.table);
+        for (String word : layerWords(old.table, layer))
+            if (!replacement.contains(word)) {
+                int i = next.find(hash.hash(word), word);
+                next.retag(i, next.tagAt(i) & ~(1 << layer));
+            }
+        for (String word : replacement)
+            addWord(next, layer, word);
+        publish(new Layers(old.names, next));
+    }
+
+    /**
+     * Returns the names of the layers, lowest precedence first.
+     *
+     * @return the layer names
+     */
+    public List<String> layerNames() {
+        return current.names;
+    }
+
+    /**
+     * Returns the number of distinct words in a layer.
+     *
+     * @param name the name of the layer
+     * @return the number of words
+     * @throws IllegalArgumentException if there is no layer of that name
+     */
+    public int layerSize(String name) {
+        Layers layers = current;
+        return layerWords(layers.table, layerIndex(layers, name)).size();
+    }
+
+    /**
+     * Returns the layer a word comes from: the one taking precedence among the
+     * layers holding it. The search is not counted as a lookup.
+     *
+     * @param word the word
+     * @return the name of the layer, or null if no layer holds the word
+     */
+    public String sourceOf(String word) {
+        Layers layers = current;
+        int i = layers.table.find(hash.hash(word), word);
+        return i < 0 ? null : layers.names.get(31 - Integer.numberOfLeadingZeros(layers.table.tagAt(i)));
+    }
+
+    /**
+     * Returns every distinct word of the table, in the order of its slots.
+     *
+     * @return the words
+     */
+    public List<String> words() {
+        OpenDictionary table = current.table;
+        List<String> all = new ArrayList<>(table.size());
+        for (int i = 0; i < table.slotCount(); i++)
+            if (table.wordAt(i) != null)
+                all.add(table.wordAt(i));
+        return all;
+    }
+
+    /**
+     * Computes the hash key for a string word with this table's hash function.
+     *
+     * @param word the word to look up
+     * @return the calculated key
+     */
+    public int hashCode(String word) {
+        return hash.hash(word);
+    }
+
+    /**
+     * Computes the hash key of a word held as ASCII bytes.
+     *
+     * @param text the array holding the word
+     * @param off  index of the first byte of the word
+     * @param len  length of the word in bytes
+     * @return the calculated key
+     */
+    public int hashCode(byte[] text, int off, int len) {
+        return hash.hash(text, off, len);
+    }
+
+    /**
+     * Returns the hash function computing the keys of this table.
+     *
+     * @return the hash function
+     */
+    public HashStrategy getHash() {
+        return hash;
+    }
+
+    /**
+     * Returns the first word stored with the specified key, or null if no such entry exists.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the associated value, or null if no such entry exists
+     */
+    public String get(int key) {
+        return current.table.get(key);
+    }
+
+    /**
+     * Returns the stored word equal to the given word, or null if no layer holds it.
+     *
+     * @param key  the key of the word
+     * @param word the word to look up
+     * @return the stored word, or null if the word is not in the dictionary
+     */
+    public String get(int key, String word) {
+        return current.table.get(key, word);
+    }
+
+    /**
+     * Whether the word held as ASCII bytes is in any layer, comparing the bytes
+     * in place.
+     *
+     * @param key  the key of the word
+     * @param text the array holding the word
+     * @param off  index of the first byte of the word
+     * @param len  length of the word in bytes
+     * @return true if the word is in the dictionary
+     */
+    public boolean contains(int key, byte[] text, int off, int len) {
+        return current.table.contains(key, text, off, len);
+    }
+
+    /**
+     * Adds a word to the layer taking precedence, such as a word the user adds
+     * while checking. Each call copies the whole table.
+     *
+     * @param key   the key of the word; the table computes it again from the word
+     * @param value the word
+     * @return the word if some layer held it already, or null
+     * @throws IllegalStateException if there are no layers
+     */
+    public synchronized String put(int key, String value) {
+        Layers old = current;
+        if (old.names.isEmpty())
+            throw new IllegalStateException("No layer to put " + value + " in");
+        String existing = old.table.find(hash.hash(value), value) < 0 ? null : value;
+        OpenDictionary next = new OpenDictionary(old.table);
+        addWord(next, old.names.size() - 1, value);
+        publish(new Layers(old.names, next));
+        return existing;
+    }
+
+    /**
+     * Removes the first word stored with the specified key from every layer.
+     * Each call copies the whole table.
+     *
+     * @param key the key whose entry is to be removed
+     * @return the removed word, or null if no such entry exists
+     */
+    public synchronized String remove(int key) {
+        Layers old = current;
+        OpenDictionary next = new OpenDictionary(old.table);
+        String answer = next.remove(key);
+        if (answer != null)
+            publish(new Layers(old.names, next));
+        return answer;
+    }
+
+    /**
+     * Returns the number of distinct words in all layers.
+     *
+     * @return the number of dictionary entries
+     */
+    public int size() {
+        return current.table.size();
+    }
+
+    /**
+     * Returns the total number of times a text word is compared to a word
+     * in the current or a replaced table.
+     *
+     * @return the number of times a text word is compared to a table word
+     */
+    public long getProbeCount() {
+        return retiredProbes.sum() + current.table.getProbeCount();
+    }
+
+    /**
+     * Returns the total number of times a lookup operation is performed on the
+     * current or a replaced table.
+     *
+     * @return the number of lookup operations
+     */
+    public long getLookupCount() {
+        return retiredLookups.sum() + current.table.getLookupCount();
+    }
+
+    /**
+     * Returns the length of every run of consecutive occupied slots, the chains a
+     * linear-probing lookup walks.
+     *
+     * @return the number of entries in each run
+     */
+    public int[] chainLengths() {
+        return current.table.chainLengths();
+    }
+
+    // private utilities
+
+    /** Index of the named layer. */
+    private static int layerIndex(Layers layers, String name) {
+        int layer = layers.names.indexOf(name);
+        if (layer < 0)
+            throw new IllegalArgumentException("No layer " + name);
+        return layer;
+    }
+
+    /** The words of a layer: the entries tagged with its bit. */
+    private static List<String> layerWords(OpenDictionary table, int layer) {
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < table.slotCount(); i++)
+            if (table.wordAt(i) != null && (table.tagAt(i) & (1 << layer)) != 0)
+                words.add(table.wordAt(i));
+        return words;
+    }
+
+    /** Adds a word to a layer of a table being built, creating its entry if no other layer holds it. */
+    private void addWord(OpenDictionary table, int layer, String word) {
+        int key = hash.hash(word);
+        int i = table.find(key, word);
+        if (i >= 0)
+            table.retag(i, table.tagAt(i) | 1 << layer);
+        else
+            table.add(key, word, 1 << layer);
+    }
+
+    /** Publishes the layers in place of the current ones, carrying over the counts of the old table. */
+    private void publish(Layers next) {
+        Layers old = current;
+        current = next;
+        retiredProbes.add(old.table.getProbeCount());
+        retiredLookups.add(old.table.getLookupCount());
+    }
+}
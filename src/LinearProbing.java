@@ -0,0 +1,117 @@
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * The parts of linear probing shared by the open-addressing tables, such as
+ * {@link OpenDictionary}, {@link MappedDictionary} and {@link VerdictCache}: the
+ * Fibonacci-hashed home slot of a key, removal by shifting the following entries
+ * back, and the lengths of the runs of occupied slots. The tables keep their
+ * entries in their own layouts and reach them through {@link Slots}.
+ */
+final class LinearProbing {
+    /** Multiplier for Fibonacci hashing of the keys into slots. */
+    static final int GOLDEN = 0x9E3779B9;
+
+    private LinearProbing() {
+    }
+
+    /**
+     * The slots of a table, as removal sees them.
+     */
+    interface Slots {
+        /**
+         * Whether slot i holds an entry.
+         *
+         * @param i the slot
+         * @return true if it is occupied
+         */
+        boolean occupied(int i);
+
+        /**
+         * Returns the key of the entry in slot i.
+         *
+         * @param i the occupied slot
+         * @return its key
+         */
+        int key(int i);
+
+        /**
+         * Moves the entry in one slot to another, which is empty or being emptied.
+         *
+         * @param from the slot of the entry
+         * @param to   the slot to move it to
+         */
+        void move(int from, int to);
+
+        /**
+         * Empties slot i.
+         *
+         * @param i the slot
+         */
+        void clear(int i);
+    }
+
+    /**
+     * Returns the home slot of a key, taken from the high bits of its Fibonacci
+     * product.
+     *
+     * @param key  the key
+     * @param bits the number of bits selecting a slot
+     * @return the home slot
+     */
+    static int slot(int key, int bits) {
+        return (key * GOLDEN) >>> (32 - bits);
+    }
+
+    /**
+     * Empties slot i, then shifts back any following entries whose probe
+     * sequence passed through it, so later lookups never stop early.
+     *
+     * @param slots the slots of the table
+     * @param bits  the number of bits selecting a slot
+     * @param i     the slot to empty
+     */
+    static void deleteSlot(Slots slots, int bits, int i) {
+        int mask = (1 << bits) - 1;
+        int hole = i;
+        for (int j = (i + 1) & mask; slots.occupied(j); j = (j + 1) & mask) {
+            int home = slot(slots.key(j), bits);
+            // Move entry j into the hole unless its home lies cyclically in (hole, j].
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                slots.move(j, hole);
+                hole = j;
+            }
+        }
+        slots.clear(hole);
+    }
+
+    /**
+     * Returns the length of every run of consecutive occupied slots, the chains a
+     * linear-probing lookup walks.
+     *
+     * @param occupied whether each slot holds an entry
+     * @param bits     the number of bits selecting a slot
+     * @param n        the number of entries
+     * @return the number of entries in each run
+     */
+    static int[] chainLengths(IntPredicate occupied, int bits, int n) {
+        int slots = 1 << bits;
+        int start = 0;
+        while (occupied.test(start))
+            start++;                            // Begin at an empty slot, so no run wraps.
+        int[] runs = new int[n];
+        int count = 0, run = 0;
+        for (int j = 1; j <= slots; j++) {
+            int i = (start + j) & (slots - 1);
+            if (occupied.test(i)) {
+                run++;
+            } else if (run > 0) {
+                runs[count++] = run;
+                run = 0;
+            }
+        }
+        return Arrays.copyOf(runs, count);
+    }
+}
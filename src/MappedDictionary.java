@@ -0,0 +1,382 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * A read-only Dictionary answered directly from a precompiled binary image that is
+ * memory-mapped with {@link FileChannel#map}. Loading the image neither parses the
+ * word list nor allocates an object per entry, so startup costs little more than
+ * opening the file.
+ *
+ * The image is an open-addressing table laid out like {@link OpenDictionary}:
+ * <pre>
+ *   header  magic, version, hash, slot bits, word count, arena size (6 ints)
+ *   slots   2^bits pairs of (key, arena offset + 1), 0 when empty (8 bytes each)
+ *   arena   each word as a 2-byte length followed by its bytes
+ *   binding the match rules' binding to the words, from SuffixRules.bindingOf (8 bytes each)
+ * </pre>
+ * Collisions are resolved by linear probing from the same Fibonacci-hashed home
+ * slot, so probe counts are comparable with the other engines. The binding lets
+ * the match rules be bound to the dictionary without reading its words back.
+ */
+public class MappedDictionary implements DictionaryImage {
+    /** Magic number identifying a dictionary image ("SPDI"). */
+    static final int MAGIC = 0x53504449;
+    /** Version of the image layout; images of another version are rebuilt. */
+    static final int VERSION = 3;
+    /** Size in bytes of the image header. */
+    private static final int HEADER = 6 * 4;
+    /** Size in bytes of the binding after the arena. */
+    static final int BINDING = SuffixRules.BINDING_LONGS * 8;
+    /** Largest fraction of slots that may be occupied. */
+    private static final double MAX_LOAD = 0.6;
+
+    /** Hash function the image was built with. */
+    private final HashStrategy hash;
+    /** The mapped image. */
+    private final ByteBuffer image;
+    /** Number of bits used to select a slot. */
+    private final int bits;
+    /** Number of words in the image. */
+    private final int n;
+    /** Byte offset of the string arena within the image. */
+    private final int arenaBase;
+    /** Byte offset of the end of the arena, where the binding begins. */
+    private final int arenaEnd;
+    /** Total number of probes made during checking. */
+    private final LongAdder probeCount = new LongAdder();
+    /** Count of lookup operations. */
+    private final LongAdder lookupCount = new LongAdder();
+
+    /**
+     * Maps the given dictionary image.
+     *
+     * @param file the image file written by {@link #compile(Iterable, File)}
+     * @throws IOException if the file cannot be read or is not a current image
+     */
+    public MappedDictionary(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.limit() < HEADER || mapped.getInt(0) != MAGIC)
+                throw new IOException(file + " is not a dictionary image");
+            if (mapped.getInt(4) != VERSION)
+                throw new IOException(file + " has image version " + mapped.getInt(4));
+            image = mapped;
+        }
+        int hashId = image.getInt(8);
+        if (hashId < 0 || hashId >= StandardHash.values().length)
+            throw new IOException(file + " uses unknown hash function " + hashId);
+        hash = StandardHash.values()[hashId];
+        bits = image.getInt(12);
+        n = image.getInt(16);
+        arenaBase = HEADER + (8 << bits);
+        arenaEnd = arenaBase + image.getInt(20);
+        if (bits < 1 || bits > 30 || (long) arenaBase + image.getInt(20) + BINDING != image.limit())
+            throw new IOException(file + " is truncated");
+    }
+
+    /**
+     * Builds the hash table for the given words with the 5-bit cyclic-shift hash and
+     * writes it to a binary image.
+     *
+     * @param words the dictionary words
+     * @param file  the image file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void compile(Iterable<String> words, File file) throws IOException {
+        compile(words, StandardHash.CYCLIC_SHIFT, file);
+    }
+
+    /**
+     * Builds the hash table for the given words and writes it to a binary image.
+     * The image replaces any old one in one step, so a program that has the old
+     * one mapped keeps reading it unchanged.
+     *
+     * @param words the dictionary words
+     * @param hash  the hash function computing the keys of words
+     * @param file  the image file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void compile(Iterable<String> words, StandardHash hash, File file) throws IOException {
+        int count = 0, arenaSize = 0;
+        for (String word : words) {
+            for (int c = 0; c < word.length(); c++)
+                if (word.charAt(c) > 0xff)
+                    throw new IOException("Cannot store non-Latin-1 word " + word);
+            count++;
+            arenaSize += 2 + word.length();
+        }
+        int bits = 1;
+        while ((1 << bits) * MAX_LOAD < count)
+            bits++;
+        int mask = (1 << bits) - 1;
+        ByteBuffer out = ByteBuffer.allocate(HEADER + (8 << bits) + arenaSize + BINDING);
+        out.putInt(MAGIC).putInt(VERSION).putInt(hash.ordinal()).putInt(bits).putInt(count).putInt(arenaSize);
+        int arenaBase = HEADER + (8 << bits);
+        int offset = 0;
+        for (String word : words) {
+            int key = hash.hash(word);
+            int i = LinearProbing.slot(key, bits);
+            while (out.getInt(HEADER + i * 8 + 4) != 0)
+                i = (i + 1) & mask;
+            out.putInt(HEADER + i * 8, key);
+            out.putInt(HEADER + i * 8 + 4, offset + 1);
+            out.putShort(arenaBase + offset, (short) word.length());
+            for (int c = 0; c < word.length(); c++)
+                out.put(arenaBase + offset + 2 + c, (byte) word.charAt(c));
+            offset += 2 + word.length();
+        }
+        out.position(arenaBase + arenaSize);
+        for (long set : SuffixRules.bindingOf(words))
+            out.putLong(set);
+        // Written aside and moved into place in one step: other programs may have the
+        // old image mapped, and a run stopped while writing must not leave half of one.
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try {
+            try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+                out.clear();
+                while (out.hasRemaining())
+                    channel.write(out);
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * Computes the hash key for a string word with the hash function the image
+     * was built with.
+     *
+     * @param word the word to look up
+     * @return the calculated key
+     */
+    public int hashCode(String word) {
+        return hash.hash(word);
+    }
+
+    /**
+     * Computes the hash key of a word held as ASCII bytes.
+     *
+     * @param text the array holding the word
+     * @param off  index of the first byte of the word
+     * @param len  length of the word in bytes
+     * @return the calculated key
+     */
+    public int hashCode(byte[] text, int off, int len) {
+        return hash.hash(text, off, len);
+    }
+
+    /**
+     * Returns the first word stored with the specified key, or null if no such entry
+     * exists. The returned string is decoded from the image.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the associated value, or null if no such entry exists
+     */
+    public String get(int key) {
+        lookupCount.increment();
+        int mask = (1 << bits) - 1;
+        int ref;
+        for (int i = slot(key); (ref = image.getInt(HEADER + i * 8 + 4)) != 0; i = (i + 1) & mask) {
+            probeCount.increment();
+            if (image.getInt(HEADER + i * 8) == key) {
+                int at = arenaBase + ref - 1;
+                char[] chars = new char[image.getShort(at)];
+                for (int c = 0; c < chars.length; c++)
+                    chars[c] = (char) (image.get(at + 2 + c) & 0xff);
+                return new String(chars);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the given word if it is stored in the image, or null if not. The
+     * word is compared byte by byte against the mapped arena, so no string is
+     * created for the stored entry.
+     *
+     * @param key  the key of the word
+     * @param word the word to look up
+     * @return the word, or null if the word is not in the dictionary
+     */
+    public String get(int key, String word) {
+        lookupCount.increment();
+        int mask = (1 << bits) - 1;
+        int ref;
+        for (int i = slot(key); (ref = image.getInt(HEADER + i * 8 + 4)) != 0; i = (i + 1) & mask) {
+            probeCount.increment();
+            if (image.getInt(HEADER + i * 8) == key && matches(arenaBase + ref - 1, word))
+                return word;
+        }
+        return null;
+    }
+
+    /**
+     * Whether the word held as ASCII bytes is in the image, comparing the bytes
+     * with the mapped arena in place.
+     *
+     * @param key  the key of the word
+     * @param text the array holding the word
+     * @param off  index of the first byte of the word
+     * @param len  length of the word in bytes
+     * @return true if the word is in the dictionary
+     */
+    public boolean contains(int key, byte[] text, int off, int len) {
+        lookupCount.increment();
+        int mask = (1 << bits) - 1;
+        int ref;
+        for (int i = slot(key); (ref = image.getInt(HEADER + i * 8 + 4)) != 0; i = (i + 1) & mask) {
+            probeCount.increment();
+            if (image.getInt(HEADER + i * 8) == key && matches(arenaBase + ref - 1, text, off, len))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Not supported; the image is read-only.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    public String put(int key, String value) {
+        throw new UnsupportedOperationException("Dictionary image is read-only");
+    }
+
+    /**
+     * Not supported; the image is read-only.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    public String remove(int key) {
+        throw new UnsupportedOperationException("Dictionary image is read-only");
+    }
+
+    /**
+     * Returns the hash function the image was built with.
+     *
+     * @return the hash function
+     */
+    public HashStrategy getHash() {
+        return hash;
+    }
+
+    /**
+     * Returns the number of words in the image.
+     *
+     * @return the number of dictionary entries
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Returns every word of the image, in the order they were compiled, read
+     * straight from the arena.
+     *
+     * @return the dictionary words
+     */
+    public List<String> words() {
+        List<String> words = new ArrayList<>(n);
+        byte[] bytes = new byte[256];
+        for (int at = arenaBase; at < arenaEnd; at += 2 + image.getShort(at)) {
+            int len = image.getShort(at);
+            if (bytes.length < len)
+                bytes = new byte[len];
+            for (int c = 0; c < len; c++)
+                bytes[c] = image.get(at + 2 + c);
+            words.add(new String(bytes, 0, len, StandardCharsets.ISO_8859_1));
+        }
+        return words;
+    }
+
+    /**
+     * Returns the binding of the match rules to the words, stored when the image
+     * was compiled, for {@link SuffixRules#forBinding(long[])}.
+     *
+     * @return the binding
+     */
+    public long[] binding() {
+        long[] binding = new long[SuffixRules.BINDING_LONGS];
+        for (int i = 0; i < binding.length; i++)
+            binding[i] = image.getLong(arenaEnd + i * 8);
+        return binding;
+    }
+
+    /**
+     * Does nothing: the mapping is released when the image is collected.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Returns the total number of times a text word is compared to a word
+     * in the table.
+     *
+     * @return the number of times a text word is compared to a table word
+     */
+    public long getProbeCount() {
+        return probeCount.sum();
+    }
+
+    /**
+     * Returns the total number of times a lookup operation is performed.
+     *
+     * @return the number of lookup operations
+     */
+    public long getLookupCount() {
+        return lookupCount.sum();
+    }
+
+    /**
+     * Returns the length of every run of consecutive occupied slots, the chains a
+     * linear-probing lookup walks.
+     *
+     * @return the number of entries in each run
+     */
+    public int[] chainLengths() {
+        return LinearProbing.chainLengths(i -> image.getInt(HEADER + i * 8 + 4) != 0, bits, n);
+    }
+
+    // private utilities
+
+    /** Home slot of a key. */
+    private int slot(int key) {
+        return LinearProbing.slot(key, bits);
+    }
+
+    /** Whether the arena entry at the given position holds the bytes text[off, off + len). */
+    private boolean matches(int at, byte[] text, int off, int len) {
+        if (image.getShort(at) != len)
+            return false;
+        for (int c = 0; c < len; c++)
+            if (image.get(at + 2 + c) != text[off + c])
+                return false;
+        return true;
+    }
+
+    /** Whether the arena entry at the given position spells the given word. */
+    private boolean matches(int at, String word) {
+        if (image.getShort(at) != word.length())
+            return false;
+        for (int c = 0; c < word.length(); c++)
+            if ((image.get(at + 2 + c) & 0xff) != word.charAt(c))
+                return false;
+        return true;
+    }
+}
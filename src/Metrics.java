@@ -0,0 +1,291 @@
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Hot-path metrics of the spell checker, recorded while metrics are on (-metrics)
+ * and exported as JSON or through JMX as {@value #OBJECT_NAME}. They cover:
+ * <ul>
+ *   <li>how each word was found: as written, with its first letter downshifted,
+ *       by which match rule, or not at all,</li>
+ *   <li>the distribution of dictionary lookups per word,</li>
+ *   <li>the chain-length distribution of the dictionary table,</li>
+ *   <li>the latency of checking a word, as a {@link LatencyHistogram},</li>
+ *   <li>the time spent loading, tokenizing, checking and writing the output.</li>
+ * </ul>
+ * Reading the clock costs about as much as looking a word up, so only one word in
+ * {@value #SAMPLE} is timed, chosen at random; the counts cover every word. The
+ * checking phase is estimated from the timed words as their mean latency times
+ * the number of words, and tokenizing is what remains of the scan of the text.
+ *
+ * When metrics are off no Metrics object exists and the checker pays a single
+ * test of a static field per word.
+ */
+public class Metrics implements MetricsMBean {
+    /** Name of the MBean in the platform MBean server. */
+    static final String OBJECT_NAME = "SpellCheck:type=Metrics";
+    /** Match result of a word found as written, before any rule is tried. */
+    static final int AS_WRITTEN = -2;
+    /** One word in this many is timed; a power of two. */
+    static final int SAMPLE = 16;
+    /** Lookup counts from which words share the last bucket of the distribution. */
+    static final int MAX_LOOKUPS = 16;
+
+    /**
+     * The phases of a run, in the order of {@link #getPhaseNanos()}.
+     */
+    enum Phase {
+        /** Reading the dictionary and building the tables. */
+        LOAD,
+        /** Cutting the text into words. */
+        TOKENIZE,
+        /** Checking the words. */
+        CHECK,
+        /** Writing the misspelled words and the statistics. */
+        OUTPUT
+    }
+
+    /** The dictionary, for the chain lengths. */
+    private final WordTable dict;
+    /** Names of the ways a word can be found: as written, then by match result + 1. */
+    private final String[] matchNames;
+    /** Number of words found each way, indexed as the names. */
+    private final LongAdder[] matches;
+    /** Number of misspelled words. */
+    private final LongAdder misspelled = new LongAdder();
+    /** Number of words by dictionary lookups made, the last for MAX_LOOKUPS or more. */
+    private final LongAdder[] lookups = new LongAdder[MAX_LOOKUPS + 1];
+    /** Latency of the timed words. */
+    private final LatencyHistogram latency = new LatencyHistogram();
+    /** Nanoseconds spent in each phase. */
+    private final LongAdder[] phases = new LongAdder[Phase.values().length];
+
+    /**
+     * Creates empty metrics for checking words against a dictionary with the given
+     * rules.
+     *
+     * @param dict  the dictionary
+     * @param rules the match rules
+     */
+    public Metrics(WordTable dict, SuffixRules rules) {
+        this.dict = dict;
+        List<String> names = rules.matchNames();
+        matchNames = new String[names.size() + 1];
+        matchNames[0] = "as written";
+        for (int i = 0; i < names.size(); i++)
+            matchNames[i + 1] = names.get(i);
+        matches = new LongAdder[matchNames.length];
+        for (int i = 0; i < matches.length; i++)
+            matches[i] = new LongAdder();
+        for (int i = 0; i < lookups.length; i++)
+            lookups[i] = new LongAdder();
+        for (int i = 0; i < phases.length; i++)
+            phases[i] = new LongAdder();
+    }
+
+    /**
+     * Whether the next word should be timed.
+     *
+     * @return true for one word in {@value #SAMPLE}
+     */
+    boolean sample() {
+        return (ThreadLocalRandom.current().nextInt() & (SAMPLE - 1)) == 0;
+    }
+
+    /**
+     * Records how a word was found and the dictionary lookups it took.
+     *
+     * @param match   {@link #AS_WRITTEN}, or the result of
+     *                {@link SuffixRules#match(WordTable, byte[], int, int)}
+     * @param lookups the number of dictionary lookups made
+     */
+    void record(int match, int lookups) {
+        if (match == SuffixRules.NO_MATCH)
+            misspelled.increment();
+        else
+            matches[match == AS_WRITTEN ? 0 : match + 1].increment();
+        this.lookups[Math.min(lookups, MAX_LOOKUPS)].increment();
+    }
+
+    /**
+     * Records the latency of a timed word.
+     *
+     * @param nanos the time taken to check the word
+     */
+    void recordLatency(long nanos) {
+        latency.record(nanos);
+    }
+
+    /**
+     * Adds time to a phase.
+     *
+     * @param phase the phase
+     * @param nanos the time spent
+     */
+    void addPhase(Phase phase, long nanos) {
+        phases[phase.ordinal()].add(nanos);
+    }
+
+    /**
+     * Splits the time spent scanning a text on one thread into tokenizing and
+     * checking, estimating the checking from the timed words. The output written
+     * during the scan must already be recorded.
+     *
+     * @param scanNanos the time spent scanning the text, output included
+     */
+    void splitScan(long scanNanos) {
+        long check = Math.min(Math.round(latency.getMean() * getWordCount()),
+                scanNanos - phases[Phase.OUTPUT.ordinal()].sum());
+        addPhase(Phase.CHECK, check);
+        addPhase(Phase.TOKENIZE, scanNanos - phases[Phase.OUTPUT.ordinal()].sum() - check);
+    }
+
+    /**
+     * Returns the latency histogram of the timed words.
+     *
+     * @return the latency histogram
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server, replacing metrics
+     * registered before.
+     *
+     * @throws JMException if the MBean cannot be registered
+     */
+    public void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name))
+            server.unregisterMBean(name);
+        server.registerMBean(this, name);
+    }
+
+    /** Returns the number of words checked. */
+    public long getWordCount() {
+        long words = misspelled.sum();
+        for (LongAdder count : matches)
+            words += count.sum();
+        return words;
+    }
+
+    /** Returns the number of misspelled words. */
+    public long getMisspelledCount() {
+        return misspelled.sum();
+    }
+
+    /** Returns the names of the ways a word can be found. */
+    public String[] getMatchNames() {
+        return matchNames.clone();
+    }
+
+    /** Returns the number of words found each way. */
+    public long[] getMatchCounts() {
+        return sums(matches);
+    }
+
+    /** Returns the number of words by lookup count. */
+    public long[] getLookupsPerWord() {
+        return sums(lookups);
+    }
+
+    /** Returns the number of chains of the dictionary by length. */
+    public long[] getChainLengths() {
+        int[] chains = dict.chainLengths();
+        int longest = 0;
+        for (int length : chains)
+            longest = Math.max(longest, length);
+        long[] histogram = new long[longest + 1];
+        for (int length : chains)
+            histogram[length]++;
+        return histogram;
+    }
+
+    /** Returns the median latency of checking a word. */
+    public long getLatencyP50() {
+        return latency.getPercentile(0.5);
+    }
+
+    /** Returns the 99th percentile latency of checking a word. */
+    public long getLatencyP99() {
+        return latency.getPercentile(0.99);
+    }
+
+    /** Returns the 99.9th percentile latency of checking a word. */
+    public long getLatencyP999() {
+        return latency.getPercentile(0.999);
+    }
+
+    /** Returns the number of timed words. */
+    public long getLatencySampleCount() {
+        return latency.getCount();
+    }
+
+    /** Returns the nanoseconds of each phase. */
+    public long[] getPhaseNanos() {
+        return sums(phases);
+    }
+
+    /** Returns every metric as one JSON object. */
+    public String getJson() {
+        StringBuilder out = new StringBuilder(1024);
+        out.append("{\"words\":").append(getWordCount());
+        out.append(",\"misspelled\":").append(getMisspelledCount());
+        out.append(",\"matches\":{");
+        long[] counts = getMatchCounts();
+        for (int i = 0; i < counts.length; i++)
+            Json.quote(i == 0 ? out : out.append(','), matchNames[i]).append(':').append(counts[i]);
+        out.append("},\"lookupsPerWord\":");
+        histogram(out, getLookupsPerWord(), MAX_LOOKUPS);
+        out.append(",\"chainLengths\":");
+        histogram(out, getChainLengths(), Integer.MAX_VALUE);
+        out.append(",\"latencyNanos\":{\"timed\":").append(latency.getCount())
+                .append(",\"mean\":").append(Math.round(latency.getMean()))
+                .append(",\"p50\":").append(getLatencyP50())
+                .append(",\"p99\":").append(getLatencyP99())
+                .append(",\"p999\":").append(getLatencyP999())
+                .append(",\"max\":").append(latency.getMax());
+        out.append("},\"phaseNanos\":{");
+        long[] nanos = getPhaseNanos();
+        for (Phase phase : Phase.values())
+            Json.quote(phase.ordinal() == 0 ? out : out.append(','), phase.name().toLowerCase())
+                    .append(':').append(nanos[phase.ordinal()]);
+        return out.append("}}").toString();
+    }
+
+    // private utilities
+
+    /** The sums of some counters. */
+    private static long[] sums(LongAdder[] counters) {
+        long[] sums = new long[counters.length];
+        for (int i = 0; i < counters.length; i++)
+            sums[i] = counters[i].sum();
+        return sums;
+    }
+
+    /**
+     * Appends a distribution as an object from value to count, leaving out values
+     * counted zero times. The count at last covers that value and above.
+     */
+    private static void histogram(StringBuilder out, long[] counts, int last) {
+        out.append('{');
+        boolean first = true;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0)
+                continue;
+            Json.quote(first ? out : out.append(','), i == last ? i + "+" : Integer.toString(i))
+                    .append(':').append(counts[i]);
+            first = false;
+        }
+        out.append('}');
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * @author Stephen Hildebrand
+ *
+ * The management interface of {@link Metrics}, registered with the platform
+ * MBean server as {@value Metrics#OBJECT_NAME} so that JConsole or any other JMX
+ * client can read the checker's hot-path metrics while it runs.
+ */
+public interface MetricsMBean {
+
+    /**
+     * Returns the number of words checked.
+     *
+     * @return the number of words
+     */
+    long getWordCount();
+
+    /**
+     * Returns the number of words found neither as written nor by a match rule.
+     *
+     * @return the number of misspelled words
+     */
+    long getMisspelledCount();
+
+    /**
+     * Returns the names of the ways a word can be found, parallel to
+     * {@link #getMatchCounts()}: "as written", "lower case", then every rule.
+     *
+     * @return the match names
+     */
+    String[] getMatchNames();
+
+    /**
+     * Returns the number of words found each way, parallel to {@link #getMatchNames()}.
+     *
+     * @return the match counts
+     */
+    long[] getMatchCounts();
+
+    /**
+     * Returns the distribution of dictionary lookups per word: entry i counts the
+     * words checked with i lookups, and the last entry those with that many or more.
+     *
+     * @return the number of words by lookup count
+     */
+    long[] getLookupsPerWord();
+
+    /**
+     * Returns the chain-length distribution of the dictionary table: entry i counts
+     * the chains holding i entries.
+     *
+     * @return the number of chains by length
+     */
+    long[] getChainLengths();
+
+    /**
+     * Returns the median latency of checking a word.
+     *
+     * @return the 50th percentile in nanoseconds
+     */
+    long getLatencyP50();
+
+    /**
+     * Returns the 99th percentile latency of checking a word.
+     *
+     * @return the 99th percentile in nanoseconds
+     */
+    long getLatencyP99();
+
+    /**
+     * Returns the 99.9th percentile latency of checking a word.
+     *
+     * @return the 99.9th percentile in nanoseconds
+     */
+    long getLatencyP999();
+
+    /**
+     * Returns the number of words whose latency was measured.
+     *
+     * @return the number of timed words
+     */
+    long getLatencySampleCount();
+
+    /**
+     * Returns the time spent in each phase, in the order of {@link Metrics.Phase}.
+     *
+     * @return the nanoseconds of each phase
+     */
+    long[] getPhaseNanos();
+
+    /**
+     * Returns every metric as one JSON object.
+     *
+     * @return the JSON text
+     */
+    String getJson();
+}
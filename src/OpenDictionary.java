@@ -0,0 +1,417 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * This class implements a Dictionary of words as an open-addressing hash table.
+ * Instead of a LinkedList of Word objects per bucket, the entries are kept in two
+ * flat parallel arrays: the integer hash keys and the word strings. Collisions are
+ * resolved by linear probing, so a lookup walks consecutive slots of the same two
+ * arrays, and removals shift the following entries back to keep every probe
+ * sequence free of holes. Words sharing a key are stored side by side and told
+ * apart by comparing the full word. A table can also keep an int tag per entry,
+ * moved along with it, for tables built on this one such as
+ * {@link LayeredDictionary}.
+ */
+public class OpenDictionary implements WordTable {
+    /** Largest fraction of slots that may be occupied before the table grows. */
+    private static final double MAX_LOAD = 0.6;
+
+    /** Hash function computing the keys of words. */
+    private final HashStrategy hash;
+    /** The number of dictionary entries in the table. */
+    private int n = 0;
+    /** Hash keys of the entries, parallel to words. */
+    private int[] keys;
+    /** Words of the entries; a null word marks an empty slot. */
+    private String[] words;
+    /** Whether the entries carry tags. */
+    private final boolean tagged;
+    /** Tag of each entry, parallel to words; null if the entries carry none. */
+    private int[] tags;
+    /** Number of bits used to select a slot (slot count is 2^bits). */
+    private int bits;
+    /** Number of entries at which the table is grown. */
+    private int threshold;
+    /** Total number of probes made during checking. */
+    private final LongAdder probeCount = new LongAdder();
+    /** Count of lookup operations. */
+    private final LongAdder lookupCount = new LongAdder();
+    /** The slots, as removal moves and empties them. */
+    private final LinearProbing.Slots entries = new LinearProbing.Slots() {
+        public boolean occupied(int i) {
+            return words[i] != null;
+        }
+
+        public int key(int i) {
+            return keys[i];
+        }
+
+        public void move(int from, int to) {
+            keys[to] = keys[from];
+            words[to] = words[from];
+            if (tagged)
+                tags[to] = tags[from];
+        }
+
+        public void clear(int i) {
+            words[i] = null;
+            if (tagged)
+                tags[i] = 0;
+        }
+    };
+
+    /**
+     * Creates a hash table with room for the given number of words before it
+     * needs to grow, using the 5-bit cyclic-shift hash.
+     *
+     * @param capacity the expected number of words
+     */
+    public OpenDictionary(int capacity) {
+        this(capacity, StandardHash.CYCLIC_SHIFT);
+    }
+
+    /**
+     * Creates a hash table with room for the given number of words before it
+     * needs to grow.
+     *
+     * @param capacity the expected number of words
+     * @param hash     the hash function computing the keys of words
+     */
+    public OpenDictionary(int capacity, HashStrategy hash) {
+        this(capacity, hash, false);
+    }
+
+    /**
+     * Creates a hash table with room for the given number of words before it
+     * needs to grow, whose entries may carry a tag.
+     *
+     * @param capacity the expected number of words
+     * @param hash     the hash function computing the keys of words
+     * @param tagged   whether the entries carry tags
+     */
+    OpenDictionary(int capacity, HashStrategy hash, boolean tagged) {
+        this.hash = hash;
+        this.tagged = tagged;
+        int slots = 2;
+        bits = 1;
+        while (slots * MAX_LOAD < capacity) {
+            slots <<= 1;
+            bits++;
+        }
+        allocate(slots);
+    }
+
+    /**
+     * Creates a copy of a table, with its entries and tags but with no lookups
+     * counted, so that the copy can be changed while the original is read.
+     *
+     * @param table the table to copy
+     */
+    OpenDictionary(OpenDictionary table) {
+        hash = table.hash;
+        tagged = table.tagged;
+        n = table.n;
+        keys = table.keys.clone();
+        words = table.words.clone();
+        tags = tagged ? table.tags.clone() : null;
+        bits = table.bits;
+        threshold = table.threshold;
+    }
+
+    /**
+     * Computes the hash key for a string word with this table's hash function.
+     * With the default cyclic shift it is identical to {@link Dictionary#hashCode(String)},
+     * so keys are interchangeable between the two tables.
+     *
+     * @param word the word to look up
+     * @return the calculated key
+     */
+    public int hashCode(String word) {
+        return hash.hash(word);
+    }
+
+    /**
+     * Computes the hash key of a word held as ASCII bytes.
+     *
+     * @param text the array holding the word
+     * @param off  index of the first byte of the word
+     * @param len  length of the word in bytes
+     * @return the calculated key
+     */
+    public int hashCode(byte[] text, int off, int len) {
+        return hash.hash(text, off, len);
+    }
+
+    /**
+     * Returns the hash function computing the keys of this table.
+     *
+     * @return the hash function
+     */
+    public HashStrategy getHash() {
+        return hash;
+    }
+
+    /**
+     * Returns the first word stored with the specified key, or null if no such entry exists.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the associated value, or null if no such entry exists
+     */
+    public String get(int key) {
+        lookupCount.increment();
+        int mask = words.length - 1;
+        for (int i = slot(key); words[i] != null; i = (i + 1) & mask) {
+            probeCount.increment();
+            if (keys[i] == key)
+                return words[i];
+        }
+        return null;
+    }
+
+    /**
+     * Returns the stored word equal to the given word, or null if no such entry exists.
+     *
+     * @param key  the key of the word
+     * @param word the word to look up
+     * @return the stored word, or null if the word is not in the dictionary
+     */
+    public String get(int key, String word) {
+        lookupCount.increment();
+        int mask = words.length - 1;
+        for (int i = slot(key); words[i] != null; i = (i + 1) & mask) {
+            probeCount.increment();
+            if (keys[i] == key && word.equals(words[i]))
+                return words[i];
+        }
+        return null;
+    }
+
+    /**
+     * Whether the word held as ASCII bytes is in the dictionary, comparing the
+     * bytes in place.
+     *
+     * @param key  the key of the word
+     * @param text the array holding the word
+     * @param off  index of the first byte of the word
+     * @param len  length of the word in bytes
+     * @return true if the word is in the dictionary
+     */
+    public boolean contains(int key, byte[] text, int off, int len) {
+        lookupCount.increment();
+        int mask = words.length - 1;
+        for (int i = slot(key); words[i] != null; i = (i + 1) & mask) {
+            probeCount.increment();
+            if (keys[i] == key && WordTable.sameWord(words[i], text, off, len))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Stores the given word under the given key. If the same word was already
+     * stored, it is replaced and the previous value returned; a different word
+     * with the same key is kept alongside it.
+     *
+     * @param key   key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the key (or null, if no such entry)
+     */
+    public String put(int key, String value) {
+        int mask = words.length - 1;
+        int i = slot(key);
+        for (; words[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key && value.equals(words[i])) {
+                String old = words[i];
+                words[i] = value;
+                return old;
+            }
+        }
+        if (n + 1 > threshold) {
+            grow();
+            return put(key, value);
+        }
+        keys[i] = key;
+        words[i] = value;
+        n++;
+        return null;
+    }
+
+    /**
+     * Removes the first entry with the specified key, if present, and returns
+     * its associated value. Otherwise does nothing and returns null.
+     *
+     * @param key the key whose entry is to be removed from the map
+     * @return the previous value associated with the removed key, or null if no such entry exists
+     */
+    public String remove(int key) {
+        int mask = words.length - 1;
+        for (int i = slot(key); words[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                String answer = words[i];
+                deleteSlot(i);
+                return answer;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of words currently in the dictionary.
+     *
+     * @return the number of dictionary entries
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Returns the total number of times a text word is compared to a word
+     * in the table.
+     *
+     * @return the number of times a text word is compared to a table word
+     */
+    public long getProbeCount() {
+        return probeCount.sum();
+    }
+
+    /**
+     * Returns the total number of times a lookup operation is performed.
+     *
+     * @return the number of lookup operations
+     */
+    public long getLookupCount() {
+        return lookupCount.sum();
+    }
+
+    /**
+     * Returns the length of every run of consecutive occupied slots, the chains a
+     * linear-probing lookup walks.
+     *
+     * @return the number of entries in each run
+     */
+    public int[] chainLengths() {
+        return LinearProbing.chainLengths(i -> words[i] != null, bits, n);
+    }
+
+    /**
+     * Returns the slot holding a word, or -1 if it is not in the table. The search
+     * is not counted as a lookup.
+     *
+     * @param key  the key of the word
+     * @param word the word
+     * @return the slot of the word, or -1
+     */
+    int find(int key, String word) {
+        int mask = words.length - 1;
+        for (int i = slot(key); words[i] != null; i = (i + 1) & mask)
+            if (keys[i] == key && word.equals(words[i]))
+                return i;
+        return -1;
+    }
+
+    /**
+     * Adds a word that is not in the table, with a tag.
+     *
+     * @param key  the key of the word
+     * @param word the word
+     * @param tag  the tag of its entry
+     */
+    void add(int key, String word, int tag) {
+        if (n + 1 > threshold)
+            grow();
+        int mask = words.length - 1;
+        int i = slot(key);
+        while (words[i] != null)
+            i = (i + 1) & mask;
+        keys[i] = key;
+        words[i] = word;
+        tags[i] = tag;
+        n++;
+    }
+
+    /**
+     * Returns the number of slots; a slot from 0 up to it holds an entry if
+     * {@link #wordAt(int)} is not null.
+     *
+     * @return the number of slots
+     */
+    int slotCount() {
+        return words.length;
+    }
+
+    /**
+     * Returns the word in a slot.
+     *
+     * @param i the slot
+     * @return the word, or null if the slot is empty
+     */
+    String wordAt(int i) {
+        return words[i];
+    }
+
+    /**
+     * Returns the tag of the entry in a slot.
+     *
+     * @param i the occupied slot
+     * @return its tag
+     */
+    int tagAt(int i) {
+        return tags[i];
+    }
+
+    /**
+     * Changes the tag of the entry in a slot, removing the entry if the tag is 0.
+     *
+     * @param i   the occupied slot
+     * @param tag the new tag
+     */
+    void retag(int i, int tag) {
+        if (tag == 0)
+            deleteSlot(i);
+        else
+            tags[i] = tag;
+    }
+
+    // private utilities
+
+    /** Home slot of a key. */
+    private int slot(int key) {
+        return LinearProbing.slot(key, bits);
+    }
+
+    /** Allocates empty parallel arrays with the given number of slots. */
+    private void allocate(int slots) {
+        keys = new int[slots];
+        words = new String[slots];
+        if (tagged)
+            tags = new int[slots];
+        threshold = (int) (slots * MAX_LOAD);
+    }
+
+    /** Doubles the number of slots and reinserts every entry. */
+    private void grow() {
+        int[] oldKeys = keys;
+        String[] oldWords = words;
+        int[] oldTags = tags;
+        bits++;
+        allocate(oldWords.length << 1);
+        int mask = words.length - 1;
+        for (int j = 0; j < oldWords.length; j++) {
+            if (oldWords[j] == null) continue;
+            int i = slot(oldKeys[j]);
+            while (words[i] != null)
+                i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            words[i] = oldWords[j];
+            if (tagged)
+                tags[i] = oldTags[j];
+        }
+    }
+
+    /** Empties slot i, shifting back the entries that probed past it. */
+    private void deleteSlot(int i) {
+        LinearProbing.deleteSlot(entries, bits, i);
+        n--;
+    }
+}
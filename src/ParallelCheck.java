@@ -0,0 +1,242 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Checks the spelling of a large text file on several threads. The file is split
+ * recursively into byte ranges on a {@link ForkJoinPool}, each split moved forward
+ * to the next non-word byte so that no word is cut in two. Every range is tokenized
+ * and checked against the one shared, read-only dictionary of {@link SpellCheck},
+ * through the thread's own verdict cache if caching is on, and the misspelled
+ * words of the ranges are joined back in document order.
+ */
+public class ParallelCheck {
+    /** Smallest range, in bytes, that is split further. */
+    private static final long MIN_RANGE = 64 * 1024;
+    /** Number of bytes read at a time while looking for a split point. */
+    private static final int SCAN_SIZE = 256;
+
+    /** The text file being checked. */
+    private final FileChannel channel;
+    /** Ranges no larger than this are checked without splitting. */
+    private final long leafSize;
+
+    /**
+     * The outcome of checking a range of the text.
+     */
+    static class Result {
+        /** Count of words in the range. */
+        long words = 0;
+        /** Misspelled words of the range, in document order. */
+        List<String> misspelled = new ArrayList<>();
+        /** Byte offsets in the file of the misspelled words, parallel to misspelled. */
+        long[] offsets = new long[16];
+
+        /**
+         * Adds a misspelled word.
+         *
+         * @param word   the word
+         * @param offset its byte offset in the file
+         */
+        void add(String word, long offset) {
+            if (misspelled.size() == offsets.length)
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            offsets[misspelled.size()] = offset;
+            misspelled.add(word);
+        }
+
+        /**
+         * Appends the result of the range that follows this one.
+         *
+         * @param next the result of the following range
+         * @return this result
+         */
+        Result append(Result next) {
+            words += next.words;
+            for (int i = 0; i < next.misspelled.size(); i++)
+                add(next.misspelled.get(i), next.offsets[i]);
+            return this;
+        }
+    }
+
+    /**
+     * Creates a checker for the given file.
+     *
+     * @param channel  the text file
+     * @param leafSize the size of range checked without splitting
+     */
+    private ParallelCheck(FileChannel channel, long leafSize) {
+        this.channel = channel;
+        this.leafSize = leafSize;
+    }
+
+    /**
+     * Checks the spelling of every word in the file on the given number of threads.
+     *
+     * @param channel the text file, read with positional reads only
+     * @param threads the number of worker threads
+     * @return the word count and the misspelled words in document order
+     * @throws IOException if the file cannot be read
+     */
+    static Result check(FileChannel channel, int threads) throws IOException {
+        ParallelCheck check = new ParallelCheck(channel, Math.max(MIN_RANGE, channel.size() / (threads * 8L)));
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return pool.invoke(check.new RangeTask(0, channel.size()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Checks the spelling of every word in the file from within a task of a fork/join
+     * pool, splitting a large file into ranges of about leafSize bytes that other
+     * workers of the same pool may steal.
+     *
+     * @param channel  the text file, read with positional reads only
+     * @param leafSize the size of range checked without splitting
+     * @return the word count and the misspelled words in document order
+     * @throws IOException if the file cannot be read
+     */
+    static Result checkInPool(FileChannel channel, long leafSize) throws IOException {
+        ParallelCheck check = new ParallelCheck(channel, Math.max(MIN_RANGE, leafSize));
+        try {
+            return check.new RangeTask(0, channel.size()).invoke();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Returns the first position at or after from whose byte is not part of a word,
+     * or end if the rest of the range is one word.
+     *
+     * @param from the position to start from
+     * @param end  the end of the range
+     * @return the split position
+     */
+    private long nextSeparator(long from, long end) throws IOException {
+        ByteBuffer scan = ByteBuffer.allocate(SCAN_SIZE);
+        long pos = from;
+        while (pos < end) {
+            scan.clear().limit((int) Math.min(SCAN_SIZE, end - pos));
+            int read = channel.read(scan, pos);
+            if (read <= 0)
+                return end;
+            for (int i = 0; i < read; i++)
+                if (!Tokenizer.isWordByte(scan.get(i)))
+                    return pos + i;
+            pos += read;
+        }
+        return end;
+    }
+
+    /**
+     * Checks the words of a range on the current thread.
+     *
+     * @param start the first byte of the range, not inside a word
+     * @param end   the end of the range, not inside a word
+     * @return the result of the range
+     */
+    private Result checkRange(long start, long end) throws IOException {
+        Result result = new Result();
+        Tokenizer tokens = new Tokenizer(new RangeChannel(start, end),
+                (int) Math.min(Tokenizer.DEFAULT_BUFFER_SIZE, Math.max(end - start, 16)));
+        while (tokens.next()) {
+            result.words++;
+            if (!SpellCheck.checkToken(tokens.array(), tokens.start(), tokens.length()))
+                result.add(tokens.token(), start + tokens.offset());
+        }
+        return result;
+    }
+
+    /**
+     * A task checking one range, splitting it in two at a word boundary while it is
+     * larger than the leaf size.
+     */
+    private class RangeTask extends RecursiveTask<Result> {
+        /** Version of the serialized form, which RecursiveTask makes serializable. */
+        private static final long serialVersionUID = 1L;
+        /** Start of the range. */
+        private final long start;
+        /** End of the range. */
+        private final long end;
+
+        /** Creates a task for the range [start, end). */
+        RangeTask(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Result compute() {
+            try {
+                if (end - start > leafSize) {
+                    long mid = nextSeparator(start + (end - start) / 2, end);
+                    if (mid < end) {
+                        RangeTask left = new RangeTask(start, mid);
+                        RangeTask right = new RangeTask(mid, end);
+                        right.fork();
+                        return left.compute().append(right.join());
+                    }
+                }
+                return checkRange(start, end);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * A channel reading the range [start, end) of the file with positional reads,
+     * so that several threads can read the same file at once.
+     */
+    private class RangeChannel implements ReadableByteChannel {
+        /** Next position to read. */
+        private long pos;
+        /** End of the range. */
+        private final long end;
+
+        /** Creates a channel over the range [start, end). */
+        RangeChannel(long start, long end) {
+            this.pos = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (pos >= end)
+                return -1;
+            int room = (int) Math.min(dst.remaining(), end - pos);
+            ByteBuffer slice = dst.duplicate();
+            slice.limit(slice.position() + room);
+            int read = channel.read(slice, pos);
+            if (read <= 0)
+                return -1;
+            dst.position(dst.position() + read);
+            pos += read;
+            return read;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() {
+            // The shared file is closed by the caller.
+        }
+    }
+}
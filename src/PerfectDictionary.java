@@ -0,0 +1,383 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * A read-only Dictionary indexed by a minimal perfect hash of its word keys, built
+ * with the BBHash scheme. Each level is a bit array of about GAMMA bits per key
+ * still to be placed: every key sets the bit its seeded level hash selects, keys
+ * whose bits collide are retried on the next level, and the bit a key sets alone
+ * becomes its own. The rank of that bit among the set bits of all levels numbers
+ * the n words 0 to n - 1 with no gaps, using under 4 bits per key.
+ *
+ * The words are stored in that order next to a verification array of their keys,
+ * so a word found takes exactly one probe, and an absent word that reaches a slot
+ * is turned away by one integer comparison without touching the stored string.
+ * The hash is built over the distinct keys. A word whose key an earlier word has
+ * already taken goes to a small {@link OpenDictionary} of shared keys instead,
+ * which is searched only when a lookup reaches a slot holding its key but another
+ * word, so a few collisions among millions of words cost no more than that. The
+ * mix64 function has none on dict.txt. Every level hash is derived from the
+ * seed, so the same words, hash function and seed always build the same table.
+ */
+public class PerfectDictionary implements WordTable {
+    /** Bits of each level per key still to be placed. */
+    static final double GAMMA = 2.0;
+    /** Number of levels after which the keys left are kept in a sorted list. */
+    static final int MAX_LEVELS = 32;
+    /** Log2 of the number of bits between stored ranks. */
+    private static final int RANK_SHIFT = 9;
+    /** Multiplier separating the level hashes of one seed. */
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    /** Hash function computing the keys of words. */
+    private final HashStrategy hash;
+    /** Seed of the level hashes. */
+    private final long seed;
+    /** Bit arrays of all levels, one after another. */
+    private final long[] bits;
+    /** Offset of each level's bits within bits, plus the end of the last. */
+    private final long[] levelStart;
+    /** Number of set bits before each block of 2^RANK_SHIFT bits. */
+    private final int[] ranks;
+    /** Sorted keys left unplaced after MAX_LEVELS, numbered after the ranked ones. */
+    private final int[] spill;
+    /** Keys of the words, indexed by perfect hash, for verification. */
+    private final int[] keys;
+    /** Words indexed by perfect hash. */
+    private final String[] words;
+    /** Words whose key an earlier word took, or null if every key is distinct. */
+    private final OpenDictionary shared;
+    /** Total number of probes made during checking. */
+    private final LongAdder probeCount = new LongAdder();
+    /** Count of lookup operations. */
+    private final LongAdder lookupCount = new LongAdder();
+
+    /**
+     * Builds the perfect hash table of the given words.
+     *
+     * @param list the words of the dictionary; duplicates are stored once
+     * @param hash the hash function computing the keys of words
+     * @param seed the seed of the level hashes
+     */
+    public PerfectDictionary(Collection<String> list, HashStrategy hash, long seed) {
+        this.hash = hash;
+        this.seed = seed;
+        String[] distinct = new LinkedHashSet<>(list).toArray(new String[0]);
+        int n = distinct.length;
+        long[] byKey = new long[n];             // Key in the high half, word index in the low.
+        for (int i = 0; i < n; i++)
+            byKey[i] = (long) hash.hash(distinct[i]) << 32 | i;
+        Arrays.sort(byKey);
+        int[] remaining = new int[n];
+        int m = 0;                              // Number of distinct keys.
+        List<String> sharing = new ArrayList<>();
+        for (long entry : byKey) {
+            int key = (int) (entry >> 32);
+            if (m > 0 && key == remaining[m - 1])
+                sharing.add(distinct[(int) entry]);
+            else
+                remaining[m++] = key;
+        }
+        remaining = Arrays.copyOf(remaining, m);
+        if (sharing.isEmpty()) {
+            shared = null;
+        } else {
+            shared = new OpenDictionary(sharing.size(), hash);
+            for (String word : sharing)
+                shared.put(shared.hashCode(word), word);
+        }
+
+        // Place the keys level by level, keeping the bits each key set alone.
+        List<long[]> levels = new ArrayList<>();
+        while (remaining.length > 0 && levels.size() < MAX_LEVELS) {
+            int level = levels.size();
+            long size = Math.max(64, ((long) Math.ceil(remaining.length * GAMMA) + 63) & ~63L);
+            long[] set = new long[(int) (size >>> 6)];
+            long[] collided = new long[set.length];
+            for (int key : remaining) {
+                long p = position(key, level, size);
+                if ((set[(int) (p >>> 6)] & 1L << p) != 0)
+                    collided[(int) (p >>> 6)] |= 1L << p;
+                else
+                    set[(int) (p >>> 6)] |= 1L << p;
+            }
+            int left = 0;
+            for (int key : remaining) {
+                long p = position(key, level, size);
+                if ((collided[(int) (p >>> 6)] & 1L << p) != 0)
+                    remaining[left++] = key;
+            }
+            for (int i = 0; i < set.length; i++)
+                set[i] &= ~collided[i];
+            levels.add(set);
+            remaining = Arrays.copyOf(remaining, left);
+        }
+        spill = remaining;                      // Still sorted.
+
+        levelStart = new long[levels.size() + 1];
+        for (int level = 0; level < levels.size(); level++)
+            levelStart[level + 1] = levelStart[level] + ((long) levels.get(level).length << 6);
+        bits = new long[(int) (levelStart[levels.size()] >>> 6)];
+        for (int level = 0; level < levels.size(); level++)
+            System.arraycopy(levels.get(level), 0, bits, (int) (levelStart[level] >>> 6), levels.get(level).length);
+        int perRank = 1 << (RANK_SHIFT - 6);
+        ranks = new int[(bits.length + perRank - 1) / perRank];
+        int count = 0;
+        for (int i = 0; i < bits.length; i++) {
+            if (i % perRank == 0)
+                ranks[i / perRank] = count;
+            count += Long.bitCount(bits[i]);
+        }
+
+        keys = new int[m];
+        words = new String[m];
+        for (long entry : byKey) {
+            int key = (int) (entry >> 32);
+            int index = index(key);
+            if (words[index] != null)
+                continue;                       // Taken by the first word with the key.
+            keys[index] = key;
+            words[index] = distinct[(int) entry];
+        }
+    }
+
+    /**
+     * Computes the hash key for a string word with this table's hash function.
+     *
+     * @param word the word to look up
+     * @return the calculated key
+     */
+    public int hashCode(String word) {
+        return hash.hash(word);
+    }
+
+    /**
+     * Computes the hash key of a word held as ASCII bytes.
+     *
+     * @param text the array holding the word
+     * @param off  index of the first byte of the word
+     * @param len  length of the word in bytes
+     * @return the calculated key
+     */
+    public int hashCode(byte[] text, int off, int len) {
+        return hash.hash(text, off, len);
+    }
+
+    /**
+     * Returns the hash function computing the keys of this table.
+     *
+     * @return the hash function
+     */
+    public HashStrategy getHash() {
+        return hash;
+    }
+
+    /**
+     * Returns the word stored with the specified key, or null if no such entry exists.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the associated value, or null if no such entry exists
+     */
+    public String get(int key) {
+        lookupCount.increment();
+        int i = index(key);
+        if (i < 0)
+            return null;
+        probeCount.increment();
+        return keys[i] == key ? words[i] : null;
+    }
+
+    /**
+     * Returns the stored word equal to the given word, or null if no such entry exists.
+     *
+     * @param key  the key of the word
+     * @param word the word to look up
+     * @return the stored word, or null if the word is not in the dictionary
+     */
+    public String get(int key, String word) {
+        lookupCount.increment();
+        int i = index(key);
+        if (i < 0)
+            return null;
+        probeCount.increment();
+        if (keys[i] != key)
+            return null;
+        if (word.equals(words[i]))
+            return words[i];
+        return shared == null ? null : shared.get(key, word);
+    }
+
+    /**
+     * Whether the word held as ASCII bytes is in the dictionary, comparing the
+     * bytes in place.
+     *
+     * @param key  the key of the word
+     * @param text the array holding the word
+     * @param off  index of the first byte of the word
+     * @param len  length of the word in bytes
+     * @return true if the word is in the dictionary
+     */
+    public boolean contains(int key, byte[] text, int off, int len) {
+        lookupCount.increment();
+        int i = index(key);
+        if (i < 0)
+            return false;
+        probeCount.increment();
+        if (keys[i] != key)
+            return false;
+        if (WordTable.sameWord(words[i], text, off, len))
+            return true;
+        return shared != null && shared.contains(key, text, off, len);
+    }
+
+    /**
+     * Not supported; the perfect hash is built once over a fixed word list.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    public String put(int key, String value) {
+        throw new UnsupportedOperationException("Perfect hash dictionary is read-only");
+    }
+
+    /**
+     * Not supported; the perfect hash is built once over a fixed word list.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    public String remove(int key) {
+        throw new UnsupportedOperationException("Perfect hash dictionary is read-only");
+    }
+
+    /**
+     * Returns the number of words in the dictionary.
+     *
+     * @return the number of dictionary entries
+     */
+    public int size() {
+        return words.length + sharedCount();
+    }
+
+    /**
+     * Returns the total number of times a text word is compared to a word
+     * in the table, including the table of shared keys.
+     *
+     * @return the number of times a text word is compared to a table word
+     */
+    public long getProbeCount() {
+        return probeCount.sum() + (shared == null ? 0 : shared.getProbeCount());
+    }
+
+    /**
+     * Returns the total number of times a lookup operation is performed.
+     *
+     * @return the number of lookup operations
+     */
+    public long getLookupCount() {
+        return lookupCount.sum();
+    }
+
+    /**
+     * Returns the number of words with the key of every slot: one, unless other
+     * words share the key.
+     *
+     * @return the number of entries in each chain
+     */
+    public int[] chainLengths() {
+        int[] chains = new int[words.length];
+        Arrays.fill(chains, 1);
+        if (shared != null)
+            for (int i = 0; i < shared.slotCount(); i++)
+                if (shared.wordAt(i) != null)
+                    chains[index(hash.hash(shared.wordAt(i)))]++;
+        return chains;
+    }
+
+    /**
+     * Returns the seed of the level hashes.
+     *
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the number of levels of the perfect hash.
+     *
+     * @return the level count
+     */
+    public int levelCount() {
+        return levelStart.length - 1;
+    }
+
+    /**
+     * Returns the number of keys left unplaced after the last level.
+     *
+     * @return the spilled key count
+     */
+    public int spillCount() {
+        return spill.length;
+    }
+
+    /**
+     * Returns the number of words whose key an earlier word took, kept beside
+     * the perfect hash.
+     *
+     * @return the shared key word count
+     */
+    public int sharedCount() {
+        return shared == null ? 0 : shared.size();
+    }
+
+    /**
+     * Returns the size of the perfect hash in bits per word: the level bits, the
+     * stored ranks and the spilled keys, without the verification array or words.
+     *
+     * @return the bits per word
+     */
+    public double bitsPerKey() {
+        long total = 64L * bits.length + 32L * (ranks.length + spill.length);
+        return total / (double) Math.max(words.length, 1);
+    }
+
+    /**
+     * Returns the perfect hash of a key: the slot of its word if the table was
+     * built with it, and otherwise -1 or the slot of some other word.
+     *
+     * @param key the key of a word
+     * @return the slot of the key, or -1
+     */
+    int index(int key) {
+        for (int level = 0; level < levelStart.length - 1; level++) {
+            long p = levelStart[level] + position(key, level, levelStart[level + 1] - levelStart[level]);
+            long word = bits[(int) (p >>> 6)];
+            if ((word & 1L << p) != 0)
+                return rank(p);
+        }
+        int i = Arrays.binarySearch(spill, key);
+        return i < 0 ? -1 : words.length - spill.length + i;
+    }
+
+    // private utilities
+
+    /** Number of set bits before bit p of all levels. */
+    private int rank(long p) {
+        int word = (int) (p >>> 6);
+        int count = ranks[(int) (p >>> RANK_SHIFT)];
+        for (int i = (int) (p >>> RANK_SHIFT) << (RANK_SHIFT - 6); i < word; i++)
+            count += Long.bitCount(bits[i]);
+        return count + Long.bitCount(bits[word] & ((1L << p) - 1));
+    }
+
+    /** Bit a key selects on a level of the given size, by a seeded mix reduced without division. */
+    private long position(int key, int level, long size) {
+        long h = StandardHash.mix((key & 0xffffffffL) ^ (seed + (level + 1) * GOLDEN));
+        return ((h >>> 32) * size) >>> 32;
+    }
+}
@@ -0,0 +1,475 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * The output stage of a spell check: receives the misspelled words in document
+ * order, with their byte offsets in the text, and writes them in one of three
+ * formats:
+ * <pre>
+ *   plain   each word on its own line, as it occurs           teh -> the, ten
+ *   counts  each distinct word once, in alphabetical order,    teh (4) -> the, ten
+ *           with its number of occurrences
+ *   jsonl   a JSON object per occurrence, with the line and    {"word":"teh","offset":57,
+ *           column (both from 1) where it starts                "line":3,"column":12}
+ * </pre>
+ * Text is encoded straight into one large reusable byte buffer, without format
+ * strings. With asynchronous flushing a second buffer is filled while a
+ * background thread writes the first.
+ *
+ * Memory stays bounded in every format. The counts are kept for at most
+ * maxDistinct words at a time; past that they are sorted and spilled to a
+ * temporary run file, and the runs are merged when the writer is closed. The
+ * lines and columns of jsonl are found by reading the text forward once, alongside
+ * the offsets, so only the current position is kept.
+ */
+public class ResultWriter implements Closeable {
+    /** Size of each output buffer in bytes. */
+    static final int BUFFER_SIZE = 256 * 1024;
+    /** Default number of distinct words counted in memory before spilling a run. */
+    static final int MAX_DISTINCT = 1 << 16;
+
+    /**
+     * The output formats, by command-line name.
+     */
+    enum Format {
+        PLAIN("plain"), COUNTS("counts"), JSONL("jsonl");
+
+        /** Name used to select the format on the command line. */
+        private final String label;
+
+        /** Creates a format with the given command-line name. */
+        Format(String label) {
+            this.label = label;
+        }
+
+        /**
+         * Returns the name used to select this format on the command line.
+         *
+         * @return the format name
+         */
+        String label() {
+            return label;
+        }
+
+        /**
+         * Returns the format with the given command-line name.
+         *
+         * @param label the format name
+         * @return the format, or null if there is none by that name
+         */
+        static Format forLabel(String label) {
+            for (Format f : values())
+                if (f.label.equals(label))
+                    return f;
+            return null;
+        }
+    }
+
+    /** Stream the results are written to; it is flushed but not closed. */
+    private final OutputStream out;
+    /** Output format. */
+    private final Format format;
+    /** Suggested corrections of a word, or null for none. */
+    private final Function<String, List<String>> suggest;
+    /** Buffer being filled. */
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    /** Number of bytes in buffer. */
+    private int used = 0;
+    /** Buffer free to be filled next, with asynchronous flushing. */
+    private byte[] spare;
+    /** Thread writing full buffers, or null to write them on the caller's thread. */
+    private final ExecutorService flusher;
+    /** Write of the last full buffer, if still running. */
+    private Future<?> pending;
+    /** Number of words counted in memory before spilling a run. */
+    private final int maxDistinct;
+    /** Occurrences of each distinct word not yet spilled, in counts format. */
+    private final Map<String, long[]> counts = new HashMap<>();
+    /** Sorted run files spilled so far. */
+    private final List<File> runs = new ArrayList<>();
+    /** Number of distinct words written, in counts format. */
+    private long distinct = 0;
+    /** Line and column finder over the text, in jsonl format. */
+    private final LineCounter lines;
+
+    /**
+     * Creates a writer of results.
+     *
+     * @param out     the stream to write to; it is flushed on close, not closed
+     * @param format  the output format
+     * @param text    the text checked, read for the lines and columns of jsonl; may
+     *                be null in the other formats
+     * @param suggest the suggested corrections of a word, or null for none; may be null
+     * @param async   whether to flush full buffers on a background thread
+     */
+    public ResultWriter(OutputStream out, Format format, FileChannel text,
+            Function<String, List<String>> suggest, boolean async) {
+        this(out, format, text, suggest, async, MAX_DISTINCT);
+    }
+
+    /**
+     * Creates a writer of results that spills its counts past the given number of
+     * distinct words.
+     */
+    ResultWriter(OutputStream out, Format format, FileChannel text,
+            Function<String, List<String>> suggest, boolean async, int maxDistinct) {
+        if (format == Format.JSONL && text == null)
+            throw new IllegalArgumentException("The jsonl format needs the text");
+        this.out = out;
+        this.format = format;
+        this.suggest = suggest == null ? word -> null : suggest;
+        this.maxDistinct = maxDistinct;
+        lines = format == Format.JSONL ? new LineCounter(text) : null;
+        if (async) {
+            spare = new byte[BUFFER_SIZE];
+            flusher = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "result-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Writes a misspelled word.
+     *
+     * @param word   the word
+     * @param offset byte offset of the word in the text, not below that of the
+     *               previous word; used by jsonl only
+     * @throws IOException if the output cannot be written or the text read
+     */
+    public void write(String word, long offset) throws IOException {
+        switch (format) {
+            case PLAIN:
+                putWord(word, -1);
+                break;
+            case COUNTS:
+                counts.computeIfAbsent(word, w -> new long[1])[0]++;
+                if (counts.size() > maxDistinct)
+                    spill();
+                break;
+            case JSONL:
+                lines.advance(offset);
+                put("{\"word\":");
+                put(Json.quote(word));
+                put(",\"offset\":");
+                put(offset);
+                put(",\"line\":");
+                put(lines.line);
+                put(",\"column\":");
+                put(offset - lines.lineStart + 1);
+                List<String> corrections = suggest.apply(word);
+                if (corrections != null) {
+                    put(",\"suggestions\":[");
+                    for (int i = 0; i < corrections.size(); i++) {
+                        if (i > 0)
+                            put(',');
+                        put(Json.quote(corrections.get(i)));
+                    }
+                    put(']');
+                }
+                put("}\n");
+                break;
+        }
+    }
+
+    /**
+     * Returns the number of distinct words written in counts format, once the
+     * writer is closed.
+     *
+     * @return the distinct word count
+     */
+    public long distinctCount() {
+        return distinct;
+    }
+
+    /**
+     * Writes the counts, if any, and everything still buffered, then flushes the
+     * stream and stops the background thread.
+     *
+     * @throws IOException if the output cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (format == Format.COUNTS)
+                writeCounts();
+            flushBuffer();
+            await();
+            out.flush();
+        } finally {
+            if (flusher != null)
+                flusher.shutdown();
+            for (File run : runs)
+                run.delete();
+        }
+    }
+
+    // private utilities
+
+    /** Writes a word, its count if not negative, and its suggested corrections if it has any. */
+    private void putWord(String word, long count) throws IOException {
+        put(word);
+        if (count >= 0) {
+            put(" (");
+            put(count);
+            put(')');
+        }
+        List<String> corrections = suggest.apply(word);
+        if (corrections != null && !corrections.isEmpty()) {
+            put(" -> ");
+            for (int i = 0; i < corrections.size(); i++) {
+                if (i > 0)
+                    put(", ");
+                put(corrections.get(i));
+            }
+        }
+        put('\n');
+    }
+
+    /** Appends a string, as UTF-8. */
+    private void put(String s) throws IOException {
+        int len = s.length();
+        if (BUFFER_SIZE - used < 3 * len)
+            flushBuffer();
+        if (BUFFER_SIZE < 3 * len) {                        // Too long to buffer.
+            await();
+            out.write(s.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buffer[used++] = (byte) c;
+            } else {
+                byte[] bytes = s.substring(i).getBytes(StandardCharsets.UTF_8);
+                System.arraycopy(bytes, 0, buffer, used, bytes.length);
+                used += bytes.length;
+                return;
+            }
+        }
+    }
+
+    /** Appends an ASCII character. */
+    private void put(char c) throws IOException {
+        if (used == BUFFER_SIZE)
+            flushBuffer();
+        buffer[used++] = (byte) c;
+    }
+
+    /** Appends a number that is not negative, in decimal. */
+    private void put(long n) throws IOException {
+        if (BUFFER_SIZE - used < 20)
+            flushBuffer();
+        int digits = 1;
+        for (long rest = n / 10; rest > 0; rest /= 10)
+            digits++;
+        int end = used + digits;
+        for (int i = end - 1; i >= used; i--) {
+            buffer[i] = (byte) ('0' + n % 10);
+            n /= 10;
+        }
+        used = end;
+    }
+
+    /** Hands the filled part of the buffer to the stream, on the background thread if any. */
+    private void flushBuffer() throws IOException {
+        if (used == 0)
+            return;
+        if (flusher == null) {
+            out.write(buffer, 0, used);
+        } else {
+            await();
+            byte[] full = buffer;
+            int length = used;
+            pending = flusher.submit(() -> {
+                out.write(full, 0, length);
+                return null;
+            });
+            buffer = spare;
+            spare = full;
+        }
+        used = 0;
+    }
+
+    /** Waits for the background write, if any, rethrowing its failure. */
+    private void await() throws IOException {
+        if (pending == null)
+            return;
+        try {
+            pending.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing results", e);
+        } finally {
+            pending = null;
+        }
+    }
+
+    /** Returns the counted words in alphabetical order. */
+    private String[] sortedWords() {
+        String[] words = counts.keySet().toArray(new String[0]);
+        Arrays.sort(words);
+        return words;
+    }
+
+    /** Writes the words counted in memory to a new run file, in alphabetical order, and forgets them. */
+    private void spill() throws IOException {
+        File run = File.createTempFile("spellcheck-run", ".dat");
+        runs.add(run);
+        try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run)))) {
+            for (String word : sortedWords()) {
+                byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+                data.writeInt(bytes.length);    // Not writeUTF, which refuses words over 64K bytes.
+                data.write(bytes);
+                data.writeLong(counts.get(word)[0]);
+            }
+        }
+        counts.clear();
+    }
+
+    /** Writes every distinct word with its total count, merging the spilled runs. */
+    private void writeCounts() throws IOException {
+        if (runs.isEmpty()) {
+            for (String word : sortedWords()) {
+                putWord(word, counts.get(word)[0]);
+                distinct++;
+            }
+            return;
+        }
+        if (!counts.isEmpty())
+            spill();
+        PriorityQueue<Run> heads = new PriorityQueue<>((a, b) -> a.word.compareTo(b.word));
+        try {
+            for (File file : runs) {
+                Run run = new Run(file);
+                if (run.next())
+                    heads.add(run);
+                else
+                    run.close();
+            }
+            while (!heads.isEmpty()) {
+                String word = heads.peek().word;
+                long count = 0;
+                while (!heads.isEmpty() && heads.peek().word.equals(word)) {
+                    Run run = heads.poll();
+                    count += run.count;
+                    if (run.next())
+                        heads.add(run);
+                    else
+                        run.close();
+                }
+                putWord(word, count);
+                distinct++;
+            }
+        } finally {
+            for (Run run : heads)
+                run.close();
+        }
+    }
+
+    /**
+     * A spilled run being merged, positioned at its current word.
+     */
+    private static class Run implements Closeable {
+        /** The run's entries. */
+        private final DataInputStream data;
+        /** Current word. */
+        String word;
+        /** Count of the current word. */
+        long count;
+
+        /** Opens a run file. */
+        Run(File file) throws IOException {
+            data = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        }
+
+        /** Moves to the next entry, returning false at the end of the run. */
+        boolean next() throws IOException {
+            byte[] bytes;
+            try {
+                bytes = new byte[data.readInt()];
+            } catch (EOFException e) {
+                return false;
+            }
+            data.readFully(bytes);
+            word = new String(bytes, StandardCharsets.UTF_8);
+            count = data.readLong();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            data.close();
+        }
+    }
+
+    /**
+     * Finds the line and column of increasing offsets by reading the text forward
+     * once, counting line feeds.
+     */
+    private static class LineCounter {
+        /** The text, read with positional reads. */
+        private final FileChannel text;
+        /** Window of the text being scanned. */
+        private final ByteBuffer window = ByteBuffer.allocate(64 * 1024);
+        /** Offset in the text of the next byte to scan. */
+        private long scanned = 0;
+        /** Line of the last offset, from 1. */
+        long line = 1;
+        /** Offset of the first byte of that line. */
+        long lineStart = 0;
+
+        /** Creates a counter at the start of the text. */
+        LineCounter(FileChannel text) {
+            this.text = text;
+            window.limit(0);
+        }
+
+        /** Counts the line feeds before the given offset. */
+        void advance(long offset) throws IOException {
+            while (scanned < offset) {
+                if (!window.hasRemaining()) {
+                    window.clear();
+                    if (text.read(window, scanned) <= 0)
+                        return;
+                    window.flip();
+                }
+                if (window.get() == '\n') {
+                    line++;
+                    lineStart = scanned + 1;
+                }
+                scanned++;
+            }
+        }
+    }
+}
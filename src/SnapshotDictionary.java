@@ -0,0 +1,292 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * A Dictionary for many reader threads whose word list can be replaced while they
+ * read. The words live in an immutable snapshot: a table built by the given
+ * builder, never written to after it is published, together with its word list.
+ * A lookup reads the volatile reference to the current snapshot once and probes
+ * that table, so it takes no lock, never waits on a writer and finishes in as many
+ * steps as the table's own lookup.
+ *
+ * Writers are serialized on this object. Each builds a complete new snapshot off to
+ * the side and publishes it with one volatile write, so a reader sees either the
+ * old words or the new, never a table being filled. Lookups already under way on
+ * the old snapshot finish on it undisturbed. Every snapshot is built with the same
+ * hash function, so a key computed before a swap is still valid after it. The
+ * probe and lookup counts of replaced snapshots are carried over, give or take the
+ * lookups that finish on a snapshot after it is replaced.
+ */
+public class SnapshotDictionary implements WordTable {
+    /** Builds the table of a word list. */
+    private final Function<Collection<String>, WordTable> builder;
+    /** Hash function of every snapshot's table. */
+    private final HashStrategy hash;
+    /** The published snapshot. */
+    private volatile Snapshot current;
+    /** Probes made on replaced snapshots. */
+    private final LongAdder retiredProbes = new LongAdder();
+    /** Lookups made on replaced snapshots. */
+    private final LongAdder retiredLookups = new LongAdder();
+    /** Number of snapshots published after the first. */
+    private volatile long reloadCount = 0;
+    /** Time taken to build and publish the latest snapshot, in nanoseconds. */
+    private volatile long lastReloadNanos = 0;
+    /** Longest time taken to build and publish a snapshot, in nanoseconds. */
+    private volatile long maxReloadNanos = 0;
+
+    /**
+     * An immutable table and the words it holds.
+     */
+    private static final class Snapshot {
+        /** The table, never written to. */
+        final WordTable table;
+        /** The words of the table, unmodifiable. */
+        final List<String> words;
+
+        /**
+         * Creates a snapshot.
+         *
+         * @param table the table of the words
+         * @param words the words
+         */
+        Snapshot(WordTable table, List<String> words) {
+            this.table = table;
+            this.words = words;
+        }
+    }
+
+    /**
+     * Builds the first snapshot of the given words.
+     *
+     * @param words   the words of the dictionary
+     * @param builder builds the table of a word list; every table it builds must
+     *                use the same hash function
+     */
+    public SnapshotDictionary(Collection<String> words, Function<Collection<String>, WordTable> builder) {
+        this.builder = builder;
+        current = build(words);
+        hash = current.table.getHash();
+    }
+
+    /**
+     * Computes the hash key for a string word with the hash function of every snapshot.
+     *
+     * @param word the word to look up
+     * @return the calculated key
+     */
+    public int hashCode(String word) {
+        return hash.hash(word);
+    }
+
+    /**
+     * Computes the hash key of a word held as ASCII bytes.
+     *
+     * @param text the array holding the word
+     * @param off  index of the first byte of the word
+     * @param len  length of the word in bytes
+     * @return the calculated key
+     */
+    public int hashCode(byte[] text, int off, int len) {
+        return hash.hash(text, off, len);
+    }
+
+    /**
+     * Returns the hash function computing the keys of this table.
+     *
+     * @return the hash function
+     */
+    public HashStrategy getHash() {
+        return hash;
+    }
+
+    /**
+     * Returns the word stored with the specified key in the current snapshot, or
+     * null if no such entry exists.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the associated value, or null if no such entry exists
+     */
+    public String get(int key) {
+        return current.table.get(key);
+    }
+
+    /**
+     * Returns the word of the current snapshot equal to the given word, or null
+     * if no such entry exists.
+     *
+     * @param key  the key of the word
+     * @param word the word to look up
+     * @return the stored word, or null if the word is not in the dictionary
+     */
+    public String get(int key, String word) {
+        return current.table.get(key, word);
+    }
+
+    /**
+     * Whether the word held as ASCII bytes is in the current snapshot, comparing
+     * the bytes in place.
+     *
+     * @param key  the key of the word
+     * @param text the array holding the word
+     * @param off  index of the first byte of the word
+     * @param len  length of the word in bytes
+     * @return true if the word is in the dictionary
+     */
+    public boolean contains(int key, byte[] text, int off, int len) {
+        return current.table.contains(key, text, off, len);
+    }
+
+    /**
+     * Publishes a snapshot with the word added, unless it is already present.
+     * Each call rebuilds the whole table, so several changes are better made at
+     * once with {@link #reload(Collection)}.
+     *
+     * @param key   the key of the word
+     * @param value the word
+     * @return the equal word already present, or null if the word was added
+     */
+    public synchronized String put(int key, String value) {
+        for (String word : current.words)
+            if (word.equals(value))
+                return word;
+        List<String> words = new ArrayList<>(current.words);
+        words.add(value);
+        reload(words);
+        return null;
+    }
+
+    /**
+     * Publishes a snapshot without the first word with the specified key, if
+     * there is one. Each call rebuilds the whole table.
+     *
+     * @param key the key whose entry is to be removed from the map
+     * @return the word removed, or null if no such entry exists
+     */
+    public synchronized String remove(int key) {
+        List<String> words = new ArrayList<>(current.words);
+        for (int i = 0; i < words.size(); i++) {
+            if (hash.hash(words.get(i)) == key) {
+                String removed = words.remove(i);
+                reload(words);
+                return removed;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Builds a snapshot of the given words and publishes it in place of the current
+     * one. Readers are not held up: until the volatile write publishing it, they
+     * keep reading the old snapshot.
+     *
+     * @param words the new words of the dictionary
+     * @return the time taken to build and publish the snapshot, in nanoseconds
+     * @throws IllegalArgumentException if the builder cannot build the table, or
+     *                                  builds one with another hash function; the
+     *                                  current snapshot is then kept
+     */
+    public synchronized long reload(Collection<String> words) {
+        long start = System.nanoTime();
+        Snapshot next = build(words);
+        if (next.table.getHash() != hash)
+            throw new IllegalArgumentException("Snapshot built with another hash function");
+        Snapshot old = current;
+        current = next;
+        retiredProbes.add(old.table.getProbeCount());
+        retiredLookups.add(old.table.getLookupCount());
+        long nanos = System.nanoTime() - start;
+        lastReloadNanos = nanos;
+        maxReloadNanos = Math.max(maxReloadNanos, nanos);
+        reloadCount++;
+        return nanos;
+    }
+
+    /**
+     * Returns the words of the current snapshot.
+     *
+     * @return the words, unmodifiable
+     */
+    public List<String> words() {
+        return current.words;
+    }
+
+    /**
+     * Returns the number of words in the current snapshot.
+     *
+     * @return the number of dictionary entries
+     */
+    public int size() {
+        return current.table.size();
+    }
+
+    /**
+     * Returns the total number of times a text word is compared to a word in any
+     * snapshot's table.
+     *
+     * @return the number of times a text word is compared to a table word
+     */
+    public long getProbeCount() {
+        return retiredProbes.sum() + current.table.getProbeCount();
+    }
+
+    /**
+     * Returns the total number of times a lookup operation is performed on any
+     * snapshot's table.
+     *
+     * @return the number of lookup operations
+     */
+    public long getLookupCount() {
+        return retiredLookups.sum() + current.table.getLookupCount();
+    }
+
+    /**
+     * Returns the number of entries in each bucket or chain of the current snapshot.
+     *
+     * @return the number of entries in each chain
+     */
+    public int[] chainLengths() {
+        return current.table.chainLengths();
+    }
+
+    /**
+     * Returns the number of snapshots published in place of another.
+     *
+     * @return the reload count
+     */
+    public long getReloadCount() {
+        return reloadCount;
+    }
+
+    /**
+     * Returns the time taken to build and publish the latest snapshot.
+     *
+     * @return the time in nanoseconds, or 0 before the first reload
+     */
+    public long getLastReloadNanos() {
+        return lastReloadNanos;
+    }
+
+    /**
+     * Returns the longest time taken to build and publish a snapshot.
+     *
+     * @return the time in nanoseconds, or 0 before the first reload
+     */
+    public long getMaxReloadNanos() {
+        return maxReloadNanos;
+    }
+
+    // private utilities
+
+    /** Builds a snapshot of the words. */
+    private Snapshot build(Collection<String> words) {
+        List<String> list = Collections.unmodifiableList(new ArrayList<>(words));
+        return new Snapshot(builder.apply(list), list);
+    }
+}
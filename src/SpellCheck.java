@@ -1,9 +1,24 @@
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
 import java.io.PrintStream;
-import java.util.Scanner;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import javax.management.JMException;
 
 /**
  * @author Stephen Hildebrand
@@ -11,83 +26,579 @@ import java.util.regex.Pattern;
  */
 public class SpellCheck {
     /** Dictionary hash table of words. */
-    private static Dictionary dict;
+    private static WordTable dict;
+    /** Match rules tried on words not found as written; replaced when -watch reloads the words. */
+    private static volatile SuffixRules rules = SuffixRules.DEFAULT;
+    /** Verdict cache of each checking thread, or null when caching is off. */
+    private static ThreadLocal<VerdictCache> caches;
+    /** Every verdict cache created, for the statistics. */
+    private static List<VerdictCache> allCaches;
+    /** Index of dictionary-word deletions for suggesting corrections, or null; replaced by -watch. */
+    private static volatile SuggestionIndex suggestions;
+    /** Maximum number of corrections suggested per misspelled word. */
+    private static int suggestionLimit = 3;
+    /** Total time spent finding suggestions, in nanoseconds. */
+    private static long suggestionNanos = 0;
+    /** Number of words corrections were suggested for. */
+    private static long suggestionCount = 0;
+    /** Hot-path metrics, or null when they are off. */
+    private static Metrics metrics;
     /** Number of words in the default dictionary. */
     private static final int DICT_SIZE = 25144;
+    /** Word list of the default dictionary. */
+    private static final File DICT_FILE = new File("dict.txt");
+    /** Precompiled binary image of the default dictionary. */
+    private static final File IMAGE_FILE = new File("dict.img");
+    /** Context model written by -trainContext and read by -context. */
+    private static final File CONTEXT_FILE = new File("context.ngm");
+    /** False-positive rate of the filter of -bloom without a rate. */
+    private static final double DEFAULT_BLOOM_RATE = 0.01;
+    /** Summary file written by -batch. */
+    private static final String BATCH_SUMMARY_FILE = "batch-summary.txt";
+    /** Port served on by -serve without a port. */
+    private static final int DEFAULT_PORT = 8080;
     /** Error exit status code of 1. */
     private static final int EXIT_FAILURE = 1;
+    /** Usage message printed when the arguments cannot be used. */
+    private static final String USAGE = "Usage: SpellCheck [-engine=chain|open|image|mph|dawg|offheap|offheap-image] [-hash=H] [-seed=N] [-threads=N]\n"
+            + "                  [-dict=FILE]... [-rules=FILE] [-cache=N] [-suggest[=N]] [-maxEdit=D]\n"
+            + "                  [-bloom[=RATE]] [-incremental[=FILE]] [-metrics[=FILE]]\n"
+            + "                  [-format=plain|counts|jsonl] [-asyncOutput] [-context[=MODEL]] <input-file.txt>\n"
+            + "       SpellCheck [-engine=E] [-hash=H] [-threads=N] [-format=F] [-glob=PATTERN]...\n"
+            + "                  [-maxInFlight=MB] -batch=DIR...\n"
+            + "       SpellCheck [-engine=E] [-hash=H] [-dict=FILE] [-rules=FILE] [-suggest[=N]] [-metrics] [-watch]\n"
+            + "                  -serve[=PORT]\n"
+            + "       SpellCheck [-hash=H] -compile\n"
+            + "       SpellCheck -trainContext=TEXT\n"
+            + "       SpellCheck [-hash=H] -diagnostics\n"
+            + "where H is cyclic (default; mix64 with -engine=mph), polynomial, fnv1a or mix64";
 
     /**
      * The main method. Begins by reading a list of edges from a text file.
      * Prompts for name of dictionary file containing the word list, the name
      * of the text file to be checked and the name of the output file.
+     * The option -engine=open selects the open-addressing table instead of the
+     * default chained one (-engine=chain), and -engine=image maps the precompiled
+     * dict.img written by -compile, recompiling it first if dict.txt is newer.
+     * With -engine=mph a {@link PerfectDictionary} answers every lookup with at most
+     * one probe, unless other words share the key, and -engine=dawg a
+     * {@link DawgDictionary} walks each word and its stems through one word graph.
+     * -engine=offheap keeps the table in native memory and
+     * -engine=offheap-image maps dict.img the same way, both through the
+     * SegmentDictionary of ffm/, which is looked up by name.
+     * The option -seed=N fixes the seed of the chained table's compression
+     * or of the perfect hash (0 by default), so runs make the same probes.
+     * With -threads=N the text is split at word boundaries and checked on N threads.
+     * The option -hash selects the hash function, and -diagnostics prints collision
+     * statistics of the hash functions over dict.txt instead of checking a file.
+     * With -suggest[=N], up to N (default 3) corrections within -maxEdit=D (default 2)
+     * edits are printed next to each misspelled word. The option -rules=FILE reads
+     * the match rules from FILE instead of using the defaults of rules.txt, and
+     * -cache=N remembers the verdicts of up to N recent tokens per thread.
+     * With -bloom[=RATE] a Bloom filter of the dictionary keys, letting through
+     * about RATE (default 0.01) of the absent words, rejects lookups before they
+     * reach the table.
+     * With -serve[=PORT] no file is checked: the dictionary is loaded once and
+     * served over HTTP on the local port (default 8080) by {@link SpellServer}.
+     * With -watch as well, the word list is held in a {@link SnapshotDictionary}
+     * and a {@link DictionaryWatcher} reloads it whenever the file changes,
+     * publishing the new words without pausing the requests being served.
+     * With -incremental[=FILE] only the blocks of the text changed since the last
+     * incremental run are checked, by {@link IncrementalCheck}; the block results
+     * are kept in FILE (by default the input name ending in -blocks.dat).
+     * With -metrics[=FILE] the hot-path {@link Metrics} are recorded, registered
+     * with JMX and written as JSON to FILE (by default the input name ending in
+     * -metrics.json); a server started with -metrics serves them at /metrics.json.
+     * Each -dict=FILE names a word list to read instead of dict.txt. Given more
+     * than once, the lists become the layers of one {@link LayeredDictionary},
+     * later ones taking precedence, so a word takes one lookup however many lists
+     * there are.
+     * The misspelled words are written by a {@link ResultWriter}: with -format=plain
+     * (the default) one per line as they occur, with -format=counts each distinct
+     * word once with its number of occurrences, and with -format=jsonl one JSON
+     * object per occurrence with its line and column, to the input name ending in
+     * -out.jsonl. With -asyncOutput full output buffers are written on a
+     * background thread.
+     * Each -batch=DIR names a directory tree whose files matching a -glob=PATTERN
+     * (by default *.txt) are all checked against the one dictionary by
+     * {@link BatchCheck}, with an -out.txt report beside each file and a summary
+     * printed and written to batch-summary.txt. At most -maxInFlight=MB (default 64)
+     * megabytes of files are queued or being checked at once.
+     * -trainContext=TEXT counts the word n-grams of TEXT into a {@link ContextModel}
+     * written to context.ngm. With -context[=MODEL] (by default context.ngm) the
+     * tokens are also checked in context against that model, and likely real-word
+     * errors such as "form" for "from" are listed after the misspelled words.
      *
      * @param args The command-line arguments
      */
     public static void main(String[] args) {
-        String txtFileName;                     /* Name of the input text file. */
+        String txtFileName = null;              /* Name of the input text file. */
+        String engine = "chain";                /* Name of the hash table engine. */
+        boolean badArgs = args == null;         /* Whether the arguments are unusable. */
+        boolean compile = false;                /* Whether to only compile the image. */
+        int threads = 1;                        /* Number of threads checking the text. */
+        boolean threadsGiven = false;           /* Whether -threads was given. */
+        List<Path> batchRoots = new ArrayList<>();  /* Directories given with -batch. */
+        List<String> globs = new ArrayList<>();     /* Patterns given with -glob. */
+        long maxInFlight = BatchCheck.DEFAULT_IN_FLIGHT;    /* Budget of bytes in flight of -batch. */
+        StandardHash hash = StandardHash.CYCLIC_SHIFT;  /* Hash function of the table. */
+        boolean hashGiven = false;              /* Whether -hash was given. */
+        Long seed = null;                       /* Seed of the table, or null for the default. */
+        boolean diagnostics = false;            /* Whether to only print hash diagnostics. */
+        boolean suggest = false;                /* Whether to suggest corrections. */
+        int maxEdit = 2;                        /* Maximum edit distance of a suggestion. */
+        File rulesFile = null;                  /* Match rule file, or null for the defaults. */
+        File trainFile = null;                  /* Text to train the context model on, or null. */
+        String contextFileName = null;          /* Context model, "" for the default, or null. */
+        ContextModel context = null;            /* Context model of -context, or null. */
+        ContextModel.Stream contextStream = null;       /* Context check of the text, or null. */
+        long contextNanos = 0;                  /* Estimated time in the context check. */
+        int cacheEntries = 0;                   /* Size of the verdict caches, 0 for none. */
+        double bloomRate = 0;                   /* False-positive rate of the filter, 0 for none. */
+        boolean serve = false;                  /* Whether to serve instead of checking a file. */
+        boolean watch = false;                  /* Whether to reload the word list when it changes. */
+        int port = DEFAULT_PORT;                /* Port to serve on. */
+        String stateFileName = null;            /* Incremental state file, or null. */
+        String metricsFileName = null;          /* Metrics file, "" for the default, or null. */
+        List<File> dictFiles = new ArrayList<>();   /* Word lists given with -dict. */
+        ResultWriter.Format format = ResultWriter.Format.PLAIN;     /* Format of the misspelled words. */
+        boolean asyncOutput = false;            /* Whether to write the output in the background. */
+        ResultWriter results = null;            /* Writer of the misspelled words. */
+        FileOutputStream listFile = null;       /* Stream of the misspelled words if not the output file. */
+        LayeredDictionary layered = null;       /* Table of several word lists, or null. */
+        PerfectDictionary perfect = null;       /* Perfect hash table, or null. */
+        SnapshotDictionary snapshot = null;     /* Reloadable table of -watch, or null. */
+        SuffixRules loadedRules = null;         /* Match rules before they are bound to the words. */
+        long phaseStart = 0;                    /* Start of the current phase, for the metrics. */
+        long configuration = 0;                 /* Fingerprint of the dictionary and settings. */
         int dictWordCount = 0;                  /* Count of words in the dictionary. */
-        int textWordCount = 0;                  /* Count of words in the text. */
-        int misspelledCount = 0;                /* Count of misspelled words. */
+        long textWordCount = 0;                 /* Count of words in the text. */
+        long misspelledCount = 0;               /* Count of misspelled words. */
+        IncrementalCheck.Result incremental = null;     /* Result of an incremental run. */
         String outFileName = null;              /* Name of the output file. */
         PrintStream outfile = null;             /* Stream to print to output file. */
 
-        if (args == null || args.length != 1) {
-            System.out.printf("Error reading input file...\nUsage: SpellCheck <input-file.txt>\n");
+        for (int i = 0; !badArgs && i < args.length; i++) {
+            if (args[i].startsWith("-engine="))
+                engine = args[i].substring("-engine=".length());
+            else if (args[i].equals("-compile"))
+                compile = true;
+            else if (args[i].startsWith("-trainContext="))
+                trainFile = new File(args[i].substring("-trainContext=".length()));
+            else if (args[i].equals("-context"))
+                contextFileName = "";
+            else if (args[i].startsWith("-context="))
+                contextFileName = args[i].substring("-context=".length());
+            else if (args[i].equals("-suggest"))
+                suggest = true;
+            else if (args[i].startsWith("-suggest=")) {
+                suggest = true;
+                suggestionLimit = parseCount(args[i].substring("-suggest=".length()));
+            } else if (args[i].startsWith("-maxEdit="))
+                maxEdit = parseCount(args[i].substring("-maxEdit=".length()));
+            else if (args[i].equals("-serve"))
+                serve = true;
+            else if (args[i].startsWith("-serve=")) {
+                serve = true;
+                port = parseCount(args[i].substring("-serve=".length()));
+            }
+            else if (args[i].equals("-watch"))
+                watch = true;
+            else if (args[i].equals("-incremental"))
+                stateFileName = "";
+            else if (args[i].startsWith("-incremental="))
+                stateFileName = args[i].substring("-incremental=".length());
+            else if (args[i].startsWith("-dict="))
+                dictFiles.add(new File(args[i].substring("-dict=".length())));
+            else if (args[i].startsWith("-format=")) {
+                format = ResultWriter.Format.forLabel(args[i].substring("-format=".length()));
+                badArgs = format == null;
+            } else if (args[i].equals("-asyncOutput"))
+                asyncOutput = true;
+            else if (args[i].equals("-metrics"))
+                metricsFileName = "";
+            else if (args[i].startsWith("-metrics="))
+                metricsFileName = args[i].substring("-metrics=".length());
+            else if (args[i].equals("-bloom"))
+                bloomRate = DEFAULT_BLOOM_RATE;
+            else if (args[i].startsWith("-bloom="))
+                bloomRate = parseRate(args[i].substring("-bloom=".length()));
+            else if (args[i].startsWith("-cache="))
+                cacheEntries = parseCount(args[i].substring("-cache=".length()));
+            else if (args[i].startsWith("-rules="))
+                rulesFile = new File(args[i].substring("-rules=".length()));
+            else if (args[i].equals("-diagnostics"))
+                diagnostics = true;
+            else if (args[i].startsWith("-hash=")) {
+                hash = StandardHash.forLabel(args[i].substring("-hash=".length()));
+                hashGiven = true;
+                badArgs = hash == null;
+            } else if (args[i].startsWith("-seed=")) {
+                seed = parseSeed(args[i].substring("-seed=".length()));
+                badArgs = seed == null;
+            } else if (args[i].startsWith("-threads=")) {
+                threads = parseCount(args[i].substring("-threads=".length()));
+                threadsGiven = true;
+            } else if (args[i].startsWith("-batch="))
+                batchRoots.add(Paths.get(args[i].substring("-batch=".length())));
+            else if (args[i].startsWith("-glob="))
+                globs.add(args[i].substring("-glob=".length()));
+            else if (args[i].startsWith("-maxInFlight="))
+                maxInFlight = parseCount(args[i].substring("-maxInFlight=".length())) * (1L << 20);
+            else if (txtFileName == null && !args[i].startsWith("-"))
+                txtFileName = args[i];
+            else
+                badArgs = true;
+        }
+        if (engine.equals("mph") && !hashGiven)
+            hash = StandardHash.MIX64;          // The only function without key collisions on dict.txt.
+        if (diagnostics && !compile && !badArgs && txtFileName == null) {
+            try {
+                List<String> words = readWordList(DICT_FILE);
+                for (StandardHash h : StandardHash.values())
+                    if (!hashGiven || h == hash)
+                        System.out.println(HashDiagnostics.report(h.label(), h, words, DICT_SIZE));
+                return;
+            } catch (IOException e) {
+                System.out.printf("Error. Could not read %s: %s\n", DICT_FILE, e.getMessage());
+                System.exit(EXIT_FAILURE);
+            }
+        }
+        if (compile && !diagnostics && !badArgs && txtFileName == null) {
+            try {
+                MappedDictionary.compile(readWordList(DICT_FILE), hash, IMAGE_FILE);
+                System.out.printf("Compiled %s to %s.\n", DICT_FILE, IMAGE_FILE);
+                return;
+            } catch (IOException e) {
+                System.out.printf("Error. Could not compile %s: %s\n", IMAGE_FILE, e.getMessage());
+                System.exit(EXIT_FAILURE);
+            }
+        }
+        if (trainFile != null && !compile && !diagnostics && !badArgs && txtFileName == null && args.length == 1) {
+            try (FileChannel text = FileChannel.open(trainFile.toPath())) {
+                ContextModel model = ContextModel.train(new Tokenizer(text));
+                model.save(CONTEXT_FILE);
+                System.out.printf("Trained %d n-grams from %d tokens of %s into %s (%.1f MB).\n", model.size(),
+                        model.getTokenCount(), trainFile, CONTEXT_FILE, model.memoryBytes() / (1024.0 * 1024.0));
+                return;
+            } catch (IOException e) {
+                System.out.printf("Error. Could not train the context model: %s\n", e.getMessage());
+                System.exit(EXIT_FAILURE);
+            }
+        }
+        boolean batch = !batchRoots.isEmpty();  /* Whether to check directory trees. */
+        String conflict = null;                 /* Options that cannot be used together, if any. */
+        boolean imageEngine = engine.equals("image") || engine.equals("offheap-image");
+        if (txtFileName != null && (serve || batch))
+            conflict = "an input file cannot be given with " + (serve ? "-serve" : "-batch");
+        else if (batch && serve)
+            conflict = "-batch cannot be used with -serve";
+        else if (batch && stateFileName != null)
+            conflict = "-batch cannot be used with -incremental";
+        else if (batch && metricsFileName != null)
+            conflict = "-batch cannot be used with -metrics";
+        else if (batch && asyncOutput)
+            conflict = "-batch cannot be used with -asyncOutput";
+        else if (!batch && !globs.isEmpty())
+            conflict = "-glob needs -batch";
+        else if (!batch && maxInFlight != BatchCheck.DEFAULT_IN_FLIGHT)
+            conflict = "-maxInFlight needs -batch";
+        else if (stateFileName != null && serve)
+            conflict = "-incremental cannot be used with -serve";
+        else if (stateFileName != null && threads > 1)
+            conflict = "-incremental cannot be used with -threads above 1";
+        else if (stateFileName != null && cacheEntries > 0)
+            conflict = "-incremental cannot be used with -cache";
+        else if (stateFileName != null && format == ResultWriter.Format.JSONL)
+            conflict = "-incremental cannot be used with -format=jsonl";
+        else if (metricsFileName != null && serve && !metricsFileName.isEmpty())
+            conflict = "-serve takes -metrics without a file name";
+        else if (serve && format != ResultWriter.Format.PLAIN)
+            conflict = "-serve cannot be used with -format";
+        else if (serve && asyncOutput)
+            conflict = "-serve cannot be used with -asyncOutput";
+        else if (watch && !serve)
+            conflict = "-watch needs -serve";
+        else if (watch && bloomRate > 0)
+            conflict = "-watch cannot be used with -bloom";
+        else if (watch && dictFiles.size() > 1)
+            conflict = "-watch takes a single -dict";
+        else if (watch && (imageEngine || engine.equals("offheap")))
+            conflict = "-watch cannot be used with -engine=" + engine;
+        else if (contextFileName != null && (serve || batch || threads > 1 || stateFileName != null))
+            conflict = "-context cannot be used with " + (serve ? "-serve" : batch ? "-batch"
+                    : threads > 1 ? "-threads above 1" : "-incremental");
+        else if (!dictFiles.isEmpty() && imageEngine)
+            conflict = "-dict cannot be used with -engine=" + engine;
+        else if (dictFiles.size() > 1 && (engine.equals("mph") || engine.equals("dawg") || engine.equals("offheap")))
+            conflict = "-engine=" + engine + " takes a single -dict";
+        else if (seed != null && !(engine.equals("chain") || engine.equals("mph")))
+            conflict = "-seed needs -engine=chain or -engine=mph";
+        if (badArgs || compile || diagnostics || trainFile != null || (txtFileName == null && !serve && !batch)
+                || port < 1 || port > 65535 || maxInFlight < 0 || threads < 1 || cacheEntries < 0 || bloomRate < 0
+                || suggestionLimit < 1 || maxEdit < 1 || maxEdit > SuggestionIndex.MAX_DISTANCE
+                || !(engine.equals("chain") || engine.equals("open") || engine.equals("image")
+                        || engine.equals("mph") || engine.equals("dawg") || engine.equals("offheap")
+                        || engine.equals("offheap-image"))) {
+            System.out.printf("Error reading input file...\n%s\n", USAGE);
+            System.exit(EXIT_FAILURE);
+        }
+        if (conflict != null) {
+            System.out.printf("Error. Invalid options: %s.\n%s\n", conflict, USAGE);
             System.exit(EXIT_FAILURE);
         }
 
+        setCache(cacheEntries);
+        metrics = null;
+        phaseStart = System.nanoTime();
+        if (rulesFile != null) {
+            try {
+                rules = SuffixRules.load(rulesFile);
+            } catch (IOException e) {
+                System.out.printf("Error. Could not read rules: %s\n", e.getMessage());
+                System.exit(EXIT_FAILURE);
+            }
+        }
+
         //-------------------------------------
         //      Dictionary File Processing
         //-------------------------------------
-        dict = new Dictionary(DICT_SIZE);
         // Read/process dictionary file and fill hash table.
+        List<File> sources = dictFiles.isEmpty() ? List.of(DICT_FILE) : dictFiles;
         try {
-            Scanner ds = new Scanner(new File("dict.txt"));
-            while (ds.hasNextLine()) {
-                Scanner ls = new Scanner(ds.nextLine());
-                String word = ls.next();
-                dict.put(dict.hashCode(word), word);    // Add word to dictionary.
+            List<String> words;                     /* The dictionary words; null if not needed. */
+            long[] binding = null;                  /* Binding of the rules stored with the words. */
+            if (watch) {
+                // Build each version of the list the same way, so it can be swapped in.
+                String kind = engine;
+                StandardHash function = hash;
+                Long fixed = seed;
+                words = readWordList(sources.get(0));
+                snapshot = new SnapshotDictionary(words, list -> buildTable(kind, function, fixed, list));
+                dict = snapshot;
+                dictWordCount = dict.size();
+            } else if (sources.size() > 1) {
+                layered = new LayeredDictionary(hash);
+                try {
+                    for (File source : sources)
+                        layered.addLayer(layerName(source, sources), readWordList(source));
+                } catch (IllegalArgumentException e) {
+                    System.out.printf("Error. Could not layer the dictionaries: %s\n", e.getMessage());
+                    System.exit(EXIT_FAILURE);
+                }
+                words = layered.words();
+                dict = layered;
+                dictWordCount = dict.size();
+            } else if (engine.equals("image") || engine.equals("offheap-image")) {
+                DictionaryImage image = loadImage(hash, engine.equals("offheap-image"));
+                binding = image.binding();
+                words = bloomRate > 0 || stateFileName != null || suggest ? image.words() : null;
+                dict = image;
+                dictWordCount = dict.size();
+            } else if (engine.equals("offheap")) {
+                words = readWordList(sources.get(0));
+                dict = offHeapTable(words, hash);
+                dictWordCount = words.size();               // Counted as read, like the other tables.
+            } else if (engine.equals("mph")) {
+                words = readWordList(sources.get(0));
+                perfect = new PerfectDictionary(words, hash, seed == null ? 0 : seed);
+                dict = perfect;
+                dictWordCount = dict.size();
+            } else if (engine.equals("dawg")) {
+                words = readWordList(sources.get(0));
+                dict = new DawgDictionary(words, hash);
+                dictWordCount = words.size();               // Counted as read, like the other tables.
+            } else {
+                if (engine.equals("open"))
+                    dict = new OpenDictionary(DICT_SIZE, hash);
+                else if (seed != null)
+                    dict = new Dictionary(DICT_SIZE, hash, seed);
+                else
+                    dict = new Dictionary(DICT_SIZE, hash);
+                words = readWordList(sources.get(0));
+                for (String word : words) {
+                    dict.put(dict.hashCode(word), word);    // Add word to dictionary.
 
-                dictWordCount++;                        // Increment total dictionary word count.
+                    dictWordCount++;                        // Increment total dictionary word count.
+                }
             }
-        } catch (FileNotFoundException e) {             // Catch file IO error and quit.
-            System.out.println("Error. Dictionary file <dict.txt> could not be found.");
+            loadedRules = rules;
+            // Skip stems no word could match.
+            rules = binding != null ? rules.forBinding(binding) : rules.forDictionary(words);
+            if (bloomRate > 0)
+                dict = new FilteredDictionary(dict, words, bloomRate);
+            if (stateFileName != null)
+                configuration = IncrementalCheck.fingerprint(words, engine, hash.label(),
+                        "bloom=" + bloomRate + (seed == null ? "" : " seed=" + seed), rulesFile == null ? ""
+                        : new String(Files.readAllBytes(rulesFile.toPath()), StandardCharsets.UTF_8));
+            if (suggest)
+                suggestions = new SuggestionIndex(words, maxEdit);
+            if (metricsFileName != null) {
+                Metrics recorded = new Metrics(dict, rules);
+                recorded.addPhase(Metrics.Phase.LOAD, System.nanoTime() - phaseStart);
+                recorded.register();
+                metrics = recorded;
+            }
+        } catch (FileNotFoundException e) {                 // Catch file IO error and quit.
+            if (dictFiles.isEmpty())
+                System.out.println("Error. Dictionary file <dict.txt> could not be found.");
+            else
+                System.out.printf("Error. Dictionary file could not be found: %s\n", e.getMessage());
+            System.exit(EXIT_FAILURE);
+        } catch (IOException e) {
+            System.out.printf("Error. Could not load dictionary: %s\n", e.getMessage());
+            System.exit(EXIT_FAILURE);
+        } catch (IllegalArgumentException e) {
+            System.out.printf("Error. Could not build the dictionary with %s: %s\n", hash.label(), e.getMessage());
+            System.exit(EXIT_FAILURE);
+        } catch (JMException e) {
+            System.out.printf("Error. Could not register metrics: %s\n", e.getMessage());
             System.exit(EXIT_FAILURE);
         } // --------- End Dictionary File ----------
 
+        if (batch) {
+            try {
+                BatchCheck.Summary summary = BatchCheck.run(batchRoots, globs,
+                        threadsGiven ? threads : Runtime.getRuntime().availableProcessors(), format, maxInFlight);
+                List<String> lines = new ArrayList<>();
+                lines.add(String.format("Dictionary word count: %d", dictWordCount));
+                lines.addAll(summary.report(dict));
+                Files.write(Paths.get(BATCH_SUMMARY_FILE), lines, StandardCharsets.UTF_8);
+                for (String line : lines)
+                    System.out.println(line);
+                System.out.printf("Summary written to %s.\n", BATCH_SUMMARY_FILE);
+                return;
+            } catch (IOException e) {
+                System.out.printf("Error. Could not check the batch: %s\n", e.getMessage());
+                System.exit(EXIT_FAILURE);
+            }
+        }
+
+        if (serve) {
+            try {
+                SpellServer server = new SpellServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+                Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+                System.out.printf("Serving %d dictionary words on http://%s:%d/ (%s threads).\n", dictWordCount,
+                        InetAddress.getLoopbackAddress().getHostAddress(), server.getPort(),
+                        server.isVirtual() ? "virtual" : "platform");
+                if (snapshot != null) {
+                    File source = sources.get(0);
+                    DictionaryWatcher watcher = new DictionaryWatcher(source.toPath(),
+                            reloader(snapshot, loadedRules, suggest ? maxEdit : 0, source));
+                    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                        try {
+                            watcher.close();
+                        } catch (IOException e) {
+                            // Exiting anyway.
+                        }
+                    }));
+                    System.out.printf("Watching %s for changes.\n", source);
+                }
+                return;
+            } catch (IOException e) {
+                System.out.printf("Error. Could not serve on port %d: %s\n", port, e.getMessage());
+                System.exit(EXIT_FAILURE);
+            }
+        }
+
+
+        if (contextFileName != null) {
+            File model = contextFileName.isEmpty() ? CONTEXT_FILE : new File(contextFileName);
+            try {
+                context = ContextModel.load(model);
+            } catch (IOException e) {
+                System.out.printf("Error. Could not load the context model %s: %s\n", model, e.getMessage());
+                System.exit(EXIT_FAILURE);
+            }
+        }
 
         //-------------------------------------
         //         Text File Processing
         //-------------------------------------
         // Read and process input text file & check spelling of each word.
-        txtFileName = args[0];
         if (txtFileName != null && txtFileName.length() > 0) {
-            try {
-                Scanner ts = new Scanner(new File(txtFileName));
+            try (FileChannel ts = FileChannel.open(Paths.get(txtFileName))) {
                 outFileName = txtFileName.replace(".txt", "-out.txt");
                 outfile = new PrintStream(new File(outFileName));
-                outfile.printf("Possible misspelled words:\n");
-                // For each line of the text file.
-                while (ts.hasNextLine()) {
-                    String line = ts.nextLine();                    // Next line of text.
-                    Pattern pat = Pattern.compile("[\\w']+");       // Regex pattern.
-                    Matcher match = pat.matcher(line);              // Matcher for pattern.
-                    while (match.find()) {
-                        String word = line.substring(match.start(), match.end());
+                if (format == ResultWriter.Format.JSONL) {
+                    String listFileName = txtFileName.replace(".txt", "-out.jsonl");
+                    outfile.printf("Possible misspelled words: see %s\n", listFileName);
+                    listFile = new FileOutputStream(listFileName);
+                    results = new ResultWriter(listFile, format, ts,
+                            SpellCheck::timedSuggest, asyncOutput);
+                } else {
+                    outfile.printf("Possible misspelled words:\n");
+                    results = new ResultWriter(outfile, format, ts, SpellCheck::timedSuggest, asyncOutput);
+                }
+                phaseStart = System.nanoTime();
+                if (stateFileName != null) {
+                    // Check only the blocks changed since the last incremental run.
+                    File stateFile = new File(stateFileName.isEmpty()
+                            ? txtFileName.replace(".txt", "-blocks.dat") : stateFileName);
+                    IncrementalCheck check = IncrementalCheck.load(stateFile, configuration);
+                    byte[] text = Files.readAllBytes(Paths.get(txtFileName));
+                    incremental = check.check(text, text.length);
+                    check.save(stateFile);
+                    textWordCount = incremental.words;
+                    for (String word : incremental.misspelled) {
+                        printMisspelled(results, word, -1);         // Print to output file.
+                        misspelledCount++;
+                    }
+                } else if (threads > 1) {
+                    // Check ranges of the file in parallel, then print in document order.
+                    ParallelCheck.Result result = ParallelCheck.check(ts, threads);
+                    textWordCount = result.words;
+                    for (int i = 0; i < result.misspelled.size(); i++) {
+                        printMisspelled(results, result.misspelled.get(i), result.offsets[i]);
+                        misspelledCount++;
+                    }
+                } else {
+                    // For each [\w']+ token of the text file.
+                    Tokenizer tokens = new Tokenizer(ts);
+                    contextStream = context != null ? context.stream() : null;
+                    while (tokens.next()) {
                         textWordCount++;
-                        if (!checkSpelling(word)) {
-                            outfile.printf(word + "\n");            // Print to output file.
+                        if (!checkToken(tokens.array(), tokens.start(), tokens.length())) {
+                            printMisspelled(results, tokens.token(), tokens.offset());
                             misspelledCount++;
                         }
+                        if (contextStream != null) {
+                            if ((textWordCount & (Metrics.SAMPLE - 1)) == 0) {   // Sampled as the metrics are.
+                                long start = System.nanoTime();
+                                contextStream.next(tokens.array(), tokens.start(), tokens.length(), tokens.offset());
+                                contextNanos += Metrics.SAMPLE * (System.nanoTime() - start);
+                            } else {
+                                contextStream.next(tokens.array(), tokens.start(), tokens.length(), tokens.offset());
+                            }
+                        }
                     }
+                    if (contextStream != null)
+                        contextStream.finish();
+                    if (metrics != null)
+                        metrics.splitScan(System.nanoTime() - phaseStart);
+                }
+                long closeStart = System.nanoTime();
+                results.close();                                    // Counts are written here.
+                if (contextStream != null) {
+                    outfile.printf("\nPossible real-word errors:\n");
+                    for (ContextModel.Flag flag : contextStream.flags())
+                        outfile.printf("%s -> %s (offset %d)\n", flag.word, flag.suggestion, flag.offset);
+                }
+                if (listFile != null)
+                    listFile.close();
+                if (metrics != null)
+                    metrics.addPhase(Metrics.Phase.OUTPUT, System.nanoTime() - closeStart);
+                if (metrics != null && (stateFileName != null || threads > 1)) {
+                    // Tokenizing is not timed apart from checking on these paths.
+                    long output = metrics.getPhaseNanos()[Metrics.Phase.OUTPUT.ordinal()];
+                    metrics.addPhase(Metrics.Phase.CHECK, System.nanoTime() - phaseStart - output);
                 }
-            } catch (FileNotFoundException e) {                     // Catch file IO error and quit.
-                System.out.printf("Unable to read %s. Usage: SpellCheck <input-file.txt>\n", txtFileName);
+            } catch (IOException e) {                               // Catch file IO error and quit.
+                System.out.printf("Unable to read %s. %s\n", txtFileName, USAGE);
                 System.exit(EXIT_FAILURE);
             }
         } else {
-            System.out.printf("File %s not found. Usage: SpellCheck <input-file.txt>\n", txtFileName);
+            System.out.printf("File %s not found. %s\n", txtFileName, USAGE);
             System.exit(EXIT_FAILURE);
         } // ------------- End Text File ---------------
 
@@ -96,8 +607,9 @@ public class SpellCheck {
         //        Output File Processing
         //-------------------------------------
         System.out.printf("Printing results to %s.\n", outFileName);
-        int probeCount = dict.getProbeCount();
-        int lookupCount = dict.getLookupCount();
+        phaseStart = System.nanoTime();
+        long probeCount = incremental != null ? incremental.probes : dict.getProbeCount();
+        long lookupCount = incremental != null ? incremental.lookups : dict.getLookupCount();
         outfile.printf("\nDictionary word count: %d\n", dictWordCount);  // Count of words in dictionary.
         outfile.printf("Text word count: %d\n", textWordCount);          // Count of words in the text.
         outfile.printf("Misspelled word count: %d\n", misspelledCount);  // Count of misspelled words.
@@ -110,99 +622,487 @@ public class SpellCheck {
         // Average number of probes per lookup operation.
         double probesPerLookup = probeCount / (double) lookupCount;
         outfile.printf("Average number of probes per lookup: %.2f\n", probesPerLookup);
+
+        if (allCaches != null) {
+            long hits = 0, lookups = 0, saved = 0;
+            for (VerdictCache cache : allCaches) {
+                hits += cache.getHitCount();
+                lookups += cache.getLookupCount();
+                saved += cache.getSavedProbeCount();
+            }
+            outfile.printf("Verdict cache hit ratio: %.2f (%d of %d words, %d caches)\n",
+                    hits / (double) Math.max(lookups, 1), hits, lookups, allCaches.size());
+            outfile.printf("Total probe count without cache: %d\n", probeCount + saved);
+            outfile.printf("Average number of probes per word without cache: %.2f\n",
+                    (probeCount + saved) / (double) textWordCount);
+        }
+        if (dict instanceof FilteredDictionary) {
+            FilteredDictionary filtered = (FilteredDictionary) dict;
+            BloomFilter filter = filtered.getFilter();
+            outfile.printf("Bloom filter rejections: %d of %d lookups (%.1f%%, %.1f bits per word, %d hashes)\n",
+                    filtered.getRejectionCount(), lookupCount,
+                    100.0 * filtered.getRejectionCount() / Math.max(lookupCount, 1),
+                    filter.bitCount() / (double) Math.max(dictWordCount, 1), filter.hashCount());
+            outfile.printf("Bloom filter false positives: %d\n", filtered.getFalsePositiveCount());
+            outfile.printf("Total probe count without filter: %d (estimated at %.2f probes per miss)\n",
+                    probeCount + filtered.getSavedProbeCount(), filtered.getMissProbes());
+        }
+        if (perfect != null)
+            outfile.printf("Perfect hash: %d levels, %.2f bits per word, %d spilled, %d sharing a key (seed %d)\n",
+                    perfect.levelCount(), perfect.bitsPerKey(), perfect.spillCount(), perfect.sharedCount(),
+                    perfect.getSeed());
+        if (layered != null) {
+            List<String> layers = new ArrayList<>();
+            for (String name : layered.layerNames())
+                layers.add(String.format("%s %d", name, layered.layerSize(name)));
+            outfile.printf("Dictionary layers: %s (later layers take precedence)\n", String.join(", ", layers));
+        }
+        if (format == ResultWriter.Format.COUNTS)
+            outfile.printf("Distinct misspelled words: %d\n", results.distinctCount());
+        if (contextStream != null) {
+            outfile.printf("Real-word errors flagged: %d (%d confusable words checked in context)\n",
+                    contextStream.flags().size(), contextStream.getScoredCount());
+            outfile.printf("Context model: %d n-grams from %d tokens, %.1f MB (%.1f bytes per n-gram)\n",
+                    context.size(), context.getTokenCount(), context.memoryBytes() / (1024.0 * 1024.0),
+                    context.memoryBytes() / (double) Math.max(context.size(), 1));
+            outfile.printf("Average context check time per word: %.1f ns\n",
+                    contextNanos / (double) Math.max(textWordCount, 1));
+        }
+        if (incremental != null)
+            outfile.printf("Incremental blocks reused: %d of %d\n", incremental.reused, incremental.blocks);
+        if (suggestions != null) {
+            outfile.printf("Suggestion index entries: %d (%.1f MB, max edit distance %d)\n", suggestions.size(),
+                    suggestions.memoryBytes() / (1024.0 * 1024.0), suggestions.getMaxDistance());
+            outfile.printf("Average suggestion time per misspelled word: %.2f us\n",
+                    suggestionNanos / 1000.0 / Math.max(suggestionCount, 1));
+        }
+        if (metrics != null) {
+            LatencyHistogram latency = metrics.getLatency();
+            outfile.printf("Word check latency: p50 %d ns, p99 %d ns, p99.9 %d ns (%d words timed)\n",
+                    latency.getPercentile(0.5), latency.getPercentile(0.99), latency.getPercentile(0.999),
+                    latency.getCount());
+            metrics.addPhase(Metrics.Phase.OUTPUT, System.nanoTime() - phaseStart);
+            File metricsFile = new File(metricsFileName.isEmpty()
+                    ? txtFileName.replace(".txt", "-metrics.json") : metricsFileName);
+            try {
+                Files.write(metricsFile.toPath(), (metrics.getJson() + "\n").getBytes(StandardCharsets.UTF_8));
+                System.out.printf("Metrics written to %s.\n", metricsFile);
+            } catch (IOException e) {
+                System.out.printf("Error. Could not write %s: %s\n", metricsFile, e.getMessage());
+                System.exit(EXIT_FAILURE);
+            }
+        }
         // ---------- End Output File ------------
     }
 
+    /**
+     * Hands a misspelled word to the result writer, timing it as output.
+     *
+     * @param results the writer of the misspelled words
+     * @param word    the misspelled word
+     * @param offset  byte offset of the word in the text, or -1 if not known
+     * @throws IOException if the output cannot be written
+     */
+    private static void printMisspelled(ResultWriter results, String word, long offset) throws IOException {
+        long start = metrics != null ? System.nanoTime() : 0;
+        results.write(word, offset);
+        if (metrics != null)
+            metrics.addPhase(Metrics.Phase.OUTPUT, System.nanoTime() - start);
+    }
+
+    /**
+     * Returns the suggested corrections of a misspelled word, as {@link #suggest}
+     * does, adding the time taken to the suggestion statistics. Tokens containing
+     * digits are numbers or codes rather than misspellings, so no corrections are
+     * suggested for them.
+     *
+     * @param word the misspelled word
+     * @return the corrections, or null if there are none to print
+     */
+    private static List<String> timedSuggest(String word) {
+        long start = System.nanoTime();
+        List<String> corrections = suggest(word);
+        if (corrections != null) {
+            suggestionNanos += System.nanoTime() - start;
+            suggestionCount++;
+        }
+        return corrections;
+    }
+
+    /**
+     * Returns the suggested corrections of a misspelled word.
+     *
+     * @param word the misspelled word
+     * @return up to the -suggest limit of corrections, best first, or null if
+     * suggestions are off or the word contains digits
+     */
+    static List<String> suggest(String word) {
+        if (suggestions == null || word.chars().anyMatch(Character::isDigit))
+            return null;
+        return suggestions.suggest(word, suggestionLimit);
+    }
+
+    /**
+     * Returns the dictionary used by the spell-checking methods.
+     *
+     * @return the dictionary, or null before one is loaded
+     */
+    static WordTable getDictionary() {
+        return dict;
+    }
+
+    /**
+     * Returns the hot-path metrics being recorded.
+     *
+     * @return the metrics, or null when they are off
+     */
+    static Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Turns the hot-path metrics on or off.
+     *
+     * @param recorded the metrics to record into, or null to turn them off
+     */
+    static void setMetrics(Metrics recorded) {
+        metrics = recorded;
+    }
+
+    /**
+     * Sets the dictionary used by the spell-checking methods, for callers that
+     * build their own table instead of running {@link #main(String[])}.
+     *
+     * @param table the dictionary to check words against
+     */
+    static void setDictionary(WordTable table) {
+        dict = table;
+    }
+
+    /**
+     * Turns the verdict caches of the checking threads on or off. Each thread that
+     * checks tokens gets a new, empty cache.
+     *
+     * @param entries the number of tokens each cache holds, or 0 to turn caching off
+     */
+    static void setCache(int entries) {
+        if (entries > 0) {
+            List<VerdictCache> created = Collections.synchronizedList(new ArrayList<>());
+            allCaches = created;
+            caches = ThreadLocal.withInitial(() -> {
+                VerdictCache cache = new VerdictCache(entries);
+                created.add(cache);
+                return cache;
+            });
+        } else {
+            allCaches = null;
+            caches = null;
+        }
+    }
+
+    /**
+     * Sets the match rules used by the spell-checking methods.
+     *
+     * @param suffixRules the compiled match rules
+     */
+    static void setRules(SuffixRules suffixRules) {
+        rules = suffixRules;
+    }
+
+    /**
+     * Builds the table of an engine over a word list, as -watch does for each
+     * version of the list.
+     *
+     * @param engine the engine: chain, open, mph or dawg
+     * @param hash   the hash function of the table
+     * @param seed   the seed of the table, or null for the default
+     * @param words  the words
+     * @return the filled table
+     * @throws IllegalArgumentException if the perfect hash cannot be built
+     */
+    private static WordTable buildTable(String engine, StandardHash hash, Long seed, Collection<String> words) {
+        if (engine.equals("mph"))
+            return new PerfectDictionary(words, hash, seed == null ? 0 : seed);
+        if (engine.equals("dawg"))
+            return new DawgDictionary(words, hash);
+        WordTable table = engine.equals("open") ? new OpenDictionary(DICT_SIZE, hash)
+                : seed != null ? new Dictionary(DICT_SIZE, hash, seed) : new Dictionary(DICT_SIZE, hash);
+        for (String word : words)
+            table.put(table.hashCode(word), word);
+        return table;
+    }
+
+    /**
+     * Returns the action of -watch run with each changed word list: it publishes
+     * the words, then binds the match rules to them and rebuilds the suggestion
+     * index. Until then, words checked meet the new words with the rules and
+     * suggestions of the old ones.
+     *
+     * @param snapshot    the reloadable dictionary
+     * @param loadedRules the match rules before they were bound to a word list
+     * @param maxEdit     the maximum edit distance of suggestions, or 0 if they are off
+     * @param source      the word list, for the message
+     * @return the reload action
+     */
+    private static java.util.function.Consumer<List<String>> reloader(SnapshotDictionary snapshot,
+            SuffixRules loadedRules, int maxEdit, File source) {
+        return words -> {
+            long nanos = snapshot.reload(words);
+            rules = loadedRules.forDictionary(words);
+            if (maxEdit > 0)
+                suggestions = new SuggestionIndex(words, maxEdit);
+            System.out.printf("Reloaded %d dictionary words from %s in %.1f ms.\n", snapshot.size(), source,
+                    nanos / 1e6);
+        };
+    }
+
+    /**
+     * Parses a positive count given as an option value.
+     *
+     * @param value the option value
+     * @return the count, or -1 if the value is not a positive number
+     */
+    private static int parseCount(String value) {
+        try {
+            int count = Integer.parseInt(value);
+            return count > 0 ? count : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Parses a seed given as an option value.
+     *
+     * @param value the option value
+     * @return the seed, or null if the value is not a number
+     */
+    private static Long parseSeed(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses a rate given as an option value.
+     *
+     * @param value the option value
+     * @return the rate, or -1 if the value is not a number between 0 and 1 exclusive
+     */
+    private static double parseRate(String value) {
+        try {
+            double rate = Double.parseDouble(value);
+            return rate > 0 && rate < 1 ? rate : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Names the layer of a word list by its file name, or by its path if another
+     * list has the same file name, such as med/words.txt and legal/words.txt.
+     *
+     * @param source  the word list
+     * @param sources every word list being layered
+     * @return the name of its layer
+     */
+    static String layerName(File source, List<File> sources) {
+        for (File other : sources)
+            if (other != source && other.getName().equals(source.getName()))
+                return source.getPath();
+        return source.getName();
+    }
+
+    /**
+     * Reads a word list with one word per line, taking the first whitespace-separated
+     * token of each non-blank line.
+     *
+     * @param file the word list
+     * @return the words in file order
+     * @throws IOException if the file cannot be read
+     */
+    static List<String> readWordList(File file) throws IOException {
+        List<String> words = new ArrayList<>(DICT_SIZE);
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                int start = 0;
+                while (start < line.length() && Character.isWhitespace(line.charAt(start)))
+                    start++;
+                int end = start;
+                while (end < line.length() && !Character.isWhitespace(line.charAt(end)))
+                    end++;
+                if (end > start)
+                    words.add(line.substring(start, end));
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Maps the precompiled dictionary image, first recompiling it from the word list
+     * if it is missing, older than the word list, of another image version, or built
+     * with another hash function.
+     *
+     * @param hash    the hash function the image must use
+     * @param offHeap whether to map it with SegmentDictionary rather than MappedDictionary
+     * @return the mapped dictionary
+     * @throws IOException if neither the image nor the word list can be used, or
+     *                     SegmentDictionary is wanted but cannot be loaded
+     */
+    private static DictionaryImage loadImage(StandardHash hash, boolean offHeap) throws IOException {
+        if (offHeap)
+            offHeapClass();                         // Fail before touching an image that may be fine.
+        if (IMAGE_FILE.exists() && IMAGE_FILE.lastModified() >= DICT_FILE.lastModified()) {
+            try {
+                DictionaryImage image = mapImage(offHeap);
+                if (image.getHash() == hash)
+                    return image;
+                image.close();
+            } catch (IOException e) {
+                // Stale or damaged image; fall through and rebuild it.
+            }
+        }
+        MappedDictionary.compile(readWordList(DICT_FILE), hash, IMAGE_FILE);
+        return mapImage(offHeap);
+    }
+
+    /** Maps the dictionary image on or off the heap. */
+    private static DictionaryImage mapImage(boolean offHeap) throws IOException {
+        return offHeap ? (DictionaryImage) offHeapTable(IMAGE_FILE) : new MappedDictionary(IMAGE_FILE);
+    }
+
+    /**
+     * Creates a SegmentDictionary, of the optional ffm/ classes, with the given
+     * constructor arguments: a word list and hash function to build the table in
+     * native memory, or an image file to map.
+     *
+     * @param args the constructor arguments
+     * @return the off-heap table
+     * @throws IOException if the class was not compiled or cannot run on this Java,
+     *                     or the image cannot be mapped
+     */
+    static WordTable offHeapTable(Object... args) throws IOException {
+        Class<?>[] types = args.length == 1 ? new Class<?>[] {File.class}
+                : new Class<?>[] {Collection.class, HashStrategy.class};
+        Class<?> table = offHeapClass();
+        try {
+            return (WordTable) table.getConstructor(types).newInstance(args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IOException(e.getCause());
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw offHeapMissing();
+        }
+    }
+
+    /** Loads the SegmentDictionary class, of the optional ffm/ classes. */
+    private static Class<?> offHeapClass() throws IOException {
+        try {
+            return Class.forName("SegmentDictionary");
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw offHeapMissing();
+        }
+    }
+
+    /** The error reported when SegmentDictionary cannot be loaded. */
+    private static IOException offHeapMissing() {
+        return new IOException("-engine=offheap needs ffm/SegmentDictionary.java compiled with Java 22,"
+                + " or Java 21 and --enable-preview");
+    }
+
     /**
      * Checks the spelling of each word in the text by searching for it in the
      * dictionary. Reads the user's text file word by word, checking the spelling.
      * Writes out any word that appears to be misspelled. If a word is not found
-     * at first, several additional rules are followed (as specified below) to
-     * strip common suffixes, and the search is then reattempted. Regards the
+     * at first, the match rules (see {@link SuffixRules} and rules.txt) are followed
+     * to strip common suffixes, and the search is then reattempted. Regards the
      * apostrophe as a letter (e.g. "don't"). The number of lookups is tracked in the
      * Dictionary class.
      *
      * @param word the word to check
      * @return true if the word is found in the dictionary, false if not
      */
-    private static boolean checkSpelling(String word) {
-        boolean found = false;              /* Whether or not a match has been found. */
-//        String retry;                       /* Altered word to retry. */
-
-        // First lookup for dictionary match.
-        int key = dict.hashCode(word);
-        String ans = dict.get(key);
-        if (ans != null)
-            found = ans.equals(word);       // Additional check to ensure correct word returned.
-
-        // ----------- Word Alterations ------------
-        // If upper case first letter -> downshift to lower case.
-        if (!found && Character.isUpperCase(word.charAt(0))) {
-            word = Character.toLowerCase(word.charAt(0)) + word.substring(1);
-            key = dict.hashCode(word);
-            found = word.equals(dict.get(key));
-        }
-        // Suffix = "'s" drop.
-        if (!found && word.endsWith("'s")) {
-            word = word.substring(0, word.length() - 2);
-            key = dict.hashCode(word);
-            found = word.equals(dict.get(key));
-        }
-        // Suffix = "s" drop.
-        if (!found && word.endsWith("s")) {
-            word = word.substring(0, word.length() - 1);
-            key = dict.hashCode(word);
-            found = word.equals(dict.get(key));
-            // Suffix = "es".
-            if (!found && word.endsWith("es")) {
-                word = word.substring(0, word.length() - 2);
-                key = dict.hashCode(word);
-                found = word.equals(dict.get(key));
-            }
-        }
-        // Suffix = "ed" drop.
-        if (!found && word.endsWith("ed")) {
-            word = word.substring(0, word.length() - 2);
-            key = dict.hashCode(word);
-            found = word.equals(dict.get(key));
-            // Suffix "d" drop.
-            if (!found && word.endsWith("d")) {
-                word = word.substring(0, word.length() - 1);
-                key = dict.hashCode(word);
-                found = word.equals(dict.get(key));
-            }
-        }
-        // Suffix = "er" drop.
-        if (!found && word.endsWith("er")) {
-            word = word.substring(0, word.length() - 2);
-            key = dict.hashCode(word);
-            found = word.equals(dict.get(key));
-            // suffix = "r" drop
-            if (!found && word.endsWith("r")) {
-                word = word.substring(0, word.length() - 1);
-                key = dict.hashCode(word);
-                found = word.equals(dict.get(key));
-            }
+    static boolean checkSpelling(String word) {
+        Metrics recorded = metrics;
+        if (recorded != null) {
+            boolean timed = recorded.sample();
+            long start = timed ? System.nanoTime() : 0;
+            int match = dict.get(dict.hashCode(word), word) != null ? Metrics.AS_WRITTEN : rules.match(dict, word);
+            return recorded(recorded, match, timed, start);
         }
-        // Suffix = "ing" drop.
-        if (!found && word.endsWith("ing")) {
-            word = word.substring(0, word.length() - 3);
-            key = dict.hashCode(word);
-            found = word.equals(dict.get(key));
-            // Replace "ing" with suffix = "e".
-            if (!found) {
-                word = word + "e";
-                key = dict.hashCode(word);
-                found = word.equals(dict.get(key));
-            }
-        }
-        // Suffix = "ly" drop.
-        if (!found && word.endsWith("ly")) {
-            word = word.substring(0, word.length() - 2);
-            key = dict.hashCode(word);
-            found = word.equals(dict.get(key));
+        int key = dict.hashCode(word);
+        return dict.get(key, word) != null || rules.check(dict, word);
+    }
+
+    /**
+     * Checks the spelling of a token of the text, answering from this thread's
+     * verdict cache when caching is on. A verdict computed on a cache miss is
+     * cached together with the dictionary probes it cost. With several threads
+     * checking at once, that cost also includes the probes other threads made
+     * meanwhile, so the probes saved are then approximate.
+     *
+     * @param text the array holding the token
+     * @param off  index of the first byte of the token
+     * @param len  length of the token in bytes
+     * @return true if the token is found in the dictionary, false if not
+     */
+    static boolean checkToken(byte[] text, int off, int len) {
+        if (caches == null)
+            return checkSpelling(text, off, len);
+        VerdictCache cache = caches.get();
+        int hash = VerdictCache.hash(text, off, len);
+        int verdict = cache.get(hash, text, off, len);
+        if (verdict >= 0)
+            return verdict == 1;
+        long before = dict.getProbeCount();
+        boolean found = checkSpelling(text, off, len);
+        cache.put(hash, text, off, len, found, dict.getProbeCount() - before);
+        return found;
+    }
+
+    /**
+     * Checks the spelling of a word held as ASCII bytes, such as a token view from
+     * {@link Tokenizer}. The bytes are compared in place, so no string is created
+     * for the word or for any of the stems the match rules try.
+     *
+     * @param text the array holding the word
+     * @param off  index of the first byte of the word
+     * @param len  length of the word in bytes
+     * @return true if the word is found in the dictionary, false if not
+     */
+    static boolean checkSpelling(byte[] text, int off, int len) {
+        Metrics recorded = metrics;
+        if (recorded != null) {
+            boolean timed = recorded.sample();
+            long start = timed ? System.nanoTime() : 0;
+            int match = dict.contains(dict.hashCode(text, off, len), text, off, len)
+                    ? Metrics.AS_WRITTEN : rules.match(dict, text, off, len);
+            return recorded(recorded, match, timed, start);
         }
+        int key = dict.hashCode(text, off, len);
+        return dict.contains(key, text, off, len) || rules.check(dict, text, off, len);
+    }
 
-        return found;       // True if any one of the above was successful.
+    /**
+     * Records a word checked while metrics are on: how it was found, the lookups
+     * it took and, if it was timed, its latency.
+     *
+     * @param recorded the metrics
+     * @param match    how the word was found, as for {@link Metrics#record(int, int)}
+     * @param timed    whether the word is timed
+     * @param start    the time checking started, if timed
+     * @return true if the word was found
+     */
+    private static boolean recorded(Metrics recorded, int match, boolean timed, long start) {
+        if (timed)
+            recorded.recordLatency(System.nanoTime() - start);
+        recorded.record(match, match == Metrics.AS_WRITTEN ? 1 : 1 + SuffixRules.lastLookups());
+        return match != SuffixRules.NO_MATCH;
     }
 }
@@ -0,0 +1,365 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * A long-running spell-check server. The dictionary is loaded once by
+ * {@link SpellCheck} and then shared, read-only, by every request. Requests are
+ * served by {@link HttpServer}, each on its own thread: a virtual thread where the
+ * Java runtime has them (Java 21 and later), otherwise a thread from a cached pool.
+ *
+ * <pre>
+ *   POST /check    the body is one document; returns its misspelled words
+ *   POST /batch    the body is a JSON array of documents (strings) and token lists
+ *                  (arrays of strings); returns the misspelled words of each
+ *   GET  /metrics  request, latency and probe counters in Prometheus text format
+ *   GET  /metrics.json  the hot-path {@link Metrics} as JSON, when they are on
+ *   GET  /health   "ok"
+ * </pre>
+ *
+ * A result is {"misspelled": [{"offset": o, "token": t}, ...], "words": n}. For
+ * /check the offset is in bytes from the start of the body. For a document in a
+ * batch it is in characters from the start of the document, and for a token list
+ * it is the index of the token. Misspelled words also carry "suggestions" when
+ * the checker was started with -suggest.
+ */
+public class SpellServer {
+    /** Largest request body accepted, in bytes. */
+    private static final int MAX_BODY = 16 * 1024 * 1024;
+    /** Seconds allowed for running requests to finish on stop. */
+    private static final int STOP_DELAY = 1;
+    /** System property of HttpServer that turns on TCP_NODELAY for its connections. */
+    private static final String NODELAY = "sun.net.httpserver.nodelay";
+
+    /** The HTTP server. */
+    private final HttpServer server;
+    /** Runs each request on its own thread. */
+    private final ExecutorService executor;
+    /** Whether the request threads are virtual threads. */
+    private final boolean virtual;
+    /** Time the server started, from System.nanoTime(). */
+    private final long startTime = System.nanoTime();
+    /** Number of requests served, including failed ones. */
+    private final LongAdder requests = new LongAdder();
+    /** Number of requests answered with an error. */
+    private final LongAdder errors = new LongAdder();
+    /** Number of documents and token lists checked. */
+    private final LongAdder documents = new LongAdder();
+    /** Number of words checked. */
+    private final LongAdder words = new LongAdder();
+    /** Number of misspelled words found. */
+    private final LongAdder misspelled = new LongAdder();
+    /** Latency of the /check and /batch requests. */
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * Creates and starts a server on the given address.
+     *
+     * @param address the address to listen on; port 0 picks a free port
+     * @throws IOException if the address cannot be bound
+     */
+    public SpellServer(InetSocketAddress address) throws IOException {
+        // The response headers and body go out in separate writes; with Nagle's
+        // algorithm the body waits for the client's delayed ACK, about 40 ms.
+        if (System.getProperty(NODELAY) == null)
+            System.setProperty(NODELAY, "true");
+        server = HttpServer.create(address, 0);
+        ExecutorService perTask = virtualThreadExecutor();
+        virtual = perTask != null;
+        executor = virtual ? perTask : Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/check", exchange -> serve(exchange, "POST", this::check));
+        server.createContext("/batch", exchange -> serve(exchange, "POST", this::batch));
+        server.createContext("/metrics", exchange -> serve(exchange, "GET", this::metrics));
+        server.createContext("/metrics.json", exchange -> serve(exchange, "GET", this::metricsJson));
+        server.createContext("/health", exchange -> serve(exchange, "GET", e -> reply(e, 200, "text/plain", "ok\n")));
+        server.start();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Whether requests run on virtual threads.
+     *
+     * @return true for virtual threads, false for platform threads
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Returns the latency histogram of the /check and /batch requests.
+     *
+     * @return the latency histogram
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Stops the server, letting running requests finish briefly.
+     */
+    public void stop() {
+        server.stop(STOP_DELAY);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(STOP_DELAY, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // private utilities
+
+    /**
+     * Returns an executor starting a virtual thread per task, or null if this Java
+     * runtime has no virtual threads. The factory method is looked up reflectively
+     * so the class still compiles and runs on older runtimes.
+     */
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Serves a request with the given handler, counting it and answering errors.
+     *
+     * @param exchange the request
+     * @param method   the accepted request method
+     * @param handler  the handler of the request
+     */
+    private void serve(HttpExchange exchange, String method, HttpHandler handler) throws IOException {
+        requests.increment();
+        try {
+            if (!exchange.getRequestMethod().equals(method)) {
+                errors.increment();
+                exchange.getResponseHeaders().set("Allow", method);
+                reply(exchange, 405, "text/plain", method + " only\n");
+            } else {
+                handler.handle(exchange);
+            }
+        } catch (IllegalArgumentException e) {
+            errors.increment();
+            reply(exchange, 400, "application/json", "{\"error\":" + Json.quote(e.getMessage()) + "}\n");
+        } catch (IOException | RuntimeException e) {
+            errors.increment();
+            throw e;
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /** Checks the request body as one document. */
+    private void check(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        byte[] body = readBody(exchange);
+        StringBuilder out = new StringBuilder(256);
+        checkDocument(body, body.length, out);
+        reply(exchange, 200, "application/json", out.append('\n').toString());
+        latency.record(System.nanoTime() - start);
+    }
+
+    /** Checks every document and token list of a JSON array. */
+    private void batch(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        Object request = Json.parse(new String(readBody(exchange), StandardCharsets.UTF_8));
+        if (!(request instanceof List))
+            throw new IllegalArgumentException("a JSON array of documents and token lists is expected");
+        StringBuilder out = new StringBuilder(1024).append("{\"results\":[");
+        byte[] text = new byte[0];
+        boolean first = true;
+        for (Object item : (List<?>) request) {
+            if (!first)
+                out.append(',');
+            first = false;
+            if (item instanceof String) {
+                // Each character of the document becomes one byte, so byte offsets
+                // are character offsets; characters beyond Latin-1 are never words.
+                String document = (String) item;
+                if (text.length < document.length())
+                    text = new byte[document.length()];
+                for (int i = 0; i < document.length(); i++) {
+                    char c = document.charAt(i);
+                    text[i] = c <= 0xff ? (byte) c : (byte) ' ';
+                }
+                checkDocument(text, document.length(), out);
+            } else if (item instanceof List) {
+                checkTokens((List<?>) item, out);
+            } else {
+                throw new IllegalArgumentException("batch items must be strings or arrays of strings");
+            }
+        }
+        reply(exchange, 200, "application/json", out.append("]}\n").toString());
+        latency.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Checks the words of a document and appends its result.
+     *
+     * @param text the array holding the document from index 0
+     * @param len  the length of the document in bytes
+     * @param out  the builder receiving the result
+     */
+    private void checkDocument(byte[] text, int len, StringBuilder out) throws IOException {
+        documents.increment();
+        Tokenizer tokens = new Tokenizer(text, 0, len);
+        out.append("{\"misspelled\":[");
+        long count = 0, wrong = 0;
+        while (tokens.next()) {
+            count++;
+            if (!SpellCheck.checkSpelling(tokens.array(), tokens.start(), tokens.length()))
+                appendMisspelled(out, wrong++ == 0, tokens.offset(), tokens.token());
+        }
+        out.append("],\"words\":").append(count).append('}');
+        words.add(count);
+        misspelled.add(wrong);
+    }
+
+    /**
+     * Checks a list of tokens, each taken as one word, and appends its result.
+     *
+     * @param list the tokens
+     * @param out  the builder receiving the result
+     */
+    private void checkTokens(List<?> list, StringBuilder out) {
+        documents.increment();
+        out.append("{\"misspelled\":[");
+        long wrong = 0;
+        for (int i = 0; i < list.size(); i++) {
+            if (!(list.get(i) instanceof String))
+                throw new IllegalArgumentException("token lists must hold only strings");
+            String token = (String) list.get(i);
+            if (token.isEmpty() || !SpellCheck.checkSpelling(token))
+                appendMisspelled(out, wrong++ == 0, i, token);
+        }
+        out.append("],\"words\":").append(list.size()).append('}');
+        words.add(list.size());
+        misspelled.add(wrong);
+    }
+
+    /** Appends one misspelled word, with its suggestions if they are enabled. */
+    private static void appendMisspelled(StringBuilder out, boolean first, long offset, String token) {
+        if (!first)
+            out.append(',');
+        out.append("{\"offset\":").append(offset).append(",\"token\":");
+        Json.quote(out, token);
+        List<String> suggestions = SpellCheck.suggest(token);
+        if (suggestions != null) {
+            out.append(",\"suggestions\":[");
+            for (int i = 0; i < suggestions.size(); i++)
+                Json.quote(i == 0 ? out : out.append(','), suggestions.get(i));
+            out.append(']');
+        }
+        out.append('}');
+    }
+
+    /** Answers the metrics in Prometheus text format. */
+    private void metrics(HttpExchange exchange) throws IOException {
+        WordTable dict = SpellCheck.getDictionary();
+        StringBuilder out = new StringBuilder(1024);
+        metric(out, "spellcheck_requests_total", "counter", "Requests served.", requests.sum());
+        metric(out, "spellcheck_errors_total", "counter", "Requests answered with an error.", errors.sum());
+        metric(out, "spellcheck_documents_total", "counter", "Documents and token lists checked.", documents.sum());
+        metric(out, "spellcheck_words_total", "counter", "Words checked.", words.sum());
+        metric(out, "spellcheck_misspelled_total", "counter", "Misspelled words found.", misspelled.sum());
+        metric(out, "spellcheck_lookups_total", "counter", "Dictionary lookups.", dict.getLookupCount());
+        metric(out, "spellcheck_probes_total", "counter", "Dictionary probes.", dict.getProbeCount());
+        out.append("# HELP spellcheck_request_seconds Latency of /check and /batch requests.\n")
+                .append("# TYPE spellcheck_request_seconds summary\n");
+        for (double q : new double[]{0.5, 0.9, 0.99, 0.999})
+            out.append("spellcheck_request_seconds{quantile=\"").append(q).append("\"} ")
+                    .append(latency.getPercentile(q) / 1e9).append('\n');
+        out.append("spellcheck_request_seconds_sum ").append(latency.getMean() * latency.getCount() / 1e9)
+                .append('\n').append("spellcheck_request_seconds_count ").append(latency.getCount()).append('\n');
+        metric(out, "spellcheck_request_seconds_max", "gauge", "Slowest request.", latency.getMax() / 1e9);
+        metric(out, "spellcheck_dictionary_words", "gauge", "Words in the dictionary.", dict.size());
+        if (dict instanceof SnapshotDictionary) {
+            SnapshotDictionary snapshot = (SnapshotDictionary) dict;
+            metric(out, "spellcheck_dictionary_reloads_total", "counter", "Word lists reloaded by -watch.",
+                    snapshot.getReloadCount());
+            metric(out, "spellcheck_dictionary_reload_seconds", "gauge", "Time to build and publish the latest list.",
+                    snapshot.getLastReloadNanos() / 1e9);
+        }
+        metric(out, "spellcheck_virtual_threads", "gauge", "1 if requests run on virtual threads.", virtual ? 1 : 0);
+        metric(out, "spellcheck_uptime_seconds", "gauge", "Time since the server started.",
+                (System.nanoTime() - startTime) / 1e9);
+        Metrics hot = SpellCheck.getMetrics();
+        if (hot != null) {
+            out.append("# HELP spellcheck_word_matches_total Words found, by how they were found.\n")
+                    .append("# TYPE spellcheck_word_matches_total counter\n");
+            String[] names = hot.getMatchNames();
+            long[] counts = hot.getMatchCounts();
+            for (int i = 0; i < names.length; i++)
+                out.append("spellcheck_word_matches_total{match=\"").append(names[i].replace("\\", "\\\\")
+                        .replace("\"", "\\\"")).append("\"} ").append(counts[i]).append('\n');
+            out.append("# HELP spellcheck_word_seconds Latency of checking a word, from sampled words.\n")
+                    .append("# TYPE spellcheck_word_seconds summary\n");
+            LatencyHistogram word = hot.getLatency();
+            for (double q : new double[]{0.5, 0.99, 0.999})
+                out.append("spellcheck_word_seconds{quantile=\"").append(q).append("\"} ")
+                        .append(word.getPercentile(q) / 1e9).append('\n');
+            out.append("spellcheck_word_seconds_sum ").append(word.getMean() * word.getCount() / 1e9)
+                    .append('\n').append("spellcheck_word_seconds_count ").append(word.getCount()).append('\n');
+        }
+        reply(exchange, 200, "text/plain; version=0.0.4", out.toString());
+    }
+
+    /** Answers the hot-path metrics as JSON, or 404 when they are off. */
+    private void metricsJson(HttpExchange exchange) throws IOException {
+        Metrics hot = SpellCheck.getMetrics();
+        if (hot == null)
+            reply(exchange, 404, "application/json", "{\"error\":\"metrics are off; start with -metrics\"}\n");
+        else
+            reply(exchange, 200, "application/json", hot.getJson() + "\n");
+    }
+
+    /** Appends one metric with its help and type lines. */
+    private static void metric(StringBuilder out, String name, String type, String help, Number value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n')
+                .append("# TYPE ").append(name).append(' ').append(type).append('\n')
+                .append(name).append(' ').append(value).append('\n');
+    }
+
+    /** Reads the whole request body. */
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY + 1);
+            if (body.length > MAX_BODY)
+                throw new IllegalArgumentException("request body larger than " + MAX_BODY + " bytes");
+            return body;
+        }
+    }
+
+    /** Sends a complete response. */
+    private static void reply(HttpExchange exchange, int status, String type, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", type + (type.startsWith("text/plain") ? "; charset=utf-8" : ""));
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * @author Stephen Hildebrand
+ *
+ * The built-in hash functions for dictionary words.
+ */
+public enum StandardHash implements HashStrategy {
+    /** 5-bit cyclic shift of the running sum, the original Dictionary hash. */
+    CYCLIC_SHIFT("cyclic") {
+        public long begin() {
+            return 0;
+        }
+
+        public long step(long state, int c) {
+            int k = (int) state;
+            k = (k << 5) | (k >>> 27);      // 5-bit cyclic shift of the running sum.
+            return (k + c) & 0xffffffffL;   // Add in the next character.
+        }
+
+        public int finish(long state) {
+            return (int) state;
+        }
+    },
+
+    /** Polynomial hash with multiplier 31, as used by String.hashCode(). */
+    POLYNOMIAL("polynomial") {
+        public long begin() {
+            return 0;
+        }
+
+        public long step(long state, int c) {
+            return (31 * (int) state + c) & 0xffffffffL;
+        }
+
+        public int finish(long state) {
+            return (int) state;
+        }
+    },
+
+    /** 32-bit FNV-1a: xor in each character, then multiply by the FNV prime. */
+    FNV1A("fnv1a") {
+        public long begin() {
+            return 0x811C9DC5L;
+        }
+
+        public long step(long state, int c) {
+            return (((int) state ^ c) * 0x01000193) & 0xffffffffL;
+        }
+
+        public int finish(long state) {
+            return (int) state;
+        }
+    },
+
+    /**
+     * 64-bit multiply-rotate accumulator finished with the xxHash64 avalanche, then
+     * folded to 32 bits. Every input bit affects every key bit.
+     */
+    MIX64("mix64") {
+        public long begin() {
+            return 0x27D4EB2F165667C5L;
+        }
+
+        public long step(long state, int c) {
+            return Long.rotateLeft(state ^ (c * 0xC2B2AE3D27D4EB4FL), 31) * 0x9E3779B185EBCA87L;
+        }
+
+        public int finish(long state) {
+            state ^= state >>> 33;
+            state *= 0xC2B2AE3D27D4EB4FL;
+            state ^= state >>> 29;
+            state *= 0x165667B19E3779F9L;
+            state ^= state >>> 32;
+            return (int) (state ^ (state >>> 32));
+        }
+    };
+
+    /** Name used to select the function on the command line. */
+    private final String label;
+
+    /** Creates a built-in function with the given command-line name. */
+    StandardHash(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Returns the name used to select this function on the command line.
+     *
+     * @return the function name
+     */
+    public String label() {
+        return label;
+    }
+
+    /**
+     * Spreads every bit of h over the whole result: the 64-bit finalizer of
+     * MurmurHash3, shared by the filters and fingerprints that need well-mixed
+     * bits.
+     *
+     * @param h the value to mix
+     * @return the mixed value
+     */
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * Returns the built-in function with the given command-line name.
+     *
+     * @param label the function name
+     * @return the function, or null if there is none by that name
+     */
+    public static StandardHash forLabel(String label) {
+        for (StandardHash h : values())
+            if (h.label.equals(label))
+                return h;
+        return null;
+    }
+}
@@ -0,0 +1,814 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * The match rules tried on a word that is not found as written, read from a rule
+ * file (see rules.txt) and compiled into a reversed-suffix automaton.
+ *
+ * Rules apply one after another, each to the word the previous rules left, so the
+ * lookups made for a word depend only on how the word ends. At compile time the
+ * rules are run symbolically on word endings of growing length until every
+ * condition is decided. The result is a trie read from the last character of a
+ * word backwards, whose leaves hold the ordered list of candidate stems. Each stem
+ * is a number of characters cut from the end and a replacement tail. Checking a
+ * word walks the trie once from right to left, hashes the word's prefixes in a
+ * single pass with {@link HashStrategy#step(long, int)}, and finishes each stem's
+ * key from the shared prefix state. No string is built. Against a
+ * {@link DawgDictionary} the word is walked through the graph instead, once, and
+ * each stem is finished from the node its kept prefix reaches. Stems that cannot be
+ * words are pruned at compile time: empty stems, the word itself, and repeats of
+ * an earlier stem. Rules bound to a dictionary with {@link #forDictionary(Iterable)}
+ * also skip every stem that no dictionary word could match: one holding a
+ * character that no word contains, such as a digit, or one whose last three
+ * characters end no word. The endings are kept as a bit set indexed by a hash of
+ * the ending, so a clear bit proves no word has it.
+ *
+ * Every stem remembers the rule that produced it, so {@link #match} can report
+ * which rule, or the downshifted first letter, found a word. The rules are
+ * numbered in file order and named by their path in the rule file, such as
+ * "ing -> / -> e" for the nested rule adding an e after ing is removed.
+ */
+public class SuffixRules {
+    /** The default rules, identical to rules.txt. */
+    static final String DEFAULT_TEXT = ""
+            + "'s  ->\n"
+            + "s   ->\n"
+            + "    es  ->\n"
+            + "ed  ->\n"
+            + "    d   ->\n"
+            + "er  ->\n"
+            + "    r   ->\n"
+            + "ing ->\n"
+            + "        -> e\n"
+            + "ly  ->\n";
+    /** Result of {@link #match} when no altered word is in the dictionary. */
+    static final int NO_MATCH = -1;
+    /** Result of {@link #match} when the word is found with its first letter downshifted. */
+    static final int LOWER_CASE = 0;
+    /** The default rules, compiled. */
+    static final SuffixRules DEFAULT = defaults();
+
+    /** Per-thread work space for checking a word. */
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /** Character class of each byte: 0 for characters not in any rule suffix. */
+    private final int[] classOf = new int[256];
+    /** Number of character classes, including "other" and the start of the word. */
+    private final int classes;
+    /** Class of the position before the first character of the word. */
+    private final int startClass;
+    /** A byte of class "other", standing in for characters beyond Latin-1. */
+    private final byte otherByte;
+    /** Child of each node by class, at node * classes + class; -1 below a leaf. */
+    private final int[] next;
+    /** Whether each node is a leaf holding a plan. */
+    private final boolean[] leaf;
+    /** First candidate of each leaf's plan. */
+    private final int[] planFrom;
+    /** End of each leaf's plan. */
+    private final int[] planTo;
+    /** Largest number of characters cut by any candidate of each leaf. */
+    private final int[] maxCut;
+    /** Characters cut from the end of the word by each candidate. */
+    private final int[] cuts;
+    /** Tail appended after the cut by each candidate. */
+    private final byte[][] tails;
+    /** Result of {@link #match} for each candidate: 1 + the index of its rule. */
+    private final int[] matchOf;
+    /** Name of each result of {@link #match}, from {@link #LOWER_CASE} on. */
+    private final String[] matchNames;
+    /** Length of the longest tail. */
+    private final int maxTail;
+    /** Number of rules, counting nested ones. */
+    private final int ruleCount;
+    /** Bits of the hash of a word ending. */
+    private static final int ENDING_BITS = 16;
+    /** Length of a dictionary binding: the alphabet as 256 bits, then the bit set of endings. */
+    static final int BINDING_LONGS = 256 / 64 + (1 << ENDING_BITS) / 64;
+    /** Whether each byte occurs in a dictionary word; null if not bound to a dictionary. */
+    private final boolean[] alphabet;
+    /** Bit set of the hashed endings of the dictionary words; null if not bound. */
+    private final long[] endings;
+
+    /**
+     * Compiles the given rules.
+     *
+     * @param rules the top-level rules, in order
+     */
+    private SuffixRules(List<Rule> rules) {
+        boolean[] used = new boolean[256];
+        ruleCount = markSuffixChars(rules, used);
+        List<String> names = new ArrayList<>();
+        names.add("lower case");
+        number(rules, "", names);
+        matchNames = names.toArray(new String[0]);
+        int k = 0;
+        for (int c = 0; c < 256; c++)
+            if (used[c])
+                classOf[c] = ++k;
+        startClass = k + 1;
+        classes = k + 2;
+        int other = 0;
+        while (used[other])
+            other++;
+        otherByte = (byte) other;
+
+        Builder builder = new Builder(rules);
+        builder.build(new int[0], false);
+        next = Arrays.copyOf(builder.next, builder.nextCount);
+        int nodes = builder.plans.size();
+        leaf = new boolean[nodes];
+        planFrom = new int[nodes];
+        planTo = new int[nodes];
+        maxCut = new int[nodes];
+        int candidates = 0;
+        for (List<Candidate> plan : builder.plans)
+            if (plan != null)
+                candidates += plan.size();
+        cuts = new int[candidates];
+        tails = new byte[candidates][];
+        matchOf = new int[candidates];
+        int longestTail = 0;
+        int at = 0;
+        for (int node = 0; node < nodes; node++) {
+            List<Candidate> plan = builder.plans.get(node);
+            leaf[node] = plan != null;
+            planFrom[node] = at;
+            if (plan != null) {
+                for (Candidate c : plan) {
+                    cuts[at] = c.cut;
+                    tails[at] = latin1(c.tail);
+                    matchOf[at++] = 1 + c.rule;
+                    maxCut[node] = Math.max(maxCut[node], c.cut);
+                    longestTail = Math.max(longestTail, c.tail.length());
+                }
+            }
+            planTo[node] = at;
+        }
+        maxTail = longestTail;
+        alphabet = null;
+        endings = null;
+    }
+
+    /**
+     * Copies compiled rules, binding them to a dictionary.
+     *
+     * @param rules    the compiled rules
+     * @param alphabet whether each byte occurs in a dictionary word
+     * @param endings  bit set of the hashed endings of the dictionary words
+     */
+    private SuffixRules(SuffixRules rules, boolean[] alphabet, long[] endings) {
+        System.arraycopy(rules.classOf, 0, classOf, 0, classOf.length);
+        classes = rules.classes;
+        startClass = rules.startClass;
+        otherByte = rules.otherByte;
+        next = rules.next;
+        leaf = rules.leaf;
+        planFrom = rules.planFrom;
+        planTo = rules.planTo;
+        maxCut = rules.maxCut;
+        cuts = rules.cuts;
+        tails = rules.tails;
+        matchOf = rules.matchOf;
+        matchNames = rules.matchNames;
+        maxTail = rules.maxTail;
+        ruleCount = rules.ruleCount;
+        this.alphabet = alphabet;
+        this.endings = endings;
+    }
+
+    /**
+     * Reads and compiles a rule file.
+     *
+     * @param file the rule file
+     * @return the compiled rules
+     * @throws IOException if the file cannot be read or a line is not a rule
+     */
+    public static SuffixRules load(File file) throws IOException {
+        try (Reader in = new FileReader(file)) {
+            return parse(in, file.toString());
+        }
+    }
+
+    /**
+     * Reads and compiles rules in the rule file format.
+     *
+     * @param in   the rules
+     * @param name the name of the rules, for error messages
+     * @return the compiled rules
+     * @throws IOException if the rules cannot be read or a line is not a rule
+     */
+    public static SuffixRules parse(Reader in, String name) throws IOException {
+        List<Rule> top = new ArrayList<>();
+        List<Integer> indents = new ArrayList<>();     // Indent of each open rule.
+        List<Rule> open = new ArrayList<>();
+        BufferedReader lines = new BufferedReader(in);
+        String line;
+        for (int number = 1; (line = lines.readLine()) != null; number++) {
+            String text = line.trim();
+            if (text.isEmpty() || text.startsWith("#"))
+                continue;
+            int arrow = text.indexOf("->");
+            if (arrow < 0)
+                throw new IOException(name + " line " + number + ": expected <suffix> -> <replacement>");
+            Rule rule = new Rule(text.substring(0, arrow).trim(), text.substring(arrow + 2).trim());
+            if (!isLatin1Word(rule.suffix) || !isLatin1Word(rule.replacement))
+                throw new IOException(name + " line " + number + ": rules must be single Latin-1 words");
+            int indent = 0;
+            while (Character.isWhitespace(line.charAt(indent)))
+                indent++;
+            while (!open.isEmpty() && indents.get(indents.size() - 1) >= indent) {
+                indents.remove(indents.size() - 1);
+                open.remove(open.size() - 1);
+            }
+            (open.isEmpty() ? top : open.get(open.size() - 1).then).add(rule);
+            indents.add(indent);
+            open.add(rule);
+        }
+        return new SuffixRules(top);
+    }
+
+    /**
+     * Returns these rules bound to a dictionary, so that stems no dictionary word
+     * could match are not looked up. The results are unchanged.
+     *
+     * @param words the dictionary words
+     * @return the bound rules
+     */
+    public SuffixRules forDictionary(Iterable<String> words) {
+        return forBinding(bindingOf(words));
+    }
+
+    /**
+     * Returns these rules bound to a dictionary through a binding computed before
+     * by {@link #bindingOf(Iterable)}, such as one stored in a dictionary image.
+     *
+     * @param binding the binding of the dictionary words
+     * @return the bound rules
+     */
+    public SuffixRules forBinding(long[] binding) {
+        if (binding.length != BINDING_LONGS)
+            throw new IllegalArgumentException("Binding of " + binding.length + " longs, not " + BINDING_LONGS);
+        boolean[] used = new boolean[256];
+        for (int c = 0; c < 256; c++)
+            used[c] = (binding[c >>> 6] & 1L << c) != 0;
+        return new SuffixRules(this, used, Arrays.copyOfRange(binding, 256 / 64, BINDING_LONGS));
+    }
+
+    /**
+     * Computes what binding rules to a dictionary records of its words: which
+     * bytes occur in a word, as 256 bits, followed by the bit set of the hashed
+     * endings of the words. It depends on the words only, not on the rules.
+     *
+     * @param words the dictionary words
+     * @return the binding, {@link #BINDING_LONGS} long
+     */
+    static long[] bindingOf(Iterable<String> words) {
+        long[] binding = new long[BINDING_LONGS];
+        int ends = 256 / 64;
+        byte[] bytes = new byte[3];
+        for (String word : words) {
+            boolean latin1 = true;
+            for (int i = 0; i < word.length(); i++) {
+                char c = word.charAt(i);
+                latin1 &= c <= 0xff;
+                if (c <= 0xff)
+                    binding[c >>> 6] |= 1L << c;
+            }
+            if (!latin1 || word.isEmpty())
+                continue;               // Never matched by a stem of bytes.
+            int len = Math.min(word.length(), 3);
+            for (int i = 0; i < len; i++)
+                bytes[i] = (byte) word.charAt(word.length() - len + i);
+            int h = ending(bytes, 0, len, len == word.length());
+            binding[ends + (h >>> 6)] |= 1L << h;
+        }
+        return binding;
+    }
+
+    /**
+     * Returns the number of rules, counting nested ones.
+     *
+     * @return the number of rules
+     */
+    public int size() {
+        return ruleCount;
+    }
+
+    /**
+     * Returns the names of the results of {@link #match}: "lower case" at
+     * {@link #LOWER_CASE}, then the path of each rule in file order.
+     *
+     * @return the names, indexed by match result
+     */
+    public List<String> matchNames() {
+        return List.of(matchNames);
+    }
+
+    /**
+     * Returns the number of dictionary lookups made by the last check or match
+     * on the calling thread.
+     *
+     * @return the number of lookups
+     */
+    public static int lastLookups() {
+        return SCRATCH.get().lookups;
+    }
+
+    /**
+     * Returns the number of nodes of the compiled automaton.
+     *
+     * @return the number of trie nodes
+     */
+    public int states() {
+        return leaf.length;
+    }
+
+    /**
+     * Applies the rules to a word held as Latin-1 bytes that was not found as written:
+     * the first letter is downshifted if it is upper case, then each candidate stem
+     * is looked up in turn until one is found.
+     *
+     * @param dict the dictionary to look the stems up in
+     * @param text the array holding the word
+     * @param off  index of the first byte of the word
+     * @param len  length of the word in bytes
+     * @return true if an altered word is in the dictionary
+     */
+    public boolean check(WordTable dict, byte[] text, int off, int len) {
+        return match(dict, text, off, len) != NO_MATCH;
+    }
+
+    /**
+     * Applies the rules to a word held as Latin-1 bytes, as
+     * {@link #check(WordTable, byte[], int, int)} does, and tells how the word was
+     * found.
+     *
+     * @param dict the dictionary to look the stems up in
+     * @param text the array holding the word
+     * @param off  index of the first byte of the word
+     * @param len  length of the word in bytes
+     * @return {@link #LOWER_CASE}, 1 + the index of the rule whose stem was found,
+     * or {@link #NO_MATCH}
+     */
+    public int match(WordTable dict, byte[] text, int off, int len) {
+        Scratch s = SCRATCH.get();
+        s.lookups = 0;
+        if (len == 0)
+            return NO_MATCH;
+        s.ensure(len + maxTail);
+        System.arraycopy(text, off, s.word, 0, len);
+        return matchScratch(dict, s, len);
+    }
+
+    /**
+     * Applies the rules to a word that was not found as written, as
+     * {@link #check(WordTable, byte[], int, int)} does.
+     *
+     * @param dict the dictionary to look the stems up in
+     * @param word the word
+     * @return true if an altered word is in the dictionary
+     */
+    public boolean check(WordTable dict, String word) {
+        return match(dict, word) != NO_MATCH;
+    }
+
+    /**
+     * Applies the rules to a word, as {@link #check(WordTable, String)} does, and
+     * tells how the word was found.
+     *
+     * @param dict the dictionary to look the stems up in
+     * @param word the word
+     * @return {@link #LOWER_CASE}, 1 + the index of the rule whose stem was found,
+     * or {@link #NO_MATCH}
+     */
+    public int match(WordTable dict, String word) {
+        Scratch s = SCRATCH.get();
+        s.lookups = 0;
+        int len = word.length();
+        if (len == 0)
+            return NO_MATCH;
+        s.ensure(len + maxTail);
+        boolean latin1 = true;
+        for (int i = 0; i < len; i++) {
+            char c = word.charAt(i);
+            latin1 &= c <= 0xff;
+            s.word[i] = c <= 0xff ? (byte) c : otherByte;
+        }
+        if (latin1)
+            return matchScratch(dict, s, len);
+
+        // Characters beyond Latin-1 cannot be compared as bytes, so the stems of
+        // the same plan are built as strings.
+        boolean lowered = Character.isUpperCase(word.charAt(0));
+        if (lowered) {
+            word = Character.toLowerCase(word.charAt(0)) + word.substring(1);
+            char c = word.charAt(0);
+            s.word[0] = c <= 0xff ? (byte) c : otherByte;
+            s.lookups++;
+            if (dict.get(dict.hashCode(word), word) != null)
+                return LOWER_CASE;
+        }
+        int node = walk(s.word, len);
+        for (int c = planFrom[node]; c < planTo[node]; c++) {
+            String stem = word.substring(0, len - cuts[c]) + new String(tails[c], StandardCharsets.ISO_8859_1);
+            s.lookups++;
+            if (dict.get(dict.hashCode(stem), stem) != null)
+                return matchOf[c];
+        }
+        return NO_MATCH;
+    }
+
+    // private utilities
+
+    /**
+     * Checks the word copied into the scratch space.
+     *
+     * @param dict the dictionary
+     * @param s    the scratch space holding the word
+     * @param len  the length of the word
+     * @return the match result
+     */
+    private int matchScratch(WordTable dict, Scratch s, int len) {
+        byte[] word = s.word;
+        boolean lowered = Character.isUpperCase((char) (word[0] & 0xff));
+        if (lowered)
+            word[0] = (byte) Character.toLowerCase((char) (word[0] & 0xff));
+        int node = walk(word, len);
+        int from = planFrom[node], to = planTo[node];
+        if (!lowered && from == to)
+            return NO_MATCH;
+        if (dict instanceof DawgDictionary)
+            return matchWalk((DawgDictionary) dict, s, len, lowered, from, to);
+
+        // Hash the prefixes once, keeping the states where stems may end.
+        HashStrategy hash = dict.getHash();
+        // The first character missing from the dictionary, if any, rules out every
+        // stem that keeps it.
+        int minKeep = len - maxCut[node];
+        int foreign = alphabet == null ? len : firstForeign(word, len);
+        if (foreign < minKeep)
+            return NO_MATCH;
+        long state = hash.begin();
+        for (int i = 0; i < minKeep; i++)
+            state = hash.step(state, word[i] & 0xff);
+        long[] states = s.states;
+        for (int i = minKeep; i <= len; i++) {
+            states[i - minKeep] = state;
+            if (i < len)
+                state = hash.step(state, word[i] & 0xff);
+        }
+        if (lowered && foreign == len && mayEnd(word, len)) {
+            s.lookups++;
+            if (dict.contains(hash.finish(states[len - minKeep]), word, 0, len))
+                return LOWER_CASE;
+        }
+
+        byte[] probe = s.probe;
+        System.arraycopy(word, 0, probe, 0, len);
+        for (int c = from; c < to; c++) {
+            int keep = len - cuts[c];
+            byte[] tail = tails[c];
+            if (keep > foreign || !inAlphabet(tail))
+                continue;
+            long stem = states[keep - minKeep];
+            for (byte b : tail)
+                stem = hash.step(stem, b & 0xff);
+            System.arraycopy(tail, 0, probe, keep, tail.length);
+            if (mayEnd(probe, keep + tail.length)) {
+                s.lookups++;
+                if (dict.contains(hash.finish(stem), probe, 0, keep + tail.length))
+                    return matchOf[c];
+            }
+            System.arraycopy(word, keep, probe, keep, Math.min(tail.length, len - keep));
+        }
+        return NO_MATCH;
+    }
+
+    /**
+     * Checks the word copied into the scratch space against a word graph. One walk
+     * of the word finds every prefix the graph has a path for, and each stem goes
+     * on from the end of the prefix it keeps, so the whole plan takes one lookup.
+     *
+     * @param dawg    the word graph
+     * @param s       the scratch space holding the word
+     * @param len     the length of the word
+     * @param lowered whether the first letter was downshifted
+     * @param from    the first plan entry of the word
+     * @param to      the end of the word's plan entries
+     * @return the match result
+     */
+    private int matchWalk(DawgDictionary dawg, Scratch s, int len, boolean lowered, int from, int to) {
+        int[] path = s.path;
+        s.lookups++;
+        int matched = dawg.walk(s.word, 0, len, path);
+        if (lowered && matched == len && dawg.endsWord(path[len - 1]))
+            return LOWER_CASE;
+        for (int c = from; c < to; c++) {
+            int keep = len - cuts[c];
+            if (keep <= matched && dawg.endsWord(keep == 0 ? -1 : path[keep - 1], tails[c]))
+                return matchOf[c];
+        }
+        return NO_MATCH;
+    }
+
+    /** Index of the first byte of the word missing from the alphabet, or len if none. */
+    private int firstForeign(byte[] word, int len) {
+        for (int i = 0; i < len; i++)
+            if (!alphabet[word[i] & 0xff])
+                return i;
+        return len;
+    }
+
+    /** Whether some dictionary word ends like the stem, if the endings are known. */
+    private boolean mayEnd(byte[] stem, int len) {
+        if (endings == null)
+            return true;
+        int n = Math.min(len, 3);
+        int h = ending(stem, len - n, n, n == len);
+        return (endings[h >>> 6] & (1L << h)) != 0;
+    }
+
+    /**
+     * Hashes the last n (up to 3) bytes of a word into ENDING_BITS bits. A word of
+     * fewer than three bytes is marked as whole, so it only matches words of its
+     * own length.
+     */
+    private static int ending(byte[] bytes, int off, int n, boolean whole) {
+        int e = whole ? n + 1 : 0;
+        for (int i = off; i < off + n; i++)
+            e = (e << 8) | (bytes[i] & 0xff);
+        return (e * 0x9E3779B9) >>> (32 - ENDING_BITS);
+    }
+
+    /** Whether every byte of a tail is in the alphabet, if there is one. */
+    private boolean inAlphabet(byte[] tail) {
+        if (alphabet != null)
+            for (byte b : tail)
+                if (!alphabet[b & 0xff])
+                    return false;
+        return true;
+    }
+
+    /**
+     * Walks the automaton from the last character of the word backwards to the
+     * leaf holding the word's plan.
+     *
+     * @param word the word, first letter already downshifted
+     * @param len  the length of the word
+     * @return the leaf node
+     */
+    private int walk(byte[] word, int len) {
+        int node = 0;
+        for (int d = 0; !leaf[node]; d++)
+            node = next[node * classes + (d < len ? classOf[word[len - 1 - d] & 0xff] : startClass)];
+        return node;
+    }
+
+    /** Compiles the default rules. */
+    private static SuffixRules defaults() {
+        try {
+            return parse(new StringReader(DEFAULT_TEXT), "default rules");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Marks the characters of every suffix, returning the number of rules. */
+    private static int markSuffixChars(List<Rule> rules, boolean[] used) {
+        int count = 0;
+        for (Rule rule : rules) {
+            for (int i = 0; i < rule.suffix.length(); i++)
+                used[rule.suffix.charAt(i)] = true;
+            count += 1 + markSuffixChars(rule.then, used);
+        }
+        return count;
+    }
+
+    /** Numbers the rules in file order, naming each by its path. */
+    private static void number(List<Rule> rules, String parent, List<String> names) {
+        for (Rule rule : rules) {
+            rule.index = names.size() - 1;
+            String name = parent + (rule.suffix + " -> " + rule.replacement).trim();
+            names.add(name);
+            number(rule.then, name + " / ", names);
+        }
+    }
+
+    /** Whether a rule part holds only non-space Latin-1 characters. */
+    private static boolean isLatin1Word(String part) {
+        for (int i = 0; i < part.length(); i++)
+            if (part.charAt(i) > 0xff || Character.isWhitespace(part.charAt(i)))
+                return false;
+        return true;
+    }
+
+    /** The Latin-1 bytes of a string of Latin-1 characters. */
+    private static byte[] latin1(String s) {
+        byte[] bytes = new byte[s.length()];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = (byte) s.charAt(i);
+        return bytes;
+    }
+
+    /**
+     * A rule: a suffix to replace and the rules tried after it fires.
+     */
+    private static class Rule {
+        /** Suffix the word must end in; empty to always fire. */
+        private final String suffix;
+        /** Replacement appended after the suffix is removed. */
+        private final String replacement;
+        /** Rules tried, in order, after this one fires and misses. */
+        private final List<Rule> then = new ArrayList<>();
+        /** Index of the rule in file order. */
+        private int index;
+
+        /** Creates a rule. */
+        Rule(String suffix, String replacement) {
+            this.suffix = suffix;
+            this.replacement = replacement;
+        }
+    }
+
+    /**
+     * A stem to look up: the word with cut characters removed from its end and
+     * tail appended.
+     */
+    private static class Candidate {
+        /** Characters cut from the end of the word. */
+        private final int cut;
+        /** Characters appended after the cut. */
+        private final String tail;
+        /** Index of the rule that produced the stem. */
+        private final int rule;
+
+        /** Creates a candidate. */
+        Candidate(int cut, String tail, int rule) {
+            this.cut = cut;
+            this.tail = tail;
+            this.rule = rule;
+        }
+    }
+
+    /**
+     * Builds the automaton by running the rules on word endings of growing length.
+     * An ending is known characters counted from the end of the word, -1 standing
+     * for a character that is in no suffix, and possibly the start of the word.
+     */
+    private class Builder {
+        /** The top-level rules. */
+        private final List<Rule> rules;
+        /** Children of every node, classes entries per node. */
+        private int[] next = new int[1024];
+        /** Number of entries of next in use. */
+        private int nextCount;
+        /** The character of each rule-character class. */
+        private final int[] charOf = new int[classes];
+        /** Plan of every node, or null for an inner node. */
+        private final List<List<Candidate>> plans = new ArrayList<>();
+
+        /** The known ending being simulated, indexed by distance from the end - 1. */
+        private int[] ending;
+        /** Whether the ending is the whole word. */
+        private boolean whole;
+        /** Characters cut from the end of the word so far. */
+        private int cut;
+        /** Characters appended after the cut so far. */
+        private String tail;
+        /** Candidates found so far. */
+        private List<Candidate> plan;
+        /** Whether a condition read past the known ending. */
+        private boolean needMore;
+
+        /** Creates a builder for the given rules. */
+        Builder(List<Rule> rules) {
+            this.rules = rules;
+            for (int b = 255; b >= 0; b--)
+                charOf[classOf[b]] = b;
+        }
+
+        /**
+         * Adds the node for a known ending and, if the rules read past it, the
+         * nodes for every longer ending.
+         *
+         * @return the index of the node
+         */
+        int build(int[] known, boolean atStart) {
+            int node = plans.size();
+            plans.add(null);
+            if (nextCount + classes > next.length)
+                next = Arrays.copyOf(next, Math.max(2 * next.length, nextCount + classes));
+            Arrays.fill(next, nextCount, nextCount + classes, -1);
+            nextCount += classes;
+            ending = known;
+            whole = atStart;
+            cut = 0;
+            tail = "";
+            plan = new ArrayList<>();
+            needMore = false;
+            run(rules);
+            if (!needMore) {
+                plans.set(node, plan);
+                return node;
+            }
+            int[] children = new int[classes];
+            for (int c = 0; c < classes; c++) {
+                int[] longer = known;
+                if (c != startClass) {
+                    longer = Arrays.copyOf(known, known.length + 1);
+                    longer[known.length] = c == 0 ? -1 : charOf[c];
+                }
+                children[c] = build(longer, c == startClass);
+            }
+            for (int c = 0; c < classes; c++)
+                next[node * classes + c] = children[c];
+            return node;
+        }
+
+        /** Runs a list of rules on the simulated word, each assuming the last missed. */
+        private void run(List<Rule> list) {
+            for (Rule rule : list) {
+                if (endsWith(rule.suffix)) {
+                    int fromTail = Math.min(rule.suffix.length(), tail.length());
+                    cut += rule.suffix.length() - fromTail;
+                    tail = tail.substring(0, tail.length() - fromTail) + rule.replacement;
+                    addCandidate(rule.index);
+                    run(rule.then);
+                }
+                if (needMore)
+                    return;
+            }
+        }
+
+        /** Whether the simulated word ends in suffix; sets needMore if undecided. */
+        private boolean endsWith(String suffix) {
+            for (int j = 0; j < suffix.length(); j++) {
+                char want = suffix.charAt(suffix.length() - 1 - j);
+                int have;
+                if (j < tail.length()) {
+                    have = tail.charAt(tail.length() - 1 - j);
+                } else {
+                    int distance = cut + (j - tail.length());      // From the end, 0-based.
+                    if (distance >= ending.length) {
+                        needMore = !whole;
+                        return false;                              // Word too short, or unknown.
+                    }
+                    have = ending[distance];
+                }
+                if (have != want)
+                    return false;
+            }
+            return true;
+        }
+
+        /** Adds the current stem, produced by the given rule, unless it cannot be a new word. */
+        private void addCandidate(int rule) {
+            if (tail.isEmpty() && (cut == 0 || (whole && cut == ending.length)))
+                return;                                 // The word itself, or empty.
+            for (Candidate c : plan)
+                if (c.cut == cut && c.tail.equals(tail))
+                    return;                             // Already looked up.
+            plan.add(new Candidate(cut, tail, rule));
+        }
+
+    }
+
+    /**
+     * Work space reused by the checks made on one thread.
+     */
+    private static class Scratch {
+        /** The word, first letter downshifted. */
+        private byte[] word = new byte[64];
+        /** The stem being looked up. */
+        private byte[] probe = new byte[64];
+        /** Hash states of the prefixes where stems may end. */
+        private long[] states = new long[65];
+        /** Arcs of a word graph taken by each byte of the word. */
+        private int[] path = new int[64];
+        /** Dictionary lookups made by the last check. */
+        private int lookups;
+
+        /** Makes room for a word and stem of up to size bytes. */
+        Scratch ensure(int size) {
+            if (word.length < size) {
+                word = new byte[size * 2];
+                probe = new byte[size * 2];
+                states = new long[size * 2 + 1];
+                path = new int[size * 2];
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Suggests corrections for misspelled words with a precomputed deletion index, as in
+ * the SymSpell algorithm. When the index is built, every way of deleting up to
+ * maxDistance characters from each dictionary word is recorded. Two words are
+ * within that edit distance only if they share such a deletion, so a query only
+ * generates the deletions of the misspelled word, looks them up, and verifies the
+ * few candidates found with a real edit distance, instead of scanning the whole
+ * dictionary.
+ *
+ * Each (deletion, word) pair is packed into one long, a 40-bit FNV-1a hash of the deletion
+ * above a 24-bit word number, and the longs are kept sorted so a deletion is found
+ * by binary search. The index therefore costs 8 bytes per pair; a larger maximum
+ * distance finds more candidates at the cost of many more pairs.
+ */
+public class SuggestionIndex {
+    /** Bits of each entry holding the word number. */
+    private static final int ID_BITS = 24;
+    /** Largest supported maximum edit distance. */
+    static final int MAX_DISTANCE = 3;
+
+    /** The dictionary words, indexed by word number. */
+    private final String[] words;
+    /** Maximum edit distance of a suggestion. */
+    private final int maxDistance;
+    /** Length of the longest dictionary word. */
+    private final int maxLength;
+    /** Sorted entries: deletion hash in the high 40 bits, word number in the low 24. */
+    private final long[] entries;
+
+    /**
+     * Builds the index for the given words.
+     *
+     * @param dictionary  the dictionary words; duplicates are ignored
+     * @param maxDistance the maximum edit distance of a suggestion, 1 to 3
+     */
+    public SuggestionIndex(Collection<String> dictionary, int maxDistance) {
+        if (maxDistance < 1 || maxDistance > MAX_DISTANCE)
+            throw new IllegalArgumentException("Maximum edit distance must be 1 to " + MAX_DISTANCE);
+        words = new LinkedHashSet<>(dictionary).toArray(new String[0]);
+        if (words.length >= 1 << ID_BITS)
+            throw new IllegalArgumentException("Too many words for a suggestion index");
+        this.maxDistance = maxDistance;
+
+        long[] packed = new long[words.length * 8];
+        int count = 0, longest = 0;
+        for (int id = 0; id < words.length; id++) {
+            longest = Math.max(longest, words[id].length());
+            long[] deletes = deleteHashes(words[id], maxDistance);
+            if (count + deletes.length > packed.length)
+                packed = Arrays.copyOf(packed, Math.max(packed.length * 2, count + deletes.length));
+            for (long d : deletes)
+                packed[count++] = (d << ID_BITS) | id;
+        }
+        maxLength = longest;
+        entries = Arrays.copyOf(packed, count);
+        Arrays.sort(entries);
+    }
+
+    /**
+     * Returns up to max dictionary words within the maximum edit distance of the
+     * given word, ranked by edit distance, then by difference in length, then
+     * alphabetically. A word longer than the longest dictionary word by more
+     * than the maximum distance has none, and its deletions are not generated.
+     *
+     * @param word the misspelled word
+     * @param max  the maximum number of suggestions
+     * @return the suggestions, best first
+     */
+    public List<String> suggest(String word, int max) {
+        if (word.length() > maxLength + maxDistance)
+            return new ArrayList<>();                   // No word is near enough.
+        int[] candidates = new int[16];
+        int count = 0;
+        for (long prefix : deleteHashes(word, maxDistance)) {
+            for (int i = lowerBound(prefix << ID_BITS); i < entries.length
+                    && entries[i] >>> ID_BITS == prefix; i++) {
+                if (count == candidates.length)
+                    candidates = Arrays.copyOf(candidates, count * 2);
+                candidates[count++] = (int) (entries[i] & ((1 << ID_BITS) - 1));
+            }
+        }
+        Arrays.sort(candidates, 0, count);
+
+        List<Suggestion> found = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && candidates[i] == candidates[i - 1])
+                continue;
+            String candidate = words[candidates[i]];
+            int distance = distance(word, candidate, maxDistance);
+            if (distance <= maxDistance)
+                found.add(new Suggestion(candidate, distance, Math.abs(candidate.length() - word.length())));
+        }
+        found.sort(null);
+        List<String> result = new ArrayList<>(Math.min(max, found.size()));
+        for (int i = 0; i < found.size() && i < max; i++)
+            result.add(found.get(i).word);
+        return result;
+    }
+
+    /**
+     * Returns the number of (deletion, word) pairs in the index.
+     *
+     * @return the number of index entries
+     */
+    public int size() {
+        return entries.length;
+    }
+
+    /**
+     * Returns the approximate memory used by the index entries, excluding the words.
+     *
+     * @return the size of the entry array in bytes
+     */
+    public long memoryBytes() {
+        return entries.length * 8L;
+    }
+
+    /**
+     * Returns the maximum edit distance of a suggestion.
+     *
+     * @return the maximum edit distance
+     */
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    /**
+     * Returns the optimal string alignment distance between two words: the number of
+     * insertions, deletions, substitutions and transpositions of adjacent characters
+     * turning one into the other. Stops early once the distance must exceed limit.
+     *
+     * @param a     the first word
+     * @param b     the second word
+     * @param limit the largest distance of interest
+     * @return the distance, or limit + 1 if it is larger than limit
+     */
+    static int distance(String a, String b, int limit) {
+        if (Math.abs(a.length() - b.length()) > limit)
+            return limit + 1;
+        int[] twoBack = new int[b.length() + 1];
+        int[] prev = new int[b.length() + 1];
+        int[] cur = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++)
+            prev[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            cur[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int d = Math.min(Math.min(prev[j] + 1, cur[j - 1] + 1), prev[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1))
+                    d = Math.min(d, twoBack[j - 2] + 1);
+                cur[j] = d;
+                rowMin = Math.min(rowMin, d);
+            }
+            if (rowMin > limit)
+                return limit + 1;
+            int[] t = twoBack;
+            twoBack = prev;
+            prev = cur;
+            cur = t;
+        }
+        return Math.min(prev[b.length()], limit + 1);
+    }
+
+    // private utilities
+
+    /**
+     * Returns the 40-bit hashes of the word and of every word made by deleting up to
+     * depth of its characters, sorted and without duplicates. Each set of deleted
+     * positions is visited once, in increasing order, and hashed without building
+     * the shortened word.
+     */
+    private static long[] deleteHashes(String word, int depth) {
+        depth = Math.min(depth, word.length());
+        long combinations = 0, c = 1;
+        for (int k = 0; k <= depth; k++) {
+            combinations += c;                          // c = (length choose k)
+            c = c * (word.length() - k) / (k + 1);
+        }
+        long[] hashes = new long[(int) combinations];
+        int count = addDeleteHashes(word, depth, 0, 0, new int[depth], hashes, 0);
+        Arrays.sort(hashes, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++)
+            if (unique == 0 || hashes[i] != hashes[unique - 1])
+                hashes[unique++] = hashes[i];
+        return Arrays.copyOf(hashes, unique);
+    }
+
+    /**
+     * Hashes the word without the k positions in skip, then extends skip with every
+     * later position while fewer than depth positions are skipped.
+     *
+     * @return the new number of hashes
+     */
+    private static int addDeleteHashes(String word, int depth, int from, int k, int[] skip,
+                                       long[] hashes, int count) {
+        long h = 0xCBF29CE484222325L;                   // 64-bit FNV-1a of the shortened word.
+        for (int i = 0, s = 0; i < word.length(); i++) {
+            if (s < k && skip[s] == i) {
+                s++;
+                continue;
+            }
+            h ^= word.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        hashes[count++] = h >>> (64 - 40);
+        if (k < depth) {
+            for (int i = from; i < word.length(); i++) {
+                skip[k] = i;
+                count = addDeleteHashes(word, depth, i + 1, k + 1, skip, hashes, count);
+            }
+        }
+        return count;
+    }
+
+    /** Index of the first entry not less than key. */
+    private int lowerBound(long key) {
+        int lo = 0, hi = entries.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (entries[mid] < key)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * A candidate correction with its ranking criteria.
+     */
+    private static class Suggestion implements Comparable<Suggestion> {
+        /** The dictionary word. */
+        private final String word;
+        /** Edit distance from the misspelled word. */
+        private final int distance;
+        /** Difference in length from the misspelled word. */
+        private final int lengthDiff;
+
+        /** Creates a candidate. */
+        Suggestion(String word, int distance, int lengthDiff) {
+            this.word = word;
+            this.distance = distance;
+            this.lengthDiff = lengthDiff;
+        }
+
+        @Override
+        public int compareTo(Suggestion o) {
+            if (distance != o.distance)
+                return distance - o.distance;
+            if (lengthDiff != o.lengthDiff)
+                return lengthDiff - o.lengthDiff;
+            return word.compareTo(o.word);
+        }
+    }
+}
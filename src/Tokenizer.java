@@ -0,0 +1,273 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * A streaming tokenizer that splits text into words with the same semantics as the
+ * regular expression [\w']+ (ASCII letters, digits, underscore and apostrophe).
+ * The input is read through one reusable buffer and each token is exposed as a view
+ * of that buffer (array, start and length) rather than as a new string. A token
+ * that runs past the end of the buffered data is moved to the front of the buffer
+ * before the next read, so tokens spanning a read boundary come out whole.
+ *
+ * The text is expected in an ASCII-compatible encoding such as UTF-8 or ISO-8859-1;
+ * bytes outside ASCII are never part of a word, just as non-ASCII characters do not
+ * match \w.
+ *
+ * When the Vector API {@link WordMask} is available, the bytes are classified 64
+ * at a time into a bit mask that is kept while the scan stays within it, and
+ * token boundaries are found by counting trailing zeros; the last bytes of the
+ * buffer, and every byte without the vector mask, are classified one at a time.
+ */
+public class Tokenizer {
+    /** Default size of the read buffer in bytes. */
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    /** Value of maskBase when no mask is held. */
+    private static final int NO_MASK = Integer.MIN_VALUE / 2;
+    /** Whether each byte value is a word character. */
+    private static final boolean[] WORD = new boolean[256];
+    /** Word mask new tokenizers classify with, or null for the scalar loop. */
+    private static volatile WordMask defaultMask = WordMask.vector();
+
+    static {
+        for (int c = '0'; c <= '9'; c++) WORD[c] = true;
+        for (int c = 'A'; c <= 'Z'; c++) WORD[c] = true;
+        for (int c = 'a'; c <= 'z'; c++) WORD[c] = true;
+        WORD['_'] = true;
+        WORD['\''] = true;
+    }
+
+    /** Source of the text. */
+    private final ReadableByteChannel in;
+    /** Reusable read buffer. */
+    private ByteBuffer buffer;
+    /** Backing array of the read buffer. */
+    private byte[] data;
+    /** Index of the next unscanned byte in data. */
+    private int pos = 0;
+    /** Number of valid bytes in data. */
+    private int limit = 0;
+    /** Stream offset of data[0]. */
+    private long base = 0;
+    /** Whether the end of the input has been reached. */
+    private boolean eof = false;
+    /** Start index of the current token in data. */
+    private int start = 0;
+    /** Length of the current token. */
+    private int length = 0;
+    /** Word mask classifying 64 bytes at a time, or null to scan byte by byte. */
+    private final WordMask masks = defaultMask;
+    /** Word-byte mask of data[maskBase] to data[maskBase + 63]. */
+    private long mask;
+    /** Index in data of the first byte of mask; far below 0 when there is none. */
+    private int maskBase = NO_MASK;
+
+    /**
+     * Creates a tokenizer over the given channel.
+     *
+     * @param in         the text to tokenize
+     * @param bufferSize the initial size of the read buffer in bytes
+     */
+    public Tokenizer(ReadableByteChannel in, int bufferSize) {
+        this.in = in;
+        buffer = ByteBuffer.allocate(Math.max(bufferSize, 16));
+        data = buffer.array();
+    }
+
+    /**
+     * Creates a tokenizer over the given channel with the default buffer size.
+     *
+     * @param in the text to tokenize
+     */
+    public Tokenizer(ReadableByteChannel in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a tokenizer over text already in memory. The array is scanned in
+     * place, and {@link #offset()} counts from off.
+     *
+     * @param text the array holding the text
+     * @param off  index of the first byte of the text
+     * @param len  length of the text in bytes
+     */
+    public Tokenizer(byte[] text, int off, int len) {
+        this.in = null;
+        data = text;
+        pos = off;
+        limit = off + len;
+        base = -off;
+        eof = true;
+    }
+
+    /**
+     * Whether the given byte is a word character.
+     *
+     * @param b the byte
+     * @return true if b matches [\w']
+     */
+    static boolean isWordByte(byte b) {
+        return WORD[b & 0xff];
+    }
+
+    /**
+     * Selects whether tokenizers created from now on classify bytes with the
+     * Vector API, when it is available, or one byte at a time.
+     *
+     * @param on true to use the Vector API if available
+     */
+    static void setVectorized(boolean on) {
+        defaultMask = on ? WordMask.vector() : null;
+    }
+
+    /**
+     * Whether tokenizers created now classify bytes with the Vector API.
+     *
+     * @return true if the vector word mask is in use
+     */
+    static boolean isVectorized() {
+        return defaultMask != null;
+    }
+
+    /**
+     * Advances to the next token.
+     *
+     * @return true if a token was found, false at the end of the input
+     * @throws IOException if the input cannot be read
+     */
+    public boolean next() throws IOException {
+        // Skip separators.
+        while (true) {
+            pos = skip(pos, false);
+            if (pos < limit)
+                break;
+            if (!fill(pos))
+                return false;
+        }
+        // Scan the word, keeping it contiguous across refills.
+        int scan = pos;
+        while (true) {
+            scan = skip(scan, true);
+            if (scan < limit || eof)
+                break;
+            int kept = scan - pos;
+            fill(pos);
+            scan = kept;
+        }
+        start = pos;
+        length = scan - pos;
+        pos = scan;
+        return true;
+    }
+
+    /**
+     * Returns the array holding the current token. Its contents change on the
+     * next call to {@link #next()}.
+     *
+     * @return the buffer array
+     */
+    public byte[] array() {
+        return data;
+    }
+
+    /**
+     * Returns the index of the current token in {@link #array()}.
+     *
+     * @return the token start
+     */
+    public int start() {
+        return start;
+    }
+
+    /**
+     * Returns the length of the current token in bytes.
+     *
+     * @return the token length
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns the byte offset of the current token from the start of the input.
+     *
+     * @return the token offset
+     */
+    public long offset() {
+        return base + start;
+    }
+
+    /**
+     * Returns the current token as a new string.
+     *
+     * @return the token text
+     */
+    public String token() {
+        return new String(data, start, length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Returns the index of the first byte from i on that is a word character if
+     * word is false, or is not one if word is true, or limit if there is none.
+     *
+     * @param i    index of the first byte to look at
+     * @param word whether to skip word characters rather than separators
+     * @return the index of the first byte of the other kind, or limit
+     */
+    private int skip(int i, boolean word) {
+        if (masks != null) {
+            while (limit - i >= WordMask.WIDTH || i - maskBase < WordMask.WIDTH) {
+                if (i - maskBase >= WordMask.WIDTH) {
+                    maskBase = i;
+                    mask = masks.of(data, i);
+                }
+                long left = (word ? ~mask : mask) >>> (i - maskBase);
+                if (left != 0)
+                    return i + Long.numberOfTrailingZeros(left);
+                i = maskBase + WordMask.WIDTH;
+            }
+        }
+        while (i < limit && WORD[data[i] & 0xff] == word)
+            i++;
+        return i;
+    }
+
+    /**
+     * Discards the bytes before index keep, moves the rest to the front of the
+     * buffer (growing it if nothing can be discarded) and reads more input.
+     *
+     * @param keep index of the first byte to keep
+     * @return true if any new bytes were read, false at the end of the input
+     */
+    private boolean fill(int keep) throws IOException {
+        if (eof)
+            return false;
+        int kept = limit - keep;
+        if (keep == 0 && kept == data.length) {
+            ByteBuffer larger = ByteBuffer.allocate(data.length * 2);
+            larger.put(data, 0, kept);
+            buffer = larger;
+            data = buffer.array();
+        } else {
+            System.arraycopy(data, keep, data, 0, kept);
+        }
+        base += keep;
+        pos -= keep;
+        limit = kept;
+        maskBase = NO_MASK;                     // The bytes have moved.
+        buffer.clear().position(limit);
+        int read;
+        do {
+            read = in.read(buffer);
+        } while (read == 0);
+        if (read < 0) {
+            eof = true;
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+}
@@ -0,0 +1,223 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * A bounded cache of spelling verdicts for the tokens of a text. Natural text
+ * repeats a small set of words very often, so remembering whether each recent
+ * token was found saves running the match rules and table lookups again.
+ *
+ * The tokens are kept in an open-addressing table laid out like
+ * {@link OpenDictionary}: parallel arrays of token hashes, tokens and one byte of
+ * state per slot, with linear probing and backward-shift removal. The state byte
+ * holds the verdict and a 2-bit use count. When the cache is full, a clock hand
+ * sweeps the slots. It takes one from the use count of each entry it passes and
+ * evicts the first entry whose count is already zero (generalized CLOCK), so
+ * tokens that keep recurring stay cached while one-off tokens are replaced.
+ *
+ * Each entry also keeps the number of dictionary probes its verdict cost, so
+ * that the probes saved by hits can be reported. A cache is meant for a single
+ * thread; checkers running on several threads each use their own.
+ */
+public class VerdictCache {
+    /** Largest fraction of slots that may be occupied. */
+    private static final double MAX_LOAD = 0.75;
+    /** State bit holding the verdict. */
+    private static final int FOUND = 0x80;
+    /** State bits holding the use count. */
+    private static final int USES = 0x03;
+
+    /** Maximum number of cached tokens. */
+    private final int entries;
+    /** Hashes of the cached tokens, parallel to tokens. */
+    private final int[] hashes;
+    /** Cached tokens; a null token marks an empty slot. */
+    private final String[] tokens;
+    /** Verdict and use count of each entry. */
+    private final byte[] states;
+    /** Probes the verdict of each entry cost. */
+    private final int[] costs;
+    /** Number of bits used to select a slot. */
+    private final int bits;
+    /** Number of cached tokens. */
+    private int n = 0;
+    /** Slot the clock hand points at. */
+    private int hand = 0;
+    /** Number of lookups. */
+    private long lookups = 0;
+    /** Number of lookups answered from the cache. */
+    private long hits = 0;
+    /** Probes avoided by the hits. */
+    private long savedProbes = 0;
+    /** The slots, as removal moves and empties them. */
+    private final LinearProbing.Slots slots = new LinearProbing.Slots() {
+        public boolean occupied(int i) {
+            return tokens[i] != null;
+        }
+
+        public int key(int i) {
+            return hashes[i];
+        }
+
+        public void move(int from, int to) {
+            hashes[to] = hashes[from];
+            tokens[to] = tokens[from];
+            states[to] = states[from];
+            costs[to] = costs[from];
+        }
+
+        public void clear(int i) {
+            tokens[i] = null;
+        }
+    };
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param entries the maximum number of cached tokens
+     */
+    public VerdictCache(int entries) {
+        if (entries < 1)
+            throw new IllegalArgumentException("A cache needs at least one entry");
+        this.entries = entries;
+        int b = 1;
+        while ((1 << b) * MAX_LOAD < entries)
+            b++;
+        bits = b;
+        hashes = new int[1 << b];
+        tokens = new String[1 << b];
+        states = new byte[1 << b];
+        costs = new int[1 << b];
+    }
+
+    /**
+     * Computes the hash of a token, for {@link #get} and {@link #put}.
+     *
+     * @param text the array holding the token
+     * @param off  index of the first byte of the token
+     * @param len  length of the token in bytes
+     * @return the token hash
+     */
+    public static int hash(byte[] text, int off, int len) {
+        return StandardHash.MIX64.hash(text, off, len);
+    }
+
+    /**
+     * Looks up the verdict of a token, counting a hit if it is cached.
+     *
+     * @param hash the token hash
+     * @param text the array holding the token
+     * @param off  index of the first byte of the token
+     * @param len  length of the token in bytes
+     * @return 1 if the token was found in the dictionary, 0 if it was not, or -1
+     * if the token is not cached
+     */
+    public int get(int hash, byte[] text, int off, int len) {
+        lookups++;
+        int mask = tokens.length - 1;
+        for (int i = slot(hash); tokens[i] != null; i = (i + 1) & mask) {
+            if (hashes[i] == hash && WordTable.sameWord(tokens[i], text, off, len)) {
+                hits++;
+                savedProbes += costs[i];
+                int state = states[i];
+                if ((state & USES) < USES)
+                    states[i] = (byte) (state + 1);
+                return (state & FOUND) != 0 ? 1 : 0;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Caches the verdict of a token that {@link #get} did not find, evicting an
+     * entry first if the cache is full.
+     *
+     * @param hash  the token hash
+     * @param text  the array holding the token
+     * @param off   index of the first byte of the token
+     * @param len   length of the token in bytes
+     * @param found whether the token was found in the dictionary
+     * @param cost  the number of probes the verdict cost
+     */
+    public void put(int hash, byte[] text, int off, int len, boolean found, long cost) {
+        if (n == entries)
+            evict();
+        int mask = tokens.length - 1;
+        int i = slot(hash);
+        while (tokens[i] != null)
+            i = (i + 1) & mask;
+        hashes[i] = hash;
+        tokens[i] = new String(text, off, len, StandardCharsets.ISO_8859_1);
+        states[i] = (byte) ((found ? FOUND : 0) | 1);
+        costs[i] = (int) Math.min(cost, Integer.MAX_VALUE);
+        n++;
+    }
+
+    /**
+     * Returns the number of cached tokens.
+     *
+     * @return the number of entries in use
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Returns the number of lookups made.
+     *
+     * @return the number of lookups
+     */
+    public long getLookupCount() {
+        return lookups;
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     *
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of dictionary probes the hits would have made.
+     *
+     * @return the probes saved by the cache
+     */
+    public long getSavedProbeCount() {
+        return savedProbes;
+    }
+
+    // private utilities
+
+    /** Home slot of a token hash. */
+    private int slot(int hash) {
+        return LinearProbing.slot(hash, bits);
+    }
+
+    /**
+     * Advances the clock hand to the first entry with no uses left, taking one use
+     * from each entry passed, and removes it.
+     */
+    private void evict() {
+        int mask = tokens.length - 1;
+        while (true) {
+            if (tokens[hand] != null) {
+                int state = states[hand];
+                if ((state & USES) == 0) {
+                    deleteSlot(hand);
+                    return;
+                }
+                states[hand] = (byte) (state - 1);
+            }
+            hand = (hand + 1) & mask;
+        }
+    }
+
+    /** Empties slot i, shifting back the entries that probed past it. */
+    private void deleteSlot(int i) {
+        LinearProbing.deleteSlot(slots, bits, i);
+        n--;
+    }
+}
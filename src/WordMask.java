@@ -0,0 +1,50 @@
+/**
+ * @author Stephen Hildebrand
+ *
+ * Classifies text 64 bytes at a time, giving a bit mask of the bytes that are word
+ * characters ([\w']), so that {@link Tokenizer} can find token boundaries with bit
+ * operations instead of a table lookup per byte.
+ *
+ * The only implementation, VectorWordMask in vector/, uses the incubating Vector
+ * API, so it is compiled only with --add-modules jdk.incubator.vector and is
+ * looked up by name here. When it or the module is missing, or the system
+ * property spellcheck.vector is false, {@link #vector()} returns null and the
+ * tokenizer keeps its scalar loop; the tokens are the same either way.
+ */
+abstract class WordMask {
+    /** Number of bytes classified by one call. */
+    static final int WIDTH = 64;
+
+    /** The vector implementation, or null if it cannot be used. */
+    private static final WordMask VECTOR = load();
+
+    /**
+     * Returns the mask of word bytes among text[off] to text[off + 63]: bit i is
+     * set if text[off + i] matches [\w'].
+     *
+     * @param text the array holding the text, at least off + 64 bytes long
+     * @param off  index of the first byte to classify
+     * @return the word-byte mask
+     */
+    abstract long of(byte[] text, int off);
+
+    /**
+     * Returns the vector implementation, or null if it is not available or turned off.
+     *
+     * @return the implementation, or null
+     */
+    static WordMask vector() {
+        return VECTOR;
+    }
+
+    /** Instantiates the vector implementation, if it was compiled and its module is present. */
+    private static WordMask load() {
+        if (!Boolean.parseBoolean(System.getProperty("spellcheck.vector", "true")))
+            return null;
+        try {
+            return (WordMask) Class.forName("VectorWordMask").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;                        // Not compiled, or run without the module.
+        }
+    }
+}
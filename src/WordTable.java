@@ -0,0 +1,137 @@
+/**
+ * @author Stephen Hildebrand
+ *
+ * The operations shared by every hash table that can hold the dictionary words.
+ * Keys are the integer hash codes produced by {@link #hashCode(String)} and the
+ * values are the words themselves. Every implementation counts a probe each time
+ * a text word is compared to an occupied table entry, so that the probe
+ * statistics of the different engines can be compared directly. The counts are
+ * 64-bit and safe to update from several threads looking words up at once.
+ */
+interface WordTable {
+
+    /**
+     * Computes the hash key for a string word.
+     *
+     * @param word the word to hash
+     * @return the calculated key
+     */
+    int hashCode(String word);
+
+    /**
+     * Computes the hash key for a word held as ASCII bytes, such as a token view
+     * from {@link Tokenizer}. Equal to {@link #hashCode(String)} of the same word.
+     *
+     * @param text the array holding the word
+     * @param off  index of the first byte of the word
+     * @param len  length of the word in bytes
+     * @return the calculated key
+     */
+    int hashCode(byte[] text, int off, int len);
+
+    /**
+     * Returns the hash function computing the keys of this table, so that callers
+     * can hash words incrementally with the same function.
+     *
+     * @return the hash function
+     */
+    HashStrategy getHash();
+
+    /**
+     * Returns the value associated with the specified key, or null if no such entry exists.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the associated value, or null if no such entry exists
+     */
+    String get(int key);
+
+    /**
+     * Returns the stored word equal to the given word, comparing the full word and
+     * not only its key, or null if no such entry exists.
+     *
+     * @param key  the key of the word, as returned by {@link #hashCode(String)}
+     * @param word the word to look up
+     * @return the stored word, or null if the word is not in the table
+     */
+    String get(int key, String word);
+
+    /**
+     * Whether the word held as ASCII bytes is in the table. The bytes are compared
+     * in place, so no string is created for the word. Counts as one lookup.
+     *
+     * @param key  the key of the word, as returned by {@link #hashCode(byte[], int, int)}
+     * @param text the array holding the word
+     * @param off  index of the first byte of the word
+     * @param len  length of the word in bytes
+     * @return true if the word is in the table
+     */
+    boolean contains(int key, byte[] text, int off, int len);
+
+    /**
+     * Associates the given value with the given key, returning the previous value
+     * associated with it (or null, if no such entry).
+     *
+     * @param key   key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the key (or null, if no such entry)
+     */
+    String put(int key, String value);
+
+    /**
+     * Removes the entry with the specified key, if present, and returns
+     * its associated value. Otherwise does nothing and returns null.
+     *
+     * @param key the key whose entry is to be removed
+     * @return the previous value associated with the removed key, or null if no such entry exists
+     */
+    String remove(int key);
+
+    /**
+     * Returns the number of words currently in the table.
+     *
+     * @return the number of entries
+     */
+    int size();
+
+    /**
+     * Returns the total number of times a text word is compared to a word
+     * in the table.
+     *
+     * @return the number of times a text word is compared to a table word
+     */
+    long getProbeCount();
+
+    /**
+     * Returns the total number of times a lookup operation is performed.
+     *
+     * @return the number of lookup operations
+     */
+    long getLookupCount();
+
+    /**
+     * Returns the length of every chain a lookup may walk, for the chain-length
+     * distribution: the buckets of a chained table, or the runs of consecutive
+     * occupied slots of an open-addressing one. Empty chains are left out.
+     *
+     * @return the number of entries in each non-empty chain
+     */
+    int[] chainLengths();
+
+    /**
+     * Whether a word equals the ASCII bytes text[off, off + len).
+     *
+     * @param word the word
+     * @param text the array holding the bytes
+     * @param off  index of the first byte
+     * @param len  number of bytes
+     * @return true if the word and the bytes spell the same characters
+     */
+    static boolean sameWord(String word, byte[] text, int off, int len) {
+        if (word.length() != len)
+            return false;
+        for (int i = 0; i < len; i++)
+            if (word.charAt(i) != (text[off + i] & 0xff))
+                return false;
+        return true;
+    }
+}
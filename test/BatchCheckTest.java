@@ -0,0 +1,97 @@
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Test class for BatchCheck.java.
+ */
+public class BatchCheckTest {
+    /** Directory tree of the test files */
+    private Path root;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("batch");
+        Files.createDirectories(root.resolve("a/b"));
+        write("a/one.txt", "The cat sat on teh mat.\n");
+        write("a/b/two.txt", "Zzq and zzq.\nThe end\n");
+        write("notes.md", "A teh note\n");
+        StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 40000; i++)
+            big.append("The cat sat on teh mat.\n");
+        write("big.txt", big.toString());
+    }
+
+    /** Removes the test files and the summary. */
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+        new File("batch-summary.txt").delete();
+    }
+
+    /** Writes a test file below the root. */
+    private void write(String name, String text) throws IOException {
+        Files.write(root.resolve(name), text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /** Lines of a file below the root. */
+    private List<String> lines(String name) throws IOException {
+        return Files.readAllLines(root.resolve(name));
+    }
+
+    /** Every matching file gets its report, and the summary adds them up. */
+    @Test
+    public void batch() throws Exception {
+        SpellCheck.main(new String[] {"-threads=3", "-maxInFlight=1", "-batch=" + root});
+        assertEquals(List.of("Possible misspelled words:", "teh", "", "Text word count: 6",
+                "Misspelled word count: 1"), lines("a/one-out.txt"));
+        assertEquals(List.of("Zzq", "zzq"), lines("a/b/two-out.txt").subList(1, 3));
+        assertTrue(lines("big-out.txt").contains("Misspelled word count: 40000"));
+        assertFalse(Files.exists(root.resolve("notes.md-out.txt")));
+        List<String> summary = Files.readAllLines(Paths.get("batch-summary.txt"));
+        assertTrue(summary.contains("Files checked: 3 (0 failed)"));
+        assertTrue(summary.contains("Text word count: " + (6 + 5 + 6 * 40000)));
+        assertTrue(summary.contains("Misspelled word count: " + (1 + 2 + 40000)));
+        assertTrue(summary.get(summary.size() - 1).startsWith("Throughput: "));
+
+        // The reports of the first run are not checked again.
+        SpellCheck.main(new String[] {"-batch=" + root});
+        assertTrue(Files.readAllLines(Paths.get("batch-summary.txt")).contains("Files checked: 3 (0 failed)"));
+    }
+
+    /** Patterns select files by name, or by path below the root. */
+    @Test
+    public void globs() throws Exception {
+        SpellCheck.main(new String[] {"-glob=*.md", "-glob=a/**.txt", "-format=counts", "-batch=" + root});
+        assertEquals(List.of("Possible misspelled words:", "teh (1)"), lines("notes.md-out.txt").subList(0, 2));
+        assertTrue(lines("a/b/two-out.txt").contains("Distinct misspelled words: 2"));
+        assertFalse(Files.exists(root.resolve("big-out.txt")));
+        assertTrue(Files.readAllLines(Paths.get("batch-summary.txt")).contains("Files checked: 3 (0 failed)"));
+    }
+
+    /** Output files drop the .txt ending of their text. */
+    @Test
+    public void outputFile() {
+        assertEquals(Paths.get("d/x-out.txt"), BatchCheck.outputFile(Paths.get("d/x.txt"), "-out.txt"));
+        assertEquals(Paths.get("d/x.md-out.txt"), BatchCheck.outputFile(Paths.get("d/x.md"), "-out.txt"));
+    }
+}
@@ -0,0 +1,54 @@
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Test class for BloomFilter.java.
+ */
+public class BloomFilterTest {
+    /** Number of keys added to the filters */
+    private static final int KEYS = 25144;
+
+    /** Fraction of keys that were not added which the filter reports as present. */
+    private static double falsePositiveRate(double target) {
+        BloomFilter filter = new BloomFilter(KEYS, target);
+        for (int i = 0; i < KEYS; i++)
+            filter.add(StandardHash.MIX64.hash("word" + i));
+        for (int i = 0; i < KEYS; i++)
+            assertTrue(filter.mightContain(StandardHash.MIX64.hash("word" + i)));
+        int positives = 0, tries = 200000;
+        for (int i = 0; i < tries; i++)
+            if (filter.mightContain(StandardHash.MIX64.hash("absent" + i)))
+                positives++;
+        return positives / (double) tries;
+    }
+
+    /** Added keys are always found, and absent keys pass at about the rate asked for. */
+    @Test
+    public void falsePositiveRates() {
+        for (double target : new double[] {0.1, 0.01, 0.001}) {
+            double rate = falsePositiveRate(target);
+            assertTrue(target + ": " + rate, rate <= target * 1.5);
+            assertTrue(target + ": " + rate, rate >= target / 10);
+        }
+    }
+
+    /** A lower rate takes more bits and hash functions. */
+    @Test
+    public void sizing() {
+        BloomFilter loose = new BloomFilter(KEYS, 0.1);
+        BloomFilter tight = new BloomFilter(KEYS, 0.001);
+        assertTrue(tight.bitCount() > 2 * loose.bitCount());
+        assertTrue(tight.hashCount() > loose.hashCount());
+        assertEquals(0, tight.bitCount() % 512);
+        assertTrue(new BloomFilter(0, 0.01).bitCount() > 0);
+    }
+
+    /** The rate must lie strictly between 0 and 1. */
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidRate() {
+        new BloomFilter(KEYS, 1.0);
+    }
+}
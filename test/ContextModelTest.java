@@ -0,0 +1,122 @@
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Test class for ContextModel.java.
+ */
+public class ContextModelTest {
+    /** Training text in which "from" and "their" are common after certain words. */
+    private static final String TRAINING = ("He came from the city. She walked from the river to their house. "
+            + "They sold their horses and came from the hills. The letter from the king was read. ").repeat(20);
+    /** Model trained on the training text */
+    private ContextModel model;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        model = train(TRAINING);
+    }
+
+    /** Trains a model on a text. */
+    private static ContextModel train(String text) throws Exception {
+        byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+        return ContextModel.train(new Tokenizer(bytes, 0, bytes.length));
+    }
+
+    /** Checks a text and returns its flags. */
+    private static List<ContextModel.Flag> check(ContextModel model, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+        ContextModel.Stream stream = model.stream();
+        Tokenizer tokens = new Tokenizer(bytes, 0, bytes.length);
+        try {
+            while (tokens.next())
+                stream.next(tokens.array(), tokens.start(), tokens.length(), tokens.offset());
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        stream.finish();
+        return stream.flags();
+    }
+
+    /** Counts come back within the quantization error, ignoring case. */
+    @Test
+    public void counts() {
+        assertEquals(80, model.count("from"), 80 * 0.07);
+        assertEquals(80, model.count("from", "the"), 80 * 0.07);
+        assertEquals(40, model.count("came", "From", "the"), 40 * 0.07);
+        assertEquals(0, model.count("form", "the"), 0);
+        assertEquals(1, ContextModel.quantize(1));
+        assertTrue(ContextModel.quantize(Long.MAX_VALUE) <= 255);
+    }
+
+    /** A confusable word out of place is flagged with the likelier word, and words in place are not. */
+    @Test
+    public void flags() {
+        String text = "He came form the city. They sold there horses.";
+        List<ContextModel.Flag> flags = check(model, text);
+        assertEquals(2, flags.size());
+        assertEquals("form", flags.get(0).word);
+        assertEquals("from", flags.get(0).suggestion);
+        assertEquals(text.indexOf("form"), flags.get(0).offset);
+        assertEquals("there", flags.get(1).word);
+        assertEquals("their", flags.get(1).suggestion);
+        assertTrue(check(model, TRAINING).isEmpty());
+        assertTrue(check(model, "form").isEmpty());          // No context to judge by.
+    }
+
+    /** A saved model maps back with the same counts and flags. */
+    @Test
+    public void saveLoad() throws Exception {
+        File file = File.createTempFile("context", ".ngm");
+        try {
+            model.save(file);
+            ContextModel loaded = ContextModel.load(file);
+            assertEquals(model.size(), loaded.size());
+            assertEquals(model.getTokenCount(), loaded.getTokenCount());
+            assertEquals(model.memoryBytes(), loaded.memoryBytes());
+            assertEquals(model.count("came", "from", "the"), loaded.count("came", "from", "the"), 0);
+            assertEquals(1, check(loaded, "She walked form the river").size());
+            assertTrue(model.memoryBytes() / (double) model.size() <= 4 / 0.375);
+        } finally {
+            file.delete();
+        }
+    }
+
+    /** Saving over a loaded model replaces the file without changing the mapped one. */
+    @Test
+    public void saveOverLoaded() throws Exception {
+        File file = File.createTempFile("context", ".ngm");
+        try {
+            model.save(file);
+            ContextModel loaded = ContextModel.load(file);
+            train("the river ran on").save(file);
+            assertEquals(model.size(), loaded.size());
+            assertEquals(model.count("came", "from", "the"), loaded.count("came", "from", "the"), 0);
+            assertEquals(0, ContextModel.load(file).count("came", "from", "the"), 0);
+        } finally {
+            file.delete();
+        }
+    }
+
+    /** A file that is not a model is refused. */
+    @Test
+    public void notAModel() throws Exception {
+        try {
+            ContextModel.load(new File("dict.txt"));
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("not a context model"));
+        }
+    }
+}
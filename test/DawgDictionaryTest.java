@@ -0,0 +1,137 @@
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Test class for DawgDictionary.java.
+ */
+public class DawgDictionaryTest {
+    /** Sample word input, unsorted and with a repeat */
+    private List<String> input = Arrays.asList("tops", "tap", "add", "taps", "top", "adds", "added", "top", "t\u00e9");
+    /** Graph under test */
+    private DawgDictionary d;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        d = new DawgDictionary(input, StandardHash.CYCLIC_SHIFT);
+    }
+
+    /** Every word is found through each lookup with one probe, and other words are not. */
+    @Test
+    public void lookups() {
+        assertEquals(8, d.size());
+        for (String word : input) {
+            assertTrue(word, WordTables.contains(d, word));
+            assertEquals(word, d.get(d.hashCode(word), word));
+        }
+        for (String word : new String[] {"", "t", "ta", "tapss", "ad", "addeds", "b", "t\u0142"}) {
+            assertFalse(word, WordTables.contains(d, word));
+            assertNull(word, d.get(d.hashCode(word), word));
+        }
+        assertEquals(d.getLookupCount(), d.getProbeCount());
+        assertFalse(WordTables.contains(new DawgDictionary(new ArrayList<>(), StandardHash.CYCLIC_SHIFT), "a"));
+    }
+
+    /** Equal endings are stored once: tap, taps, top and tops share the "p", "s" tail. */
+    @Test
+    public void minimal() {
+        DawgDictionary small = new DawgDictionary(Arrays.asList("tap", "taps", "top", "tops"), StandardHash.CYCLIC_SHIFT);
+        assertEquals(5, small.arcCount());          // t, a, o, p, s
+        assertEquals(5 * 5, small.memoryBytes());
+        assertArrayEquals(new int[] {1, 2, 1, 1}, small.chainLengths());
+    }
+
+    /** One walk reports every prefix of a token that is a word. */
+    @Test
+    public void prefixes() {
+        assertEquals(Arrays.asList("add", "adds"), d.prefixesOf("addsx"));
+        assertEquals(Arrays.asList("add", "added"), d.prefixesOf("added"));
+        assertEquals(Arrays.asList(), d.prefixesOf("xadd"));
+        long lookups = d.getLookupCount();
+        byte[] token = "topsy".getBytes(StandardCharsets.ISO_8859_1);
+        int[] path = new int[token.length];
+        assertEquals(4, d.walk(token, 0, token.length, path));
+        assertEquals(lookups + 1, d.getLookupCount());
+        assertTrue(d.endsWord(path[2]));
+        assertFalse(d.endsWord(path[1]));
+        assertTrue(d.endsWord(path[1], "p".getBytes(StandardCharsets.ISO_8859_1)));
+        assertTrue(d.endsWord(path[1], "ps".getBytes(StandardCharsets.ISO_8859_1)));
+        assertTrue(d.endsWord(-1, "tap".getBytes(StandardCharsets.ISO_8859_1)));
+        assertFalse(d.endsWord(path[3], "s".getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
+    /** Words beginning with a prefix are listed in byte order, up to the limit. */
+    @Test
+    public void complete() {
+        assertEquals(Arrays.asList("tap", "taps", "top", "tops", "t\u00e9"), d.complete("t", 10));
+        assertEquals(Arrays.asList("add", "added"), d.complete("add", 2));
+        assertEquals(Arrays.asList("adds"), d.complete("adds", 10));
+        assertEquals(Arrays.asList("add"), d.complete("", 1));
+        assertTrue(d.complete("x", 10).isEmpty());
+        assertTrue(d.complete("a", 0).isEmpty());
+    }
+
+    /** The graph cannot be changed or searched by key. */
+    @Test
+    public void readOnly() {
+        for (Runnable change : new Runnable[] {() -> d.put(1, "new"), () -> d.remove(1), () -> d.get(1)}) {
+            try {
+                change.run();
+                fail();
+            } catch (UnsupportedOperationException e) {
+                assertFalse(WordTables.contains(d, "new"));
+            }
+        }
+    }
+
+    /**
+     * The rules find the same stems by walking the graph as by hashing into a
+     * table, on the text words and on dictionary words with endings, with one
+     * lookup per word.
+     */
+    @Test
+    public void rulesMatchTable() throws IOException {
+        List<String> dictWords = SpellCheck.readWordList(new File("dict.txt"));
+        DawgDictionary dawg = new DawgDictionary(dictWords, StandardHash.CYCLIC_SHIFT);
+        assertEquals(new TreeSet<>(dictWords).size(), dawg.size());
+        WordTable table = new OpenDictionary(dictWords.size(), StandardHash.CYCLIC_SHIFT);
+        for (String word : dictWords)
+            table.put(table.hashCode(word), word);
+        List<String> words = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get("input.txt"), StandardCharsets.ISO_8859_1))
+            for (String token : line.split("[^\\w']+"))
+                if (!token.isEmpty())
+                    words.add(token);
+        for (int i = 0; i < dictWords.size(); i += 53)
+            for (String ending : new String[] {"", "s", "es", "ed", "ing", "ly", "er", "'s", "ied", "x"}) {
+                String word = dictWords.get(i) + ending;
+                words.add(word);
+                words.add(Character.toUpperCase(word.charAt(0)) + word.substring(1));
+            }
+        SuffixRules bound = SuffixRules.DEFAULT.forDictionary(dictWords);
+        for (String word : words) {
+            assertEquals(word, WordTables.contains(table, word), WordTables.contains(dawg, word));
+            assertEquals(word, bound.match(table, word), bound.match(dawg, word));
+            assertEquals(word, SuffixRules.DEFAULT.match(table, word), SuffixRules.DEFAULT.match(dawg, word));
+        }
+        long lookups = dawg.getLookupCount();
+        bound.check(dawg, "Walkings");
+        assertEquals(lookups + 1, dawg.getLookupCount());
+    }
+}
@@ -86,4 +86,167 @@ public class DictionaryTest {
 
         assertTrue(d.size() == 0);
 	}
+
+    /** Words sharing a key are both kept and told apart by the full word. */
+    @Test
+    public void keyCollision() throws Exception {
+        String a = "aB", b = "b\"";
+        assertEquals(d.hashCode(a), d.hashCode(b));
+        d.put(d.hashCode(a), a);
+        d.put(d.hashCode(b), b);
+        assertEquals(2, d.size());
+        assertEquals(a, d.get(d.hashCode(a), a));
+        assertEquals(b, d.get(d.hashCode(b), b));
+    }
+
+    /** Test method for {@link Dictionary#Dictionary(int, HashStrategy)}. */
+    @Test
+    public void hashStrategy() throws Exception {
+        Dictionary fnv = new Dictionary(DICTIONARY_SIZE, StandardHash.FNV1A);
+        for (int i = 0; i < 7; i++) {
+            assertEquals(StandardHash.FNV1A.hash(input[i]), fnv.hashCode(input[i]));
+            fnv.put(fnv.hashCode(input[i]), input[i]);
+        }
+        for (int i = 0; i < 7; i++)
+            assertEquals(input[i], fnv.get(fnv.hashCode(input[i]), input[i]));
+    }
+
+    /** Putting a stored word again keeps one entry and returns the stored word. */
+    @Test
+    public void putSameWord() throws Exception {
+        assertNull(d.put(keys[0], input[0]));
+        assertEquals(input[0], d.put(keys[0], input[0]));
+        assertEquals(1, d.size());
+        assertEquals(input[0], d.remove(keys[0]));
+        assertNull(d.get(keys[0], input[0]));
+        assertEquals(0, d.size());
+    }
+
+    /** Test method for {@link Dictionary#wordSet()}. */
+    @Test
+    public void wordSet() throws Exception {
+        for (int i = 0; i < 7; i++)
+            d.put(keys[i], input[i]);
+        int count = 0;
+        for (Object w : d.wordSet())
+            count++;
+        assertEquals(7, count);
+    }
+
+    /** User words are added and removed by word, leaving other words with the same key alone. */
+    @Test
+    public void userWords() throws Exception {
+        assertTrue(d.addWord("aB"));
+        assertTrue(d.addWord("b\""));
+        assertFalse(d.addWord("aB"));
+        assertEquals(2, d.size());
+        assertTrue(d.removeWord("b\""));
+        assertFalse(d.removeWord("b\""));
+        assertTrue(d.contains("aB"));
+        assertFalse(d.contains("b\""));
+        assertEquals(1, d.size());
+    }
+
+    /**
+     * The table grows as words are added, a few buckets per put, and every word
+     * stays reachable while the buckets move. Lookups stay as short at a million
+     * words as at the size of the default dictionary. The table is seeded, since
+     * the spread of its compression varies with the scale and shift drawn.
+     */
+    @Test
+    public void growsIncrementally() throws Exception {
+        Dictionary grown = new Dictionary(16, StandardHash.CYCLIC_SHIFT, 1);
+        int words = 1 << 20;
+        double probesAtDictSize = 0;
+        boolean sawRehash = false;
+        for (int i = 0; i < words; i++) {
+            String word = "w" + i;
+            grown.put(grown.hashCode(word), word);
+            assertEquals(i + 1, grown.size());
+            assertTrue(grown.size() <= 2 * grown.capacity() * Dictionary.MAX_LOAD);
+            if (grown.isRehashing() && !sawRehash) {
+                sawRehash = true;
+                for (int j = 0; j <= i; j++)
+                    assertTrue(grown.contains("w" + j));
+            }
+            if (i + 1 == DICTIONARY_SIZE)
+                probesAtDictSize = hitProbes(grown, i + 1);
+        }
+        assertTrue(sawRehash);
+        double probes = hitProbes(grown, words);
+        assertTrue(probesAtDictSize < 1.6);
+        assertTrue(probes < 1.6);
+        assertEquals(probesAtDictSize, probes, 0.25);
+    }
+
+    /** Average probes to find each of the first words stored as "w0", "w1", .... */
+    private static double hitProbes(Dictionary dict, int words) {
+        long before = dict.getProbeCount();
+        for (int i = 0; i < words; i++)
+            assertTrue(dict.contains("w" + i));
+        return (dict.getProbeCount() - before) / (double) words;
+    }
+
+    /** The table shrinks as words are removed, but not below its initial capacity. */
+    @Test
+    public void shrinks() throws Exception {
+        Dictionary table = new Dictionary(64);
+        for (int i = 0; i < 10000; i++)
+            table.addWord("w" + i);
+        int grownCapacity = table.capacity();
+        assertTrue(grownCapacity >= 10000);
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(table.removeWord("w" + i));
+            assertEquals(10000 - i - 1, table.size());
+            assertTrue(table.capacity() >= 64);
+        }
+        assertTrue(table.capacity() < grownCapacity);
+        for (int i = 0; i < 100; i++)
+            table.addWord("x" + i);
+        for (int i = 0; i < 100; i++)
+            assertTrue(table.contains("x" + i));
+    }
+
+    /** With resizing off, the bucket count stays as created. */
+    @Test
+    public void fixedCapacity() throws Exception {
+        Dictionary fixed = new Dictionary(8);
+        fixed.setResizing(false);
+        for (int i = 0; i < 100; i++)
+            fixed.addWord("w" + i);
+        assertEquals(8, fixed.capacity());
+        assertEquals(100, fixed.size());
+    }
+
+    /** Test method for {@link Dictionary#chainLengths()}: the non-empty buckets hold every word. */
+    @Test
+    public void chainLengths() throws Exception {
+        Dictionary table = new Dictionary(8);
+        table.setResizing(false);
+        for (int i = 0; i < 100; i++)
+            table.addWord("w" + i);
+        int[] chains = table.chainLengths();
+        assertTrue(chains.length <= 8);
+        int total = 0;
+        for (int length : chains) {
+            assertTrue(length > 0);
+            total += length;
+        }
+        assertEquals(100, total);
+    }
+
+    /** Test method for {@link Dictionary#getSeed()}: tables of one seed spread words alike. */
+    @Test
+    public void seed() throws Exception {
+        Dictionary first = new Dictionary(64, StandardHash.CYCLIC_SHIFT, 42);
+        Dictionary second = new Dictionary(64, StandardHash.CYCLIC_SHIFT, 42);
+        first.setResizing(false);
+        second.setResizing(false);
+        for (int i = 0; i < 500; i++) {
+            first.addWord("w" + i);
+            second.addWord("w" + i);
+        }
+        assertEquals(42, first.getSeed());
+        assertArrayEquals(first.chainLengths(), second.chainLengths());
+    }
 }
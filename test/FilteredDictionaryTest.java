@@ -0,0 +1,93 @@
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Test class for FilteredDictionary.java.
+ */
+public class FilteredDictionaryTest {
+    /** Words of dict.txt */
+    private List<String> words;
+    /** Words of input.txt */
+    private List<String> text;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        words = SpellCheck.readWordList(new File("dict.txt"));
+        text = new ArrayList<>();
+        try (FileChannel in = FileChannel.open(Paths.get("input.txt"))) {
+            Tokenizer tokens = new Tokenizer(in);
+            while (tokens.next())
+                text.add(tokens.token());
+        }
+    }
+
+    /** Builds an open-addressing table of the dictionary words. */
+    private OpenDictionary table() {
+        OpenDictionary table = new OpenDictionary(words.size());
+        for (String word : words)
+            table.put(table.hashCode(word), word);
+        return table;
+    }
+
+    /**
+     * Checking the text through the filter gives the same verdicts and lookup count
+     * as the bare table, with fewer probes, and the saved probes are estimated
+     * closely.
+     */
+    @Test
+    public void sameVerdictsFewerProbes() throws Exception {
+        OpenDictionary bare = table();
+        FilteredDictionary filtered = new FilteredDictionary(table(), words, 0.01);
+        assertEquals(0, filtered.getProbeCount());
+        assertEquals(0, filtered.getLookupCount());
+        SuffixRules rules = SuffixRules.DEFAULT.forDictionary(words);
+        for (String word : text) {
+            byte[] bytes = word.getBytes(StandardCharsets.ISO_8859_1);
+            boolean expected = bare.contains(bare.hashCode(word), bytes, 0, bytes.length)
+                    || rules.check(bare, bytes, 0, bytes.length);
+            boolean actual = filtered.contains(filtered.hashCode(word), bytes, 0, bytes.length)
+                    || rules.check(filtered, bytes, 0, bytes.length);
+            assertEquals(word, expected, actual);
+            assertEquals(expected, bare.get(bare.hashCode(word), word) != null
+                    || rules.check(bare, word));
+            assertEquals(expected, filtered.get(filtered.hashCode(word), word) != null
+                    || rules.check(filtered, word));
+        }
+        assertEquals(bare.getLookupCount(), filtered.getLookupCount());
+        assertTrue(filtered.getRejectionCount() > 1000);
+        assertTrue(filtered.getFalsePositiveCount() < filtered.getRejectionCount() / 20);
+        assertTrue(filtered.getProbeCount() < bare.getProbeCount());
+        long estimated = filtered.getProbeCount() + filtered.getSavedProbeCount();
+        assertEquals(bare.getProbeCount(), estimated, bare.getProbeCount() * 0.1);
+    }
+
+    /** Words put through the filter are found; removed words are not. */
+    @Test
+    public void putAndRemove() {
+        FilteredDictionary filtered = new FilteredDictionary(table(), words, 0.01);
+        int size = filtered.size();
+        String word = "zyxwvut";
+        int key = filtered.hashCode(word);
+        assertNull(filtered.get(key, word));
+        assertNull(filtered.put(key, word));
+        assertEquals(word, filtered.get(key, word));
+        assertEquals(size + 1, filtered.size());
+        assertEquals(word, filtered.remove(key));
+        assertNull(filtered.get(key, word));
+        assertEquals(size, filtered.size());
+    }
+}
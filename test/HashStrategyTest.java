@@ -0,0 +1,73 @@
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Test class for HashStrategy.java, StandardHash.java and HashDiagnostics.java.
+ */
+public class HashStrategyTest {
+    /** Sample word input */
+    private String input[] = {"", "a", "add", "abounds", "crunch", "don't", "searched", "supercalifragilistic"};
+
+    /** The cyclic shift is the original Dictionary hash. */
+    @Test
+    public void cyclicShift() {
+        for (String word : input) {
+            int k = 0;
+            for (int i = 0; i < word.length(); i++) {
+                k = (k << 5) | (k >>> 27);
+                k += (int) word.charAt(i);
+            }
+            assertEquals(k, StandardHash.CYCLIC_SHIFT.hash(word));
+        }
+    }
+
+    /** The polynomial hash equals String.hashCode(). */
+    @Test
+    public void polynomial() {
+        for (String word : input)
+            assertEquals(word.hashCode(), StandardHash.POLYNOMIAL.hash(word));
+    }
+
+    /** FNV-1a matches its published test vectors. */
+    @Test
+    public void fnv1a() {
+        assertEquals(0x811C9DC5, StandardHash.FNV1A.hash(""));
+        assertEquals(0xE40C292C, StandardHash.FNV1A.hash("a"));
+        assertEquals(0xBF9CF968, StandardHash.FNV1A.hash("foobar"));
+    }
+
+    /** Hashing bytes gives the same key as hashing the string, for every function. */
+    @Test
+    public void bytesMatchString() {
+        for (StandardHash h : StandardHash.values()) {
+            for (String word : input) {
+                byte[] text = ("  " + word + " ").getBytes(StandardCharsets.US_ASCII);
+                assertEquals(h.hash(word), h.hash(text, 2, word.length()));
+            }
+        }
+    }
+
+    /** Every function is found by its command-line name. */
+    @Test
+    public void forLabel() {
+        for (StandardHash h : StandardHash.values())
+            assertSame(h, StandardHash.forLabel(h.label()));
+        assertNull(StandardHash.forLabel("md5"));
+    }
+
+    /** The diagnostics count distinct words sharing a key. */
+    @Test
+    public void diagnostics() {
+        String report = HashDiagnostics.report("cyclic", StandardHash.CYCLIC_SHIFT,
+                Arrays.asList("aB", "b\"", "add", "add"), 4);
+        assertTrue(report, report.contains("Words: 3, buckets: 4"));
+        assertTrue(report, report.contains("Key collisions: 1 keys shared by 2 words"));
+        assertTrue(report, report.contains("Probes per hit:"));
+    }
+}
@@ -0,0 +1,138 @@
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Test class for IncrementalCheck.java.
+ */
+public class IncrementalCheckTest {
+    /** Text checked, read from input.txt */
+    private byte[] text;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        OpenDictionary dict = new OpenDictionary(25144);
+        for (String word : SpellCheck.readWordList(new File("dict.txt")))
+            dict.put(dict.hashCode(word), word);
+        SpellCheck.setDictionary(dict);
+        SpellCheck.setRules(SuffixRules.DEFAULT);
+        text = Files.readAllBytes(new File("input.txt").toPath());
+    }
+
+    /** Checks a text with no previous results. */
+    private static IncrementalCheck.Result fresh(byte[] text) throws Exception {
+        return new IncrementalCheck(1).check(text, text.length);
+    }
+
+    /** Asserts that two results report the same words and dictionary work. */
+    private static void assertSameResult(IncrementalCheck.Result expected, IncrementalCheck.Result actual) {
+        assertEquals(expected.words, actual.words);
+        assertEquals(expected.misspelled, actual.misspelled);
+        assertEquals(expected.probes, actual.probes);
+        assertEquals(expected.lookups, actual.lookups);
+        assertEquals(expected.blocks, actual.blocks);
+    }
+
+    /** Replaces the first occurrence of a string in the text. */
+    private static byte[] edit(byte[] text, String from, String to) {
+        String s = new String(text, StandardCharsets.ISO_8859_1);
+        assertTrue(s.contains(from));
+        return s.replaceFirst(from, to).getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /** Only the blocks holding an edit are checked again, and the result is that of a full check. */
+    @Test
+    public void onlyEditedBlocks() throws Exception {
+        IncrementalCheck check = new IncrementalCheck(1);
+        IncrementalCheck.Result first = check.check(text, text.length);
+        assertEquals(0, first.reused);
+        assertTrue(first.blocks > 10);
+
+        IncrementalCheck.Result again = check.check(text, text.length);
+        assertSameResult(first, again);
+        assertEquals(first.blocks, again.reused);
+
+        byte[] edited = edit(text, "general", "genral");
+        IncrementalCheck.Result changed = check.check(edited, edited.length);
+        assertSameResult(fresh(edited), changed);
+        assertEquals(changed.blocks - 1, changed.reused);
+        assertTrue(changed.misspelled.contains("genral"));
+
+        // A new line changes the block it lands in and leaves the others alone.
+        byte[] inserted = edit(edited, "\n", "\nThe new lnie.\n");
+        IncrementalCheck.Result grown = check.check(inserted, inserted.length);
+        assertSameResult(fresh(inserted), grown);
+        assertTrue(grown.reused >= grown.blocks - 2);
+    }
+
+    /** Saved results are reused by a later checker with the same configuration only. */
+    @Test
+    public void saveAndLoad() throws Exception {
+        File state = File.createTempFile("blocks", ".dat");
+        try {
+            IncrementalCheck check = new IncrementalCheck(42);
+            IncrementalCheck.Result first = check.check(text, text.length);
+            check.save(state);
+
+            IncrementalCheck loaded = IncrementalCheck.load(state, 42);
+            assertEquals(check.size(), loaded.size());
+            IncrementalCheck.Result again = loaded.check(text, text.length);
+            assertSameResult(first, again);
+            assertEquals(first.blocks, again.reused);
+
+            assertEquals(0, IncrementalCheck.load(state, 43).size());
+            Files.write(state.toPath(), new byte[] {'S', 'P', 'I', 'C', 0});
+            assertEquals(0, IncrementalCheck.load(state, 42).size());
+            assertEquals(0, IncrementalCheck.load(new File(state.getPath() + ".missing"), 42).size());
+        } finally {
+            state.delete();
+        }
+    }
+
+    /** The configuration fingerprint changes with the words and the settings. */
+    @Test
+    public void fingerprint() {
+        long base = IncrementalCheck.fingerprint(List.of("a", "b"), "open", "cyclic");
+        assertEquals(base, IncrementalCheck.fingerprint(List.of("a", "b"), "open", "cyclic"));
+        assertNotEquals(base, IncrementalCheck.fingerprint(List.of("a", "c"), "open", "cyclic"));
+        assertNotEquals(base, IncrementalCheck.fingerprint(List.of("a", "b"), "chain", "cyclic"));
+        assertNotEquals(base, IncrementalCheck.fingerprint(List.of("ab"), "open", "cyclic"));
+    }
+
+    /** Incremental runs of SpellCheck print what a full run prints, then the blocks reused. */
+    @Test
+    public void sameOutputAsFullRun() throws Exception {
+        File copy = File.createTempFile("incremental", ".txt");
+        File out = new File(copy.getPath().replace(".txt", "-out.txt"));
+        File state = new File(copy.getPath().replace(".txt", "-blocks.dat"));
+        try {
+            Files.write(copy.toPath(), text);
+            SpellCheck.main(new String[] {"-engine=open", copy.getPath()});
+            List<String> full = Files.readAllLines(out.toPath());
+            for (int run = 0; run < 2; run++) {
+                SpellCheck.main(new String[] {"-engine=open", "-incremental", copy.getPath()});
+                List<String> incremental = Files.readAllLines(out.toPath());
+                assertEquals(full, incremental.subList(0, incremental.size() - 1));
+                String[] reused = incremental.get(incremental.size() - 1)
+                        .replace("Incremental blocks reused: ", "").split(" of ");
+                assertEquals(run == 0 ? "0" : reused[1], reused[0]);
+            }
+            assertTrue(state.exists());
+        } finally {
+            copy.delete();
+            out.delete();
+            state.delete();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Test class for LayeredDictionary.java.
+ */
+public class LayeredDictionaryTest {
+    /** Table under test, with the layers base, medical and user */
+    private LayeredDictionary d;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        d = new LayeredDictionary();
+        d.addLayer("base", List.of("add", "abounds", "crunch", "founder", "igloo"));
+        d.addLayer("medical", List.of("femur", "tibia", "crunch"));
+        d.addLayer("user", List.of("tibia", "Hildebrand"));
+    }
+
+    /** Every word of every layer is found, and each distinct word is stored once. */
+    @Test
+    public void merged() {
+        assertEquals(8, d.size());
+        for (String word : List.of("add", "crunch", "femur", "tibia", "Hildebrand"))
+            assertTrue(word, WordTables.contains(d, word));
+        assertFalse(WordTables.contains(d, "fibula"));
+        assertEquals("femur", d.get(d.hashCode("femur"), "femur"));
+        assertEquals(List.of("base", "medical", "user"), d.layerNames());
+        assertEquals(3, d.layerSize("medical"));
+        assertEquals(8, d.words().size());
+    }
+
+    /** A word is attributed to the last layer holding it. */
+    @Test
+    public void precedence() {
+        assertEquals("base", d.sourceOf("add"));
+        assertEquals("medical", d.sourceOf("crunch"));
+        assertEquals("user", d.sourceOf("tibia"));
+        assertNull(d.sourceOf("fibula"));
+    }
+
+    /** A lookup makes the same probes whether the words come from one layer or many. */
+    @Test
+    public void oneProbePath() {
+        List<String> words = new ArrayList<>();
+        LayeredDictionary single = new LayeredDictionary();
+        LayeredDictionary many = new LayeredDictionary();
+        List<List<String>> layers = new ArrayList<>();
+        for (int layer = 0; layer < 8; layer++)
+            layers.add(new ArrayList<>());
+        for (int i = 0; i < 4000; i++) {
+            words.add("w" + i);
+            layers.get(i % 8).add("w" + i);
+        }
+        single.addLayer("all", words);
+        for (int layer = 0; layer < 8; layer++)
+            many.addLayer("part" + layer, layers.get(layer));
+        for (int i = 0; i < 8000; i++) {
+            assertEquals(i < 4000, WordTables.contains(single, "w" + i));
+            assertEquals(i < 4000, WordTables.contains(many, "w" + i));
+        }
+        assertEquals(8000, many.getLookupCount());
+        assertEquals(single.getProbeCount(), many.getProbeCount());
+    }
+
+    /** Replacing a layer changes its words only, keeping words other layers hold. */
+    @Test
+    public void replaceLayer() {
+        d.replaceLayer("medical", List.of("femur", "fibula"));
+        assertTrue(WordTables.contains(d, "fibula"));
+        assertTrue(WordTables.contains(d, "femur"));
+        assertTrue(WordTables.contains(d, "crunch"));          // Still in base.
+        assertEquals("base", d.sourceOf("crunch"));
+        assertTrue(WordTables.contains(d, "tibia"));           // Still in user.
+        assertEquals(2, d.layerSize("medical"));
+        assertEquals(5, d.layerSize("base"));
+        assertEquals(9, d.size());
+        d.replaceLayer("user", List.of());
+        assertFalse(WordTables.contains(d, "tibia"));
+        assertFalse(WordTables.contains(d, "Hildebrand"));
+        assertEquals(7, d.size());
+    }
+
+    /** Lookups made before a layer is replaced are still counted after it. */
+    @Test
+    public void countsCarriedOver() {
+        assertTrue(WordTables.contains(d, "femur"));
+        long probes = d.getProbeCount();
+        d.replaceLayer("medical", List.of("fibula"));
+        assertEquals(1, d.getLookupCount());
+        assertEquals(probes, d.getProbeCount());
+        assertFalse(WordTables.contains(d, "femur"));
+        assertEquals(2, d.getLookupCount());
+    }
+
+    /** Words put go to the top layer; a removed word leaves every layer. */
+    @Test
+    public void putAndRemove() {
+        assertNull(d.put(d.hashCode("ulna"), "ulna"));
+        assertEquals("user", d.sourceOf("ulna"));
+        assertEquals("crunch", d.put(d.hashCode("crunch"), "crunch"));
+        assertEquals("user", d.sourceOf("crunch"));
+        assertEquals("crunch", d.remove(d.hashCode("crunch")));
+        assertFalse(WordTables.contains(d, "crunch"));
+        assertEquals(4, d.layerSize("base"));
+        assertNull(d.remove(d.hashCode("crunch")));
+    }
+
+    /** The table grows, and its chains hold every word. */
+    @Test
+    public void growAndChains() {
+        LayeredDictionary big = new LayeredDictionary();
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            words.add("w" + i);
+        big.addLayer("big", words);
+        int total = 0;
+        for (int length : big.chainLengths())
+            total += length;
+        assertEquals(1000, total);
+    }
+
+    /** Layer names are unique and must exist to be replaced. */
+    @Test
+    public void badLayers() {
+        try {
+            d.addLayer("base", List.of());
+            fail("duplicate layer");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+        try {
+            d.replaceLayer("legal", List.of());
+            fail("missing layer");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+        try {
+            new LayeredDictionary().put(1, "x");
+            fail("no layers");
+        } catch (IllegalStateException e) {
+            // Expected.
+        }
+    }
+
+    /** Word lists sharing a file name are named by their paths. */
+    @Test
+    public void layerNames() {
+        File base = new File("dict.txt");
+        File medical = new File("med", "words.txt");
+        File legal = new File("legal", "words.txt");
+        List<File> sources = List.of(base, medical, legal);
+        assertEquals("dict.txt", SpellCheck.layerName(base, sources));
+        assertEquals(medical.getPath(), SpellCheck.layerName(medical, sources));
+        assertEquals(legal.getPath(), SpellCheck.layerName(legal, sources));
+    }
+
+    /** SpellCheck with two -dict lists accepts the words of both. */
+    @Test
+    public void spellCheckLayers() throws Exception {
+        File text = File.createTempFile("layers", ".txt");
+        File extra = File.createTempFile("extra", ".txt");
+        File out = new File(text.getPath().replace(".txt", "-out.txt"));
+        try {
+            Files.write(text.toPath(), "The pneumothorax and the tachycardia.\n".getBytes(StandardCharsets.ISO_8859_1));
+            SpellCheck.main(new String[] {"-dict=dict.txt", text.getPath()});
+            assertTrue(Files.readAllLines(out.toPath()).contains("Misspelled word count: 2"));
+            Files.write(extra.toPath(), "pneumothorax\ntachycardia\n".getBytes(StandardCharsets.ISO_8859_1));
+            SpellCheck.main(new String[] {"-dict=dict.txt", "-dict=" + extra.getPath(), text.getPath()});
+            List<String> lines = Files.readAllLines(out.toPath());
+            assertTrue(lines.contains("Misspelled word count: 0"));
+            assertTrue(lines.contains("Dictionary layers: dict.txt 25143, " + extra.getName()
+                    + " 2 (later layers take precedence)"));
+        } finally {
+            text.delete();
+            extra.delete();
+            out.delete();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Test class for MappedDictionary.java.
+ */
+public class MappedDictionaryTest {
+    /** Sample word input */
+    private List<String> input = Arrays.asList("add", "abounds", "crunch", "founder", "igloo", "searched", "words");
+    /** Image file written for each test */
+    private File image;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        image = File.createTempFile("dict", ".img");
+        MappedDictionary.compile(input, image);
+    }
+
+    /** Removes the image file. */
+    @After
+    public void tearDown() {
+        image.delete();
+    }
+
+    /** Test method for {@link MappedDictionary#get(int, java.lang.String)}. */
+    @Test
+    public void get() throws Exception {
+        MappedDictionary d = new MappedDictionary(image);
+        assertEquals(7, d.size());
+        for (String word : input) {
+            assertEquals(word, d.get(d.hashCode(word), word));
+            assertEquals(word, d.get(d.hashCode(word)));
+        }
+        assertNull(d.get(d.hashCode("missing"), "missing"));
+        assertEquals(15, d.getLookupCount());
+    }
+
+    /** Probe counts match an OpenDictionary holding the same words. */
+    @Test
+    public void probesMatchOpenDictionary() throws Exception {
+        MappedDictionary mapped = new MappedDictionary(image);
+        OpenDictionary open = new OpenDictionary(input.size());
+        for (String word : input)
+            open.put(open.hashCode(word), word);
+        for (String word : input) {
+            mapped.get(mapped.hashCode(word), word);
+            open.get(open.hashCode(word), word);
+        }
+        assertEquals(open.getProbeCount(), mapped.getProbeCount());
+    }
+
+    /** Words sharing a key are both found. */
+    @Test
+    public void keyCollision() throws Exception {
+        MappedDictionary.compile(Arrays.asList("aB", "b\""), image);
+        MappedDictionary d = new MappedDictionary(image);
+        assertEquals("aB", d.get(d.hashCode("aB"), "aB"));
+        assertEquals("b\"", d.get(d.hashCode("b\""), "b\""));
+    }
+
+    /** An image of another version is rejected. */
+    @Test(expected = IOException.class)
+    public void wrongVersion() throws Exception {
+        try (RandomAccessFile raf = new RandomAccessFile(image, "rw")) {
+            raf.seek(4);
+            raf.writeInt(MappedDictionary.VERSION + 1);
+        }
+        new MappedDictionary(image);
+    }
+
+    /** The image is read-only. */
+    @Test(expected = UnsupportedOperationException.class)
+    public void put() throws Exception {
+        new MappedDictionary(image).put(1, "x");
+    }
+
+    /** Test method for {@link MappedDictionary#chainLengths()}: the runs hold every word. */
+    @Test
+    public void chainLengths() throws Exception {
+        int total = 0;
+        for (int length : new MappedDictionary(image).chainLengths())
+            total += length;
+        assertEquals(input.size(), total);
+    }
+
+    /** The stored binding is the one computed from the words, which are read back in order. */
+    @Test
+    public void binding() throws Exception {
+        MappedDictionary d = new MappedDictionary(image);
+        assertArrayEquals(SuffixRules.bindingOf(input), d.binding());
+        assertEquals(input, d.words());
+    }
+
+    /** Compiling over a mapped image replaces the file without changing the mapped one. */
+    @Test
+    public void recompileWhileMapped() throws Exception {
+        MappedDictionary old = new MappedDictionary(image);
+        MappedDictionary.compile(Arrays.asList("other", "words", "entirely"), image);
+        assertEquals(input, old.words());
+        assertEquals("add", old.get(old.hashCode("add"), "add"));
+        assertEquals(3, new MappedDictionary(image).size());
+        assertEquals(1, image.getAbsoluteFile().getParentFile()
+                .listFiles((dir, name) -> name.startsWith(image.getName())).length);
+    }
+}
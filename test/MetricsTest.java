@@ -0,0 +1,167 @@
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Test class for Metrics.java.
+ */
+public class MetricsTest {
+    /** Words of the test dictionary */
+    private static final String[] WORDS = {"the", "cat", "sat", "on", "mat", "run"};
+
+    /** Dictionary the words are checked against */
+    private OpenDictionary dict;
+    /** Metrics under test */
+    private Metrics metrics;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        dict = new OpenDictionary(WORDS.length);
+        for (String word : WORDS)
+            dict.put(dict.hashCode(word), word);
+        SpellCheck.setDictionary(dict);
+        SpellCheck.setRules(SuffixRules.DEFAULT);
+        metrics = new Metrics(dict, SuffixRules.DEFAULT);
+        SpellCheck.setMetrics(metrics);
+    }
+
+    /** Turns the metrics off again. */
+    @After
+    public void tearDown() {
+        SpellCheck.setMetrics(null);
+    }
+
+    /** Checks each word of a text through the byte path. */
+    private static void check(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+        int start = 0;
+        for (int i = 0; i <= bytes.length; i++)
+            if (i == bytes.length || bytes[i] == ' ') {
+                SpellCheck.checkSpelling(bytes, start, i - start);
+                start = i + 1;
+            }
+    }
+
+    /** Every word is counted once, by the way it was found. */
+    @Test
+    public void matches() {
+        check("the cats sat The mats runing xyzzy");
+        assertTrue(SpellCheck.checkSpelling("Cat"));
+        assertEquals(8, metrics.getWordCount());
+        assertEquals(1, metrics.getMisspelledCount());
+        List<String> names = List.of(metrics.getMatchNames());
+        long[] counts = metrics.getMatchCounts();
+        assertEquals(names.size(), counts.length);
+        assertEquals(2, counts[names.indexOf("as written")]);
+        assertEquals(2, counts[names.indexOf("lower case")]);
+        assertEquals(2, counts[names.indexOf("s ->")]);
+        assertEquals(1, counts[names.indexOf("ing ->")]);
+    }
+
+    /** Words found as written take one lookup; the others one per stem tried. */
+    @Test
+    public void lookupsPerWord() {
+        check("the cat runing");
+        long[] lookups = metrics.getLookupsPerWord();
+        assertEquals(Metrics.MAX_LOOKUPS + 1, lookups.length);
+        assertEquals(2, lookups[1]);
+        assertEquals(1, lookups[2]);                // "runing", then "run".
+    }
+
+    /** The chain-length distribution covers every word of the table. */
+    @Test
+    public void chainLengths() {
+        long[] chains = metrics.getChainLengths();
+        long words = 0;
+        for (int length = 0; length < chains.length; length++)
+            words += length * chains[length];
+        assertEquals(WORDS.length, words);
+    }
+
+    /** Timed words are a sample of the words checked, and the phases add up. */
+    @Test
+    public void latencyAndPhases() {
+        for (int i = 0; i < 100; i++)
+            check("the cats sat on the mat");
+        long timed = metrics.getLatencySampleCount();
+        assertTrue(timed > 0 && timed < 600);
+        assertTrue(metrics.getLatencyP50() <= metrics.getLatencyP99());
+        assertTrue(metrics.getLatencyP99() <= metrics.getLatencyP999());
+        metrics.addPhase(Metrics.Phase.OUTPUT, 100);
+        metrics.splitScan(1_000_000_000);
+        long[] phases = metrics.getPhaseNanos();
+        assertEquals(1_000_000_000, phases[Metrics.Phase.TOKENIZE.ordinal()]
+                + phases[Metrics.Phase.CHECK.ordinal()] + phases[Metrics.Phase.OUTPUT.ordinal()]);
+    }
+
+    /** The JSON export parses and holds the counts. */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void json() {
+        check("the cats xyzzy");
+        Map<String, Object> json = (Map<String, Object>) Json.parse(metrics.getJson());
+        assertEquals(3L, json.get("words"));
+        assertEquals(1L, json.get("misspelled"));
+        assertEquals(1L, ((Map<String, Object>) json.get("matches")).get("s ->"));
+        assertEquals(Map.of("1", 2L, "2", 1L), json.get("lookupsPerWord"));
+        assertTrue(json.containsKey("chainLengths"));
+        assertTrue(((Map<String, Object>) json.get("latencyNanos")).containsKey("p999"));
+        assertEquals(Metrics.Phase.values().length, ((Map<String, Object>) json.get("phaseNanos")).size());
+    }
+
+    /** The registered MBean exposes the same numbers through JMX. */
+    @Test
+    public void jmx() throws Exception {
+        metrics.register();
+        check("the cats");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(Metrics.OBJECT_NAME);
+        assertEquals(2L, server.getAttribute(name, "WordCount"));
+        assertEquals(0L, server.getAttribute(name, "MisspelledCount"));
+        new Metrics(dict, SuffixRules.DEFAULT).register();        // Replaces the first.
+        assertEquals(0L, server.getAttribute(name, "WordCount"));
+    }
+
+    /** A run with -metrics writes the JSON file and a latency line. */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void spellCheckRun() throws Exception {
+        File copy = File.createTempFile("metrics", ".txt");
+        File out = new File(copy.getPath().replace(".txt", "-out.txt"));
+        File json = new File(copy.getPath().replace(".txt", "-metrics.json"));
+        try {
+            Files.copy(new File("input.txt").toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            SpellCheck.main(new String[] {"-engine=open", "-metrics", copy.getPath()});
+            List<String> lines = Files.readAllLines(out.toPath());
+            assertTrue(lines.get(lines.size() - 1).startsWith("Word check latency: p50 "));
+            Map<String, Object> metrics = (Map<String, Object>) Json.parse(
+                    new String(Files.readAllBytes(json.toPath()), StandardCharsets.UTF_8));
+            assertTrue(lines.contains("Text word count: " + metrics.get("words")));
+            assertTrue(lines.contains("Misspelled word count: " + metrics.get("misspelled")));
+            SpellCheck.main(new String[] {"-engine=open", copy.getPath()});
+            assertNull(SpellCheck.getMetrics());
+        } finally {
+            copy.delete();
+            out.delete();
+            json.delete();
+        }
+    }
+}
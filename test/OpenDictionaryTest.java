@@ -0,0 +1,109 @@
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Test class for OpenDictionary.java.
+ */
+public class OpenDictionaryTest {
+    /** Open-addressing hash table of words */
+    private OpenDictionary d;
+    /** Sample word input */
+    private String input[] = {"add", "abounds", "crunch", "founder", "igloo", "searched", "words"};
+    /** The number of words in the default dictionary */
+    private static final int DICTIONARY_SIZE = 25144;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        d = new OpenDictionary(DICTIONARY_SIZE);
+    }
+
+    /** Test method for {@link OpenDictionary#hashCode(String)}. */
+    @Test
+    public void hashCodeMatchesDictionary() {
+        Dictionary chained = new Dictionary(DICTIONARY_SIZE);
+        for (String word : input)
+            assertEquals(chained.hashCode(word), d.hashCode(word));
+    }
+
+    /** Test method for {@link OpenDictionary#put(int, java.lang.String)}. */
+    @Test
+    public void put() {
+        for (String word : input)
+            assertNull(d.put(d.hashCode(word), word));
+        assertEquals(7, d.size());
+        assertEquals("add", d.put(d.hashCode("add"), "add"));
+        assertEquals(7, d.size());
+    }
+
+    /** Test method for {@link OpenDictionary#get(int, java.lang.String)}. */
+    @Test
+    public void get() {
+        for (String word : input)
+            d.put(d.hashCode(word), word);
+        for (String word : input) {
+            assertEquals(word, d.get(d.hashCode(word)));
+            assertEquals(word, d.get(d.hashCode(word), word));
+        }
+        assertNull(d.get(d.hashCode("missing"), "missing"));
+        assertEquals(15, d.getLookupCount());
+        assertTrue(d.getProbeCount() >= 14);
+    }
+
+    /** Words sharing a key are both kept and told apart by the full word. */
+    @Test
+    public void keyCollision() {
+        String a = "aB", b = "b\"";
+        assertEquals(d.hashCode(a), d.hashCode(b));
+        d.put(d.hashCode(a), a);
+        d.put(d.hashCode(b), b);
+        assertEquals(2, d.size());
+        assertEquals(a, d.get(d.hashCode(a), a));
+        assertEquals(b, d.get(d.hashCode(b), b));
+    }
+
+    /** Test method for {@link OpenDictionary#remove(int)}. */
+    @Test
+    public void remove() {
+        for (String word : input)
+            d.put(d.hashCode(word), word);
+        for (String word : input) {
+            assertEquals(word, d.remove(d.hashCode(word)));
+            assertNull(d.get(d.hashCode(word), word));
+        }
+        assertEquals(0, d.size());
+    }
+
+    /** The table grows past its initial capacity without losing entries. */
+    @Test
+    public void grow() {
+        OpenDictionary small = new OpenDictionary(4);
+        for (int i = 0; i < 1000; i++)
+            small.put(small.hashCode("w" + i), "w" + i);
+        assertEquals(1000, small.size());
+        for (int i = 0; i < 1000; i += 2)
+            small.remove(small.hashCode("w" + i));
+        for (int i = 0; i < 1000; i++)
+            assertEquals(i % 2 == 1, small.get(small.hashCode("w" + i), "w" + i) != null);
+    }
+
+    /** Test method for {@link OpenDictionary#chainLengths()}: the runs hold every entry. */
+    @Test
+    public void chainLengths() {
+        OpenDictionary small = new OpenDictionary(4);
+        for (int i = 0; i < 1000; i++)
+            small.put(small.hashCode("w" + i), "w" + i);
+        int total = 0;
+        for (int length : small.chainLengths()) {
+            assertTrue(length > 0);
+            total += length;
+        }
+        assertEquals(1000, total);
+    }
+}
@@ -0,0 +1,65 @@
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Test class for ParallelCheck.java.
+ */
+public class ParallelCheckTest {
+    /** Input text large enough to be split into many ranges */
+    private File text;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        text = File.createTempFile("parallel", ".txt");
+        byte[] sample = Files.readAllBytes(new File("input.txt").toPath());
+        for (int i = 0; i < 20; i++)
+            Files.write(text.toPath(), sample, StandardOpenOption.APPEND);
+    }
+
+    /** Removes the input and output files. */
+    @After
+    public void tearDown() {
+        text.delete();
+        outFile().delete();
+    }
+
+    /** Output file written by SpellCheck for the input text. */
+    private File outFile() {
+        return new File(text.getPath().replace(".txt", "-out.txt"));
+    }
+
+    /** Runs SpellCheck with the given thread count and returns its output lines. */
+    private List<String> run(String engine, int threads) throws Exception {
+        SpellCheck.main(new String[] {"-engine=" + engine, "-threads=" + threads, text.getPath()});
+        return Files.readAllLines(outFile().toPath());
+    }
+
+    /** Parallel runs print the same words, in the same order, with the same counts. */
+    @Test
+    public void sameAsSequential() throws Exception {
+        List<String> sequential = run("open", 1);
+        assertEquals(sequential, run("open", 4));
+        assertEquals(sequential, run("open", 7));
+    }
+
+    /** With the randomized chained table only the probe statistics may differ between runs. */
+    @Test
+    public void chainedEngine() throws Exception {
+        List<String> sequential = run("chain", 1);
+        List<String> parallel = run("chain", 3);
+        assertEquals(sequential.subList(0, sequential.size() - 3), parallel.subList(0, parallel.size() - 3));
+    }
+}
@@ -0,0 +1,136 @@
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Test class for PerfectDictionary.java.
+ */
+public class PerfectDictionaryTest {
+    /** Words of the test dictionary */
+    private List<String> words;
+    /** Table under test */
+    private PerfectDictionary d;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        words = new ArrayList<>();
+        Set<Integer> keys = new HashSet<>();
+        for (int i = 0; words.size() < 20000; i++)
+            if (keys.add(StandardHash.MIX64.hash("w" + i)))   // 32-bit keys of made-up words may collide.
+                words.add("w" + i);
+        d = new PerfectDictionary(words, StandardHash.MIX64, 1);
+    }
+
+    /** Every word is found with exactly one probe. */
+    @Test
+    public void oneProbePerHit() {
+        assertEquals(20000, d.size());
+        for (String word : words)
+            assertTrue(word, WordTables.contains(d, word));
+        assertEquals(20000, d.getLookupCount());
+        assertEquals(20000, d.getProbeCount());
+        assertEquals("w7", d.get(d.hashCode("w7"), "w7"));
+        assertEquals("w7", d.get(d.hashCode("w7")));
+    }
+
+    /** Absent words take at most one probe and are never found. */
+    @Test
+    public void misses() {
+        for (int i = 0; i < 20000; i++)
+            assertFalse(WordTables.contains(d, "x" + i));
+        assertTrue(d.getProbeCount() <= 20000);
+        assertNull(d.get(d.hashCode("x"), "x"));
+    }
+
+    /** The hash itself is compact, and every word sits in its own slot. */
+    @Test
+    public void compact() {
+        assertTrue(d.bitsPerKey() < 4.5);
+        assertEquals(0, d.spillCount());
+        assertEquals(20000, d.chainLengths().length);
+    }
+
+    /** The same words and seed build the same table; another seed another one. */
+    @Test
+    public void reproducible() {
+        PerfectDictionary same = new PerfectDictionary(words, StandardHash.MIX64, 1);
+        PerfectDictionary other = new PerfectDictionary(words, StandardHash.MIX64, 2);
+        assertEquals(d.bitsPerKey(), same.bitsPerKey(), 0);
+        assertEquals(1, d.getSeed());
+        boolean differs = false;
+        for (int i = 0; i < 20000; i += 97) {
+            assertTrue(WordTables.contains(other, words.get(i)));
+            int key = d.hashCode(words.get(i));
+            assertEquals(d.index(key), same.index(key));
+            differs |= d.index(key) != other.index(key);
+        }
+        assertTrue(differs);
+    }
+
+    /** Words sharing a key are all found, the later ones beside the perfect hash. */
+    @Test
+    public void sharedKey() {
+        PerfectDictionary shared = new PerfectDictionary(List.of("Fe", "GE", "iron"), StandardHash.CYCLIC_SHIFT, 0);
+        assertEquals(3, shared.size());
+        assertEquals(1, shared.sharedCount());
+        for (String word : List.of("Fe", "GE", "iron"))
+            assertTrue(word, WordTables.contains(shared, word));
+        assertEquals("GE", shared.get(shared.hashCode("GE"), "GE"));
+        assertFalse(WordTables.contains(shared, "Ge"));
+        int chained = 0;
+        for (int length : shared.chainLengths())
+            chained += length;
+        assertEquals(3, chained);
+        assertEquals(1, new PerfectDictionary(List.of("Fe", "Fe"), StandardHash.CYCLIC_SHIFT, 0).size());
+    }
+
+    /** dict.txt hashed with the cyclic shift, which gives some words shared keys, loses no word. */
+    @Test
+    public void dictionarySharedKeys() throws Exception {
+        List<String> all = SpellCheck.readWordList(new File("dict.txt"));
+        PerfectDictionary cyclic = new PerfectDictionary(all, StandardHash.CYCLIC_SHIFT, 0);
+        assertTrue(cyclic.sharedCount() > 0);
+        assertEquals(new HashSet<>(all).size(), cyclic.size());
+        for (String word : all)
+            assertTrue(word, WordTables.contains(cyclic, word));
+    }
+
+    /** The table is read-only. */
+    @Test(expected = UnsupportedOperationException.class)
+    public void readOnly() {
+        d.put(d.hashCode("x"), "x");
+    }
+
+    /** SpellCheck with -engine=mph reports the hash and one probe per word found. */
+    @Test
+    public void spellCheckMph() throws Exception {
+        File text = File.createTempFile("mph", ".txt");
+        File out = new File(text.getPath().replace(".txt", "-out.txt"));
+        try {
+            Files.write(text.toPath(), "The cat sat on the mat.\n".getBytes(StandardCharsets.ISO_8859_1));
+            SpellCheck.main(new String[] {"-engine=mph", "-seed=3", text.getPath()});
+            List<String> lines = Files.readAllLines(out.toPath());
+            assertTrue(lines.contains("Misspelled word count: 0"));
+            assertTrue(lines.contains("Average number of probes per lookup: 1.00"));
+            assertTrue(lines.get(lines.size() - 1).startsWith("Perfect hash: "));
+            assertTrue(lines.get(lines.size() - 1).endsWith("(seed 3)"));
+        } finally {
+            text.delete();
+            out.delete();
+        }
+    }
+}
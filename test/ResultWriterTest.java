@@ -0,0 +1,133 @@
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Test class for ResultWriter.java.
+ */
+public class ResultWriterTest {
+    /** Misspelled words of a text, in document order */
+    private static final String[] WORDS = {"teh", "cta", "teh", "xyzzy", "cta", "teh"};
+
+    /** Writes the words in the given format and returns the output. */
+    private static String write(ResultWriter.Format format, boolean async, int maxDistinct) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ResultWriter results = new ResultWriter(out, format, null,
+                word -> word.equals("teh") ? List.of("the", "ten") : null, async, maxDistinct);
+        for (String word : WORDS)
+            results.write(word, -1);
+        results.close();
+        return out.toString(StandardCharsets.UTF_8.name());
+    }
+
+    /** The plain format lists every occurrence with its corrections, like the old output. */
+    @Test
+    public void plain() throws Exception {
+        assertEquals("teh -> the, ten\ncta\nteh -> the, ten\nxyzzy\ncta\nteh -> the, ten\n",
+                write(ResultWriter.Format.PLAIN, false, ResultWriter.MAX_DISTINCT));
+    }
+
+    /** The counts format lists each word once, in order, whether or not runs were spilled. */
+    @Test
+    public void counts() throws Exception {
+        String expected = "cta (2)\nteh (3) -> the, ten\nxyzzy (1)\n";
+        assertEquals(expected, write(ResultWriter.Format.COUNTS, false, ResultWriter.MAX_DISTINCT));
+        assertEquals(expected, write(ResultWriter.Format.COUNTS, false, 1));
+        assertEquals(expected, write(ResultWriter.Format.COUNTS, true, 2));
+    }
+
+    /** A word with no suggested corrections is written without an arrow. */
+    @Test
+    public void noCorrections() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ResultWriter results = new ResultWriter(out, ResultWriter.Format.PLAIN, null,
+                word -> List.of(), false)) {
+            results.write("Internet", -1);
+        }
+        assertEquals("Internet\n", out.toString(StandardCharsets.UTF_8.name()));
+    }
+
+    /** Words too long for writeUTF are spilled and merged like any other. */
+    @Test
+    public void spillsLongWords() throws Exception {
+        String long1 = "a".repeat(70000), long2 = "b\u00e9".repeat(40000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ResultWriter results = new ResultWriter(out, ResultWriter.Format.COUNTS, null, null, false, 1)) {
+            for (String word : new String[] {long2, long1, "cta", long1})
+                results.write(word, -1);
+        }
+        assertEquals(long1 + " (2)\n" + long2 + " (1)\ncta (1)\n", out.toString(StandardCharsets.UTF_8.name()));
+    }
+
+    /** Background flushing writes the same bytes, over many full buffers. */
+    @Test
+    public void async() throws Exception {
+        ByteArrayOutputStream sync = new ByteArrayOutputStream();
+        ByteArrayOutputStream async = new ByteArrayOutputStream();
+        try (ResultWriter a = new ResultWriter(sync, ResultWriter.Format.PLAIN, null, null, false);
+                ResultWriter b = new ResultWriter(async, ResultWriter.Format.PLAIN, null, null, true)) {
+            for (int i = 0; i < 200000; i++) {
+                a.write("w" + i + "\u00e9", -1);
+                b.write("w" + i + "\u00e9", -1);
+            }
+        }
+        assertTrue(sync.size() > 4 * ResultWriter.BUFFER_SIZE);
+        assertArrayEquals(sync.toByteArray(), async.toByteArray());
+    }
+
+    /** The jsonl format gives the line and column of each offset. */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void jsonl() throws Exception {
+        File text = File.createTempFile("results", ".txt");
+        try {
+            Files.write(text.toPath(), "Teh cat\n\nsat on teh\r\nmat".getBytes(StandardCharsets.ISO_8859_1));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (FileChannel channel = FileChannel.open(text.toPath());
+                    ResultWriter results = new ResultWriter(out, ResultWriter.Format.JSONL, channel, null, false)) {
+                results.write("Teh", 0);
+                results.write("teh", 16);
+                results.write("mat", 21);
+            }
+            String[] lines = out.toString(StandardCharsets.UTF_8.name()).split("\n");
+            assertEquals(3, lines.length);
+            Map<String, Object> first = (Map<String, Object>) Json.parse(lines[0]);
+            assertEquals(Map.of("word", "Teh", "offset", 0L, "line", 1L, "column", 1L), first);
+            Map<String, Object> second = (Map<String, Object>) Json.parse(lines[1]);
+            assertEquals(3L, second.get("line"));
+            assertEquals(8L, second.get("column"));
+            assertEquals(4L, ((Map<String, Object>) Json.parse(lines[2])).get("line"));
+        } finally {
+            text.delete();
+        }
+    }
+
+    /** SpellCheck with -format=counts writes each word once and reports the distinct count. */
+    @Test
+    public void spellCheckCounts() throws Exception {
+        File text = File.createTempFile("counts", ".txt");
+        File out = new File(text.getPath().replace(".txt", "-out.txt"));
+        try {
+            Files.write(text.toPath(), "The teh cat, teh zzq.\n".getBytes(StandardCharsets.ISO_8859_1));
+            SpellCheck.main(new String[] {"-format=counts", "-asyncOutput", text.getPath()});
+            List<String> lines = Files.readAllLines(out.toPath());
+            assertEquals(List.of("Possible misspelled words:", "teh (2)", "zzq (1)", ""), lines.subList(0, 4));
+            assertTrue(lines.contains("Misspelled word count: 3"));
+            assertTrue(lines.contains("Distinct misspelled words: 2"));
+        } finally {
+            text.delete();
+            out.delete();
+        }
+    }
+}
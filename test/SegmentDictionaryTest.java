@@ -0,0 +1,121 @@
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Test class for SegmentDictionary.java, of ffm/. Each test passes without
+ * checking anything when the class was not compiled.
+ */
+public class SegmentDictionaryTest {
+    /** Sample word input */
+    private List<String> input = Arrays.asList("add", "abounds", "crunch", "founder", "igloo", "searched", "words");
+
+    /** Builds an off-heap table of the words, or returns null if ffm/ is missing. */
+    private static WordTable build(List<String> words) {
+        try {
+            return SpellCheck.offHeapTable(words, StandardHash.CYCLIC_SHIFT);
+        } catch (IOException e) {
+            return null;                        // Built without the FFM API.
+        }
+    }
+
+    /** Every word is found through each lookup, and other words are not. */
+    @Test
+    public void lookups() {
+        WordTable d = build(input);
+        if (d == null)
+            return;
+        assertEquals(input.size(), d.size());
+        for (String word : input) {
+            assertTrue(WordTables.contains(d, word));
+            assertEquals(word, d.get(d.hashCode(word), word));
+            assertEquals(word, d.get(d.hashCode(word)));
+        }
+        assertFalse(WordTables.contains(d, "ad"));
+        assertFalse(WordTables.contains(d, "adds"));
+        assertNull(d.get(d.hashCode("igloos"), "igloos"));
+        assertTrue(d.getProbeCount() >= d.getLookupCount() - 3);
+    }
+
+    /**
+     * The table grows past its first size, and removed words leave the others
+     * reachable, also after the arena is compacted.
+     */
+    @Test
+    public void putRemove() {
+        WordTable d = build(input);
+        if (d == null)
+            return;
+        List<String> more = new ArrayList<>();
+        for (int i = 0; i < 5000; i++)
+            more.add("w" + i);
+        for (String word : more)
+            assertNull(d.put(d.hashCode(word), word));
+        assertEquals("add", d.put(d.hashCode("add"), "add"));
+        assertEquals(input.size() + more.size(), d.size());
+        for (int i = 0; i < more.size(); i += 2)
+            assertEquals(more.get(i), d.remove(d.hashCode(more.get(i))));
+        for (int i = 0; i < 5000; i++)
+            d.put(d.hashCode("x" + i), "x" + i);
+        for (int i = 0; i < more.size(); i++)
+            assertEquals(i % 2 == 1, WordTables.contains(d, more.get(i)));
+        for (String word : input)
+            assertTrue(WordTables.contains(d, word));
+        assertTrue(WordTables.contains(d, "x4999"));
+        List<String> words = ((DictionaryImage) d).words();
+        assertEquals(d.size(), words.size());
+        assertFalse(words.contains("w0"));
+        assertTrue(words.contains("w1"));
+        assertArrayEquals(SuffixRules.bindingOf(words), ((DictionaryImage) d).binding());
+    }
+
+    /** A mapped image answers as MappedDictionary does and cannot be changed. */
+    @Test
+    public void image() throws Exception {
+        if (build(input) == null)
+            return;
+        File image = File.createTempFile("dict", ".img");
+        try {
+            MappedDictionary.compile(input, image);
+            WordTable d = SpellCheck.offHeapTable(image);
+            MappedDictionary mapped = new MappedDictionary(image);
+            assertEquals(input.size(), d.size());
+            for (String word : input)
+                assertTrue(WordTables.contains(d, word));
+            assertFalse(WordTables.contains(d, "searches"));
+            assertArrayEquals(mapped.chainLengths(), d.chainLengths());
+            assertEquals(mapped.words(), ((DictionaryImage) d).words());
+            assertArrayEquals(mapped.binding(), ((DictionaryImage) d).binding());
+            try {
+                d.put(d.hashCode("new"), "new");
+                fail();
+            } catch (UnsupportedOperationException e) {
+                assertFalse(WordTables.contains(d, "new"));
+            }
+            ((DictionaryImage) d).close();
+        } finally {
+            image.delete();
+        }
+    }
+
+    /** A file that is not an image is refused. */
+    @Test
+    public void notAnImage() throws Exception {
+        if (build(input) == null)
+            return;
+        try {
+            SpellCheck.offHeapTable(new File("dict.txt"));
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("not a dictionary image"));
+        }
+    }
+}
@@ -0,0 +1,170 @@
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Test class for SnapshotDictionary.java and DictionaryWatcher.java.
+ */
+public class SnapshotDictionaryTest {
+    /** Table under test, with the words add, crunch and igloo. */
+    private SnapshotDictionary d;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        d = new SnapshotDictionary(List.of("add", "crunch", "igloo"), SnapshotDictionaryTest::chained);
+    }
+
+    /** Builds a chained table of the words, as -watch does. */
+    private static WordTable chained(java.util.Collection<String> words) {
+        Dictionary table = new Dictionary(64, StandardHash.MIX64, 1);
+        for (String word : words)
+            table.put(table.hashCode(word), word);
+        return table;
+    }
+
+    /** A reload replaces the words and keeps the counts of the old table. */
+    @Test
+    public void reload() {
+        assertEquals("crunch", d.get(d.hashCode("crunch"), "crunch"));
+        assertTrue(WordTables.contains(d, "igloo"));
+        long lookups = d.getLookupCount();
+        assertTrue(lookups >= 2);
+
+        assertTrue(d.reload(List.of("crunch", "founder")) >= 0);
+        assertEquals(2, d.size());
+        assertEquals(1, d.getReloadCount());
+        assertFalse(WordTables.contains(d, "igloo"));
+        assertTrue(WordTables.contains(d, "founder"));
+        assertEquals(lookups + 2, d.getLookupCount());
+        assertEquals(List.of("crunch", "founder"), d.words());
+    }
+
+    /** put and remove publish a new snapshot, and leave a present word alone. */
+    @Test
+    public void putRemove() {
+        assertNull(d.put(d.hashCode("tibia"), "tibia"));
+        assertEquals("add", d.put(d.hashCode("add"), "add"));
+        assertEquals(4, d.size());
+        assertEquals("add", d.remove(d.hashCode("add")));
+        assertNull(d.remove(d.hashCode("add")));
+        assertEquals(3, d.size());
+        assertEquals(2, d.getReloadCount());
+        assertFalse(WordTables.contains(d, "add"));
+        assertTrue(WordTables.contains(d, "tibia"));
+    }
+
+    /** A table built with another hash function is refused and the old words kept. */
+    @Test
+    public void otherHash() {
+        SnapshotDictionary mixed = new SnapshotDictionary(List.of("add"), words -> {
+            Dictionary table = new Dictionary(64, words.size() == 1 ? StandardHash.MIX64 : StandardHash.FNV1A, 1);
+            for (String word : words)
+                table.put(table.hashCode(word), word);
+            return table;
+        });
+        try {
+            mixed.reload(List.of("add", "igloo"));
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(WordTables.contains(mixed, "add"));
+            assertEquals(0, mixed.getReloadCount());
+        }
+    }
+
+    /**
+     * Readers never miss a word held by every version of the list, and never
+     * find a word of a version in the middle of being built, while a writer
+     * swaps two lists back and forth.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void concurrentReload() throws Exception {
+        List<String> shared = new ArrayList<>();
+        for (int i = 0; i < 2000; i++)
+            shared.add("word" + i);
+        List<String> even = new ArrayList<>(shared);
+        List<String> odd = new ArrayList<>(shared);
+        for (int i = 0; i < 500; i++) {
+            even.add("even" + i);
+            odd.add("odd" + i);
+        }
+        SnapshotDictionary table = new SnapshotDictionary(even, SnapshotDictionaryTest::chained);
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+        AtomicReference<String> failure = new AtomicReference<>();
+        LongAdder checked = new LongAdder();
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int first = t;
+            Thread reader = new Thread(() -> {
+                for (int i = first; System.nanoTime() < end && failure.get() == null; i++) {
+                    String word = shared.get(i % shared.size());
+                    if (!WordTables.contains(table, word))
+                        failure.set("missed " + word);
+                    if (WordTables.contains(table, "none" + i % 500))
+                        failure.set("found none" + i % 500);
+                    checked.increment();
+                }
+            });
+            readers.add(reader);
+            reader.start();
+        }
+        int reloads = 0;
+        while (System.nanoTime() < end) {
+            table.reload(reloads % 2 == 0 ? odd : even);
+            reloads++;
+        }
+        for (Thread reader : readers)
+            reader.join();
+        assertNull(failure.get());
+        assertTrue(checked.sum() > 0);
+        assertEquals(reloads, table.getReloadCount());
+        assertTrue(table.getMaxReloadNanos() >= table.getLastReloadNanos());
+    }
+
+    /**
+     * The watcher reloads a list rewritten on disk, and keeps the words when the
+     * new list is empty.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void watcher() throws Exception {
+        File dir = Files.createTempDirectory("watch").toFile();
+        File list = new File(dir, "dict.txt");
+        Files.write(list.toPath(), List.of("add", "crunch"));
+        SnapshotDictionary table = new SnapshotDictionary(SpellCheck.readWordList(list),
+                SnapshotDictionaryTest::chained);
+        try (DictionaryWatcher watcher = new DictionaryWatcher(list.toPath(), table::reload)) {
+            Files.write(list.toPath(), List.of("add", "crunch", "igloo"));
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (!WordTables.contains(table, "igloo") && System.nanoTime() < end)
+                Thread.sleep(50);
+            assertTrue(WordTables.contains(table, "igloo"));
+            assertEquals(1, watcher.getReloadCount());
+
+            Files.write(list.toPath(), new byte[0]);
+            while (watcher.getFailedCount() == 0 && System.nanoTime() < end)
+                Thread.sleep(50);
+            assertEquals(1, watcher.getFailedCount());
+            assertEquals(3, table.size());
+        } finally {
+            list.delete();
+            dir.delete();
+        }
+    }
+}
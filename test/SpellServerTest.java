@@ -0,0 +1,136 @@
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Test class for SpellServer.java.
+ */
+public class SpellServerTest {
+    /** Words of the test dictionary */
+    private static final String[] WORDS = {"the", "cat", "sat", "on", "mat", "a"};
+
+    /** Server under test */
+    private SpellServer server;
+    /** Client sending the requests */
+    private HttpClient client;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        OpenDictionary dict = new OpenDictionary(WORDS.length);
+        for (String word : WORDS)
+            dict.put(dict.hashCode(word), word);
+        SpellCheck.setDictionary(dict);
+        SpellCheck.setRules(SuffixRules.DEFAULT);
+        server = new SpellServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        client = HttpClient.newHttpClient();
+    }
+
+    /** Stops the server. */
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    /** Sends a request and returns the response. */
+    private HttpResponse<String> send(String method, String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /** Parses a successful response as a JSON object. */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> object(HttpResponse<String> response) {
+        assertEquals(200, response.statusCode());
+        return (Map<String, Object>) Json.parse(response.body());
+    }
+
+    /** A document is answered with its misspelled words and their byte offsets. */
+    @Test
+    public void check() throws Exception {
+        Map<String, Object> result = object(send("POST", "/check", "The cats szt on\nteh mat."));
+        assertEquals(6L, result.get("words"));
+        assertEquals(List.of(Map.of("offset", 9L, "token", "szt"), Map.of("offset", 16L, "token", "teh")),
+                result.get("misspelled"));
+        assertEquals(1, server.getLatency().getCount());
+    }
+
+    /** A batch is answered with one result per document or token list, in order. */
+    @Test
+    public void batch() throws Exception {
+        Map<String, Object> result = object(send("POST", "/batch",
+                "[\"a cat\", \"\\u03b1 dgo sat\", [\"mats\", \"dgo\", \"\"], []]"));
+        List<?> results = (List<?>) result.get("results");
+        assertEquals(4, results.size());
+        assertEquals(Map.of("misspelled", List.of(), "words", 2L), results.get(0));
+        assertEquals(Map.of("misspelled", List.of(Map.of("offset", 2L, "token", "dgo")),
+                "words", 2L), results.get(1));
+        assertEquals(Map.of("misspelled", List.of(Map.of("offset", 1L, "token", "dgo"),
+                Map.of("offset", 2L, "token", "")), "words", 3L), results.get(2));
+        assertEquals(Map.of("misspelled", List.of(), "words", 0L), results.get(3));
+    }
+
+    /** Malformed requests are answered with an error and counted. */
+    @Test
+    public void errors() throws Exception {
+        HttpResponse<String> response = send("POST", "/batch", "[\"cat\"");
+        assertEquals(400, response.statusCode());
+        assertTrue(response.body().startsWith("{\"error\":\"JSON at"));
+        assertEquals(400, send("POST", "/batch", "{}").statusCode());
+        assertEquals(400, send("POST", "/batch", "[[1]]").statusCode());
+        response = send("GET", "/check", null);
+        assertEquals(405, response.statusCode());
+        assertEquals("POST", response.headers().firstValue("Allow").orElse(null));
+        assertTrue(send("GET", "/metrics", null).body().contains("\nspellcheck_errors_total 4\n"));
+    }
+
+    /** The metrics count the requests, words and dictionary lookups. */
+    @Test
+    public void metrics() throws Exception {
+        send("POST", "/check", "the cat sat on teh mat");
+        assertEquals("ok\n", send("GET", "/health", null).body());
+        String metrics = send("GET", "/metrics", null).body();
+        assertTrue(metrics.contains("\nspellcheck_requests_total 3\n"));
+        assertTrue(metrics.contains("\nspellcheck_documents_total 1\n"));
+        assertTrue(metrics.contains("\nspellcheck_words_total 6\n"));
+        assertTrue(metrics.contains("\nspellcheck_misspelled_total 1\n"));
+        assertTrue(metrics.contains("\nspellcheck_dictionary_words 6\n"));
+        assertTrue(metrics.contains("\nspellcheck_request_seconds_count 1\n"));
+        assertTrue(metrics.contains("spellcheck_request_seconds{quantile=\"0.99\"} "));
+        assertFalse(metrics.contains("spellcheck_lookups_total 0\n"));
+    }
+
+    /** The hot-path metrics are served as JSON while they are on. */
+    @Test
+    public void metricsJson() throws Exception {
+        assertEquals(404, send("GET", "/metrics.json", null).statusCode());
+        SpellCheck.setMetrics(new Metrics(SpellCheck.getDictionary(), SuffixRules.DEFAULT));
+        try {
+            send("POST", "/check", "the cats sat on teh mat");
+            Map<String, Object> metrics = object(send("GET", "/metrics.json", null));
+            assertEquals(6L, metrics.get("words"));
+            assertEquals(1L, metrics.get("misspelled"));
+            assertTrue(send("GET", "/metrics", null).body().contains("\nspellcheck_word_matches_total{match=\"s ->\"} 1\n"));
+        } finally {
+            SpellCheck.setMetrics(null);
+        }
+    }
+}
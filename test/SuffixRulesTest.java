@@ -0,0 +1,253 @@
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Test class for SuffixRules.java. The compiled default rules are checked against
+ * a copy of the hand-coded cascade they replaced.
+ */
+public class SuffixRulesTest {
+    /** Word endings the rules react to, for building test words. */
+    private static final String[] ENDINGS = {"", "s", "'s", "es", "ess", "esses", "ed", "d", "ded", "er", "r",
+            "rer", "ing", "inged", "ly", "ingly", "edly", "ers", "ss", "e"};
+
+    /**
+     * The match rules as they were hand-coded in SpellCheck, for comparison.
+     *
+     * @param dict the dictionary
+     * @param word the word to check
+     * @return true if the word or an altered word is in the dictionary
+     */
+    private static boolean legacyCheckSpelling(WordTable dict, String word) {
+        boolean found = dict.get(dict.hashCode(word), word) != null;
+        if (!found && Character.isUpperCase(word.charAt(0))) {
+            word = Character.toLowerCase(word.charAt(0)) + word.substring(1);
+            found = dict.get(dict.hashCode(word), word) != null;
+        }
+        if (!found && word.endsWith("'s")) {
+            word = word.substring(0, word.length() - 2);
+            found = dict.get(dict.hashCode(word), word) != null;
+        }
+        if (!found && word.endsWith("s")) {
+            word = word.substring(0, word.length() - 1);
+            found = dict.get(dict.hashCode(word), word) != null;
+            if (!found && word.endsWith("es")) {
+                word = word.substring(0, word.length() - 2);
+                found = dict.get(dict.hashCode(word), word) != null;
+            }
+        }
+        if (!found && word.endsWith("ed")) {
+            word = word.substring(0, word.length() - 2);
+            found = dict.get(dict.hashCode(word), word) != null;
+            if (!found && word.endsWith("d")) {
+                word = word.substring(0, word.length() - 1);
+                found = dict.get(dict.hashCode(word), word) != null;
+            }
+        }
+        if (!found && word.endsWith("er")) {
+            word = word.substring(0, word.length() - 2);
+            found = dict.get(dict.hashCode(word), word) != null;
+            if (!found && word.endsWith("r")) {
+                word = word.substring(0, word.length() - 1);
+                found = dict.get(dict.hashCode(word), word) != null;
+            }
+        }
+        if (!found && word.endsWith("ing")) {
+            word = word.substring(0, word.length() - 3);
+            found = dict.get(dict.hashCode(word), word) != null;
+            if (!found) {
+                word = word + "e";
+                found = dict.get(dict.hashCode(word), word) != null;
+            }
+        }
+        if (!found && word.endsWith("ly")) {
+            word = word.substring(0, word.length() - 2);
+            found = dict.get(dict.hashCode(word), word) != null;
+        }
+        return found;
+    }
+
+    /** Checks a word with the compiled rules through both the string and byte paths. */
+    private static void assertSameAsLegacy(WordTable dict, SuffixRules rules, String word) {
+        boolean expected = legacyCheckSpelling(dict, word);
+        boolean viaString = dict.get(dict.hashCode(word), word) != null || rules.check(dict, word);
+        assertEquals(word, expected, viaString);
+        boolean latin1 = word.chars().allMatch(c -> c <= 0xff);
+        if (latin1) {
+            byte[] text = ("  " + word + " ").getBytes(StandardCharsets.ISO_8859_1);
+            boolean viaBytes = dict.contains(dict.hashCode(text, 2, word.length()), text, 2, word.length())
+                    || rules.check(dict, text, 2, word.length());
+            assertEquals(word, expected, viaBytes);
+        }
+    }
+
+    /** Builds a chained table of the given words. */
+    private static WordTable table(List<String> words, HashStrategy hash) {
+        WordTable dict = new Dictionary(Math.max(words.size(), 16), hash);
+        for (String word : words)
+            dict.put(dict.hashCode(word), word);
+        return dict;
+    }
+
+    /** Test words: the text words, dictionary words with every ending, and capitals. */
+    private static List<String> sampleWords(List<String> dictWords) throws IOException {
+        List<String> words = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get("input.txt"), StandardCharsets.ISO_8859_1))
+            for (String token : line.split("[^\\w']+"))
+                if (!token.isEmpty())
+                    words.add(token);
+        for (int i = 0; i < dictWords.size(); i += 97) {
+            String stem = dictWords.get(i);
+            for (String ending : ENDINGS) {
+                words.add(stem + ending);
+                words.add(Character.toUpperCase(stem.charAt(0)) + stem.substring(1) + ending);
+            }
+        }
+        for (String ending : ENDINGS)
+            if (!ending.isEmpty()) {
+                words.add(ending);
+                words.add(ending.toUpperCase());
+            }
+        words.add("1990s");
+        words.add("\u0130ngs");         // Capital dotted I downshifts to a Latin-1 'i'.
+        words.add("\u0142ed");
+        return words;
+    }
+
+    /** The default rules give the same answers as the hand-coded cascade on real words. */
+    @Test
+    public void defaultRulesMatchLegacy() throws IOException {
+        List<String> dictWords = SpellCheck.readWordList(new File("dict.txt"));
+        for (HashStrategy hash : new HashStrategy[]{StandardHash.CYCLIC_SHIFT, StandardHash.MIX64}) {
+            WordTable dict = table(dictWords, hash);
+            SuffixRules bound = SuffixRules.DEFAULT.forDictionary(dictWords);
+            for (String word : sampleWords(dictWords)) {
+                assertSameAsLegacy(dict, SuffixRules.DEFAULT, word);
+                assertSameAsLegacy(dict, bound, word);
+            }
+        }
+    }
+
+    /** The default rules give the same answers on short random words over the rule letters. */
+    @Test
+    public void defaultRulesMatchLegacyOnRandomWords() {
+        Random random = new Random(8);
+        String letters = "aesdrinlgyS'";
+        List<String> dictWords = new ArrayList<>();
+        for (int i = 0; i < 3000; i++)
+            dictWords.add(randomWord(random, letters.toLowerCase(), 1 + random.nextInt(4)));
+        WordTable dict = table(dictWords, StandardHash.CYCLIC_SHIFT);
+        SuffixRules bound = SuffixRules.DEFAULT.forDictionary(dictWords);
+        for (int i = 0; i < 50000; i++) {
+            String word = randomWord(random, letters, 1 + random.nextInt(9));
+            assertSameAsLegacy(dict, SuffixRules.DEFAULT, word);
+            assertSameAsLegacy(dict, bound, word);
+        }
+    }
+
+    /** rules.txt holds the default rules. */
+    @Test
+    public void rulesFileIsDefault() throws IOException {
+        SuffixRules file = SuffixRules.load(new File("rules.txt"));
+        assertEquals(SuffixRules.DEFAULT.size(), file.size());
+        assertEquals(SuffixRules.DEFAULT.states(), file.states());
+        assertEquals(10, file.size());
+    }
+
+    /** Binding to a dictionary cuts the lookups made for words that stay misspelled. */
+    @Test
+    public void boundRulesSkipImpossibleStems() throws IOException {
+        List<String> dictWords = SpellCheck.readWordList(new File("dict.txt"));
+        WordTable plain = table(dictWords, StandardHash.CYCLIC_SHIFT);
+        WordTable pruned = table(dictWords, StandardHash.CYCLIC_SHIFT);
+        SuffixRules bound = SuffixRules.DEFAULT.forDictionary(dictWords);
+        for (String word : new String[]{"1990s", "Xyzzying", "qqqers", "zzzly"}) {
+            assertFalse(SuffixRules.DEFAULT.check(plain, word));
+            assertFalse(bound.check(pruned, word));
+        }
+        assertTrue(pruned.getLookupCount() < plain.getLookupCount());
+    }
+
+    /** Rules bound through a stored binding make the same lookups as rules bound to the words. */
+    @Test
+    public void boundThroughBinding() throws IOException {
+        List<String> dictWords = SpellCheck.readWordList(new File("dict.txt"));
+        WordTable direct = table(dictWords, StandardHash.CYCLIC_SHIFT);
+        WordTable stored = table(dictWords, StandardHash.CYCLIC_SHIFT);
+        SuffixRules bound = SuffixRules.DEFAULT.forDictionary(dictWords);
+        SuffixRules loaded = SuffixRules.DEFAULT.forBinding(SuffixRules.bindingOf(dictWords));
+        for (String word : sampleWords(dictWords)) {
+            assertEquals(word, bound.match(direct, word), loaded.match(stored, word));
+            assertEquals(word, direct.getLookupCount(), stored.getLookupCount());
+        }
+    }
+
+    /** Custom rules are applied as written, nested rules only after their parent. */
+    @Test
+    public void customRules() throws IOException {
+        SuffixRules rules = SuffixRules.parse(new StringReader("# plurals\nies -> y\n    y -> ie\nes ->\n"), "test");
+        assertEquals(3, rules.size());
+        List<String> words = new ArrayList<>();
+        words.add("spy");
+        words.add("tie");
+        words.add("box");
+        WordTable dict = table(words, StandardHash.CYCLIC_SHIFT);
+        assertTrue(rules.check(dict, "spies"));
+        assertTrue(rules.check(dict, "Spies"));
+        assertTrue(rules.check(dict, "boxes"));
+        assertFalse(rules.check(dict, "spy's"));
+        assertFalse(SuffixRules.DEFAULT.check(dict, "spies"));
+        words.clear();
+        words.add("tie");
+        dict = table(words, StandardHash.CYCLIC_SHIFT);
+        assertTrue(rules.check(dict, "ties"));         // "ty", then ie in place of its y.
+    }
+
+    /** A line without an arrow is rejected. */
+    @Test(expected = IOException.class)
+    public void badRule() throws IOException {
+        SuffixRules.parse(new StringReader("s ->\nes\n"), "test");
+    }
+
+    /** Returns a random word over the given letters. */
+    private static String randomWord(Random random, String letters, int length) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < length; i++)
+            word.append(letters.charAt(random.nextInt(letters.length())));
+        return word.toString();
+    }
+
+    /** Test method for {@link SuffixRules#match(WordTable, String)}: the rule finding a word is reported. */
+    @Test
+    public void matchReportsRule() throws IOException {
+        SuffixRules rules = SuffixRules.parse(new StringReader("ies -> y\n    y -> ie\nes ->\n"), "test");
+        assertEquals(List.of("lower case", "ies -> y", "ies -> y / y -> ie", "es ->"), rules.matchNames());
+        List<String> words = new ArrayList<>();
+        words.add("spy");
+        words.add("tie");
+        words.add("box");
+        WordTable dict = table(words, StandardHash.CYCLIC_SHIFT);
+        assertEquals(1, rules.match(dict, "spies"));
+        assertEquals(1, SuffixRules.lastLookups());
+        assertEquals(2, rules.match(dict, "ties"));     // "ty" is looked up first.
+        assertEquals(2, SuffixRules.lastLookups());
+        assertEquals(3, rules.match(dict, "boxes"));
+        assertEquals(SuffixRules.LOWER_CASE, rules.match(dict, "Box"));
+        assertEquals(SuffixRules.NO_MATCH, rules.match(dict, "cat"));
+        assertEquals(0, SuffixRules.lastLookups());
+        byte[] text = " Spies ".getBytes(StandardCharsets.ISO_8859_1);
+        assertEquals(1, rules.match(dict, text, 1, 5));
+    }
+}
@@ -0,0 +1,74 @@
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Test class for SuggestionIndex.java.
+ */
+public class SuggestionIndexTest {
+    /** Sample dictionary. */
+    private List<String> words = Arrays.asList("apple", "apply", "ample", "maple", "spell", "spelling",
+            "smell", "shell", "the", "then", "they", "a", "an");
+
+    /** Edit distances, including adjacent transpositions. */
+    @Test
+    public void distance() {
+        assertEquals(0, SuggestionIndex.distance("spell", "spell", 3));
+        assertEquals(1, SuggestionIndex.distance("spell", "smell", 3));
+        assertEquals(1, SuggestionIndex.distance("spell", "spel", 3));
+        assertEquals(1, SuggestionIndex.distance("spel", "spell", 3));
+        assertEquals(1, SuggestionIndex.distance("teh", "the", 3));
+        assertEquals(2, SuggestionIndex.distance("apple", "maple", 3));
+        assertEquals(3, SuggestionIndex.distance("", "the", 3));
+        assertEquals(3, SuggestionIndex.distance("spell", "spelling", 2));   // Capped at limit + 1.
+    }
+
+    /** Suggestions are ranked by distance, then length difference, then alphabetically. */
+    @Test
+    public void ranking() {
+        SuggestionIndex index = new SuggestionIndex(words, 2);
+        assertEquals(Arrays.asList("apple", "ample", "apply"), index.suggest("appel", 3));
+        assertEquals(Arrays.asList("the", "then", "they"), index.suggest("teh", 3));
+        assertEquals(Arrays.asList("spell"), index.suggest("spel", 1));
+    }
+
+    /** Only words within the maximum edit distance are suggested. */
+    @Test
+    public void maxDistance() {
+        SuggestionIndex near = new SuggestionIndex(words, 1);
+        SuggestionIndex far = new SuggestionIndex(words, 3);
+        assertEquals(Arrays.asList("spell"), near.suggest("spelk", 5));
+        assertTrue(far.suggest("spelin", 5).contains("spelling"));
+        assertTrue(near.suggest("xyzzy", 5).isEmpty());
+        assertTrue(far.size() > near.size());
+        assertEquals(1, near.getMaxDistance());
+    }
+
+    /** A token far longer than any word has no suggestions and no deletions to generate. */
+    @Test
+    public void longToken() {
+        SuggestionIndex far = new SuggestionIndex(words, 3);
+        assertTrue(far.suggest("spellingxxx", 5).contains("spelling"));
+        assertTrue(far.suggest("spellingxxxx", 5).isEmpty());
+        assertTrue(far.suggest("e".repeat(3000), 5).isEmpty());
+        assertTrue(new SuggestionIndex(words, 2).suggest("e".repeat(70000), 5).isEmpty());
+    }
+
+    /** Duplicate dictionary words give a single suggestion. */
+    @Test
+    public void duplicates() {
+        SuggestionIndex index = new SuggestionIndex(Arrays.asList("cat", "cat", "cart"), 1);
+        assertEquals(Arrays.asList("cat", "cart"), index.suggest("cat", 5));
+    }
+
+    /** The maximum edit distance must be 1 to 3. */
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidDistance() {
+        new SuggestionIndex(words, 0);
+    }
+}
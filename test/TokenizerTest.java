@@ -0,0 +1,135 @@
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Test class for Tokenizer.java.
+ */
+public class TokenizerTest {
+    /** Sample text with apostrophes, digits, punctuation and non-ASCII letters */
+    private static final String TEXT = "The cook's 3rd cake, don't\tbake it!\n"
+            + "Caf\u00e9 na\u00efve under_score 'quoted' supercalifragilisticexpialidocious...end";
+
+    /** Tokens of the text found by the [\w']+ regular expression. */
+    private static List<String> regexTokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        Matcher match = Pattern.compile("[\\w']+").matcher(text);
+        while (match.find())
+            tokens.add(match.group());
+        return tokens;
+    }
+
+    /** Tokens and offsets of the text found by a tokenizer with the given buffer size. */
+    private static List<String> tokenize(byte[] bytes, int bufferSize, List<Long> offsets) throws IOException {
+        List<String> tokens = new ArrayList<>();
+        Tokenizer t = new Tokenizer(Channels.newChannel(new ByteArrayInputStream(bytes)), bufferSize);
+        while (t.next()) {
+            tokens.add(t.token());
+            if (offsets != null)
+                offsets.add(t.offset());
+        }
+        return tokens;
+    }
+
+    /** Tokens match the regular expression for every buffer size, including tokens spanning refills. */
+    @Test
+    public void matchesRegex() throws Exception {
+        byte[] bytes = TEXT.getBytes(StandardCharsets.UTF_8);
+        List<String> expected = regexTokens(TEXT);
+        for (int size = 16; size <= 64; size++)
+            assertEquals(expected, tokenize(bytes, size, null));
+    }
+
+    /** Offsets locate each token in the input. */
+    @Test
+    public void offsets() throws Exception {
+        byte[] bytes = "ab  cd\nefghijklmnopqrstuvwxyz0123 x".getBytes(StandardCharsets.US_ASCII);
+        List<Long> offsets = new ArrayList<>();
+        List<String> tokens = tokenize(bytes, 16, offsets);
+        for (int i = 0; i < tokens.size(); i++)
+            assertEquals(tokens.get(i), new String(bytes, (int) (long) offsets.get(i), tokens.get(i).length(),
+                    StandardCharsets.US_ASCII));
+    }
+
+    /** Empty and separator-only inputs yield no tokens. */
+    @Test
+    public void noTokens() throws Exception {
+        assertTrue(tokenize(new byte[0], 16, null).isEmpty());
+        assertTrue(tokenize(" ,.;\n\n".getBytes(StandardCharsets.US_ASCII), 16, null).isEmpty());
+    }
+
+    /** The bundled sample text tokenizes the same as the regular expression. */
+    @Test
+    public void sampleText() throws Exception {
+        byte[] bytes = Files.readAllBytes(Paths.get("input.txt"));
+        assertEquals(regexTokens(new String(bytes, StandardCharsets.UTF_8)), tokenize(bytes, 1024, null));
+    }
+
+    /** A tokenizer over an array slice scans it in place, with offsets from the slice start. */
+    @Test
+    public void inMemory() throws Exception {
+        byte[] bytes = ("xx" + TEXT + "yy").getBytes(StandardCharsets.UTF_8);
+        int len = bytes.length - 4;
+        Tokenizer t = new Tokenizer(bytes, 2, len);
+        List<String> tokens = new ArrayList<>();
+        while (t.next()) {
+            assertSame(bytes, t.array());
+            assertEquals(t.start() - 2, t.offset());
+            tokens.add(t.token());
+        }
+        assertEquals(regexTokens(new String(bytes, 2, len, StandardCharsets.UTF_8)), tokens);
+    }
+
+    /**
+     * With and without the vector word mask the tokens and offsets are the same,
+     * across refills and windows, on text mixing word bytes, separators and bytes
+     * beyond ASCII.
+     */
+    @Test
+    public void vectorMatchesScalar() throws Exception {
+        byte[] alphabet = "aZ09_' \n.,-\u00e9\u00ff".getBytes(StandardCharsets.ISO_8859_1);
+        Random random = new Random(17);
+        byte[] bytes = new byte[10000];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = random.nextInt(4) == 0 ? alphabet[random.nextInt(alphabet.length)] : (byte) ('a' + i % 26);
+        List<String> expected = regexTokens(new String(bytes, StandardCharsets.ISO_8859_1));
+        try {
+            for (boolean vector : new boolean[] {false, true}) {
+                Tokenizer.setVectorized(vector);
+                for (int bufferSize : new int[] {16, 100, 4096}) {
+                    List<Long> offsets = new ArrayList<>();
+                    assertEquals(expected, tokenize(bytes, bufferSize, offsets));
+                    Tokenizer t = new Tokenizer(bytes, 0, bytes.length);
+                    for (int i = 0; t.next(); i++)
+                        assertEquals((long) offsets.get(i), t.offset());
+                }
+            }
+        } finally {
+            Tokenizer.setVectorized(true);
+        }
+    }
+
+    /** The vector word mask, when compiled in, marks exactly the [\w'] bytes. */
+    @Test
+    public void wordMask() {
+        WordMask masks = WordMask.vector();
+        if (masks == null)
+            return;                             // Built without the Vector API.
+        byte[] bytes = ("ab'_ 9:\u00e9Z" + " ".repeat(56)).getBytes(StandardCharsets.ISO_8859_1);
+        assertEquals(0b1_0010_1111L, masks.of(bytes, 0));
+    }
+}
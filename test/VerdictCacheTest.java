@@ -0,0 +1,113 @@
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Test class for VerdictCache.java.
+ */
+public class VerdictCacheTest {
+    /** Cache under test */
+    private VerdictCache cache;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        cache = new VerdictCache(4);
+    }
+
+    /** Looks a word up in the cache. */
+    private int get(String word) {
+        byte[] text = word.getBytes(StandardCharsets.ISO_8859_1);
+        return cache.get(VerdictCache.hash(text, 0, text.length), text, 0, text.length);
+    }
+
+    /** Caches the verdict of a word. */
+    private void put(String word, boolean found, long cost) {
+        byte[] text = word.getBytes(StandardCharsets.ISO_8859_1);
+        cache.put(VerdictCache.hash(text, 0, text.length), text, 0, text.length, found, cost);
+    }
+
+    /** Verdicts are returned as cached, and absent words are reported as such. */
+    @Test
+    public void getAndPut() {
+        assertEquals(-1, get("the"));
+        put("the", true, 1);
+        put("teh", false, 5);
+        assertEquals(1, get("the"));
+        assertEquals(0, get("teh"));
+        assertEquals(-1, get("th"));
+        assertEquals(2, cache.size());
+        assertEquals(4, cache.getLookupCount());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(6, cache.getSavedProbeCount());
+    }
+
+    /** The cache never holds more than its entry count, and every lookup stays correct. */
+    @Test
+    public void eviction() {
+        for (int i = 0; i < 100; i++) {
+            put("w" + i, i % 3 == 0, 1);
+            assertTrue(cache.size() <= 4);
+            assertEquals(i % 3 == 0 ? 1 : 0, get("w" + i));
+        }
+        int cached = 0;
+        for (int i = 0; i < 100; i++) {
+            int verdict = get("w" + i);
+            if (verdict >= 0) {
+                cached++;
+                assertEquals(i % 3 == 0 ? 1 : 0, verdict);
+            }
+        }
+        assertEquals(4, cached);
+    }
+
+    /** A word in constant use survives a stream of one-off words. */
+    @Test
+    public void frequentWordsStay() {
+        put("the", true, 1);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(1, get("the"));
+            if (get("once" + i) < 0)
+                put("once" + i, false, 3);
+        }
+    }
+
+    /** A cache needs at least one entry. */
+    @Test(expected = IllegalArgumentException.class)
+    public void noEntries() {
+        new VerdictCache(0);
+    }
+
+    /** Checking with the cache prints the same words, and accounts for the probes saved. */
+    @Test
+    public void sameResultsAsUncached() throws Exception {
+        File text = File.createTempFile("cache", ".txt");
+        File out = new File(text.getPath().replace(".txt", "-out.txt"));
+        try {
+            Files.copy(new File("input.txt").toPath(), text.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            SpellCheck.main(new String[] {"-engine=open", text.getPath()});
+            List<String> uncached = Files.readAllLines(out.toPath());
+            SpellCheck.main(new String[] {"-engine=open", "-cache=100", text.getPath()});
+            List<String> cached = Files.readAllLines(out.toPath());
+            int stats = uncached.indexOf("") + 4;       // Misspelled words and first counts.
+            assertEquals(uncached.subList(0, stats), cached.subList(0, stats));
+            String total = uncached.get(stats).replace("Total probe count: ", "");
+            assertTrue(cached.contains("Total probe count without cache: " + total));
+        } finally {
+            SpellCheck.setCache(0);
+            text.delete();
+            out.delete();
+        }
+    }
+}
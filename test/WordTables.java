@@ -0,0 +1,24 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * Helpers shared by the tests of the WordTable implementations.
+ */
+final class WordTables {
+
+    private WordTables() {
+    }
+
+    /**
+     * Whether the table holds a word, through the byte path.
+     *
+     * @param table the table to look in
+     * @param word  the word, of Latin-1 characters
+     * @return true if the table holds the word
+     */
+    static boolean contains(WordTable table, String word) {
+        byte[] text = word.getBytes(StandardCharsets.ISO_8859_1);
+        return table.contains(table.hashCode(text, 0, text.length), text, 0, text.length);
+    }
+}
@@ -0,0 +1,42 @@
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * @author Stephen Hildebrand
+ *
+ * The {@link WordMask} of the Vector API: each 64 bytes are loaded in as many
+ * vectors as the preferred species needs (one with AVX-512, two with AVX2) and
+ * compared against the [\w'] ranges lane by lane. Bytes outside ASCII are
+ * negative and fail every range, as in the scalar tokenizer.
+ *
+ * Compile and run with --add-modules jdk.incubator.vector.
+ */
+final class VectorWordMask extends WordMask {
+    /** Widest byte vector the platform supports, up to 64 lanes. */
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED.length() <= WIDTH
+            ? ByteVector.SPECIES_PREFERRED : ByteVector.SPECIES_512;
+
+    /**
+     * Returns the mask of word bytes among text[off] to text[off + 63].
+     *
+     * @param text the array holding the text, at least off + 64 bytes long
+     * @param off  index of the first byte to classify
+     * @return the word-byte mask
+     */
+    long of(byte[] text, int off) {
+        long bits = 0;
+        for (int i = 0; i < WIDTH; i += SPECIES.length()) {
+            ByteVector v = ByteVector.fromArray(SPECIES, text, off + i);
+            ByteVector folded = v.or((byte) 0x20);          // Upper to lower case.
+            long word = folded.compare(VectorOperators.GE, (byte) 'a')
+                    .and(folded.compare(VectorOperators.LE, (byte) 'z'))
+                    .or(v.compare(VectorOperators.GE, (byte) '0').and(v.compare(VectorOperators.LE, (byte) '9')))
+                    .or(v.compare(VectorOperators.EQ, (byte) '_'))
+                    .or(v.compare(VectorOperators.EQ, (byte) '\''))
+                    .toLong();
+            bits |= word << i;
+        }
+        return bits;
+    }
+}